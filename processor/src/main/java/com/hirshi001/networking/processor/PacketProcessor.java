@@ -0,0 +1,352 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates the serializers of classes annotated with {@code @SerializablePacket}, and the {@code GeneratedPackets}
+ * class of each package which registers them. The generated methods write each {@code @Serialize} field with a direct
+ * call on the buffer, so they do not use reflection and are small enough for the JIT to inline.
+ * <p>
+ * The annotations are referred to by name so this module does not depend on the networking library, the generated
+ * code however needs the library on the classpath.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class PacketProcessor extends AbstractProcessor {
+
+    static final String SERIALIZABLE_PACKET = "com.hirshi001.networking.packet.serialization.SerializablePacket";
+    static final String SERIALIZE = "com.hirshi001.networking.packet.serialization.Serialize";
+    static final String PACKET = "com.hirshi001.networking.packet.Packet";
+    static final int NO_ID = Integer.MIN_VALUE;
+
+    private final Map<String, List<Registration>> registrations = new LinkedHashMap<>();
+    private final Set<String> registeredPackages = new HashSet<>();
+
+    private static class Registration {
+        final String type;
+        final int id, poolSize;
+
+        Registration(String type, int id, int poolSize) {
+            this.type = type;
+            this.id = id;
+            this.poolSize = poolSize;
+        }
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(SERIALIZABLE_PACKET);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                processType(type);
+            }
+        }
+        for (Map.Entry<String, List<Registration>> entry : registrations.entrySet()) {
+            if (!registeredPackages.add(entry.getKey())) {
+                error(null, "GeneratedPackets of package " + entry.getKey() + " was already generated in an earlier round");
+                continue;
+            }
+            writeRegistrations(entry.getKey(), entry.getValue());
+        }
+        registrations.clear();
+        return true;
+    }
+
+    private void processType(TypeElement type) {
+        TypeMirror packet = processingEnv.getElementUtils().getTypeElement(PACKET).asType();
+        if (!processingEnv.getTypeUtils().isSubtype(type.asType(), packet)) {
+            error(type, type + " must extend " + PACKET);
+            return;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, type + " must be static to be serialized");
+            return;
+        }
+
+        List<VariableElement> fields = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (!hasAnnotation(field, SERIALIZE)) continue;
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)) {
+                error(field, "Serialized fields must not be private, final or static");
+                return;
+            }
+            if (FieldType.of(field.asType()) == null) {
+                error(field, "Cannot serialize a field of type " + field.asType());
+                return;
+            }
+            fields.add(field);
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        writeSerializer(type, packageName, fields);
+
+        AnnotationMirror annotation = getAnnotation(type, SERIALIZABLE_PACKET);
+        int id = (Integer) getValue(annotation, "id", NO_ID);
+        int poolSize = (Integer) getValue(annotation, "poolSize", 0);
+        if (id == NO_ID) return;
+        if (type.getModifiers().contains(Modifier.ABSTRACT) || !hasNoArgConstructor(type)) {
+            error(type, type + " must be concrete and have a non private no-arg constructor to be registered");
+            return;
+        }
+        registrations.computeIfAbsent(packageName, k -> new ArrayList<>())
+                .add(new Registration(type.getQualifiedName().toString(), id, poolSize));
+    }
+
+    private void writeSerializer(TypeElement type, String packageName, List<VariableElement> fields) {
+        String packetType = type.getQualifiedName().toString();
+        String name = serializerName(type);
+
+        StringBuilder write = new StringBuilder(), read = new StringBuilder(), reset = new StringBuilder();
+        StringBuilder estimate = new StringBuilder();
+        int fixedSize = 0;
+        for (VariableElement field : fields) {
+            FieldType fieldType = FieldType.of(field.asType());
+            String f = "packet." + field.getSimpleName();
+            String local = field.getSimpleName() + "Length";
+            switch (fieldType.kind) {
+                case PRIMITIVE:
+                    write.append("        out.").append(fieldType.write).append("(").append(f).append(");\n");
+                    read.append("        ").append(f).append(" = ").append(fieldType.read).append(";\n");
+                    reset.append("        ").append(f).append(" = ").append(fieldType.zero).append(";\n");
+                    fixedSize += fieldType.size;
+                    break;
+                case STRING:
+                    write.append("        if (").append(f).append(" == null) out.writeInt(-1);\n")
+                            .append("        else ByteBufUtil.writeStringToBuf(").append(f).append(", out);\n");
+                    read.append("        if (in.getInt(in.readerIndex()) == -1) {\n")
+                            .append("            in.readerIndex(in.readerIndex() + 4);\n")
+                            .append("            ").append(f).append(" = null;\n")
+                            .append("        } else ").append(f).append(" = ByteBufUtil.readStringFromBuf(in);\n");
+                    reset.append("        ").append(f).append(" = null;\n");
+                    estimate.append("        if (").append(f).append(" != null) size += ").append(f).append(".length();\n");
+                    fixedSize += 4;
+                    break;
+                case ARRAY:
+                    FieldType element = fieldType.element;
+                    write.append("        if (").append(f).append(" == null) out.writeInt(-1);\n")
+                            .append("        else {\n")
+                            .append("            out.writeInt(").append(f).append(".length);\n");
+                    read.append("        int ").append(local).append(" = in.readInt();\n")
+                            .append("        if (").append(local).append(" == -1) ").append(f).append(" = null;\n");
+                    String reuse = "            if (" + f + " == null || " + f + ".length != " + local + ") " + f
+                            + " = new " + element.name + "[" + local + "];\n";
+                    read.append("        else {\n").append(reuse);
+                    if (element.zero.equals("false")) {
+                        write.append("            ArrayUtil.writeBooleans(out, ").append(f).append(");\n");
+                        read.append("            ArrayUtil.readBooleans(in, ").append(f).append(");\n");
+                        estimate.append("        if (").append(f).append(" != null) size += (").append(f).append(".length + 7) / 8;\n");
+                    } else {
+                        if (element.size == 1) {
+                            write.append("            out.writeBytes(").append(f).append(");\n");
+                            read.append("            in.readBytes(").append(f).append(");\n");
+                        } else {
+                            write.append("            ArrayUtil.write").append(element.bulk).append("(out, ").append(f).append(");\n");
+                            read.append("            ArrayUtil.read").append(element.bulk).append("(in, ").append(f).append(");\n");
+                        }
+                        estimate.append("        if (").append(f).append(" != null) size += ");
+                        if (element.size != 1) estimate.append(element.size).append(" * ");
+                        estimate.append(f).append(".length;\n");
+                    }
+                    write.append("        }\n");
+                    read.append("        }\n");
+                    fixedSize += 4;
+                    // arrays are kept on reset so a pooled packet can read into them again
+                    break;
+            }
+        }
+
+        StringBuilder source = new StringBuilder();
+        header(source, packageName);
+        source.append("import com.hirshi001.buffer.buffers.ByteBuffer;\n")
+                .append("import com.hirshi001.buffer.util.ByteBufUtil;\n")
+                .append("import com.hirshi001.networking.util.defaultpackets.arraypackets.ArrayUtil;\n\n")
+                .append("/**\n")
+                .append(" * Serializes the fields of {@link ").append(packetType).append("} annotated with Serialize.\n")
+                .append(" */\n")
+                .append("@SuppressWarnings(\"unused\")\n")
+                .append("public final class ").append(name).append(" {\n\n")
+                .append("    private ").append(name).append("() {\n    }\n\n")
+                .append("    public static void write(").append(packetType).append(" packet, ByteBuffer out) {\n")
+                .append(write)
+                .append("    }\n\n")
+                .append("    public static void read(").append(packetType).append(" packet, ByteBuffer in) {\n")
+                .append(read)
+                .append("    }\n\n")
+                .append("    public static int estimateSize(").append(packetType).append(" packet) {\n")
+                .append("        int size = ").append(fixedSize).append(";\n")
+                .append(estimate)
+                .append("        return size;\n")
+                .append("    }\n\n")
+                .append("    public static void reset(").append(packetType).append(" packet) {\n")
+                .append(reset)
+                .append("    }\n\n")
+                .append("}\n");
+        writeSource(packageName, name, source, type);
+    }
+
+    private void writeRegistrations(String packageName, List<Registration> packets) {
+        StringBuilder source = new StringBuilder();
+        header(source, packageName);
+        source.append("import com.hirshi001.networking.packetregistry.PacketRegistry;\n\n")
+                .append("/**\n")
+                .append(" * Registers the packets of this package which have an id in their SerializablePacket annotation.\n")
+                .append(" */\n")
+                .append("public final class GeneratedPackets {\n\n")
+                .append("    private GeneratedPackets() {\n    }\n\n")
+                .append("    public static PacketRegistry register(PacketRegistry registry) {\n");
+        for (Registration packet : packets) {
+            if (packet.poolSize > 0) {
+                source.append("        registry.registerPooled(").append(packet.type).append("::new, null, ")
+                        .append(packet.type).append(".class, ").append(packet.id).append(", ").append(packet.poolSize).append(");\n");
+            } else {
+                source.append("        registry.register(").append(packet.type).append("::new, null, ")
+                        .append(packet.type).append(".class, ").append(packet.id).append(");\n");
+            }
+        }
+        source.append("        return registry;\n")
+                .append("    }\n\n")
+                .append("}\n");
+        writeSource(packageName, "GeneratedPackets", source);
+    }
+
+    private static void header(StringBuilder source, String packageName) {
+        source.append("// Generated by ").append(PacketProcessor.class.getName()).append(", do not edit.\n\n");
+        if (!packageName.isEmpty()) source.append("package ").append(packageName).append(";\n\n");
+    }
+
+    private void writeSource(String packageName, String name, CharSequence source, Element... originatingElements) {
+        String qualifiedName = packageName.isEmpty() ? name : packageName + "." + name;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, originatingElements).openWriter()) {
+            writer.append(source);
+        } catch (IOException e) {
+            error(originatingElements.length == 0 ? null : originatingElements[0], "Could not write " + qualifiedName + ": " + e);
+        }
+    }
+
+    /**
+     * Returns the name of the serializer of a packet, which includes the names of the classes it is nested in.
+     */
+    static String serializerName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+            name.insert(0, e.getSimpleName() + "_");
+        }
+        return name.append("Serializer").toString();
+    }
+
+    private static boolean hasNoArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasAnnotation(Element element, String annotation) {
+        return getAnnotation(element, annotation) != null;
+    }
+
+    private static AnnotationMirror getAnnotation(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation)) return mirror;
+        }
+        return null;
+    }
+
+    private static Object getValue(AnnotationMirror annotation, String name, Object defaultValue) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) return entry.getValue().getValue();
+        }
+        return defaultValue;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * The types a field can have, and the code used to write and read them.
+     */
+    static final class FieldType {
+
+        enum Kind {PRIMITIVE, STRING, ARRAY}
+
+        final Kind kind;
+        final String name, write, read, zero, bulk;
+        final int size;
+        final FieldType element;
+
+        private FieldType(Kind kind, String name, String write, String read, String zero, String bulk, int size, FieldType element) {
+            this.kind = kind;
+            this.name = name;
+            this.write = write;
+            this.read = read;
+            this.zero = zero;
+            this.bulk = bulk;
+            this.size = size;
+            this.element = element;
+        }
+
+        private static FieldType primitive(String name, String write, String read, String zero, String bulk, int size) {
+            return new FieldType(Kind.PRIMITIVE, name, write, read, zero, bulk, size, null);
+        }
+
+        static FieldType of(TypeMirror type) {
+            switch (type.getKind()) {
+                case BOOLEAN: return primitive("boolean", "writeBoolean", "in.readBoolean()", "false", "Booleans", 1);
+                case BYTE: return primitive("byte", "writeByte", "in.readByte()", "0", "Bytes", 1);
+                case SHORT: return primitive("short", "writeShort", "in.readShort()", "0", "Shorts", 2);
+                case CHAR: return primitive("char", "writeChar", "(char) in.readChar()", "0", "Chars", 2);
+                case INT: return primitive("int", "writeInt", "in.readInt()", "0", "Ints", 4);
+                case LONG: return primitive("long", "writeLong", "in.readLong()", "0", "Longs", 8);
+                case FLOAT: return primitive("float", "writeFloat", "in.readFloat()", "0", "Floats", 4);
+                case DOUBLE: return primitive("double", "writeDouble", "in.readDouble()", "0", "Doubles", 8);
+                case ARRAY:
+                    TypeMirror component = ((ArrayType) type).getComponentType();
+                    if (!component.getKind().isPrimitive()) return null;
+                    return new FieldType(Kind.ARRAY, null, null, null, "null", null, 4, of(component));
+                case DECLARED:
+                    if (!type.toString().equals("java.lang.String")) return null;
+                    return new FieldType(Kind.STRING, "String", null, null, "null", null, 4, null);
+                default:
+                    return null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.util.defaultpackets.arraypackets.IntegerArrayPacket;
+
+import java.util.Random;
+
+/**
+ * Compares copying the elements of an array packet in bulk with writing and reading them one by one, for arrays of
+ * 16 to 1M elements.
+ */
+public class ArrayPacketBenchmark {
+
+    public static void main(String[] args) {
+        int[] sizes = {16, 256, 4096, 65536, 1 << 20};
+        for (int size : sizes) {
+            int[] array = new Random(size).ints(size).toArray();
+            IntegerArrayPacket packet = new IntegerArrayPacket(array);
+            IntegerArrayPacket read = new IntegerArrayPacket();
+            ByteBuffer buffer = new DefaultBufferFactory().buffer(4 + 4 * size);
+            int iterations = Math.max(3, (1 << 24) / size);
+
+            long loop = 0, bulk = 0;
+            for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    buffer.clear();
+                    writeOneByOne(buffer, array);
+                    readOneByOne(buffer);
+                }
+                long looped = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    buffer.clear();
+                    packet.writeBytes(buffer);
+                    read.readBytes(buffer);
+                }
+                long bulked = System.nanoTime();
+                loop = looped - start;
+                bulk = bulked - looped;
+            }
+            System.out.printf("int[%d]: one by one %.2f ns/element, bulk %.2f ns/element%n", size,
+                    loop / (double) iterations / size, bulk / (double) iterations / size);
+        }
+    }
+
+    private static void writeOneByOne(ByteBuffer out, int[] array) {
+        out.writeInt(array.length);
+        for (int value : array) out.writeInt(value);
+    }
+
+    private static int[] readOneByOne(ByteBuffer in) {
+        int[] array = new int[in.readInt()];
+        for (int i = 0; i < array.length; i++) array[i] = in.readInt();
+        return array;
+    }
+
+}
@@ -0,0 +1,19 @@
+package benchmarks;
+
+/**
+ * Runs every benchmark. The benchmarks only print timings, so they are kept out of the unit tests and are run with
+ * {@code gradlew benchmark}.
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) {
+        RegistryLookupBenchmark.main(args);
+        EncoderDecoderBenchmark.main(args);
+        BroadcastBenchmark.main(args);
+        ArrayPacketBenchmark.main(args);
+        QuantizedPacketBenchmark.main(args);
+        CompressionBenchmark.main(args);
+        DictionaryBenchmark.main(args);
+    }
+
+}
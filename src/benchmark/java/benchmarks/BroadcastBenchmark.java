@@ -0,0 +1,56 @@
+package benchmarks;
+
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.networking.network.channel.Channel;
+import com.hirshi001.networking.network.channel.ChannelSet;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.defaultpackets.arraypackets.IntegerArrayPacket;
+import tests.LocalChannel;
+import tests.LocalServer;
+
+/**
+ * Compares the cost per recipient of broadcasting from a {@link ChannelSet} with sending to each channel.
+ */
+public class BroadcastBenchmark {
+
+    public static void main(String[] args) {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().registerDefaultArrayPrimitivePackets();
+        LocalServer server = new LocalServer(new DefaultNetworkData(new CompactPacketEncoderDecoder(), container), new DefaultBufferFactory());
+        int recipients = 2000;
+        for (int i = 0; i < recipients; i++) server.newChannel();
+        ChannelSet<Channel> clients = server.getClients();
+
+        int[] worldState = new int[256];
+        for (int i = 0; i < worldState.length; i++) worldState[i] = i * 7919;
+        IntegerArrayPacket packet = new IntegerArrayPacket(worldState);
+
+        for (int round = 0; round < 20; round++) { // the first rounds warm up the JIT
+            long start = System.nanoTime();
+            for (Channel channel : clients) channel.sendNow(packet, null, PacketType.TCP);
+            long perChannel = System.nanoTime();
+            clients.flush(PacketType.TCP);
+            clearSent(clients);
+
+            long broadcastStart = System.nanoTime();
+            clients.sendTCPToAll(packet, null).perform();
+            long broadcast = System.nanoTime();
+            clients.flush(PacketType.TCP);
+            clearSent(clients);
+
+            if (round == 19) {
+                System.out.printf("fan-out to %d channels: encode per channel %.0f ns/recipient, encode once %.0f ns/recipient%n",
+                        recipients, (perChannel - start) / (double) recipients, (broadcast - broadcastStart) / (double) recipients);
+            }
+        }
+    }
+
+    private static void clearSent(ChannelSet<Channel> clients) {
+        for (Channel channel : clients) ((LocalChannel) channel).tcpSent.clear();
+    }
+
+}
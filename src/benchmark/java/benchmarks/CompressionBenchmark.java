@@ -0,0 +1,45 @@
+package benchmarks;
+
+import com.hirshi001.networking.packetdecoderencoder.compression.Compressor;
+import com.hirshi001.networking.packetdecoderencoder.compression.DeflateCompressor;
+import com.hirshi001.networking.packetdecoderencoder.compression.LZCompressor;
+import tests.CompressionTest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Measures where compressing a body starts to pay off, for bodies of 32 bytes to 64 KiB.
+ */
+public class CompressionBenchmark {
+
+    public static void main(String[] args) {
+        int[] sizes = {32, 64, 128, 256, 512, 1024, 4096, 16384, 65536};
+        List<Supplier<Compressor>> compressors = Arrays.asList(LZCompressor::new, DeflateCompressor::new);
+        for (Supplier<Compressor> supplier : compressors) {
+            Compressor compressor = supplier.get();
+            for (int size : sizes) {
+                byte[] data = CompressionTest.json(size, size);
+                byte[] compressed = new byte[size * 2 + 64], decompressed = new byte[size];
+                int iterations = Math.max(20, 2_000_000 / size);
+                int length = 0;
+                long compressTime = 0, decompressTime = 0;
+                for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+                    long start = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) length = compressor.compress(data, size, compressed, compressed.length);
+                    long middle = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) compressor.decompress(compressed, length, decompressed, size);
+                    long end = System.nanoTime();
+                    compressTime = middle - start;
+                    decompressTime = end - middle;
+                }
+                System.out.printf("%s %6d bytes -> %6d (%3.0f%%), compress %8.0f ns, decompress %8.0f ns, %5.1f bytes saved/us%n",
+                        compressor.getClass().getSimpleName(), size, length, 100.0 * length / size,
+                        compressTime / (double) iterations, decompressTime / (double) iterations,
+                        (size - length) / ((compressTime + decompressTime) / (double) iterations / 1000));
+            }
+        }
+    }
+
+}
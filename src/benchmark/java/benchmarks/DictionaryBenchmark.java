@@ -0,0 +1,61 @@
+package benchmarks;
+
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.networking.packetdecoderencoder.compression.CompressionDictionary;
+import com.hirshi001.networking.packetdecoderencoder.compression.Compressor;
+import com.hirshi001.networking.packetdecoderencoder.compression.DeflateCompressor;
+import com.hirshi001.networking.packetdecoderencoder.compression.DictionaryTrainer;
+import com.hirshi001.networking.packetdecoderencoder.compression.LZCompressor;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.StringPacket;
+import tests.DictionaryTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares compressing small packets with and without a trained dictionary.
+ */
+public class DictionaryBenchmark {
+
+    public static void main(String[] args) {
+        DictionaryTrainer trainer = new DictionaryTrainer(new DefaultBufferFactory());
+        Random samples = new Random(1);
+        for (int i = 0; i < 2000; i++) trainer.addSample(new StringPacket(DictionaryTest.message(samples)));
+        CompressionDictionary dictionary = trainer.train(8192, 1);
+
+        Random random = new Random(4);
+        byte[][] messages = new byte[1000][];
+        int total = 0;
+        for (int i = 0; i < messages.length; i++) total += (messages[i] = DictionaryTest.message(random).getBytes(StandardCharsets.UTF_8)).length;
+
+        List<Supplier<Compressor>> compressors = Arrays.asList(LZCompressor::new, DeflateCompressor::new);
+        for (Supplier<Compressor> supplier : compressors) {
+            Compressor compressor = supplier.get();
+            byte[] dst = new byte[512], decompressed = new byte[512];
+            for (CompressionDictionary used : new CompressionDictionary[]{null, dictionary}) {
+                long compressTime = 0, decompressTime = 0;
+                int compressed = 0;
+                for (int round = 0; round < 5; round++) { // the first rounds warm up the JIT
+                    compressed = 0;
+                    long start = System.nanoTime();
+                    for (byte[] message : messages) compressed += compressor.compress(message, message.length, dst, dst.length, used);
+                    long middle = System.nanoTime();
+                    for (byte[] message : messages) {
+                        int length = compressor.compress(message, message.length, dst, dst.length, used);
+                        compressor.decompress(dst, length, decompressed, message.length, used);
+                    }
+                    compressTime = middle - start;
+                    decompressTime = System.nanoTime() - middle - compressTime;
+                }
+                System.out.printf("%s %s dictionary: %.1f byte messages -> %.1f bytes (%3.0f%%), compress %6.0f ns, decompress %6.0f ns%n",
+                        compressor.getClass().getSimpleName(), used == null ? "without" : "with", total / (double) messages.length,
+                        compressed / (double) messages.length, 100.0 * compressed / total,
+                        compressTime / (double) messages.length, Math.max(0, decompressTime) / (double) messages.length);
+            }
+        }
+    }
+
+}
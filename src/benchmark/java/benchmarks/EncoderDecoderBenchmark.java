@@ -0,0 +1,52 @@
+package benchmarks;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.PacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.IntegerPacket;
+
+/**
+ * Compares the throughput of {@link SimplePacketEncoderDecoder} and {@link CompactPacketEncoderDecoder}.
+ */
+public class EncoderDecoderBenchmark {
+
+    public static void main(String[] args) {
+        BufferFactory bufferFactory = new DefaultBufferFactory();
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().registerDefaultPrimitivePackets();
+        PacketEncoderDecoder[] encoderDecoders = {new SimplePacketEncoderDecoder(), new CompactPacketEncoderDecoder()};
+        int packets = 200_000;
+
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            for (PacketEncoderDecoder encoderDecoder : encoderDecoders) {
+                ByteBuffer buffer = bufferFactory.buffer(packets * 16);
+                PacketHandlerContext<IntegerPacket> context = new PacketHandlerContext<>();
+                context.packet = new IntegerPacket(0);
+                context.packetRegistry = container.getDefaultRegistry();
+
+                long start = System.nanoTime();
+                for (int i = 0; i < packets; i++) {
+                    context.packet.value = i;
+                    encoderDecoder.encode(context, null, container, buffer);
+                }
+                long encoded = System.nanoTime();
+                int bytes = buffer.readableBytes();
+                while (encoderDecoder.decode(container, buffer, null) != null) ;
+                long decoded = System.nanoTime();
+
+                if (round == 2) {
+                    System.out.printf("%s: %d bytes, encode %.1f ns/packet, decode %.1f ns/packet%n",
+                            encoderDecoder.getClass().getSimpleName(), bytes,
+                            (encoded - start) / (double) packets, (decoded - encoded) / (double) packets);
+                }
+            }
+        }
+    }
+
+}
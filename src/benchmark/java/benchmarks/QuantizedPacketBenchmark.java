@@ -0,0 +1,53 @@
+package benchmarks;
+
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.util.Quantizer;
+import com.hirshi001.networking.util.defaultpackets.quantizedpackets.QuantizedVector3Packet;
+
+/**
+ * Compares the size and speed of the quantized packets with sending full floats.
+ */
+public class QuantizedPacketBenchmark {
+
+    public static void main(String[] args) {
+        Quantizer position = new Quantizer(-512, 512, 16);
+        QuantizedVector3Packet packet = new QuantizedVector3Packet(position), read = new QuantizedVector3Packet(position);
+        int count = 1_000_000;
+        ByteBuffer buffer = new DefaultBufferFactory().buffer(count * 12);
+
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            buffer.clear();
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                packet.set(i % 1000 - 500, i % 777 - 300, i % 333);
+                packet.writeBytes(buffer);
+            }
+            long encoded = System.nanoTime();
+            int quantizedBytes = buffer.readableBytes();
+            for (int i = 0; i < count; i++) read.readBytes(buffer);
+            long decoded = System.nanoTime();
+
+            buffer.clear();
+            long floatStart = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                buffer.writeFloat(i % 1000 - 500);
+                buffer.writeFloat(i % 777 - 300);
+                buffer.writeFloat(i % 333);
+            }
+            long floatEncoded = System.nanoTime();
+            int floatBytes = buffer.readableBytes();
+            float sink = 0;
+            for (int i = 0; i < count; i++) sink += buffer.readFloat() + buffer.readFloat() + buffer.readFloat();
+            long floatDecoded = System.nanoTime();
+
+            if (round == 2) {
+                System.out.printf("quantized: %d bytes, encode %.1f ns, decode %.1f ns%n", quantizedBytes,
+                        (encoded - start) / (double) count, (decoded - encoded) / (double) count);
+                System.out.printf("floats: %d bytes, encode %.1f ns, decode %.1f ns (%d)%n", floatBytes,
+                        (floatEncoded - floatStart) / (double) count, (floatDecoded - floatEncoded) / (double) count, (int) sink & 1);
+            }
+        }
+    }
+
+}
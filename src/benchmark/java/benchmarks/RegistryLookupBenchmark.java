@@ -0,0 +1,60 @@
+package benchmarks;
+
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packetregistry.ArrayPacketRegistry;
+import com.hirshi001.networking.packetregistry.DefaultPacketRegistry;
+import com.hirshi001.networking.packetregistry.PacketRegistry;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.IntegerPacket;
+
+/**
+ * Compares the speed of the lookups of {@link ArrayPacketRegistry} and {@link DefaultPacketRegistry}.
+ */
+public class RegistryLookupBenchmark {
+
+    private static <T extends PacketRegistry> T registerAll(T registry) {
+        registry.registerDefaultPrimitivePackets()
+                .registerDefaultArrayPrimitivePackets()
+                .registerUDPHelperPackets()
+                .registerNetworkConditionPackets()
+                .register(IntegerPacket::new, null, IntegerPacket.class, 3);
+        return registry;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) {
+        PacketRegistry[] registries = {registerAll(new DefaultPacketRegistry("default")), registerAll(new ArrayPacketRegistry("array")).freeze()};
+        int[] ids = {-101, -109, -202, -206, -401, -501, -505, 3}; // a power of two so the index can be masked
+        Class<? extends Packet>[] classes = new Class[ids.length];
+        for (int i = 0; i < ids.length; i++) classes[i] = registries[0].getPacketHolder(ids[i]).packetClass;
+        int iterations = 5_000_000;
+
+        for (int round = 0; round < 10; round++) { // the first rounds warm up the JIT
+            for (PacketRegistry registry : registries) {
+                long start = System.nanoTime();
+                int sink = lookupHolders(registry, ids, iterations);
+                long holders = System.nanoTime();
+                sink += lookupIds(registry, classes, iterations);
+                long classIds = System.nanoTime();
+
+                if (round == 9) {
+                    System.out.printf("%s: getPacketHolder %.2f ns/op, getId %.2f ns/op (%d)%n",
+                            registry.getClass().getSimpleName(), (holders - start) / (double) iterations,
+                            (classIds - holders) / (double) iterations, sink & 1);
+                }
+            }
+        }
+    }
+
+    private static int lookupHolders(PacketRegistry registry, int[] ids, int iterations) {
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) if (registry.getPacketHolder(ids[i & 7]) != null) sink++;
+        return sink;
+    }
+
+    private static int lookupIds(PacketRegistry registry, Class<? extends Packet>[] classes, int iterations) {
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) sink += registry.getId(classes[i & 7]);
+        return sink;
+    }
+
+}
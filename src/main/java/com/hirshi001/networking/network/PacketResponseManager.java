@@ -86,24 +86,37 @@ public class PacketResponseManager {
         }, timeout, unit);
     }
 
-    public void success(PacketHandlerContext<?> context){
+    /**
+     * Completes the futures waiting for the received packet.
+     * @param context the context of the received packet
+     * @return true if the context was given to at least one future, in which case the packet must not be released to
+     * its pool
+     */
+    public boolean success(PacketHandlerContext<?> context){
         // check if it is a response packet
-        int receivingId = context.packet.receivingId;
-        if(receivingId<0) return;
-        RestFuture<?, PacketHandlerContext<?>> future = packetResponses.remove(context.packet.receivingId);
+        int receivingId = context.getReceivingId(); // does not read the body of a lazily received packet
+        if(receivingId<0) return false;
+        RestFuture<?, PacketHandlerContext<?>> future = packetResponses.remove(receivingId);
+        Set<RestFuture<?, PacketHandlerContext<?>>> futures = waitingForPacketByClass.get(context.getPacketClass()); // no need to remove, meh
+        if(future==null && (futures==null || futures.isEmpty())) return false; // a relayed packet is not read here
+
+        context.getPacket(); // the futures are given the read packet
+        context.retainPacket(); // the futures may use it after it is handled, which copies a flyweight out of the receive buffer
+        boolean delivered = false;
         if(future!=null){
             future.taskFinished(context);
+            delivered = true;
         }
 
         // check if someone is waiting for this packet
-        Set<RestFuture<?, PacketHandlerContext<?>>> futures = waitingForPacketByClass.get(context.packet.getClass()); // no need to remove, meh
         if(futures!=null){
             for(RestFuture<?, PacketHandlerContext<?>> f : futures){
                 f.taskFinished(context);
+                delivered = true;
             }
             futures.clear();
         }
-
+        return delivered;
     }
 
     public void noId(Packet packet){
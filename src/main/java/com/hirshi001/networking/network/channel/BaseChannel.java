@@ -24,12 +24,24 @@ import com.hirshi001.networking.network.networkside.NetworkSide;
 import com.hirshi001.networking.network.server.Server;
 import com.hirshi001.networking.networkdata.NetworkData;
 import com.hirshi001.networking.packet.DataPacket;
+import com.hirshi001.networking.packet.DeltaPacket;
 import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packet.PacketHolder;
+import com.hirshi001.networking.packet.StringTablePacket;
+import com.hirshi001.networking.packetdecoderencoder.PacketBatch;
 import com.hirshi001.networking.packetdecoderencoder.PacketEncoderDecoder;
 import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
 import com.hirshi001.networking.packethandlercontext.PacketType;
 import com.hirshi001.networking.packetregistry.PacketRegistry;
 import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.util.DeltaTable;
+import com.hirshi001.networking.util.FragmentTable;
+import com.hirshi001.networking.util.ShortIdTable;
+import com.hirshi001.networking.util.StringTable;
+import com.hirshi001.networking.util.defaultpackets.systempackets.DeltaAckPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.DictionaryVersionsPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.FragmentPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.ShortPacketIdsPacket;
 import com.hirshi001.restapi.RestAPI;
 import com.hirshi001.restapi.RestFuture;
 import com.hirshi001.restapi.ScheduledExec;
@@ -40,6 +52,7 @@ import org.jetbrains.annotations.Nullable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 
 /**
@@ -69,6 +82,9 @@ public abstract class BaseChannel implements Channel {
     protected boolean defaultSwitchProtocol = false;
 
     protected int maxUDPPacketSize = -1; // -1 means no limit
+    protected boolean fragmentUDPPackets = false;
+
+    protected boolean batchPackets = false;
 
     protected long packetTimeout = -1; // -1 means no timeout
     protected long udpPacketTimeout = -1; // -1 means no timeout
@@ -81,10 +97,20 @@ public abstract class BaseChannel implements Channel {
 
     private final ByteBuffer tcpBuffer;
     private final ByteBuffer sendTCPBuffer, sendUDPBuffer;
+    private final PacketBatch tcpBatch, udpBatch; // guarded by sendTCPBuffer and sendUDPBuffer
+    private int tcpFrameSize = 64, udpFrameSize = 64; // moving averages of the encoded frame sizes, guarded the same way
+    private final Consumer<PacketHandlerContext<?>> tcpReceiver, udpReceiver;
 
     private final NetworkCondition networkCondition;
     private boolean networkConditionEnabled;
 
+    private final StringTable stringTable = new StringTable();
+    private final ShortIdTable shortIdTable = new ShortIdTable();
+    private final DeltaTable deltaTable = new DeltaTable();
+    private final FragmentTable fragmentTable = new FragmentTable();
+    private ByteBuffer fragmentBuffer; // guarded by sendUDPBuffer
+    private volatile Map<Integer, Integer> peerDictionaryVersions = Collections.emptyMap();
+
     private final IOFlusher tcpFlush, udpFlush;
     private final IOFlusher networkConditionTCPFlush, networkConditionUDPFlush;
 
@@ -102,6 +128,21 @@ public abstract class BaseChannel implements Channel {
 
         sendTCPBuffer = bufferFactory.buffer(64);
         sendUDPBuffer = bufferFactory.buffer(64);
+        tcpBatch = new PacketBatch();
+        udpBatch = new PacketBatch();
+
+        tcpReceiver = context -> {
+            context.packetType = PacketType.TCP;
+            context.channel = this;
+            context.networkSide = getSide();
+            onPacketReceived(context);
+        };
+        udpReceiver = context -> {
+            context.packetType = PacketType.UDP;
+            context.channel = this;
+            context.networkSide = getSide();
+            onPacketReceived(context);
+        };
 
         tcpFlush = this::writeAndFlushTCP;
         udpFlush = this::writeAndFlushUDP;
@@ -152,6 +193,37 @@ public abstract class BaseChannel implements Channel {
         else throw new IllegalArgumentException("PacketType cannot be null unless a proper default type is set");
     }
 
+    @Override
+    public <P extends Packet> void sendEncoded(P packet, PacketRegistry registry, PacketType packetType, ByteBuffer frame) {
+        packetType = getPacketTypeHelper(packetType);
+        if (packetType == PacketType.TCP && !supportsTCP() && supportsUDP() && (defaultSwitchProtocol || defaultUDP)) {
+            packetType = PacketType.UDP;
+        } else if (packetType == PacketType.UDP && !supportsUDP() && supportsTCP() && (defaultSwitchProtocol || defaultTCP)) {
+            packetType = PacketType.TCP;
+        }
+        if (packetType == null)
+            throw new IllegalArgumentException("PacketType cannot be null unless a proper default type is set");
+
+        PacketHandlerContext<P> context = getNewPacketHandlerContext(packet, registry);
+        context.packetType = packetType;
+        if (context.packetRegistry == null)
+            context.packetRegistry = getSide().getNetworkData().getPacketRegistryContainer().getDefaultRegistry();
+
+        boolean tcp = packetType == PacketType.TCP;
+        ByteBuffer sendBuffer = tcp ? sendTCPBuffer : sendUDPBuffer;
+        synchronized (sendBuffer) {
+            closeBatch(tcp ? tcpBatch : udpBatch, sendBuffer);
+            int readerIndex = frame.readerIndex();
+            sendBuffer.writeBytes(frame, frame.readableBytes());
+            frame.readerIndex(readerIndex);
+            if (tcp ? autoFlushTCP : autoFlushUDP) {
+                if (tcp) flushTCP();
+                else flushUDP();
+            }
+        }
+        onSent(context);
+    }
+
     @Override
     public <T extends Packet> RestFuture<?, PacketHandlerContext<T>> waitFor(Class<T> packetClass, long timeout) {
         RestFuture<?, PacketHandlerContext<T>> future = RestAPI.create();
@@ -269,7 +341,8 @@ public abstract class BaseChannel implements Channel {
         PacketHandlerContext<P> context = getNewPacketHandlerContext(packet, registry);
         context.packetType = PacketType.TCP;
         synchronized (sendTCPBuffer) {
-            toBytes(context, dataPacket, sendTCPBuffer);
+            tcpFrameSize += (toBytes(context, dataPacket, sendTCPBuffer, autoFlushTCP ? null : tcpBatch, tcpFrameSize) - tcpFrameSize) >> 3;
+            writeShortIds();
             if (autoFlushTCP) {
                 flushTCP();
             }
@@ -296,11 +369,19 @@ public abstract class BaseChannel implements Channel {
         PacketHandlerContext<P> context = getNewPacketHandlerContext(packet, registry);
         context.packetType = PacketType.UDP;
         synchronized (sendUDPBuffer) {
-            toBytes(context, dataPacket, sendUDPBuffer);
+            udpFrameSize += (toBytes(context, dataPacket, sendUDPBuffer, autoFlushUDP ? null : udpBatch, udpFrameSize) - udpFrameSize) >> 3;
             if (autoFlushUDP) {
                 flushUDP();
             }
         }
+        if (shortIdTable.hasUnsentCodes()) {
+            synchronized (sendTCPBuffer) {
+                writeShortIds();
+                if (autoFlushTCP) {
+                    flushTCP();
+                }
+            }
+        }
         onSent(context);
         return context;
     }
@@ -309,23 +390,76 @@ public abstract class BaseChannel implements Channel {
     // Encoding
 
     /**
-     * Encodes a packet to a byte buffer
+     * Encodes a packet to a byte buffer. If {@link ChannelOption#BATCH_PACKETS} is enabled and a batch is given, the
+     * packet is added to the open batch if possible.
      *
      * @param context    the context
      * @param dataPacket the data packet
+     * @param buffer     the buffer to write to
+     * @param batch      the batch state of the buffer, or null if the packet should not be batched
+     * @param frameSize  the average size of the frames encoded into the buffer, reserved up front if the packet
+     *                   cannot estimate its own size
+     * @return the number of bytes written to the buffer
      */
-    private void toBytes(PacketHandlerContext<?> context, @Nullable DataPacket dataPacket, ByteBuffer buffer) {
+    private int toBytes(PacketHandlerContext<?> context, @Nullable DataPacket dataPacket, ByteBuffer buffer, @Nullable PacketBatch batch, int frameSize) {
+        if (dataPacket == null && context.packet.estimateSize() < 0) buffer.ensureWritable(frameSize);
+        int start = buffer.writerIndex();
+        encode(context, dataPacket, buffer, batch);
+        return Math.max(buffer.writerIndex() - start, 0);
+    }
+
+    private void encode(PacketHandlerContext<?> context, @Nullable DataPacket dataPacket, ByteBuffer buffer, @Nullable PacketBatch batch) {
         NetworkSide side = getSide();
         if (context.packetRegistry == null)
             context.packetRegistry = side.getNetworkData().getPacketRegistryContainer().getDefaultRegistry();
         NetworkData data = side.getNetworkData();
         PacketRegistryContainer container = data.getPacketRegistryContainer();
-        data.getPacketEncoderDecoder().encode(context, dataPacket, container, buffer);
+        PacketEncoderDecoder encoderDecoder = data.getPacketEncoderDecoder();
+        if (dataPacket == null && context.packet instanceof StringTablePacket)
+            ((StringTablePacket) context.packet).beforeWrite(context.packetType == PacketType.TCP ? stringTable : null);
+        if (dataPacket == null && context.packet instanceof DeltaPacket)
+            ((DeltaPacket) context.packet).beforeWrite(deltaTable, context.packetType == PacketType.TCP);
+        boolean written = false;
+        try {
+            if (batch == null || !batchPackets || !encoderDecoder.encodeBatched(context, dataPacket, container, batch, buffer)) {
+                if (batch != null) closeBatch(batch, buffer);
+                encoderDecoder.encode(context, dataPacket, container, buffer);
+            }
+            written = true;
+        } finally {
+            if (dataPacket == null && context.packet instanceof StringTablePacket)
+                ((StringTablePacket) context.packet).afterWrite(written);
+            if (dataPacket == null && context.packet instanceof DeltaPacket)
+                ((DeltaPacket) context.packet).afterWrite(written);
+        }
+    }
+
+    /**
+     * Writes the short ids assigned since the last call to the TCP stream, so the packets written after them can use
+     * them, see {@link ShortIdTable}. Must be called while holding the lock of the TCP send buffer.
+     */
+    private void writeShortIds() {
+        if (!shortIdTable.hasUnsentCodes() || !supportsTCP() || !isTCPOpen()) return;
+        boolean multipleRegistries = getSide().getNetworkData().getPacketRegistryContainer().supportsMultipleRegistries();
+        PacketHandlerContext<ShortPacketIdsPacket> context = getNewPacketHandlerContext(shortIdTable.pollUnsentCodes(multipleRegistries), null);
+        context.packetType = PacketType.TCP;
+        encode(context, null, sendTCPBuffer, autoFlushTCP ? null : tcpBatch);
+    }
+
+    /**
+     * Finishes the open batch in the buffer, if there is one. Must be called while holding the lock of the buffer.
+     *
+     * @param batch  the batch state of the buffer
+     * @param buffer the buffer
+     */
+    private void closeBatch(PacketBatch batch, ByteBuffer buffer) {
+        if (batch.isOpen()) getSide().getNetworkData().getPacketEncoderDecoder().closeBatch(batch, buffer);
     }
 
     @Override
     public void sendRawBytesTCP(ByteBuffer buffer) {
         synchronized (sendTCPBuffer) {
+            closeBatch(tcpBatch, sendTCPBuffer);
             sendTCPBuffer.writeBytes(buffer, buffer.readableBytes());
             if (autoFlushTCP) {
                 flushTCP();
@@ -336,6 +470,7 @@ public abstract class BaseChannel implements Channel {
     @Override
     public void sendRawBytesUDP(ByteBuffer buffer) {
         synchronized (sendUDPBuffer) {
+            closeBatch(udpBatch, sendUDPBuffer);
             sendUDPBuffer.writeBytes(buffer, buffer.readableBytes());
             if (autoFlushUDP) {
                 flushUDP();
@@ -406,12 +541,26 @@ public abstract class BaseChannel implements Channel {
     }
 
     /**
-     * Helper method for when a packet is received
+     * Helper method for when a packet is received. Once the packet is handled, it is released back to its pool if it
+     * is pooled, unless it was given to a response future or retained with {@link PacketHandlerContext#retainPacket()}.
      *
      * @param context the context of the packet received, including the {@link PacketType}
      */
     private void onPacketReceived(PacketHandlerContext<?> context) {
-        packetResponseManager.success(context);
+        if (context.packet instanceof StringTablePacket && !((StringTablePacket) context.packet).afterRead(stringTable) ||
+                context.packet instanceof DeltaPacket && !onDeltaPacket(context)) {
+            context.releasePacket();
+            return;
+        }
+        if (context.getPacketClass() == ShortPacketIdsPacket.class)
+            onShortPacketIds((ShortPacketIdsPacket) context.getPacket(), context.packetRegistry);
+        else if (context.getPacketClass() == DictionaryVersionsPacket.class)
+            onDictionaryVersions((DictionaryVersionsPacket) context.getPacket());
+        else if (context.getPacketClass() == DeltaAckPacket.class)
+            onDeltaAck((DeltaAckPacket) context.getPacket());
+        else if (context.getPacketClass() == FragmentPacket.class)
+            fragmentTable.add((FragmentPacket) context.getPacket(), System.nanoTime());
+        boolean delivered = packetResponseManager.success(context);
         getListenerHandler().onReceived(context);
         getSide().getListenerHandler().onReceived(context);
         if (context.packetType == PacketType.TCP) {
@@ -424,6 +573,78 @@ public abstract class BaseChannel implements Channel {
             getSide().getListenerHandler().onUDPReceived(context);
         }
         if (context.shouldHandle()) context.handle();
+        if (!delivered) context.releasePacket();
+    }
+
+    /**
+     * Stores the short ids the other side assigned and acknowledges them, or lets the short ids acknowledged by the
+     * other side be used over UDP. The ids have to be stored before the next frame is decoded, so this is done here
+     * instead of in a packet handler.
+     *
+     * @param packet   the packet holding the short ids
+     * @param registry the registry the packet was received with
+     */
+    private void onShortPacketIds(ShortPacketIdsPacket packet, PacketRegistry registry) {
+        if (packet.isAcknowledgement()) {
+            shortIdTable.acknowledge(packet.firstCode);
+        } else {
+            shortIdTable.put(packet);
+            sendTCPNow(new ShortPacketIdsPacket(shortIdTable.getReceivedCount()), null, registry);
+        }
+    }
+
+    /**
+     * Applies the delta a {@link DeltaPacket} was received as, and acknowledges it if it was received over UDP with a
+     * number, so later packets of its type can be sent against it.
+     *
+     * @param context the context of the packet received
+     * @return false if the baseline of the delta is no longer kept, in which case the packet must be dropped
+     */
+    private boolean onDeltaPacket(PacketHandlerContext<?> context) {
+        DeltaPacket packet = (DeltaPacket) context.packet;
+        if (!packet.afterRead(deltaTable, getSide().getBufferFactory())) return false;
+        int number = packet.getReceivedNumber();
+        if (number >= 0 && context.packetType == PacketType.UDP)
+            sendUDPNow(new DeltaAckPacket(context.packetRegistry.getId(), context.packetId, number), null, null);
+        return true;
+    }
+
+    /**
+     * Lets later UDP packets of the acknowledged type be sent as a delta against the acknowledged packet.
+     *
+     * @param packet the acknowledgement
+     */
+    private void onDeltaAck(DeltaAckPacket packet) {
+        PacketRegistry registry = getSide().getNetworkData().getPacketRegistryContainer().get(packet.registryId);
+        PacketHolder<?> holder = registry == null ? null : registry.getPacketHolder(packet.packetId);
+        if (holder != null) deltaTable.acknowledge(holder.packetClass, packet.number);
+    }
+
+    /**
+     * Stores the dictionary versions the other side has, so packets can be compressed with the dictionaries both
+     * sides have from then on.
+     *
+     * @param packet the packet holding the dictionary versions
+     */
+    private void onDictionaryVersions(DictionaryVersionsPacket packet) {
+        Map<Integer, Integer> versions = new HashMap<>();
+        for (int i = 0; i < packet.registryIds.length; i++) versions.put(packet.registryIds[i], packet.versions[i]);
+        peerDictionaryVersions = versions;
+    }
+
+    /**
+     * Tells the other side which compression dictionaries this side has, if it has any.
+     */
+    private void sendDictionaryVersions() {
+        Map<Integer, Integer> versions = getSide().getNetworkData().getPacketEncoderDecoder().getDictionaryVersions();
+        if (versions.isEmpty()) return;
+        int[] registryIds = new int[versions.size()], dictionaryVersions = new int[versions.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : versions.entrySet()) {
+            registryIds[i] = entry.getKey();
+            dictionaryVersions[i++] = entry.getValue();
+        }
+        sendTCPNow(new DictionaryVersionsPacket(registryIds, dictionaryVersions), null, null);
     }
 
     /**
@@ -439,15 +660,15 @@ public abstract class BaseChannel implements Channel {
 
         PacketEncoderDecoder encoderDecoder = getSide().getNetworkData().getPacketEncoderDecoder();
         PacketRegistryContainer container = getSide().getNetworkData().getPacketRegistryContainer();
-        while (true) {
-            PacketHandlerContext context = encoderDecoder.decode(container, packet, null);
-            if (context != null) {
-                context.packetType = PacketType.UDP;
-                context.channel = this;
-                context.networkSide = getSide();
-                onPacketReceived(context);
-            } else {
-                break;
+        while (encoderDecoder.decodeFrame(container, packet, shortIdTable, udpReceiver)) ;
+
+        // datagrams completed by fragments in this one are decoded after it, so decoding is never nested
+        ByteBuffer message;
+        while ((message = fragmentTable.pollMessage(getSide().getBufferFactory())) != null) {
+            try {
+                while (encoderDecoder.decodeFrame(container, message, shortIdTable, udpReceiver)) ;
+            } finally {
+                message.release();
             }
         }
     }
@@ -464,13 +685,7 @@ public abstract class BaseChannel implements Channel {
         PacketRegistryContainer container = getSide().getNetworkData().getPacketRegistryContainer();
         while (true) {
             tcpBuffer.markReaderIndex();
-            PacketHandlerContext context = encoderDecoder.decode(container, tcpBuffer, null);
-            if (context != null) {
-                context.packetType = PacketType.TCP;
-                context.channel = this;
-                context.networkSide = getSide();
-                onPacketReceived(context);
-            } else {
+            if (!encoderDecoder.decodeFrame(container, tcpBuffer, shortIdTable, tcpReceiver)) {
                 tcpBuffer.resetReaderIndex();
                 break;
             }
@@ -530,6 +745,15 @@ public abstract class BaseChannel implements Channel {
         } else if (option == ChannelOption.TCP_PACKET_TIMEOUT) {
             tcpPacketTimeout = ((Number) value).longValue();
             return true;
+        } else if (option == ChannelOption.BATCH_PACKETS) {
+            batchPackets = (Boolean) value;
+            return true;
+        } else if (option == ChannelOption.SHORT_PACKET_IDS) {
+            shortIdTable.setEnabled((Boolean) value);
+            return true;
+        } else if (option == ChannelOption.FRAGMENT_UDP_PACKETS) {
+            fragmentUDPPackets = (Boolean) value;
+            return true;
         }
         return false;
     }
@@ -561,12 +785,22 @@ public abstract class BaseChannel implements Channel {
 
     @Override
     public void flushUDP() {
+        int dropped = -1;
         synchronized (sendUDPBuffer) {
+            closeBatch(udpBatch, sendUDPBuffer);
             if (maxUDPPacketSize >= 0 && sendUDPBuffer.readableBytes() > maxUDPPacketSize) {
-                sendUDPBuffer.clear();
-                return;
+                try {
+                    if (!fragmentUDPPackets || !flushFragments()) dropped = sendUDPBuffer.readableBytes();
+                } finally {
+                    sendUDPBuffer.clear();
+                }
             }
         }
+        if (dropped >= 0) {
+            getListenerHandler().onUDPDropped(this, dropped);
+            getSide().getListenerHandler().onUDPDropped(this, dropped);
+            return;
+        }
 
         IOFlusher udpFlusher;
         if (isNetworkConditionEnabled()) {
@@ -577,8 +811,43 @@ public abstract class BaseChannel implements Channel {
         udpFlusher.flush(sendUDPBuffer);
     }
 
+    /**
+     * Splits the UDP send buffer into {@link FragmentPacket}s which each fit in {@link #maxUDPPacketSize} and flushes
+     * each of them as its own datagram, see {@link FragmentTable}. The fragments are written straight from the send
+     * buffer. Must be called while holding the lock of the UDP send buffer, which the caller clears afterwards.
+     *
+     * @return false if nothing was sent, since the limit is too small to hold a fragment or the buffer would take more
+     *         than {@link FragmentTable#MAX_FRAGMENTS} fragments
+     */
+    private boolean flushFragments() {
+        int size = sendUDPBuffer.readableBytes();
+        int fragmentSize = maxUDPPacketSize - FragmentPacket.MAX_FRAME_OVERHEAD;
+        if (fragmentSize <= 0) return false;
+        int count = (size + fragmentSize - 1) / fragmentSize;
+        if (count > FragmentTable.MAX_FRAGMENTS) return false;
+
+        if (fragmentBuffer == null) fragmentBuffer = getSide().getBufferFactory().buffer(maxUDPPacketSize);
+        IOFlusher udpFlusher = isNetworkConditionEnabled() ? networkConditionUDPFlush : udpFlush;
+        int messageId = fragmentTable.nextMessageId();
+        int start = sendUDPBuffer.readerIndex();
+        for (int i = 0; i < count; i++) {
+            int offset = start + i * fragmentSize;
+            FragmentPacket packet = new FragmentPacket(messageId, i, count, sendUDPBuffer, offset, Math.min(fragmentSize, start + size - offset));
+            PacketHandlerContext<FragmentPacket> context = getNewPacketHandlerContext(packet, null);
+            context.packetType = PacketType.UDP;
+            fragmentBuffer.clear();
+            encode(context, null, fragmentBuffer, null);
+            udpFlusher.flush(fragmentBuffer);
+        }
+        return true;
+    }
+
     @Override
     public void flushTCP() {
+        synchronized (sendTCPBuffer) {
+            closeBatch(tcpBatch, sendTCPBuffer);
+        }
+
         IOFlusher tcpFlusher;
         if (isNetworkConditionEnabled()) {
             tcpFlusher = networkConditionTCPFlush;
@@ -647,6 +916,12 @@ public abstract class BaseChannel implements Channel {
     @SuppressWarnings("unused")
     protected void onTCPConnected() {
         lastTCPReceived = System.nanoTime();
+        stringTable.clear();
+        shortIdTable.clear();
+        deltaTable.clear();
+        fragmentTable.clear();
+        peerDictionaryVersions = Collections.emptyMap();
+        sendDictionaryVersions();
         closeSequencePerformed = false;
         if (!isUDPOpen()) lastReceived = lastTCPReceived;
         getListenerHandler().onTCPConnect(this);
@@ -711,6 +986,32 @@ public abstract class BaseChannel implements Channel {
     }
 
 
+    @Override
+    public StringTable getStringTable() {
+        return stringTable;
+    }
+
+    @Override
+    public ShortIdTable getShortIdTable() {
+        return shortIdTable;
+    }
+
+    @Override
+    public DeltaTable getDeltaTable() {
+        return deltaTable;
+    }
+
+    @Override
+    public FragmentTable getFragmentTable() {
+        return fragmentTable;
+    }
+
+    @Override
+    public int getPeerDictionaryVersion(int registryId) {
+        Integer version = peerDictionaryVersions.get(registryId);
+        return version == null ? -1 : version;
+    }
+
     @Override
     public NetworkCondition getNetworkCondition() {
         return networkCondition;
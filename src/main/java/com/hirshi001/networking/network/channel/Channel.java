@@ -24,6 +24,10 @@ import com.hirshi001.networking.packet.Packet;
 import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
 import com.hirshi001.networking.packethandlercontext.PacketType;
 import com.hirshi001.networking.packetregistry.PacketRegistry;
+import com.hirshi001.networking.util.DeltaTable;
+import com.hirshi001.networking.util.FragmentTable;
+import com.hirshi001.networking.util.ShortIdTable;
+import com.hirshi001.networking.util.StringTable;
 import com.hirshi001.restapi.RestFuture;
 
 /**
@@ -85,6 +89,59 @@ public interface Channel {
      */
     <P extends Packet> void sendNow(P packet, PacketRegistry registry, PacketType packetType);
 
+    /**
+     * Writes a packet which was already encoded into a frame by the {@link com.hirshi001.networking.packetdecoderencoder.PacketEncoderDecoder}
+     * of this channel's side. This lets the same packet be sent to many channels while only encoding it once, see
+     * {@link ChannelSet#sendToAll}. The reader index of the frame is not changed. The default implementation ignores
+     * the frame and encodes the packet again with {@link #sendNow}.
+     * @param packet The packet the frame was encoded from, passed to the sent listeners.
+     * @param registry The registry the packet was encoded with. If null, the default registry was used.
+     * @param packetType The protocol used to send the packet. If null, the default protocol will be used.
+     * @param frame The encoded frame.
+     * @param <P> The type of packet to send.
+     */
+    default <P extends Packet> void sendEncoded(P packet, PacketRegistry registry, PacketType packetType, ByteBuffer frame) {
+        sendNow(packet, registry, packetType);
+    }
+
+    /**
+     * Writes a packet received on another channel to this channel, keeping its sending and receiving ids. Must be called
+     * while the received packet is being handled, for example from {@link ChannelListener#onReceived}. If the packet was
+     * received lazily and its body has not been read, the body is copied as it is and the packet is never read, see
+     * {@link com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder#lazy}. Otherwise the packet is
+     * encoded again.
+     * @param received The context the packet was received with.
+     * @param registry The registry to send the packet with, which must contain its class. If null, the default registry will be used.
+     * @param packetType The protocol used to send the packet. If null, the default protocol will be used.
+     * @param <P> The type of packet to relay.
+     */
+    default <P extends Packet> void relay(PacketHandlerContext<P> received, PacketRegistry registry, PacketType packetType) {
+        relay(received, registry, received.getReceivingId(), packetType);
+    }
+
+    /**
+     * Writes a packet received on another channel to this channel with a new receiving id, see
+     * {@link #relay(PacketHandlerContext, PacketRegistry, PacketType)}. The receiving id of the received packet is not
+     * changed, so it can be relayed to other channels with other ids.
+     * @param received The context the packet was received with.
+     * @param registry The registry to send the packet with, which must contain its class. If null, the default registry will be used.
+     * @param receivingId The receiving id to send the packet with, or -1 for none.
+     * @param packetType The protocol used to send the packet. If null, the default protocol will be used.
+     * @param <P> The type of packet to relay.
+     */
+    default <P extends Packet> void relay(PacketHandlerContext<P> received, PacketRegistry registry, int receivingId, PacketType packetType) {
+        DataPacket<P> dataPacket = received.getUnreadDataPacket();
+        P packet = dataPacket != null ? dataPacket.packet : received.getPacket();
+        int oldReceivingId = packet.receivingId;
+        packet.receivingId = receivingId;
+        try {
+            if (dataPacket != null) send(dataPacket, registry, packetType).perform();
+            else sendNow(packet, registry, packetType);
+        } finally {
+            packet.receivingId = oldReceivingId;
+        }
+    }
+
     /**
      * Writes the given packet to the channel. The contents may or may not be sent immediately.
      *
@@ -408,6 +465,63 @@ public interface Channel {
      */
     Object getAttachment();
 
+    /**
+     * Gets the table of strings sent and received over the TCP connection of this channel, which packets implementing
+     * {@link com.hirshi001.networking.packet.StringTablePacket} use to send strings sent before as an index.
+     *
+     * @return the string table of this channel, or null if it does not have one, in which case strings are always sent
+     *         in full. The default implementation returns null.
+     */
+    default StringTable getStringTable() {
+        return null;
+    }
+
+    /**
+     * Gets the table of one byte ids this channel uses for the packet types it sends and receives most often, see
+     * {@link ChannelOption#SHORT_PACKET_IDS}.
+     *
+     * @return the short id table of this channel, or null if it does not use short ids. The default implementation
+     *         returns null.
+     */
+    default ShortIdTable getShortIdTable() {
+        return null;
+    }
+
+    /**
+     * Gets the bodies of the delta packets this channel sent and received recently, which later packets of the same
+     * type are sent as a delta against, see {@link com.hirshi001.networking.packet.DeltaPacket}.
+     *
+     * @return the delta table of this channel, or null if it does not send deltas, in which case delta packets are
+     *         always sent in full. The default implementation returns null.
+     */
+    default DeltaTable getDeltaTable() {
+        return null;
+    }
+
+    /**
+     * Gets the fragments of the oversized UDP datagrams this channel is receiving, see
+     * {@link ChannelOption#FRAGMENT_UDP_PACKETS}.
+     *
+     * @return the fragment table of this channel, or null if it does not reassemble fragments. The default
+     *         implementation returns null.
+     */
+    default FragmentTable getFragmentTable() {
+        return null;
+    }
+
+    /**
+     * Gets the version of the compression dictionary the other side of this channel has for a registry, as it told
+     * this side when the TCP connection was established, see
+     * {@link com.hirshi001.networking.packetdecoderencoder.PacketEncoderDecoder#getDictionaryVersions()}.
+     *
+     * @param registryId the id of the registry
+     * @return the version of the dictionary, or -1 if the other side has none or has not said yet. The default
+     *         implementation returns -1.
+     */
+    default int getPeerDictionaryVersion(int registryId) {
+        return -1;
+    }
+
     /**
      * Checks for incoming tcp packets and handles them.
      */
@@ -56,6 +56,19 @@ public class ChannelOption<T> extends Option<T> {
     public static final ChannelOption<Boolean> TCP_AUTO_FLUSH = new ChannelOption<>("tcp_auto_flush", Boolean.class); // auto flush whenever a packet is written
     public static final ChannelOption<Boolean> UDP_AUTO_FLUSH = new ChannelOption<>("udp_auto_flush", Boolean.class); // auto flush whenever a packet is written
 
+    //groups consecutive packets of the same registry into one frame until the next flush, if the PacketEncoderDecoder supports it
+    //ignored while auto flushing, since every packet would be flushed on its own anyway
+    public static final ChannelOption<Boolean> BATCH_PACKETS = new ChannelOption<>("batch_packets", Boolean.class);
+
+    //gives the packet types sent most often a one byte id, if the PacketEncoderDecoder supports it
+    //both sides must register the system packets (PacketRegistry.registerSystemPackets) in their default registry
+    public static final ChannelOption<Boolean> SHORT_PACKET_IDS = new ChannelOption<>("short_packet_ids", Boolean.class);
+
+    //splits UDP datagrams larger than MAX_UDP_PACKET_SIZE into fragments instead of dropping them
+    //datagrams which are still dropped are reported to NetworkSideListener.onUDPDropped
+    //both sides must register the system packets (PacketRegistry.registerSystemPackets) in their default registry
+    public static final ChannelOption<Boolean> FRAGMENT_UDP_PACKETS = new ChannelOption<>("fragment_udp_packets", Boolean.class);
+
     //timeout for when a packet is not received
     //only used on server side, client must manually disconnect
     public static final ChannelOption<Long> PACKET_TIMEOUT = new ChannelOption<>("packet_timeout", Long.class);
@@ -18,6 +18,7 @@ package com.hirshi001.networking.network.channel;
 
 import com.hirshi001.networking.network.server.Server;
 import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
 import com.hirshi001.networking.packethandlercontext.PacketType;
 import com.hirshi001.networking.packetregistry.PacketRegistry;
 import com.hirshi001.restapi.RestFuture;
@@ -36,6 +37,10 @@ public interface ChannelSet<T extends Channel> extends Set<T> {
 
     /**
      * Sends the packet to all channels in this channel set
+     * <br>
+     * The packet is encoded once for all channels, without the tables of any one channel, so a
+     * {@link com.hirshi001.networking.packet.StringTablePacket} or {@link com.hirshi001.networking.packet.DeltaPacket}
+     * is always sent in full, the body is never compressed with a dictionary, and the packet never uses a short id.
      *
      * @param packet         the packet to send
      * @param packetType     the type of the packet to send
@@ -65,6 +70,10 @@ public interface ChannelSet<T extends Channel> extends Set<T> {
 
     /**
      * Sends the packet to all channels in this channel set where the predicate is true
+     * <br>
+     * The packet is encoded once for all channels, without the tables of any one channel, so a
+     * {@link com.hirshi001.networking.packet.StringTablePacket} or {@link com.hirshi001.networking.packet.DeltaPacket}
+     * is always sent in full, the body is never compressed with a dictionary, and the packet never uses a short id.
      *
      * @param packet         the packet to send
      * @param packetType     the type of the packet to send
@@ -75,6 +84,28 @@ public interface ChannelSet<T extends Channel> extends Set<T> {
     RestFuture<?, DefaultChannelSet<T>> sendIf(Packet packet, PacketType packetType,
                                                PacketRegistry packetRegistry, Predicate<Channel> predicate);
 
+    /**
+     * Writes a received packet to all channels in this set, see {@link Channel#relay}. The frame is encoded once, and if
+     * the packet was received lazily and has not been read, only the bytes of its body are copied. Must be called while
+     * the received packet is being handled.
+     *
+     * @param received       the context the packet was received with
+     * @param packetType     the type of the packet to send
+     * @param packetRegistry the packet registry to send the packet with
+     */
+    void relayToAll(PacketHandlerContext<?> received, PacketType packetType, PacketRegistry packetRegistry);
+
+    /**
+     * Writes a received packet to all channels in this set where the predicate is true, see {@link #relayToAll}.
+     *
+     * @param received       the context the packet was received with
+     * @param packetType     the type of the packet to send
+     * @param packetRegistry the packet registry to send the packet with
+     * @param predicate      the predicate to test the channels
+     */
+    void relayIf(PacketHandlerContext<?> received, PacketType packetType, PacketRegistry packetRegistry,
+                 Predicate<Channel> predicate);
+
     /**
      * Flushes the packet type of all channels in this set
      */
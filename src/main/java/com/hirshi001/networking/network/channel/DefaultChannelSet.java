@@ -16,13 +16,20 @@
 
 package com.hirshi001.networking.network.channel;
 
+import com.hirshi001.buffer.buffers.ByteBuffer;
 import com.hirshi001.networking.network.server.Server;
+import com.hirshi001.networking.networkdata.NetworkData;
+import com.hirshi001.networking.packet.DataPacket;
 import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packetdecoderencoder.PacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
 import com.hirshi001.networking.packethandlercontext.PacketType;
 import com.hirshi001.networking.packetregistry.PacketRegistry;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
 import com.hirshi001.restapi.RestAPI;
 import com.hirshi001.restapi.RestFuture;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -82,9 +89,7 @@ public class DefaultChannelSet<C extends Channel> implements ChannelSet<C> {
     @Override
     public RestFuture<?, DefaultChannelSet<C>> sendTCPToAll(Packet packet, PacketRegistry packetRegistry) {
         return RestAPI.create(() -> {
-            for (C channel : channels) {
-                channel.sendTCP(packet, packetRegistry).perform();
-            }
+            sendEncoded(packet, PacketType.TCP, packetRegistry, null);
             return this;
         });
     }
@@ -92,13 +97,61 @@ public class DefaultChannelSet<C extends Channel> implements ChannelSet<C> {
     @Override
     public RestFuture<?, DefaultChannelSet<C>> sendUDPToAll(Packet packet, PacketRegistry packetRegistry) {
         return RestAPI.create(() -> {
-            for (C channel : channels) {
-                channel.sendUDP(packet, packetRegistry).perform();
-            }
+            sendEncoded(packet, PacketType.UDP, packetRegistry, null);
             return this;
         });
     }
 
+    /**
+     * Encodes the packet once and writes the encoded frame to every channel which passes the predicate, see
+     * {@link Channel#sendEncoded}. The frame is only encoded if at least one channel passes the predicate.
+     *
+     * @param packet         the packet to send
+     * @param packetType     the protocol to send the packet with, or null to use the default protocol of each channel
+     * @param packetRegistry the registry of the packet, or null to use the default registry
+     * @param predicate      the predicate channels must pass, or null to send to all channels
+     */
+    protected void sendEncoded(Packet packet, PacketType packetType, PacketRegistry packetRegistry, Predicate<Channel> predicate) {
+        sendEncoded(packet, null, packetType, packetRegistry, predicate);
+    }
+
+    /**
+     * Encodes the packet once, with the bytes of the dataPacket as its body if it is not null, and writes the encoded
+     * frame to every channel which passes the predicate.
+     *
+     * @param packet         the packet to send
+     * @param dataPacket     the already encoded packet, if available
+     * @param packetType     the protocol to send the packet with, or null to use the default protocol of each channel
+     * @param packetRegistry the registry of the packet, or null to use the default registry
+     * @param predicate      the predicate channels must pass, or null to send to all channels
+     */
+    protected void sendEncoded(Packet packet, @Nullable DataPacket<?> dataPacket, PacketType packetType, PacketRegistry packetRegistry, Predicate<Channel> predicate) {
+        NetworkData networkData = server.getNetworkData();
+        PacketRegistryContainer container = networkData.getPacketRegistryContainer();
+        if (packetRegistry == null) packetRegistry = container.getDefaultRegistry();
+
+        ByteBuffer frame = null;
+        try {
+            for (C channel : channels) {
+                if (predicate != null && !predicate.test(channel)) continue;
+                if (frame == null) {
+                    PacketHandlerContext<Packet> context = new PacketHandlerContext<>();
+                    context.networkSide = server;
+                    context.packet = packet;
+                    context.packetRegistry = packetRegistry;
+                    PacketEncoderDecoder encoderDecoder = networkData.getPacketEncoderDecoder();
+                    int size = dataPacket != null ? dataPacket.buffer.readableBytes() : packet.estimateSize();
+                    frame = server.getBufferFactory().buffer(Math.max(64, size + encoderDecoder.getMaxHeaderSize()));
+                    encoderDecoder.encode(context, dataPacket, container, frame);
+                }
+                channel.sendEncoded(packet, packetRegistry, packetType, frame);
+            }
+        } finally {
+            // every channel copies the frame into its own send buffer, so it can be released once all of them are done
+            if (frame != null) frame.release();
+        }
+    }
+
     /**
      * Flushes all the TCP packets in the channels in this set
      */
@@ -120,9 +173,7 @@ public class DefaultChannelSet<C extends Channel> implements ChannelSet<C> {
     @Override
     public RestFuture<?, DefaultChannelSet<C>> sendToAll(Packet packet, PacketType packetType, PacketRegistry packetRegistry) {
         return RestAPI.create(() -> {
-            for (C channel : channels) {
-                channel.send(packet, packetRegistry, packetType).perform();
-            }
+            sendEncoded(packet, packetType, packetRegistry, null);
             return this;
         });
     }
@@ -131,15 +182,23 @@ public class DefaultChannelSet<C extends Channel> implements ChannelSet<C> {
     @Override
     public RestFuture<?, DefaultChannelSet<C>> sendIf(Packet packet, PacketType packetType, PacketRegistry packetRegistry, Predicate<Channel> predicate) {
         return RestAPI.create(() -> {
-            for (C channel : channels) {
-                if (predicate.test(channel)) {
-                    channel.send(packet, packetRegistry, packetType).perform();
-                }
-            }
+            sendEncoded(packet, packetType, packetRegistry, predicate);
             return this;
         });
     }
 
+    @Override
+    public void relayToAll(PacketHandlerContext<?> received, PacketType packetType, PacketRegistry packetRegistry) {
+        relayIf(received, packetType, packetRegistry, null);
+    }
+
+    @Override
+    public void relayIf(PacketHandlerContext<?> received, PacketType packetType, PacketRegistry packetRegistry, Predicate<Channel> predicate) {
+        DataPacket<?> dataPacket = received.getUnreadDataPacket();
+        Packet packet = dataPacket != null ? dataPacket.packet : received.getPacket();
+        sendEncoded(packet, dataPacket, packetType, packetRegistry, predicate);
+    }
+
     @Override
     public void flush(PacketType type) {
         if (type == PacketType.TCP) flushTCP();
@@ -16,6 +16,7 @@
 
 package com.hirshi001.networking.network.networkside;
 
+import com.hirshi001.networking.network.channel.Channel;
 import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
 
 /**
@@ -67,4 +68,15 @@ public interface NetworkSideListener {
      */
     void onReceived(PacketHandlerContext<?> context);
 
+    /**
+     * A callback method that is called when a UDP datagram is dropped instead of sent, because it is larger than the
+     * {@link com.hirshi001.networking.network.channel.ChannelOption#MAX_UDP_PACKET_SIZE} and could not be fragmented.
+     *
+     * @param channel the channel the datagram was flushed on
+     * @param size    the size of the datagram in bytes
+     */
+    default void onUDPDropped(Channel channel, int size) {
+
+    }
+
 }
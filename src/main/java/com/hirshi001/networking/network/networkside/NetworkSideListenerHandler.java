@@ -17,6 +17,7 @@
 package com.hirshi001.networking.network.networkside;
 
 import com.hirshi001.networking.network.ListenerHandler;
+import com.hirshi001.networking.network.channel.Channel;
 import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
 
 import java.util.Collection;
@@ -74,4 +75,9 @@ public class NetworkSideListenerHandler<T extends NetworkSideListener> extends L
     public void onReceived(PacketHandlerContext<?> context) {
         forEachListener(listener -> listener.onReceived(context));
     }
+
+    @Override
+    public void onUDPDropped(Channel channel, int size) {
+        forEachListener(listener -> listener.onUDPDropped(channel, size));
+    }
 }
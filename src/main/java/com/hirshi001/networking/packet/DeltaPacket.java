@@ -0,0 +1,301 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.packet;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.util.DeltaTable;
+import com.hirshi001.networking.util.VarIntUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A packet which is sent as a delta against an earlier packet of the same type on the same channel, for state which
+ * is sent over and over and only changes a little each time. Subclasses write and read their fields in
+ * {@link #writeState(ByteBuffer)} and {@link #readState(ByteBuffer)} instead of writeBytes and readBytes.
+ * {@link com.hirshi001.networking.network.channel.BaseChannel} gives the packet the {@link DeltaTable} of the channel
+ * before it is written and after it is read.
+ * <p>
+ * The state is written to the buffer, and compared byte by byte with the baseline from the table. If writing the
+ * changed bytes is smaller, the state is sent as
+ * <pre>
+ * state length (varint) | (unchanged bytes (varint) | changed bytes (varint) | changed bytes XOR baseline)...
+ * </pre>
+ * and otherwise in full. Either way it becomes the baseline for later packets, once the frame it was written in is
+ * committed, see {@link #afterWrite(boolean)}. The body starts with a varint tag: 0
+ * for a state sent in full without a table, 1 and 2 for a full state and a delta over TCP, and 3 and 4 for a full state
+ * and a delta over UDP, which are followed by the number of the packet and, for a delta, how far back its baseline is.
+ * UDP packets with a number are acknowledged by the receiving channel, see {@link DeltaTable}.
+ *
+ * @author Hrishikesh Ingle
+ */
+public abstract class DeltaPacket extends Packet {
+
+    private static final int FULL = 0, TCP_FULL = 1, TCP_DELTA = 2, UDP_FULL = 3, UDP_DELTA = 4;
+
+    private DeltaTable table; // only used for the next write, until it is committed
+    private boolean reliable;
+    private byte[] written; // the state written against the table, which becomes the baseline once committed
+
+    private int tag, number = -1, baseline; // what was read, until it is looked up
+    private byte[] received;
+
+    public DeltaPacket() {
+        super();
+    }
+
+    /**
+     * Writes the fields of this packet.
+     * @param out the buffer to write to
+     */
+    protected abstract void writeState(ByteBuffer out);
+
+    /**
+     * Reads the fields of this packet.
+     * @param in the buffer to read from
+     */
+    protected abstract void readState(ByteBuffer in);
+
+    /**
+     * Returns the number of bytes {@link #writeState(ByteBuffer)} is expected to write, see {@link #estimateSize()}.
+     * @return the expected number of bytes, or -1 if it is not known
+     */
+    protected int estimateStateSize() {
+        return -1;
+    }
+
+    /**
+     * Called before the packet is written.
+     * @param table the table of the channel the packet is sent on, or null if the state must be written in full,
+     *              because the packet is encoded once for several channels
+     * @param reliable whether the packet is sent over TCP
+     */
+    public void beforeWrite(@Nullable DeltaTable table, boolean reliable) {
+        this.table = table;
+        this.reliable = reliable;
+        written = null;
+    }
+
+    /**
+     * Called once the packet is written, or writing it failed. The state written is only kept in the table given to
+     * {@link #beforeWrite(DeltaTable, boolean)} here, once the frame it was written in is committed, so writing the
+     * packet does not change the table and writing it again writes the same bytes.
+     * @param written whether the packet was written to the send buffer
+     */
+    public void afterWrite(boolean written) {
+        DeltaTable table = this.table;
+        byte[] state = this.written;
+        this.table = null;
+        this.written = null;
+        if (written && table != null && state != null) table.addSent(getClass(), reliable, state);
+    }
+
+    /**
+     * Called after the packet is read, before it is handled, to apply a delta to its baseline and keep the state as
+     * the baseline for later packets.
+     * @param table the table of the channel the packet was received on
+     * @param bufferFactory the factory used to read the state once the delta is applied
+     * @return false if the baseline of the delta is not in the table, in which case the packet can not be read and
+     * must be dropped
+     * @throws IllegalArgumentException if the delta is malformed
+     */
+    public boolean afterRead(DeltaTable table, BufferFactory bufferFactory) {
+        byte[] received = this.received;
+        this.received = null;
+        if (received == null) return true;
+
+        Class<?> type = getClass();
+        boolean reliable = tag == TCP_FULL || tag == TCP_DELTA;
+        byte[] state = received;
+        if (tag == TCP_DELTA || tag == UDP_DELTA) {
+            byte[] old = table.getReceived(type, reliable, reliable ? table.getNextReceived(type) - 1 : baseline);
+            if (old == null) return false;
+
+            ByteBuffer buffer = wrap(bufferFactory, received);
+            try {
+                state = applyDelta(old, buffer);
+            } finally {
+                buffer.release();
+            }
+            buffer = wrap(bufferFactory, state);
+            try {
+                readState(buffer);
+            } finally {
+                buffer.release();
+            }
+        }
+        table.addReceived(type, reliable, number, state);
+        return true;
+    }
+
+    /**
+     * @return the number this packet was received with over UDP, which the receiving channel acknowledges, or -1 if it
+     * was not sent with one
+     */
+    public int getReceivedNumber() {
+        return tag == UDP_FULL || tag == UDP_DELTA ? number : -1;
+    }
+
+    @Override
+    public int estimateSize() {
+        int size = estimateStateSize();
+        return size < 0 ? -1 : 1 + 2 * VarIntUtil.MAX_VAR_INT_SIZE + size;
+    }
+
+    @Override
+    public final void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        DeltaTable table = this.table;
+        if (table == null) {
+            VarIntUtil.writeVarInt(out, FULL);
+            writeState(out);
+            return;
+        }
+
+        int start = out.writerIndex();
+        writeState(out);
+        byte[] state = new byte[out.writerIndex() - start];
+        int readerIndex = out.readerIndex();
+        out.readerIndex(start);
+        out.readBytes(state);
+        out.readerIndex(readerIndex);
+        out.writerIndex(start);
+
+        Class<?> type = getClass();
+        int baseline = table.getSentBaseline(type, reliable);
+        int number = table.getNextSent(type, reliable);
+        written = state;
+        int fullSize = 1 + (reliable ? 0 : VarIntUtil.varIntSize(number)) + state.length;
+        if (baseline >= 0) {
+            VarIntUtil.writeVarInt(out, reliable ? TCP_DELTA : UDP_DELTA);
+            if (!reliable) {
+                VarIntUtil.writeVarInt(out, number);
+                VarIntUtil.writeVarInt(out, number - baseline);
+            }
+            writeDelta(table.getSent(type, reliable, baseline), state, out);
+            if (out.writerIndex() - start < fullSize) return;
+            out.writerIndex(start);
+        }
+
+        VarIntUtil.writeVarInt(out, reliable ? TCP_FULL : UDP_FULL);
+        if (!reliable) VarIntUtil.writeVarInt(out, number);
+        out.writeBytes(state);
+    }
+
+    @Override
+    public final void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        tag = VarIntUtil.readVarInt(in);
+        number = -1;
+        received = null;
+        if (tag == FULL) {
+            readState(in);
+            return;
+        }
+        if (tag < FULL || tag > UDP_DELTA) throw new IllegalArgumentException("Invalid delta packet tag " + tag);
+
+        boolean delta = tag == TCP_DELTA || tag == UDP_DELTA;
+        if (tag == UDP_FULL || tag == UDP_DELTA) {
+            number = VarIntUtil.readVarInt(in);
+            if (delta) baseline = number - VarIntUtil.readVarInt(in);
+        }
+        int start = in.readerIndex();
+        if (delta) skipDelta(in);
+        else readState(in);
+        received = new byte[in.readerIndex() - start];
+        in.readerIndex(start);
+        in.readBytes(received);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        table = null;
+        written = null;
+        tag = FULL;
+        number = -1;
+        received = null;
+    }
+
+    private static int xor(byte[] old, byte[] state, int i) {
+        return (state[i] ^ (i < old.length ? old[i] : 0)) & 0xFF;
+    }
+
+    private static void writeDelta(byte[] old, byte[] state, ByteBuffer out) {
+        int length = state.length;
+        VarIntUtil.writeVarInt(out, length);
+        int i = 0;
+        while (i < length) {
+            int unchangedStart = i;
+            while (i < length && xor(old, state, i) == 0) i++;
+            int changedStart = i;
+            while (i < length) {
+                if (xor(old, state, i) != 0) {
+                    i++;
+                    continue;
+                }
+                int j = i;
+                while (j < length && j - i < 3 && xor(old, state, j) == 0) j++;
+                if (j < length && j - i < 3) i = j; // one or two unchanged bytes cost less than starting a new run
+                else break;
+            }
+            VarIntUtil.writeVarInt(out, changedStart - unchangedStart);
+            VarIntUtil.writeVarInt(out, i - changedStart);
+            for (int k = changedStart; k < i; k++) out.writeByte(xor(old, state, k));
+        }
+    }
+
+    private static void skipDelta(ByteBuffer in) {
+        int length = VarIntUtil.readVarInt(in);
+        int i = 0;
+        while (i < length) {
+            int unchanged = VarIntUtil.readVarInt(in), changed = VarIntUtil.readVarInt(in);
+            checkRun(unchanged, changed, length - i, in.readableBytes());
+            in.readerIndex(in.readerIndex() + changed);
+            i += unchanged + changed;
+        }
+    }
+
+    private static byte[] applyDelta(byte[] old, ByteBuffer in) {
+        int length = VarIntUtil.readVarInt(in);
+        if (length < 0 || length > old.length + in.readableBytes())
+            throw new IllegalArgumentException("Invalid delta state length " + length);
+        byte[] state = Arrays.copyOf(old, length);
+        int i = 0;
+        while (i < length) {
+            int unchanged = VarIntUtil.readVarInt(in), changed = VarIntUtil.readVarInt(in);
+            checkRun(unchanged, changed, length - i, in.readableBytes());
+            i += unchanged;
+            for (int end = i + changed; i < end; i++) state[i] ^= in.readByte();
+        }
+        return state;
+    }
+
+    private static void checkRun(int unchanged, int changed, int remaining, int readable) {
+        if (unchanged < 0 || changed < 0 || unchanged + changed == 0 || unchanged > remaining || changed > remaining - unchanged || changed > readable)
+            throw new IllegalArgumentException("Invalid delta run of " + unchanged + " unchanged and " + changed + " changed bytes");
+    }
+
+    private static ByteBuffer wrap(BufferFactory bufferFactory, byte[] bytes) {
+        ByteBuffer buffer = bufferFactory.buffer(Math.max(16, bytes.length));
+        buffer.writeBytes(bytes);
+        return buffer;
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.packet;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+
+/**
+ * A packet which does not copy its fields out of the received bytes. Instead, it is a view over the body of the frame
+ * it was received in, and subclasses read their fields at fixed offsets when they are asked for them:
+ * <pre>{@code
+ * public class PositionView extends FlyweightPacket {
+ *     public int entity() { return getInt(0); }
+ *     public float x() { return getFloat(4); }
+ *     public float y() { return getFloat(8); }
+ *     public int fixedLength() { return 12; }
+ * }
+ * }</pre>
+ * A flyweight with a {@link #fixedLength()} is only wrapped around bodies of that length, so a packet with a short
+ * body is rejected when it is received rather than when its fields are read. The accessors check their index either
+ * way, and never read outside of the body.
+ * Flyweights are registered with {@link com.hirshi001.networking.packetregistry.PacketRegistry#registerFlyweight}, and
+ * the same instance is reused for every packet received, so no objects are created per packet. A flyweight is only
+ * valid until its handler returns, after that the bytes it points to may be overwritten. To keep one, call
+ * {@link com.hirshi001.networking.packethandlercontext.PacketHandlerContext#retainPacket()}, which copies the bytes
+ * into a buffer the flyweight owns. Flyweights given to response futures are copied the same way. Sending a flyweight
+ * writes the bytes it points to, so a handler can forward the packet without reading it.
+ *
+ * @author Hrishikesh Ingle
+ */
+public abstract class FlyweightPacket extends Packet {
+
+    protected ByteBuffer buffer;
+    protected int offset, length;
+
+    public FlyweightPacket() {
+        super();
+    }
+
+    /**
+     * Points this flyweight at the body of a packet.
+     * @param buffer the buffer the body is in
+     * @param offset the index of the first byte of the body
+     * @param length the number of bytes in the body
+     * @throws IllegalArgumentException if the flyweight has a fixed length and the body is not that long
+     */
+    public void wrap(ByteBuffer buffer, int offset, int length) {
+        int fixedLength = fixedLength();
+        if (length < 0 || (fixedLength >= 0 && length != fixedLength))
+            throw new IllegalArgumentException(getClass().getSimpleName() + " expects a body of " + fixedLength + " bytes, not " + length);
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Copies the bytes this flyweight points at into a new buffer and points the flyweight at the copy, so it stays
+     * valid after the buffer it was received in is reused.
+     * @param bufferFactory the factory to create the buffer with
+     */
+    public void detach(BufferFactory bufferFactory) {
+        ByteBuffer copy = bufferFactory.buffer(length);
+        int readerIndex = buffer.readerIndex();
+        buffer.readerIndex(offset);
+        copy.writeBytes(buffer, length);
+        buffer.readerIndex(readerIndex);
+        wrap(copy, 0, length);
+    }
+
+    /**
+     * Returns the number of bytes in the body of this type of packet, if it is always the same. Subclasses which read
+     * their fields at fixed offsets should return the end of their last field, so bodies which are too short are
+     * rejected by {@link #wrap(ByteBuffer, int, int)}.
+     * @return the length of the body, or -1 if it varies
+     */
+    public int fixedLength() {
+        return -1;
+    }
+
+    /**
+     * @return whether this flyweight currently points at a packet body
+     */
+    public boolean isWrapped() {
+        return buffer != null;
+    }
+
+    /**
+     * @return the number of bytes in the body this flyweight points at
+     */
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        int readerIndex = buffer.readerIndex();
+        buffer.readerIndex(offset);
+        out.writeBytes(buffer, length);
+        buffer.readerIndex(readerIndex);
+    }
+
+    /**
+     * Points this flyweight at the rest of the buffer. Only valid while the buffer is not changed, which is the case
+     * when the PacketEncoderDecoder reads without copying.
+     */
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        wrap(in, in.readerIndex(), in.readableBytes());
+        in.readerIndex(in.readerIndex() + length);
+    }
+
+    @Override
+    public int estimateSize() {
+        return isWrapped() ? length : -1;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        buffer = null;
+        offset = 0;
+        length = 0;
+    }
+
+    // Field accessors, the index is relative to the start of the body
+
+    /**
+     * @throws IndexOutOfBoundsException if the width bytes at index are not in the body
+     */
+    private void checkIndex(int index, int width) {
+        if (index < 0 || index > length - width)
+            throw new IndexOutOfBoundsException("Reading " + width + " bytes at " + index + " of a " + length + " byte body");
+    }
+
+    protected byte getByte(int index) {
+        checkIndex(index, 1);
+        return buffer.getByte(offset + index);
+    }
+
+    protected boolean getBoolean(int index) {
+        return getByte(index) != 0;
+    }
+
+    protected short getShort(int index) {
+        checkIndex(index, 2);
+        return (short) ((buffer.getByte(offset + index) << 8) | (buffer.getByte(offset + index + 1) & 0xFF));
+    }
+
+    protected char getChar(int index) {
+        return (char) getShort(index);
+    }
+
+    protected int getInt(int index) {
+        checkIndex(index, 4);
+        return buffer.getInt(offset + index);
+    }
+
+    protected long getLong(int index) {
+        checkIndex(index, 8);
+        return ((long) buffer.getInt(offset + index) << 32) | (buffer.getInt(offset + index + 4) & 0xFFFFFFFFL);
+    }
+
+    protected float getFloat(int index) {
+        return Float.intBitsToFloat(getInt(index));
+    }
+
+    protected double getDouble(int index) {
+        return Double.longBitsToDouble(getLong(index));
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.packet;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * A {@link PacketHolder} for {@link FlyweightPacket}s. The PacketEncoderDecoder points a reused flyweight at the
+ * received bytes with {@link #wrap(ByteBuffer, int, int)} instead of creating a packet and reading into it.
+ * @param <T> the type of the packet
+ * @author Hrishikesh Ingle
+ */
+public class FlyweightPacketHolder<T extends FlyweightPacket> extends PacketHolder<T> {
+
+    // one spare flyweight, a new one is only created when packets are handled on several threads at once
+    private final AtomicReference<T> spare = new AtomicReference<>();
+
+    public FlyweightPacketHolder(Supplier<T> supplier, PacketHandler<T> handler, Class<T> packetClass) {
+        super(supplier, handler, packetClass);
+    }
+
+    /**
+     * Returns a flyweight pointing at the body of a packet.
+     * @param buffer the buffer the body is in
+     * @param offset the index of the first byte of the body
+     * @param length the number of bytes in the body
+     * @return the flyweight
+     * @throws IllegalArgumentException if the length does not match the {@link FlyweightPacket#fixedLength()}
+     */
+    public T wrap(ByteBuffer buffer, int offset, int length) {
+        T packet = spare.getAndSet(null);
+        if (packet == null) packet = supplier.get();
+        try {
+            packet.wrap(buffer, offset, length);
+        } catch (IllegalArgumentException e) {
+            release(packet);
+            throw e;
+        }
+        return packet;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void release(Packet packet) {
+        packet.reset();
+        spare.set((T) packet);
+    }
+
+}
@@ -40,6 +40,25 @@ public abstract class Packet implements ByteBufSerializable {
     public void readBytes(ByteBuffer in){
     }
 
+    /**
+     * Returns the number of bytes {@link #writeBytes(ByteBuffer)} is expected to write. The PacketEncoderDecoder uses
+     * it to reserve room for the whole frame at once instead of growing the buffer while the packet is written. It does
+     * not have to be exact, but it should be close.
+     * @return the expected number of bytes, or -1 if it is not known
+     */
+    public int estimateSize(){
+        return -1;
+    }
+
+    /**
+     * Resets this packet so it can be reused. Called by a {@link PacketPool} before the packet is put back in the pool.
+     * Packets that are pooled should override this method to clear their own fields, and must call super.reset().
+     */
+    public void reset(){
+        sendingId = -1;
+        receivingId = -1;
+    }
+
     /**
      * Sets the packet which this packet is responding to (if it is responding to any packet at all)
      * @param packet this packet for chaining
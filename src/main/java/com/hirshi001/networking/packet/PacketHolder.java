@@ -28,17 +28,54 @@ public class PacketHolder<T extends Packet>{
     public PacketHandler<T> handler;
     public Class<T> packetClass;
     public Supplier<T> supplier;
+    public PacketPool<T> pool; // null means packets are not pooled
+    private Boolean usesChannelTables; // null until the first packet was created
 
     public PacketHolder(Supplier<T> supplier, PacketHandler<T> handler, Class<T> packetClass){
+        this(supplier, handler, packetClass, null);
+    }
+
+    public PacketHolder(Supplier<T> supplier, PacketHandler<T> handler, Class<T> packetClass, PacketPool<T> pool){
         this.supplier = supplier;
         if(handler==null) this.handler = PacketHandler.noHandle();
         else this.handler = handler;
         this.packetClass = packetClass;
+        this.pool = pool;
     }
 
+    /**
+     * Returns a packet to read into, taken from the pool if this holder has one.
+     * @return the packet
+     */
     public T getPacket(){
+        if(pool!=null) return pool.obtain();
         return supplier.get();
     }
 
+    /**
+     * Gives a packet back to the pool of this holder once it is no longer used. Does nothing if this holder does not
+     * have a pool.
+     * @param packet the packet to release
+     */
+    @SuppressWarnings("unchecked")
+    public void release(Packet packet){
+        if(pool!=null) pool.free((T) packet);
+    }
+
+    /**
+     * Returns whether the packets of this holder use the string or delta table of the channel, see
+     * {@link StringTablePacket} and {@link DeltaPacket}, so they have to be read in the order they are received. A
+     * packet is created to find out the first time this method is called.
+     * @return whether the packets use the tables of the channel
+     */
+    public boolean usesChannelTables(){
+        if(usesChannelTables==null){
+            T packet = getPacket();
+            usesChannelTables = packet instanceof StringTablePacket || packet instanceof DeltaPacket;
+            release(packet);
+        }
+        return usesChannelTables;
+    }
+
 
 }
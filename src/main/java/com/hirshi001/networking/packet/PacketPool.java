@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.packet;
+
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of reusable packets of one type. Packets are reset with {@link Packet#reset()} when they are freed,
+ * and new packets are only created with the supplier when the pool is empty.
+ * @param <T> the type of packet in the pool
+ * @author Hrishikesh Ingle
+ */
+public class PacketPool<T extends Packet> {
+
+    private final Supplier<T> supplier;
+    private final Packet[] packets;
+    private int size;
+
+    /**
+     * Creates a new PacketPool.
+     * @param supplier the supplier used to create packets when the pool is empty
+     * @param maxSize the maximum number of free packets the pool keeps, extra packets are left to be garbage collected
+     */
+    public PacketPool(Supplier<T> supplier, int maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("maxSize can not be negative: " + maxSize);
+        this.supplier = supplier;
+        this.packets = new Packet[maxSize];
+    }
+
+    /**
+     * Returns a free packet from the pool, or a new packet if the pool is empty.
+     * @return a packet
+     */
+    @SuppressWarnings("unchecked")
+    public T obtain() {
+        synchronized (packets) {
+            if (size > 0) {
+                Packet packet = packets[--size];
+                packets[size] = null;
+                return (T) packet;
+            }
+        }
+        return supplier.get();
+    }
+
+    /**
+     * Resets the packet and puts it back in the pool. The packet must not be used after it is freed.
+     * @param packet the packet to free
+     */
+    public void free(T packet) {
+        packet.reset();
+        synchronized (packets) {
+            if (size < packets.length) packets[size++] = packet;
+        }
+    }
+
+    /**
+     * @return the number of free packets in the pool
+     */
+    public int getFree() {
+        synchronized (packets) {
+            return size;
+        }
+    }
+
+    /**
+     * @return the maximum number of free packets the pool keeps
+     */
+    public int getMaxSize() {
+        return packets.length;
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.packet;
+
+import com.hirshi001.networking.util.StringTable;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A packet which sends strings through the {@link StringTable} of the channel, so strings sent before only take up
+ * their index. {@link com.hirshi001.networking.network.channel.BaseChannel} gives the packet the table before it is
+ * written and after it is read.
+ *
+ * @author Hrishikesh Ingle
+ */
+public interface StringTablePacket {
+
+    /**
+     * Called before the packet is written.
+     * @param table the table of the channel the packet is sent on, or null if the strings must be written in full,
+     *              because the packet is sent over UDP or encoded once for several channels
+     */
+    void beforeWrite(@Nullable StringTable table);
+
+    /**
+     * Called once the packet is written, or writing it failed. Strings sent for the first time are only added to the
+     * table given to {@link #beforeWrite(StringTable)} here, once the frame they were written in is committed, so
+     * writing the packet must not change the table.
+     * @param written whether the packet was written to the send buffer
+     */
+    void afterWrite(boolean written);
+
+    /**
+     * Called after the packet is read, before it is handled, to look up the strings which were sent as an index.
+     * @param table the table of the channel the packet was received on
+     * @return false if a string was sent as an index the table does not hold, or out of its bounds, in which case the
+     * packet can not be read and must be dropped
+     */
+    boolean afterRead(StringTable table);
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.packet.serialization;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link com.hirshi001.networking.packet.Packet} subclass whose {@link Serialize} fields should be serialized
+ * by generated code. The annotation processor in the processor module generates a class named
+ * {@code <PacketName>Serializer} in the same package with static {@code write}, {@code read}, {@code estimateSize}
+ * and {@code reset} methods, which the packet calls from the methods it overrides:
+ * <pre>{@code
+ * @SerializablePacket(id = 0)
+ * public class MovePacket extends Packet {
+ *     @Serialize int x, y;
+ *
+ *     @Override
+ *     public void writeBytes(ByteBuffer out) {
+ *         super.writeBytes(out);
+ *         MovePacketSerializer.write(this, out);
+ *     }
+ *
+ *     @Override
+ *     public void readBytes(ByteBuffer in) {
+ *         super.readBytes(in);
+ *         MovePacketSerializer.read(this, in);
+ *     }
+ * }
+ * }</pre>
+ * Packets with an {@link #id()} are also registered by the generated {@code GeneratedPackets.register(PacketRegistry)}
+ * method of their package.
+ *
+ * @author Hrishikesh Ingle
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface SerializablePacket {
+
+    /**
+     * The value of {@link #id()} for packets which should not be registered by the generated code.
+     */
+    int NO_ID = Integer.MIN_VALUE;
+
+    /**
+     * @return the id to register the packet with, or {@link #NO_ID}
+     */
+    int id() default NO_ID;
+
+    /**
+     * @return the size of the pool the packet is registered with, or 0 if the packet should not be pooled
+     */
+    int poolSize() default 0;
+
+}
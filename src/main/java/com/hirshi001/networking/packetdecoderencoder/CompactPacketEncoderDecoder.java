@@ -0,0 +1,521 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.packetdecoderencoder;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.network.channel.Channel;
+import com.hirshi001.networking.packet.DataPacket;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistry.PacketRegistry;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.util.BooleanCompression;
+import com.hirshi001.networking.util.BufferUtil;
+import com.hirshi001.networking.util.ShortIdTable;
+import com.hirshi001.networking.util.VarIntUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * A {@link PacketEncoderDecoder} which uses varints for the frame header instead of fixed size ints, so small packets
+ * only carry a few bytes of overhead. It can be used anywhere a {@link SimplePacketEncoderDecoder} is used, but both
+ * sides must use the same type of PacketEncoderDecoder.
+ * <br>
+ * Each frame is laid out as
+ * <pre>
+ * flags (1 byte) | size (varint) | packet id (varint) | [registry id (varint)] | [sending id (varint)] | [receiving id (varint)] | body
+ * </pre>
+ * where size is the number of bytes after the size field. Negative packet ids are stored as {@code -id - 1} with a
+ * flag set, so the default packets registered to negative ids still only take up one or two bytes.
+ * A packet with an id between -128 and 127 and less than 127 bytes of body has 3 bytes of overhead.
+ * <br>
+ * Once a channel has given a packet type a short id (see {@link ShortIdTable}), the packet id and registry id are
+ * replaced by that one byte
+ * <pre>
+ * flags (1 byte) | size (varint) | short id (1 byte) | [sending id (varint)] | [receiving id (varint)] | body
+ * </pre>
+ * <br>
+ * This class also supports batching (see {@link #encodeBatched}), where consecutive packets of the same registry
+ * share one frame laid out as
+ * <pre>
+ * flags (1 byte) | size (3 byte varint) | [registry id (varint)] | (zigzag packet id (varint) | body length (varint) | body)...
+ * </pre>
+ * so each packet after the first only costs its id and body length. Batched frames must be decoded with
+ * {@link #decodeFrame}.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class CompactPacketEncoderDecoder extends SimplePacketEncoderDecoder {
+
+    protected static final int MULTIPLE_REGISTRY_FLAG = 0;
+    protected static final int SENDING_ID_FLAG = 1;
+    protected static final int RECEIVING_ID_FLAG = 2;
+    protected static final int NEGATIVE_ID_FLAG = 3;
+    protected static final int BATCH_FLAG = 4;
+    protected static final int SHORT_ID_FLAG = 5;
+
+    /**
+     * The largest size a batched frame can have, since its size is always written with 3 bytes.
+     */
+    protected static final int MAX_BATCH_SIZE = (1 << 21) - 1;
+
+    /**
+     * The number of bytes before the content of a batched frame: the flags and the 3 byte size.
+     */
+    protected static final int BATCH_HEADER_SIZE = 4;
+
+    /**
+     * The most bytes a frame header can take up: the flags, a 5 byte size and four 5 byte varints.
+     */
+    public static final int MAX_HEADER_SIZE = 1 + 5 * VarIntUtil.MAX_VAR_INT_SIZE;
+
+    public CompactPacketEncoderDecoder(int maxSize, boolean zeroCopy) {
+        super(maxSize, zeroCopy);
+    }
+
+    public CompactPacketEncoderDecoder(int maxSize) {
+        super(maxSize);
+    }
+
+    public CompactPacketEncoderDecoder() {
+        super();
+    }
+
+    /**
+     * Finds the end of the frame starting at the reader index, without changing the reader index.
+     *
+     * @param in the buffer
+     * @return the index after the last byte of the frame, or -1 if the whole frame has not arrived yet
+     */
+    protected int getFrameEnd(ByteBuffer in) throws PacketDecodeException {
+        int readable = in.readableBytes();
+        if (readable < 3) return -1; // the flags, size and packet id take up at least 3 bytes
+
+        int start = in.readerIndex();
+        int sizeLength, size;
+        try {
+            sizeLength = VarIntUtil.varIntLength(in, start + 1, start + readable);
+            if (sizeLength == -1) return -1; // the size has not fully arrived yet
+            size = VarIntUtil.getVarInt(in, start + 1);
+        } catch (IllegalArgumentException e) {
+            throw new PacketDecodeException("Malformed packet size", e);
+        }
+        if (size < 0 || size > maxSize)
+            throw new IllegalArgumentException("Packet size of '" + size + "' is too big. Max packet size allowed is " + maxSize);
+
+        int end = start + 1 + sizeLength + size;
+        if (readable < end - start) return -1; // If there is not enough bytes to read the packet
+        return end;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public PacketHandlerContext<?> decode(PacketRegistryContainer container, ByteBuffer in, PacketHandlerContext context) throws PacketDecodeException, RegistryIDNotFound {
+        int end = getFrameEnd(in);
+        if (end == -1) return null;
+        if (BooleanCompression.getBoolean(in.getByte(in.readerIndex()), BATCH_FLAG))
+            throw new PacketDecodeException("Batched frames must be decoded with decodeFrame");
+        return readFrame(container, in, end, null, context, null);
+    }
+
+    @Override
+    public boolean decodeFrame(PacketRegistryContainer container, ByteBuffer in, Consumer<PacketHandlerContext<?>> consumer) throws PacketDecodeException, RegistryIDNotFound, PacketIDNotFound {
+        return decodeFrame(container, in, null, consumer);
+    }
+
+    @Override
+    public boolean decodeFrame(PacketRegistryContainer container, ByteBuffer in, @Nullable ShortIdTable shortIds, Consumer<PacketHandlerContext<?>> consumer) throws PacketDecodeException, RegistryIDNotFound, PacketIDNotFound {
+        int end = getFrameEnd(in);
+        if (end == -1) return false;
+        if (!BooleanCompression.getBoolean(in.getByte(in.readerIndex()), BATCH_FLAG)) {
+            readFrame(container, in, end, shortIds, null, consumer);
+            return true;
+        }
+
+        try {
+            byte flags = in.readByte();
+            VarIntUtil.readVarInt(in); // the size, we already know it
+            boolean isMultipleRegistry = BooleanCompression.getBoolean(flags, MULTIPLE_REGISTRY_FLAG);
+            int registryId = isMultipleRegistry ? VarIntUtil.readVarInt(in) : -1;
+
+            ByteBuffer body;
+            try {
+                body = readFrameBody(in, end, flags, isMultipleRegistry ? registryId : container.getDefaultRegistry().getId());
+            } catch (Exception e) {
+                throw new PacketDecodeException("Error while decoding batched packet", e);
+            }
+            try {
+                int bodyEnd = body == in ? end : body.writerIndex();
+                while (body.readerIndex() < bodyEnd) {
+                    PacketHandlerContext<?> context;
+                    try {
+                        int id = VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(body));
+                        int bodySize = VarIntUtil.readVarInt(body);
+                        if (bodySize < 0 || bodySize > bodyEnd - body.readerIndex())
+                            throw new IllegalArgumentException("Body size of '" + bodySize + "' does not fit in the batched frame");
+                        context = readPacket(container, body, bodySize, id, isMultipleRegistry, registryId, -1, -1, null);
+                    } catch (Exception e) {
+                        throw new PacketDecodeException("Error while decoding batched packet", e);
+                    }
+                    consumer.accept(context);
+                }
+            } finally {
+                if (body != in) body.release(); // the packets in it have been handled, and retained flyweights copied
+            }
+        } finally {
+            in.readerIndex(end); // skip the rest of the batch if something went wrong
+        }
+        return true;
+    }
+
+    /**
+     * Reads a frame which is not batched. If a consumer is given, the packet is handled by it and the buffer the body
+     * was read into by {@link #readFrameBody} is released afterwards. Otherwise the packet is returned and the buffer
+     * is left to the garbage collector, since a flyweight packet may point into it for as long as it is used.
+     */
+    @SuppressWarnings("rawtypes")
+    private PacketHandlerContext<?> readFrame(PacketRegistryContainer container, ByteBuffer in, int end, @Nullable ShortIdTable shortIds, PacketHandlerContext context,
+                                              @Nullable Consumer<PacketHandlerContext<?>> consumer) throws PacketDecodeException {
+        ByteBuffer body = in;
+        try {
+            byte flags = in.readByte();
+            VarIntUtil.readVarInt(in); // the size, we already know it
+
+            int id, registryId;
+            boolean isMultipleRegistry;
+            if (BooleanCompression.getBoolean(flags, SHORT_ID_FLAG)) {
+                if (shortIds == null) throw new IllegalStateException("Received a short packet id without a short id table");
+                int code = in.readByte() & 0xFF;
+                id = shortIds.getPacketId(code);
+                registryId = shortIds.getRegistryId(code);
+                isMultipleRegistry = registryId != -1;
+            } else {
+                id = VarIntUtil.readVarInt(in);
+                if (BooleanCompression.getBoolean(flags, NEGATIVE_ID_FLAG)) id = -id - 1;
+
+                isMultipleRegistry = BooleanCompression.getBoolean(flags, MULTIPLE_REGISTRY_FLAG);
+                registryId = isMultipleRegistry ? VarIntUtil.readVarInt(in) : -1;
+            }
+            int sendingId = BooleanCompression.getBoolean(flags, SENDING_ID_FLAG) ? VarIntUtil.readVarInt(in) : -1;
+            int receivingId = BooleanCompression.getBoolean(flags, RECEIVING_ID_FLAG) ? VarIntUtil.readVarInt(in) : -1;
+
+            body = readFrameBody(in, end, flags, isMultipleRegistry ? registryId : container.getDefaultRegistry().getId());
+            if (body == in) {
+                context = readPacket(container, in, end - in.readerIndex(), id, isMultipleRegistry, registryId, sendingId, receivingId, context);
+            } else {
+                in.readerIndex(end);
+                context = readPacket(container, body, body.readableBytes(), id, isMultipleRegistry, registryId, sendingId, receivingId, context);
+            }
+        } catch (Exception e) {
+            if (body != in) body.release();
+            throw new PacketDecodeException("Error while decoding packet", e);
+        }
+        if (consumer == null) return context;
+        try {
+            consumer.accept(context);
+        } finally {
+            if (body != in) body.release(); // the packet has been handled, and a retained flyweight copied
+        }
+        return null;
+    }
+
+    /**
+     * Gets the buffer the body of a received frame is read from, which for a batched frame holds all of its packets.
+     * Subclasses which change the body in {@link #afterBodyWritten} change it back here. The default implementation
+     * returns the given buffer.
+     *
+     * @param in         the buffer, with the reader index at the start of the body
+     * @param end        the index after the last byte of the frame
+     * @param flags      the flags of the frame
+     * @param registryId the id of the registry the packets in the frame belong to
+     * @return the given buffer, or a buffer whose readable bytes are the body, which is released once the packets in
+     * it are handled if the frame is decoded with decodeFrame
+     */
+    protected ByteBuffer readFrameBody(ByteBuffer in, int end, byte flags, int registryId) {
+        return in;
+    }
+
+    /**
+     * Called after the body of a frame has been written and before its size is written, which for a batched frame is
+     * when the batch is closed. Subclasses can rewrite the body and set flags which {@link #readFrameBody} reads back,
+     * but must never make the body longer, since batches are closed and rewritten in place in front of bytes which are
+     * already written. The default implementation does nothing.
+     *
+     * @param out        the buffer, with the writer index at the end of the body
+     * @param flagsIndex the index of the flags of the frame
+     * @param bodyIndex  the index of the first byte of the body
+     * @param registryId the id of the registry the packets in the frame belong to
+     * @param channel    the channel the frame is sent on, or null if it is encoded once for several channels
+     */
+    protected void afterBodyWritten(ByteBuffer out, int flagsIndex, int bodyIndex, int registryId, @Nullable Channel channel) {
+    }
+
+    @Override
+    public int getMaxHeaderSize() {
+        return MAX_HEADER_SIZE;
+    }
+
+    @Override
+    public void encode(PacketHandlerContext<?> ctx, @Nullable DataPacket dataPacket, PacketRegistryContainer container, ByteBuffer out) throws PacketEncodeException, PacketIDNotFound {
+        Packet packet = ctx.packet;
+        PacketRegistry packetRegistry = ctx.packetRegistry;
+
+        int packetHolderId = getPacketId(packetRegistry, packet);
+        int registryId = container.supportsMultipleRegistries() ? packetRegistry.getId() : -1;
+        ShortIdTable shortIds = ctx.channel == null ? null : ctx.channel.getShortIdTable();
+        int code = shortIds == null ? -1 : shortIds.getCode(packetRegistry, packet, packetHolderId, ctx.packetType == PacketType.TCP);
+
+        int startIndex = out.writerIndex(); // start index
+        int bodySize = estimateBodySize(packet, dataPacket);
+        out.ensureWritable(MAX_HEADER_SIZE + bodySize); // reserve the whole frame at once
+        try {
+            // the size is reserved from the size hint, so the frame only has to be moved over if the hint was too small
+            int headerSize = code == -1 ? VarIntUtil.varIntSize(packetHolderId < 0 ? -packetHolderId - 1 : packetHolderId)
+                    + (registryId == -1 ? 0 : VarIntUtil.varIntSize(registryId)) : 1;
+            if (packet.sendingId != -1) headerSize += VarIntUtil.varIntSize(packet.sendingId);
+            if (packet.receivingId != -1) headerSize += VarIntUtil.varIntSize(packet.receivingId);
+            int sizeLength = VarIntUtil.varIntSize(headerSize + bodySize);
+            int sizeIndex = code == -1 ? writeHeader(out, packetHolderId, registryId, packet.sendingId, packet.receivingId, sizeLength)
+                    : writeShortIdHeader(out, code, packet.sendingId, packet.receivingId, sizeLength);
+
+            // Write the packet
+            int bodyIndex = out.writerIndex();
+            writeBody(packet, dataPacket, out);
+            afterBodyWritten(out, startIndex, bodyIndex, packetRegistry.getId(), ctx.channel);
+
+            writeSize(out, sizeIndex, sizeIndex + sizeLength);
+        } catch (Exception e) {
+            out.writerIndex(startIndex); // clear everything written in this packet
+            throw new PacketEncodeException("Error while encoding packet", e);
+        }
+    }
+
+    /**
+     * Writes the header of a single packet frame, with one byte reserved for the size.
+     *
+     * @param out         the buffer
+     * @param id          the packet id
+     * @param registryId  the registry id, or -1 if it should not be written
+     * @param sendingId   the sending id, or -1
+     * @param receivingId the receiving id, or -1
+     * @return the index of the byte reserved for the size, see {@link #writeSize(ByteBuffer, int, int)}
+     */
+    protected int writeHeader(ByteBuffer out, int id, int registryId, int sendingId, int receivingId) {
+        return writeHeader(out, id, registryId, sendingId, receivingId, 1);
+    }
+
+    /**
+     * Writes the header of a single packet frame, with bytes reserved for the size.
+     *
+     * @param out         the buffer
+     * @param id          the packet id
+     * @param registryId  the registry id, or -1 if it should not be written
+     * @param sendingId   the sending id, or -1
+     * @param receivingId the receiving id, or -1
+     * @param sizeLength  the number of bytes to reserve for the size
+     * @return the index of the first byte reserved for the size, see {@link #writeSize(ByteBuffer, int, int)}
+     */
+    protected int writeHeader(ByteBuffer out, int id, int registryId, int sendingId, int receivingId, int sizeLength) {
+        boolean isMultipleRegistry = registryId != -1;
+        boolean useSendingId = sendingId != -1;
+        boolean useReceivingId = receivingId != -1;
+        boolean negativeId = id < 0;
+
+        out.writeByte(BooleanCompression.compressBooleans(isMultipleRegistry, useSendingId, useReceivingId, negativeId));
+        int sizeIndex = out.writerIndex();
+        out.writerIndex(sizeIndex + sizeLength); // reserve the size, the frame is moved over later if it does not fit
+
+        VarIntUtil.writeVarInt(out, negativeId ? -id - 1 : id);
+        if (isMultipleRegistry) VarIntUtil.writeVarInt(out, registryId);
+        if (useSendingId) VarIntUtil.writeVarInt(out, sendingId);
+        if (useReceivingId) VarIntUtil.writeVarInt(out, receivingId);
+        return sizeIndex;
+    }
+
+    /**
+     * Writes the header of a single packet frame which uses a short id, with bytes reserved for the size.
+     *
+     * @param out         the buffer
+     * @param code        the short id
+     * @param sendingId   the sending id, or -1
+     * @param receivingId the receiving id, or -1
+     * @param sizeLength  the number of bytes to reserve for the size
+     * @return the index of the first byte reserved for the size, see {@link #writeSize(ByteBuffer, int, int)}
+     */
+    protected int writeShortIdHeader(ByteBuffer out, int code, int sendingId, int receivingId, int sizeLength) {
+        boolean useSendingId = sendingId != -1;
+        boolean useReceivingId = receivingId != -1;
+
+        out.writeByte(BooleanCompression.compressBooleans(false, useSendingId, useReceivingId, false, false, true));
+        int sizeIndex = out.writerIndex();
+        out.writerIndex(sizeIndex + sizeLength); // reserve the size, the frame is moved over later if it does not fit
+
+        out.writeByte(code);
+        if (useSendingId) VarIntUtil.writeVarInt(out, sendingId);
+        if (useReceivingId) VarIntUtil.writeVarInt(out, receivingId);
+        return sizeIndex;
+    }
+
+    @Override
+    public boolean encodeBatched(PacketHandlerContext<?> ctx, @Nullable DataPacket dataPacket, PacketRegistryContainer container, PacketBatch batch, ByteBuffer out) throws PacketEncodeException, PacketIDNotFound {
+        Packet packet = ctx.packet;
+        PacketRegistry packetRegistry = ctx.packetRegistry;
+        if (packet.sendingId != -1 || packet.receivingId != -1) {
+            closeBatch(batch, out);
+            return false;
+        }
+
+        int packetHolderId = getPacketId(packetRegistry, packet);
+
+        if (batch.isOpen() && (batch.registry != packetRegistry || batch.end != out.writerIndex())) closeBatch(batch, out);
+        if (!batch.isOpen()) openBatch(batch, packetRegistry, container.supportsMultipleRegistries(), out);
+        batch.channel = ctx.channel;
+
+        int entryIndex = out.writerIndex();
+        out.ensureWritable(2 * VarIntUtil.MAX_VAR_INT_SIZE + estimateBodySize(packet, dataPacket));
+        try {
+            VarIntUtil.writeVarInt(out, VarIntUtil.encodeZigZag(packetHolderId));
+            int lengthIndex = out.writerIndex();
+            out.writeByte(0); // reserve one byte for the body length, it is moved over later if the length does not fit
+            writeBody(packet, dataPacket, out);
+            writeSize(out, lengthIndex, lengthIndex + 1);
+        } catch (Exception e) {
+            out.writerIndex(entryIndex); // clear everything written for this packet
+            if (batch.count == 0) {
+                out.writerIndex(batch.start);
+                batch.reset();
+            }
+            throw new PacketEncodeException("Error while encoding packet", e);
+        }
+
+        int limit = Math.min(maxSize, MAX_BATCH_SIZE);
+        if (out.writerIndex() - batch.contentIndex > limit && batch.count > 0) {
+            // close the batch without the packet and move the bytes of the packet into a new batch after it, closing a
+            // batch never makes it longer so the packet is still where it was written
+            int entryLength = out.writerIndex() - entryIndex;
+            boolean isMultipleRegistry = container.supportsMultipleRegistries();
+            out.writerIndex(entryIndex);
+            closeBatch(batch, out);
+            int start = out.writerIndex();
+            int newEntryIndex = start + BATCH_HEADER_SIZE + (isMultipleRegistry ? VarIntUtil.varIntSize(packetRegistry.getId()) : 0);
+            out.writerIndex(Math.max(entryIndex, newEntryIndex) + entryLength);
+            BufferUtil.moveBytes(out, entryIndex, newEntryIndex, entryLength);
+            out.writerIndex(start);
+            openBatch(batch, packetRegistry, isMultipleRegistry, out);
+            batch.channel = ctx.channel;
+            out.writerIndex(newEntryIndex + entryLength);
+        }
+
+        batch.count++;
+        batch.end = out.writerIndex();
+        if (out.writerIndex() - batch.contentIndex > limit) {
+            // the packet is too big for a batch by itself, so it is rewritten in place as a normal frame
+            closeBatch(batch, out);
+        }
+        return true;
+    }
+
+    private void openBatch(PacketBatch batch, PacketRegistry packetRegistry, boolean isMultipleRegistry, ByteBuffer out) {
+        batch.start = out.writerIndex();
+        out.writeByte(BooleanCompression.compressBooleans(isMultipleRegistry, false, false, false, true));
+        // reserve 3 bytes for the size, so it never has to be moved over
+        out.writeByte(0x80);
+        out.writeByte(0x80);
+        out.writeByte(0);
+        batch.contentIndex = out.writerIndex();
+        if (isMultipleRegistry) VarIntUtil.writeVarInt(out, packetRegistry.getId());
+        batch.registry = packetRegistry;
+        batch.count = 0;
+        batch.end = out.writerIndex();
+    }
+
+    @Override
+    public void closeBatch(PacketBatch batch, ByteBuffer out) {
+        if (!batch.isOpen()) return;
+        try {
+            if (batch.count == 0) {
+                out.writerIndex(batch.start);
+            } else if (batch.count == 1) {
+                unbatch(batch, out);
+            } else {
+                int size = batch.end - batch.contentIndex;
+                if (out.writerIndex() == batch.end) { // the body can only be rewritten if nothing was written after it
+                    boolean isMultipleRegistry = BooleanCompression.getBoolean(out.getByte(batch.start), MULTIPLE_REGISTRY_FLAG);
+                    afterBodyWritten(out, batch.start, batch.contentIndex + (isMultipleRegistry ? VarIntUtil.varIntSize(batch.registry.getId()) : 0), batch.registry.getId(), batch.channel);
+                    size = out.writerIndex() - batch.contentIndex;
+                }
+                out.putByte((size & 0x7F) | 0x80, batch.start + 1);
+                out.putByte(((size >>> 7) & 0x7F) | 0x80, batch.start + 2);
+                out.putByte(size >>> 14, batch.start + 3);
+            }
+        } finally {
+            batch.reset();
+        }
+    }
+
+    /**
+     * Rewrites a batch holding one packet as a normal frame, which is smaller. The body is moved back in place, since
+     * the header of a normal frame is never longer than the batch header and entry prefix it replaces.
+     */
+    private void unbatch(PacketBatch batch, ByteBuffer out) {
+        boolean isMultipleRegistry = BooleanCompression.getBoolean(out.getByte(batch.start), MULTIPLE_REGISTRY_FLAG);
+
+        int readerIndex = out.readerIndex();
+        out.readerIndex(batch.contentIndex);
+        int registryId = isMultipleRegistry ? VarIntUtil.readVarInt(out) : -1;
+        int id = VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(out));
+        int bodyLength = VarIntUtil.readVarInt(out);
+        int oldBodyIndex = out.readerIndex();
+        out.readerIndex(readerIndex);
+
+        int headerSize = VarIntUtil.varIntSize(id < 0 ? -id - 1 : id) + (isMultipleRegistry ? VarIntUtil.varIntSize(registryId) : 0);
+        int sizeLength = VarIntUtil.varIntSize(headerSize + bodyLength);
+        int bodyIndex = batch.start + 1 + sizeLength + headerSize;
+        BufferUtil.moveBytes(out, oldBodyIndex, bodyIndex, bodyLength);
+
+        out.writerIndex(batch.start);
+        int sizeIndex = writeHeader(out, id, registryId, -1, -1, sizeLength);
+        out.writerIndex(bodyIndex + bodyLength);
+        afterBodyWritten(out, batch.start, bodyIndex, batch.registry.getId(), batch.channel);
+        writeSize(out, sizeIndex, sizeIndex + sizeLength);
+    }
+
+    /**
+     * Writes the size of the content written after contentIndex into the bytes reserved from sizeIndex. A size shorter
+     * than the reserved bytes is padded, and if the size needs more bytes than were reserved, the content is moved
+     * over in place to make room.
+     *
+     * @param out          the buffer
+     * @param sizeIndex    the index of the first byte reserved for the size
+     * @param contentIndex the index of the first byte after the reserved bytes
+     */
+    protected void writeSize(ByteBuffer out, int sizeIndex, int contentIndex) {
+        int size = out.writerIndex() - contentIndex;
+        int reserved = contentIndex - sizeIndex;
+        int sizeLength = VarIntUtil.varIntSize(size);
+        if (sizeLength > reserved) {
+            int shift = sizeLength - reserved;
+            out.writerIndex(out.writerIndex() + shift);
+            BufferUtil.moveBytes(out, contentIndex, contentIndex + shift, size);
+            reserved = sizeLength;
+        }
+        BufferUtil.putPaddedVarInt(out, size, sizeIndex, reserved);
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.packetdecoderencoder;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.network.channel.Channel;
+import com.hirshi001.networking.packetdecoderencoder.compression.CompressionDictionary;
+import com.hirshi001.networking.packetdecoderencoder.compression.Compressor;
+import com.hirshi001.networking.packetdecoderencoder.compression.LZCompressor;
+import com.hirshi001.networking.util.BooleanCompression;
+import com.hirshi001.networking.util.VarIntUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A {@link CompactPacketEncoderDecoder} which compresses the body of frames with at least {@link #threshold} bytes of
+ * body, and leaves smaller frames alone. Batched frames are compressed as a whole when the batch is closed. The frame
+ * header is never compressed, so packets can still be routed by their id without decompressing them.
+ * <br>
+ * A compressed frame has a flag set, and its body is laid out as
+ * <pre>
+ * body length (varint) | compressed body
+ * </pre>
+ * A body is only sent compressed if that makes it smaller. Both sides must use a CompressingPacketEncoderDecoder with
+ * the same type of {@link Compressor}.
+ * <br>
+ * A {@link CompressionDictionary} can be set for each registry with {@link #setDictionary}, which lets bodies as small
+ * as {@link #dictionaryThreshold} be compressed. Channels tell each other the versions of their dictionaries when they
+ * connect, and a frame sent on a channel is only compressed with a dictionary once the other side has said it has the
+ * same version, in which case another flag is set. Frames encoded once for several channels are compressed without
+ * one. Both sides must call {@code registerSystemPackets()} on their default registry to use dictionaries.
+ * <br>
+ * Compressors are kept in a pool along with the arrays they work in and reused for every frame, instead of keeping one
+ * for each channel, since a compressor such as {@link com.hirshi001.networking.packetdecoderencoder.compression.DeflateCompressor}
+ * holds a few hundred kilobytes of state and only as many are needed as frames are being encoded or decoded at once.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class CompressingPacketEncoderDecoder extends CompactPacketEncoderDecoder {
+
+    protected static final int COMPRESSED_FLAG = 6;
+    protected static final int DICTIONARY_FLAG = 7;
+
+    /**
+     * The default smallest body which is compressed. Below it, the bytes {@link LZCompressor} saves on typical payloads
+     * are not worth the time it takes.
+     */
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    /**
+     * The smallest body, in bytes, which is compressed.
+     */
+    public int threshold;
+
+    /**
+     * The default smallest body which is compressed with a dictionary.
+     */
+    public static final int DEFAULT_DICTIONARY_THRESHOLD = 32;
+
+    /**
+     * The smallest body, in bytes, which is compressed when there is a dictionary for it.
+     */
+    public int dictionaryThreshold = DEFAULT_DICTIONARY_THRESHOLD;
+
+    /**
+     * The default largest body a compressed frame may decompress to.
+     */
+    public static final int DEFAULT_MAX_DECOMPRESSED_SIZE = 1 << 20;
+
+    /**
+     * The largest body, in bytes, a compressed frame may decompress to. The decompressed length is sent by the other
+     * side, so it is checked before anything is allocated for it.
+     */
+    public int maxDecompressedSize = DEFAULT_MAX_DECOMPRESSED_SIZE;
+
+    private final Map<Integer, CompressionDictionary> dictionaries = new HashMap<>();
+    private final Map<Integer, Integer> dictionaryVersions = new HashMap<>();
+
+    private final BufferFactory bufferFactory;
+    private final Supplier<? extends Compressor> compressorSupplier;
+    private final Worker[] pool = new Worker[16];
+    private int poolSize;
+
+    /**
+     * A compressor together with the arrays it works in.
+     */
+    private static class Worker {
+        final Compressor compressor;
+        byte[] src = new byte[1024], dst = new byte[1024];
+
+        Worker(Compressor compressor) {
+            this.compressor = compressor;
+        }
+
+        byte[] src(int length) {
+            if (src.length < length) src = new byte[Math.max(length, src.length * 2)];
+            return src;
+        }
+
+        byte[] dst(int length) {
+            if (dst.length < length) dst = new byte[Math.max(length, dst.length * 2)];
+            return dst;
+        }
+    }
+
+    /**
+     * Creates a new CompressingPacketEncoderDecoder.
+     *
+     * @param bufferFactory      the factory decompressed bodies are read into
+     * @param compressorSupplier creates the compressors, for example {@code LZCompressor::new}
+     * @param threshold          the smallest body, in bytes, which is compressed
+     * @param maxSize            the largest frame which can be received
+     */
+    public CompressingPacketEncoderDecoder(BufferFactory bufferFactory, Supplier<? extends Compressor> compressorSupplier, int threshold, int maxSize) {
+        super(maxSize);
+        this.bufferFactory = bufferFactory;
+        this.compressorSupplier = compressorSupplier;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Creates a new CompressingPacketEncoderDecoder which uses {@link LZCompressor}s and the {@link #DEFAULT_THRESHOLD}.
+     *
+     * @param bufferFactory the factory decompressed bodies are read into
+     */
+    public CompressingPacketEncoderDecoder(BufferFactory bufferFactory) {
+        this(bufferFactory, LZCompressor::new, DEFAULT_THRESHOLD, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Sets the dictionary packets of a registry are compressed with. Must be called before any channels connect, and
+     * the other side must have a dictionary with the same version for it to be used.
+     *
+     * @param registryId the id of the registry
+     * @param dictionary the dictionary, or null to remove it
+     */
+    public void setDictionary(int registryId, @Nullable CompressionDictionary dictionary) {
+        if (dictionary == null) {
+            dictionaries.remove(registryId);
+            dictionaryVersions.remove(registryId);
+        } else {
+            dictionaries.put(registryId, dictionary);
+            dictionaryVersions.put(registryId, dictionary.version);
+        }
+    }
+
+    /**
+     * @param registryId the id of the registry
+     * @return the dictionary packets of the registry are compressed with, or null if it has none
+     */
+    public CompressionDictionary getDictionary(int registryId) {
+        return dictionaries.get(registryId);
+    }
+
+    @Override
+    public Map<Integer, Integer> getDictionaryVersions() {
+        return Collections.unmodifiableMap(dictionaryVersions);
+    }
+
+    @Override
+    protected void afterBodyWritten(ByteBuffer out, int flagsIndex, int bodyIndex, int registryId, @Nullable Channel channel) {
+        CompressionDictionary dictionary = dictionaries.isEmpty() ? null : dictionaries.get(registryId);
+        if (dictionary != null && (channel == null || channel.getPeerDictionaryVersion(registryId) != dictionary.version))
+            dictionary = null;
+
+        int length = out.writerIndex() - bodyIndex;
+        if (length < (dictionary == null ? threshold : dictionaryThreshold)) return;
+
+        // the compressed body and its length must be smaller than the body
+        int maxLength = length - VarIntUtil.varIntSize(length) - 1;
+        Worker worker = obtain();
+        try {
+            byte[] src = worker.src(length);
+            int readerIndex = out.readerIndex();
+            out.readerIndex(bodyIndex);
+            out.readBytes(src, 0, length);
+            out.readerIndex(readerIndex);
+
+            byte[] dst = worker.dst(maxLength);
+            int compressed = worker.compressor.compress(src, length, dst, maxLength, dictionary);
+            if (compressed < 0) return;
+
+            out.writerIndex(bodyIndex);
+            VarIntUtil.writeVarInt(out, length);
+            out.writeBytes(dst, 0, compressed);
+            byte flags = BooleanCompression.setBoolean(out.getByte(flagsIndex), COMPRESSED_FLAG, true);
+            out.putByte(BooleanCompression.setBoolean(flags, DICTIONARY_FLAG, dictionary != null), flagsIndex);
+        } finally {
+            free(worker);
+        }
+    }
+
+    @Override
+    protected ByteBuffer readFrameBody(ByteBuffer in, int end, byte flags, int registryId) {
+        if (!BooleanCompression.getBoolean(flags, COMPRESSED_FLAG)) return in;
+        CompressionDictionary dictionary = null;
+        if (BooleanCompression.getBoolean(flags, DICTIONARY_FLAG)) {
+            dictionary = dictionaries.get(registryId);
+            if (dictionary == null)
+                throw new IllegalStateException("Received a frame compressed with a dictionary for registry " + registryId + ", which has none");
+        }
+
+        int length = VarIntUtil.readVarInt(in);
+        int compressed = end - in.readerIndex();
+        int maxLength = Math.min(maxSize, maxDecompressedSize);
+        if (length < 0 || length > maxLength)
+            throw new IllegalArgumentException("Decompressed body size of '" + length + "' is too big. Max decompressed size allowed is " + maxLength);
+
+        Worker worker = obtain();
+        try {
+            byte[] src = worker.src(compressed);
+            in.readBytes(src, 0, compressed);
+            byte[] dst = worker.dst(length);
+            worker.compressor.decompress(src, compressed, dst, length, dictionary);
+
+            // released by the caller once the packets in it are handled
+            ByteBuffer body = bufferFactory.buffer(length);
+            body.writeBytes(dst, 0, length);
+            return body;
+        } finally {
+            free(worker);
+        }
+    }
+
+    private Worker obtain() {
+        synchronized (pool) {
+            if (poolSize > 0) {
+                Worker worker = pool[--poolSize];
+                pool[poolSize] = null;
+                return worker;
+            }
+        }
+        return new Worker(compressorSupplier.get());
+    }
+
+    private void free(Worker worker) {
+        synchronized (pool) {
+            if (poolSize < pool.length) pool[poolSize++] = worker;
+        }
+    }
+
+}
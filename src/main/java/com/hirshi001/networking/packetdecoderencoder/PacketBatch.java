@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.packetdecoderencoder;
+
+import com.hirshi001.networking.network.channel.Channel;
+import com.hirshi001.networking.packetregistry.PacketRegistry;
+
+/**
+ * Keeps track of a batched frame which is still being written to a buffer, see
+ * {@link PacketEncoderDecoder#encodeBatched}. Each channel keeps one PacketBatch per send buffer, and it must only be
+ * used while holding the lock of that buffer.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class PacketBatch {
+
+    /**
+     * The index of the first byte of the batched frame in the buffer, or -1 if no batch is open.
+     */
+    public int start = -1;
+
+    /**
+     * The index of the first byte after the frame header.
+     */
+    public int contentIndex;
+
+    /**
+     * The writer index of the buffer after the last packet was added. If the writer index of the buffer is different,
+     * something else was written to the buffer and no more packets can be added to this batch.
+     */
+    public int end;
+
+    /**
+     * The registry shared by all the packets in this batch.
+     */
+    public PacketRegistry registry;
+
+    /**
+     * The channel the batch is sent on.
+     */
+    public Channel channel;
+
+    /**
+     * The number of packets in this batch.
+     */
+    public int count;
+
+    /**
+     * @return whether a batched frame is currently open
+     */
+    public boolean isOpen() {
+        return start != -1;
+    }
+
+    /**
+     * Forgets the open batch, if any.
+     */
+    public void reset() {
+        start = -1;
+        contentIndex = 0;
+        end = 0;
+        registry = null;
+        channel = null;
+        count = 0;
+    }
+
+}
@@ -20,8 +20,13 @@ import com.hirshi001.buffer.buffers.ByteBuffer;
 import com.hirshi001.networking.packet.DataPacket;
 import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
 import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.util.ShortIdTable;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Consumer;
+
 /**
  * A class which is used to decode and encode packets.
  *
@@ -55,4 +60,95 @@ public interface PacketEncoderDecoder {
     @SuppressWarnings("rawtypes")
     void encode(PacketHandlerContext<?> ctx, @Nullable DataPacket dataPacket, PacketRegistryContainer container, ByteBuffer out) throws PacketEncodeException, PacketIDNotFound;
 
+    /**
+     * Decodes a single frame from the given ByteBuf and passes every packet in it to the consumer. Unlike
+     * {@link #decode}, this method also supports frames which contain more than one packet, see {@link #encodeBatched}.
+     *
+     * @param container the SidedPacketRegistryContainer which contains the packet registries
+     * @param in        the ByteBuf to read from
+     * @param consumer  the consumer to pass each decoded packet to
+     * @return true if a frame was decoded, or false if there were not enough bytes
+     * @throws PacketDecodeException if the packet could not be decoded
+     * @throws RegistryIDNotFound    if the registry ID could not be found
+     * @throws PacketIDNotFound      if the packet ID could not be found in the registry
+     */
+    default boolean decodeFrame(PacketRegistryContainer container, ByteBuffer in, Consumer<PacketHandlerContext<?>> consumer) throws PacketDecodeException, RegistryIDNotFound, PacketIDNotFound {
+        PacketHandlerContext<?> context = decode(container, in, null);
+        if (context == null) return false;
+        consumer.accept(context);
+        return true;
+    }
+
+    /**
+     * Decodes a single frame like {@link #decodeFrame(PacketRegistryContainer, ByteBuffer, Consumer)}, looking up the
+     * short ids the frame may use in the given table. The default implementation does not support short ids and
+     * ignores the table.
+     *
+     * @param container the SidedPacketRegistryContainer which contains the packet registries
+     * @param in        the ByteBuf to read from
+     * @param shortIds  the short ids received by the channel the frame was received on, or null
+     * @param consumer  the consumer to pass each decoded packet to
+     * @return true if a frame was decoded, or false if there were not enough bytes
+     * @throws PacketDecodeException if the packet could not be decoded
+     * @throws RegistryIDNotFound    if the registry ID could not be found
+     * @throws PacketIDNotFound      if the packet ID could not be found in the registry
+     */
+    default boolean decodeFrame(PacketRegistryContainer container, ByteBuffer in, @Nullable ShortIdTable shortIds, Consumer<PacketHandlerContext<?>> consumer) throws PacketDecodeException, RegistryIDNotFound, PacketIDNotFound {
+        return decodeFrame(container, in, consumer);
+    }
+
+    /**
+     * Gets the most bytes a frame written by {@link #encode} takes besides the body of its packet, so a buffer the
+     * whole frame fits in can be created before encoding. The default implementation returns 32.
+     *
+     * @return the largest size of a frame header
+     */
+    default int getMaxHeaderSize() {
+        return 32;
+    }
+
+    /**
+     * Gets the version of the compression dictionary this PacketEncoderDecoder has for each registry id, which channels
+     * send to the other side when their TCP connection is established, see
+     * {@link com.hirshi001.networking.network.channel.Channel#getPeerDictionaryVersion(int)}. The default
+     * implementation has no dictionaries.
+     *
+     * @return the dictionary versions by registry id, which must not be changed
+     */
+    default Map<Integer, Integer> getDictionaryVersions() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Encodes a packet into the open batched frame at the end of the given ByteBuf, or opens a new batched frame if
+     * there is no open batch, it uses a different registry, or something else was written after it. The batch must
+     * be closed with {@link #closeBatch} before the ByteBuf is flushed or anything else is written to it.
+     * <br>
+     * If the packet can not be batched (for example because it is a response or is waiting for a response), the open
+     * batch is closed, nothing is written, and false is returned. The packet should then be encoded with {@link #encode}.
+     * The default implementation does not support batching and always returns false.
+     *
+     * @param ctx        the PacketHandlerContext to encode
+     * @param dataPacket the DataPacket to encode, if available
+     * @param container  the SidedPacketRegistryContainer which contains the packet registries
+     * @param batch      the batch state of the ByteBuf
+     * @param out        the ByteBuf to write to
+     * @return true if the packet was written, which may be as its own frame if it is too big for a batch
+     * @throws PacketEncodeException if the packet could not be encoded
+     */
+    @SuppressWarnings("rawtypes")
+    default boolean encodeBatched(PacketHandlerContext<?> ctx, @Nullable DataPacket dataPacket, PacketRegistryContainer container, PacketBatch batch, ByteBuffer out) throws PacketEncodeException, PacketIDNotFound {
+        return false;
+    }
+
+    /**
+     * Finishes the open batched frame in the given ByteBuf, if there is one.
+     *
+     * @param batch the batch state of the ByteBuf
+     * @param out   the ByteBuf the batch was written to
+     */
+    default void closeBatch(PacketBatch batch, ByteBuffer out) {
+        batch.reset();
+    }
+
 }
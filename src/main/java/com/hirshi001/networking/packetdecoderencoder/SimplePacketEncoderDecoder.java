@@ -18,11 +18,15 @@ package com.hirshi001.networking.packetdecoderencoder;
 
 import com.hirshi001.buffer.buffers.ByteBuffer;
 import com.hirshi001.networking.packet.DataPacket;
+import com.hirshi001.networking.packet.DeltaPacket;
+import com.hirshi001.networking.packet.FlyweightPacketHolder;
 import com.hirshi001.networking.packet.Packet;
 import com.hirshi001.networking.packet.PacketHolder;
+import com.hirshi001.networking.packet.StringTablePacket;
 import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
 import com.hirshi001.networking.packetregistry.PacketRegistry;
 import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.RegistryTable;
 import com.hirshi001.networking.util.BooleanCompression;
 import com.hirshi001.networking.util.defaultpackets.arraypackets.ByteArrayPacket;
 import org.jetbrains.annotations.Nullable;
@@ -34,11 +38,38 @@ import org.jetbrains.annotations.Nullable;
  */
 public class SimplePacketEncoderDecoder implements PacketEncoderDecoder {
 
+    /**
+     * The most bytes a frame header can take up: the size, the packet id, the flags, and the registry, sending and
+     * receiving ids.
+     */
+    public static final int MAX_HEADER_SIZE = 21;
+
     public int maxSize;
 
-    public SimplePacketEncoderDecoder(int maxSize) {
+    /**
+     * If true, packets read their body directly from the buffer the frame was received in (the channel's TCP buffer
+     * or the UDP datagram) instead of from a copy of the body. The packet can still not read past the end of its body.
+     * Packets must not keep a reference to the buffer passed to {@link Packet#readBytes(ByteBuffer)}.
+     */
+    public boolean zeroCopy;
+
+    /**
+     * If true, the body of a received packet is not read until {@link PacketHandlerContext#getPacket()} is called or
+     * the packet is handled, so listeners can route or drop packets by their id and registry without reading them.
+     * The body is copied out of the received frame and kept by the context until then, and the packet is not created
+     * before then either. Packets which use the string or delta table of the channel, see {@link StringTablePacket} and
+     * {@link DeltaPacket}, and flyweight packets are still read right away.
+     */
+    public boolean lazy;
+
+    public SimplePacketEncoderDecoder(int maxSize, boolean zeroCopy) {
         super();
         this.maxSize = maxSize;
+        this.zeroCopy = zeroCopy;
+    }
+
+    public SimplePacketEncoderDecoder(int maxSize) {
+        this(maxSize, false);
     }
 
     public SimplePacketEncoderDecoder() {
@@ -72,60 +103,190 @@ public class SimplePacketEncoderDecoder implements PacketEncoderDecoder {
             int sendingId = -1;
             int receivingId = -1;
 
-            //read all the bytes first before creating and reading to help with possible errors
-
-            ByteBuffer msg = in.readBytes(size);
-
-            if (isMultipleRegistry) registryId = msg.readInt();
-            if (useSendingId) sendingId = msg.readInt();
-            if (useReceivingId) receivingId = msg.readInt();
-
-
-            PacketRegistry registry;
-            if (isMultipleRegistry) {
-                registry = container.get(registryId);
-                if (registry == null)
-                    throw new RegistryIDNotFound("The registry id " + registryId + " does not exist in the SidedPacketRegistryContainer " + container);
-            } else registry = container.getDefaultRegistry();
+            if (isMultipleRegistry) registryId = in.readInt();
+            if (useSendingId) sendingId = in.readInt();
+            if (useReceivingId) receivingId = in.readInt();
 
+            int bodySize = size - 4 * ((isMultipleRegistry ? 1 : 0) + (useSendingId ? 1 : 0) + (useReceivingId ? 1 : 0));
+            return readPacket(container, in, bodySize, id, isMultipleRegistry, registryId, sendingId, receivingId, context);
+        } catch (Exception e) {
+            throw new PacketDecodeException("Error while decoding packet", e);
+        }
+    }
 
-            PacketHolder holder = registry.getPacketHolder(id);
+    /**
+     * Reads the body of a packet whose header has already been read and fills in the context.
+     *
+     * @param container          the container to look up the registry in
+     * @param in                 the buffer, with the reader index at the start of the body
+     * @param bodySize           the number of bytes in the body
+     * @param id                 the packet id
+     * @param isMultipleRegistry if the registry id was sent, otherwise the default registry is used
+     * @param registryId         the registry id
+     * @param sendingId          the sending id, or -1
+     * @param receivingId        the receiving id, or -1
+     * @param context            the context to fill in, or null to create a new one
+     * @return the context
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    protected PacketHandlerContext<?> readPacket(PacketRegistryContainer container, ByteBuffer in, int bodySize, int id,
+                                                 boolean isMultipleRegistry, int registryId, int sendingId, int receivingId,
+                                                 PacketHandlerContext context) {
+        int bodyEnd = in.readerIndex() + bodySize;
+        try {
+            // a frozen container finds the registry and the packet in one table
+            RegistryTable table = isMultipleRegistry ? container.getRegistryTable(registryId) : null;
+            PacketRegistry registry = table != null ? table.registry : getRegistry(container, isMultipleRegistry, registryId);
+            PacketHolder holder = table != null ? table.getPacketHolder(id) : registry.getPacketHolder(id);
             if (holder == null)
                 throw new PacketIDNotFound("The packet id " + id + " does not exist in the registry " + registry);
 
-            Packet packet = holder.getPacket();
-            packet.sendingId = sendingId;
-            packet.receivingId = receivingId;
-
-            packet.readBytes(msg);
-            msg.release();
-
+            Packet packet = null;
+            if (holder instanceof FlyweightPacketHolder) {
+                // point a flyweight at the body instead of reading the body into a new packet
+                packet = ((FlyweightPacketHolder) holder).wrap(in, in.readerIndex(), bodySize);
+                packet.sendingId = sendingId;
+                packet.receivingId = receivingId;
+            } else if (!lazy || holder.usesChannelTables()) {
+                // the string and delta tables have to see the packets in the order they were received, so they can not wait
+                packet = holder.getPacket();
+                packet.sendingId = sendingId;
+                packet.receivingId = receivingId;
+                readBody(packet, in, bodySize);
+            }
 
             if (context == null) context = new PacketHandlerContext<>();
             context.packetHandler = holder.handler;
             context.packetRegistry = registry;
-            context.packet = packet;
+            context.packetHolder = holder;
+            context.packetId = id;
+            if (packet == null) {
+                // the packet is only created once the context is asked for it
+                context.setUnreadPacket(in.readBytes(bodySize), sendingId, receivingId);
+            } else {
+                context.packet = packet;
+            }
 
             return context;
-        } catch (Exception e) {
-            throw new PacketDecodeException("Error while decoding packet", e);
+        } finally {
+            in.readerIndex(bodyEnd); // always skip the whole body, even if the packet could not be read
         }
     }
 
+    /**
+     * Reads the body of a packet. If {@link #zeroCopy} is true, the packet reads directly from the given buffer with
+     * the writer index temporarily set to the end of the body, so it can not read past the body, and the decode fails
+     * if the packet leaves the reader index outside of the body. Otherwise, the body is copied to a new buffer first.
+     *
+     * @param packet   the packet to read into
+     * @param in       the buffer, with the reader index at the start of the body
+     * @param bodySize the number of bytes in the body
+     * @throws PacketDecodeException if the packet moved the reader index outside of the body
+     */
+    protected void readBody(Packet packet, ByteBuffer in, int bodySize) {
+        if (!zeroCopy) {
+            ByteBuffer msg = in.readBytes(bodySize);
+            try {
+                packet.readBytes(msg);
+            } finally {
+                msg.release();
+            }
+            return;
+        }
+
+        int bodyStart = in.readerIndex(), bodyEnd = bodyStart + bodySize;
+        int writerIndex = in.writerIndex();
+        in.writerIndex(bodyEnd);
+        try {
+            packet.readBytes(in);
+        } finally {
+            in.writerIndex(writerIndex);
+        }
+        // the packet reads from the receive buffer itself, so it could have moved the reader index anywhere
+        if (in.readerIndex() < bodyStart || in.readerIndex() > bodyEnd)
+            throw new PacketDecodeException("The packet " + packet.getClass() + " moved the reader index to " + in.readerIndex() + ", outside of its body from " + bodyStart + " to " + bodyEnd);
+    }
+
     @Override
-    public void encode(PacketHandlerContext<?> ctx, @Nullable DataPacket dataPacket, PacketRegistryContainer container, ByteBuffer out) throws PacketEncodeException, PacketIDNotFound {
-        Packet packet = ctx.packet;
-        PacketRegistry packetRegistry = ctx.packetRegistry;
+    public int getMaxHeaderSize() {
+        return MAX_HEADER_SIZE;
+    }
 
-        int packetHolderId;
+    /**
+     * Gets the registry a received packet belongs to.
+     *
+     * @param container          the container to look up the registry in
+     * @param isMultipleRegistry if the registry id was sent, otherwise the default registry is returned
+     * @param registryId         the registry id
+     * @return the registry
+     * @throws RegistryIDNotFound if there is no registry with the id
+     */
+    protected PacketRegistry getRegistry(PacketRegistryContainer container, boolean isMultipleRegistry, int registryId) throws RegistryIDNotFound {
+        if (!isMultipleRegistry) return container.getDefaultRegistry();
+        PacketRegistry registry = container.get(registryId);
+        if (registry == null)
+            throw new RegistryIDNotFound("The registry id " + registryId + " does not exist in the SidedPacketRegistryContainer " + container);
+        return registry;
+    }
+
+    /**
+     * Gets the id a packet is registered with.
+     *
+     * @param packetRegistry the registry the packet is sent with
+     * @param packet         the packet
+     * @return the id of the packet
+     * @throws PacketIDNotFound if the packet is not registered in the registry
+     */
+    protected int getPacketId(PacketRegistry packetRegistry, Packet packet) throws PacketIDNotFound {
         try {
-            packetHolderId = packetRegistry.getId(packet.getClass());
+            return packetRegistry.getId(packet.getClass());
         } catch (NullPointerException e) {
             throw new PacketIDNotFound("The packet " + packet.getClass() + " does not exist in the registry " + packetRegistry);
         }
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeBody(Packet, DataPacket, ByteBuffer)} is expected to write, so the
+     * whole frame can be reserved with a single {@link ByteBuffer#ensureWritable(int)} call.
+     *
+     * @param packet     the packet
+     * @param dataPacket the already encoded packet, if available
+     * @return the expected size of the body, or 0 if it is not known
+     */
+    @SuppressWarnings("rawtypes")
+    protected int estimateBodySize(Packet packet, @Nullable DataPacket dataPacket) {
+        if (dataPacket != null) return dataPacket.buffer.readableBytes();
+        return Math.max(packet.estimateSize(), 0);
+    }
+
+    /**
+     * Writes the body of a packet, or the bytes of the dataPacket if it is not null.
+     *
+     * @param packet     the packet
+     * @param dataPacket the already encoded packet, if available
+     * @param out        the buffer to write to
+     */
+    @SuppressWarnings("rawtypes")
+    protected void writeBody(Packet packet, @Nullable DataPacket dataPacket, ByteBuffer out) {
+        // check if dataPacket should be written instead of packet
+        if (dataPacket != null) {
+            ByteBuffer buffer = dataPacket.buffer;
+            int bufferReaderIndex = buffer.readerIndex();
+            out.ensureWritable(buffer.readableBytes());
+            buffer.readBytes(out);
+            buffer.readerIndex(bufferReaderIndex);
+        } else packet.writeBytes(out);
+    }
+
+    @Override
+    public void encode(PacketHandlerContext<?> ctx, @Nullable DataPacket dataPacket, PacketRegistryContainer container, ByteBuffer out) throws PacketEncodeException, PacketIDNotFound {
+        Packet packet = ctx.packet;
+        PacketRegistry packetRegistry = ctx.packetRegistry;
+
+        int packetHolderId = getPacketId(packetRegistry, packet);
 
         int startIndex = out.writerIndex(); // start index
-        out.ensureWritable(4); // ensure that there is enough space to write the size
+        out.ensureWritable(MAX_HEADER_SIZE + estimateBodySize(packet, dataPacket)); // reserve the header and the expected body at once
         out.writerIndex(startIndex + 4);
 
         boolean isMultipleRegistry = container.supportsMultipleRegistries();
@@ -143,14 +304,7 @@ public class SimplePacketEncoderDecoder implements PacketEncoderDecoder {
             if (useReceivingId) out.writeInt(packet.receivingId);
 
             // Write the packet
-            // check if dataPacket should be written instead of packet
-            if (dataPacket != null) {
-                ByteBuffer buffer = dataPacket.buffer;
-                int bufferReaderIndex = buffer.readerIndex();
-                out.ensureWritable(buffer.readableBytes());
-                buffer.readBytes(out);
-                buffer.readerIndex(bufferReaderIndex);
-            } else packet.writeBytes(out);
+            writeBody(packet, dataPacket, out);
 
 
             int lastIdx = out.writerIndex(); // Get the last index
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.packetdecoderencoder.compression;
+
+/**
+ * Bytes which are likely to appear in the packets of a registry, which a {@link Compressor} can refer back to as if
+ * they came right before the bytes it compresses. This lets small packets, which have too little in them to compress
+ * on their own, be compressed against what packets of the same registry usually look like. Dictionaries are built
+ * from recorded packets with a {@link DictionaryTrainer}.
+ * <br>
+ * Both sides must use the exact same bytes, so each dictionary has a version, which channels tell each other when they
+ * connect. A dictionary is only used once the other side has said it has the same version.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class CompressionDictionary {
+
+    /**
+     * The largest dictionary, in bytes. Compressors can not refer further back than this.
+     */
+    public static final int MAX_SIZE = 32768;
+
+    /**
+     * The version of this dictionary, which must be different for each set of bytes used with the same registry.
+     */
+    public final int version;
+
+    private final byte[] bytes;
+
+    /**
+     * Creates a new CompressionDictionary.
+     *
+     * @param version the version of the dictionary, at least 0
+     * @param bytes   the bytes of the dictionary, with the most useful bytes last. The array must not be changed afterwards.
+     * @throws IllegalArgumentException if the version is negative or there are more than {@link #MAX_SIZE} bytes
+     */
+    public CompressionDictionary(int version, byte[] bytes) {
+        if (version < 0) throw new IllegalArgumentException("Dictionary version must be at least 0, not " + version);
+        if (bytes.length > MAX_SIZE)
+            throw new IllegalArgumentException("Dictionary size of '" + bytes.length + "' is too big. Max dictionary size allowed is " + MAX_SIZE);
+        this.version = version;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the bytes of the dictionary, which must not be changed
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of bytes in the dictionary
+     */
+    public int size() {
+        return bytes.length;
+    }
+
+}
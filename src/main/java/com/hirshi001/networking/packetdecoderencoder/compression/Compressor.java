@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.packetdecoderencoder.compression;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compresses and decompresses frame bodies for a {@link com.hirshi001.networking.packetdecoderencoder.CompressingPacketEncoderDecoder}.
+ * Implementations may keep state between calls to avoid allocating it for every frame, so an instance must only be
+ * used by one thread at a time.
+ *
+ * @author Hrishikesh Ingle
+ */
+public interface Compressor {
+
+    /**
+     * Compresses bytes, as long as the result is not longer than maxLength.
+     *
+     * @param src       the array holding the bytes to compress
+     * @param length    the number of bytes to compress, starting at index 0
+     * @param dst       the array to write the compressed bytes to, starting at index 0
+     * @param maxLength the most bytes to write to dst, which must not be more than its length
+     * @return the number of compressed bytes, or -1 if they would be longer than maxLength
+     */
+    int compress(byte[] src, int length, byte[] dst, int maxLength);
+
+    /**
+     * Decompresses bytes compressed with {@link #compress}.
+     *
+     * @param src       the array holding the compressed bytes
+     * @param length    the number of compressed bytes, starting at index 0
+     * @param dst       the array to write the decompressed bytes to, starting at index 0
+     * @param dstLength the number of bytes the compressed bytes decompress to
+     * @throws IllegalArgumentException if the compressed bytes are malformed or do not decompress to dstLength bytes
+     */
+    void decompress(byte[] src, int length, byte[] dst, int dstLength);
+
+    /**
+     * Compresses bytes against a dictionary, as long as the result is not longer than maxLength. The default
+     * implementation does not support dictionaries.
+     *
+     * @param src        the array holding the bytes to compress
+     * @param length     the number of bytes to compress, starting at index 0
+     * @param dst        the array to write the compressed bytes to, starting at index 0
+     * @param maxLength  the most bytes to write to dst, which must not be more than its length
+     * @param dictionary the dictionary, or null to compress without one
+     * @return the number of compressed bytes, or -1 if they would be longer than maxLength
+     * @throws UnsupportedOperationException if a dictionary is given and this compressor does not support them
+     */
+    default int compress(byte[] src, int length, byte[] dst, int maxLength, @Nullable CompressionDictionary dictionary) {
+        if (dictionary != null) throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support dictionaries");
+        return compress(src, length, dst, maxLength);
+    }
+
+    /**
+     * Decompresses bytes compressed with {@link #compress(byte[], int, byte[], int, CompressionDictionary)}, using the
+     * same dictionary.
+     *
+     * @param src        the array holding the compressed bytes
+     * @param length     the number of compressed bytes, starting at index 0
+     * @param dst        the array to write the decompressed bytes to, starting at index 0
+     * @param dstLength  the number of bytes the compressed bytes decompress to
+     * @param dictionary the dictionary the bytes were compressed with, or null if they were compressed without one
+     * @throws IllegalArgumentException      if the compressed bytes are malformed or do not decompress to dstLength bytes
+     * @throws UnsupportedOperationException if a dictionary is given and this compressor does not support them
+     */
+    default void decompress(byte[] src, int length, byte[] dst, int dstLength, @Nullable CompressionDictionary dictionary) {
+        if (dictionary != null) throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support dictionaries");
+        decompress(src, length, dst, dstLength);
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.packetdecoderencoder.compression;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@link Compressor} which uses the raw deflate format of {@link Deflater}. It compresses better than
+ * {@link LZCompressor} but is several times slower. The Deflater and Inflater are kept between calls, since creating
+ * them is expensive. {@link CompressionDictionary}s are passed to them as preset dictionaries. Not available on GWT.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class DeflateCompressor implements Compressor {
+
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater(true);
+
+    /**
+     * Creates a new DeflateCompressor with {@link Deflater#BEST_SPEED}.
+     */
+    public DeflateCompressor() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Creates a new DeflateCompressor.
+     *
+     * @param level the compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public DeflateCompressor(int level) {
+        deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public int compress(byte[] src, int length, byte[] dst, int maxLength) {
+        return compress(src, length, dst, maxLength, null);
+    }
+
+    @Override
+    public int compress(byte[] src, int length, byte[] dst, int maxLength, @Nullable CompressionDictionary dictionary) {
+        deflater.reset();
+        if (dictionary != null) deflater.setDictionary(dictionary.getBytes());
+        deflater.setInput(src, 0, length);
+        deflater.finish();
+        int written = deflater.deflate(dst, 0, maxLength);
+        return deflater.finished() ? written : -1;
+    }
+
+    @Override
+    public void decompress(byte[] src, int length, byte[] dst, int dstLength) {
+        decompress(src, length, dst, dstLength, null);
+    }
+
+    @Override
+    public void decompress(byte[] src, int length, byte[] dst, int dstLength, @Nullable CompressionDictionary dictionary) {
+        inflater.reset();
+        if (dictionary != null) inflater.setDictionary(dictionary.getBytes());
+        inflater.setInput(src, 0, length);
+        try {
+            int written = inflater.inflate(dst, 0, dstLength);
+            if (written != dstLength || !inflater.finished())
+                throw new IllegalArgumentException("Inflated " + written + " bytes instead of " + dstLength);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed deflate data", e);
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.packetdecoderencoder.compression;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a {@link CompressionDictionary} from recorded packets. Samples are usually recorded from a channel listener
+ * while running with typical traffic, with one trainer for each registry which should get a dictionary, and the
+ * trained dictionary is saved with {@link CompressionDictionary#getBytes()} and shipped with both sides.
+ * <br>
+ * The dictionary is made of short segments of the samples. Every 6 byte sequence is scored by the number of other
+ * samples it appears in, and the segments with the highest total score are picked, with each sequence only counting towards
+ * the first segment picked which holds it. The samples are split into one group per segment picked in a pass, and each
+ * segment is picked from the next group, so the dictionary covers all the samples instead of just the most common kind
+ * of packet. The segments picked first are placed last, where they are closest to the compressed bytes.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class DictionaryTrainer {
+
+    /**
+     * The default length of the segments the dictionary is made of.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 32;
+
+    private static final int SEQUENCE_LENGTH = 6;
+
+    private final BufferFactory bufferFactory;
+    private final int segmentSize;
+    private final List<byte[]> samples = new ArrayList<>();
+
+    /**
+     * Creates a new DictionaryTrainer with the {@link #DEFAULT_SEGMENT_SIZE}.
+     *
+     * @param bufferFactory the factory packets are written into by {@link #addSample(Packet)}
+     */
+    public DictionaryTrainer(BufferFactory bufferFactory) {
+        this(bufferFactory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a new DictionaryTrainer.
+     *
+     * @param bufferFactory the factory packets are written into by {@link #addSample(Packet)}
+     * @param segmentSize   the length of the segments the dictionary is made of
+     */
+    public DictionaryTrainer(BufferFactory bufferFactory, int segmentSize) {
+        this.bufferFactory = bufferFactory;
+        this.segmentSize = Math.max(SEQUENCE_LENGTH, segmentSize);
+    }
+
+    /**
+     * Records the body of a packet, as written by {@link Packet#writeBytes(ByteBuffer)}.
+     *
+     * @param packet the packet
+     */
+    public void addSample(Packet packet) {
+        ByteBuffer buffer = bufferFactory.buffer(Math.max(16, packet.estimateSize()));
+        try {
+            packet.writeBytes(buffer);
+            byte[] sample = new byte[buffer.readableBytes()];
+            buffer.readBytes(sample);
+            addSample(sample);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Records a sample. The array must not be changed afterwards.
+     *
+     * @param sample the bytes of the sample
+     */
+    public void addSample(byte[] sample) {
+        samples.add(sample);
+    }
+
+    /**
+     * @return the number of samples recorded
+     */
+    public int getSampleCount() {
+        return samples.size();
+    }
+
+    /**
+     * Forgets all the samples recorded.
+     */
+    public void clear() {
+        samples.clear();
+    }
+
+    /**
+     * Builds a dictionary from the samples recorded. It may be smaller than the size asked for if the samples do not
+     * have enough in common to fill it.
+     *
+     * @param size    the largest size of the dictionary, at most {@link CompressionDictionary#MAX_SIZE}
+     * @param version the version of the dictionary
+     * @return the dictionary
+     * @throws IllegalStateException if no samples were recorded
+     */
+    public CompressionDictionary train(int size, int version) {
+        if (samples.isEmpty()) throw new IllegalStateException("No samples were recorded");
+        size = Math.min(size, CompressionDictionary.MAX_SIZE);
+
+        // the number of samples each sequence appears in, along with the last sample it was seen in
+        Map<Long, int[]> scores = new HashMap<>();
+        for (int s = 0; s < samples.size(); s++) {
+            byte[] sample = samples.get(s);
+            for (int i = 0; i + SEQUENCE_LENGTH <= sample.length; i++) {
+                int[] score = scores.get(sequence(sample, i));
+                if (score == null) scores.put(sequence(sample, i), new int[]{1, s});
+                else if (score[1] != s) {
+                    score[0]++;
+                    score[1] = s;
+                }
+            }
+        }
+
+        byte[] dictionary = new byte[size];
+        int position = size;
+        int groups = Math.max(1, Math.min(samples.size(), size / segmentSize));
+        int group = 0, emptyGroups = 0;
+        while (position > 0 && emptyGroups < groups) {
+            int from = (int) ((long) group * samples.size() / groups), to = (int) ((long) (group + 1) * samples.size() / groups);
+            group = (group + 1) % groups;
+
+            // find the segment with the highest score in the group
+            byte[] best = null;
+            int bestStart = 0, bestLength = 0, bestScore = 0;
+            for (int s = from; s < to; s++) {
+                byte[] sample = samples.get(s);
+                int length = Math.min(segmentSize, sample.length);
+                int sequences = length - SEQUENCE_LENGTH + 1;
+                if (sequences <= 0) continue;
+                int score = 0;
+                for (int i = 0; i < sequences; i++) score += score(scores, sample, i);
+                for (int start = 0; ; start++) {
+                    if (score > bestScore) {
+                        best = sample;
+                        bestStart = start;
+                        bestLength = length;
+                        bestScore = score;
+                    }
+                    if (start + length >= sample.length) break;
+                    score += score(scores, sample, start + sequences) - score(scores, sample, start);
+                }
+            }
+            if (best == null) {
+                emptyGroups++;
+                continue;
+            }
+            emptyGroups = 0;
+
+            for (int i = bestStart; i + SEQUENCE_LENGTH <= bestStart + bestLength; i++) {
+                int[] score = scores.get(sequence(best, i));
+                score[0] = 0;
+            }
+            int length = Math.min(bestLength, position);
+            position -= length;
+            System.arraycopy(best, bestStart + bestLength - length, dictionary, position, length);
+        }
+        return new CompressionDictionary(version, Arrays.copyOfRange(dictionary, position, size));
+    }
+
+    private static int score(Map<Long, int[]> scores, byte[] sample, int i) {
+        return Math.max(0, scores.get(sequence(sample, i))[0] - 1); // a sequence only one sample has does not help
+    }
+
+    private static long sequence(byte[] sample, int i) {
+        long sequence = 0;
+        for (int j = 0; j < SEQUENCE_LENGTH; j++) sequence = sequence << 8 | (sample[i + j] & 0xFF);
+        return sequence;
+    }
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.packetdecoderencoder.compression;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A fast LZ77 {@link Compressor} which trades compression ratio for speed, laid out like an LZ4 block. The bytes are
+ * split into sequences of
+ * <pre>
+ * token (1 byte) | [literal length (bytes)] | literals | match offset (2 bytes) | [match length (bytes)]
+ * </pre>
+ * where the high 4 bits of the token are the number of literals and the low 4 bits are the match length minus 4. A
+ * length of 15 is continued in the following bytes, each adding up to 255. A match copies match length bytes from
+ * match offset bytes back. The last sequence only has literals.
+ * <br>
+ * Matches are found with a hash table of the last position each 4 byte sequence was seen at, which is kept between
+ * calls.
+ * <br>
+ * With a {@link CompressionDictionary}, the bytes are compressed as if they came right after the dictionary, so
+ * matches can copy from it. The hash table of each dictionary is only built the first time it is used.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class LZCompressor implements Compressor {
+
+    private static final int HASH_LOG = 12;
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65535;
+    private static final int MAX_RATIO = 255; // the most bytes one compressed byte decompresses to, a length byte of 255
+
+    // positions are stored plus base, which grows with every call so positions from earlier calls are never matched
+    private final int[] table = new int[1 << HASH_LOG];
+    private int base = 1;
+
+    private final Map<CompressionDictionary, Window> windows = new IdentityHashMap<>();
+
+    /**
+     * The bytes of a dictionary followed by room for the bytes compressed or decompressed with it, and a hash table
+     * of the positions in the dictionary.
+     */
+    private static class Window {
+        final int start;
+        final int[] table = new int[1 << HASH_LOG]; // positions plus 1, so 0 is empty
+        byte[] bytes;
+
+        Window(CompressionDictionary dictionary) {
+            start = dictionary.size();
+            bytes = Arrays.copyOf(dictionary.getBytes(), start + 1024);
+            for (int i = 0; i + MIN_MATCH <= start; i++) table[hash(getInt(bytes, i))] = i + 1;
+        }
+
+        byte[] bytes(int length) {
+            if (bytes.length < start + length) bytes = Arrays.copyOf(bytes, Math.max(start + length, bytes.length * 2));
+            return bytes;
+        }
+    }
+
+    private Window window(CompressionDictionary dictionary) {
+        Window window = windows.get(dictionary);
+        if (window == null) windows.put(dictionary, window = new Window(dictionary));
+        return window;
+    }
+
+    @Override
+    public int compress(byte[] src, int length, byte[] dst, int maxLength) {
+        return compress(src, 0, length, null, dst, maxLength);
+    }
+
+    @Override
+    public int compress(byte[] src, int length, byte[] dst, int maxLength, @Nullable CompressionDictionary dictionary) {
+        if (dictionary == null) return compress(src, length, dst, maxLength);
+        Window window = window(dictionary);
+        byte[] bytes = window.bytes(length);
+        System.arraycopy(src, 0, bytes, window.start, length);
+        return compress(bytes, window.start, window.start + length, window.table, dst, maxLength);
+    }
+
+    /**
+     * Compresses the bytes from start to end, which may have matches in the bytes before start if a dictionary table
+     * is given.
+     */
+    private int compress(byte[] src, int start, int end, @Nullable int[] dictionaryTable, byte[] dst, int maxLength) {
+        if (base > (1 << 30)) {
+            Arrays.fill(table, 0);
+            base = 1;
+        }
+        int[] table = this.table;
+        int base = this.base - start;
+        this.base += end - start + 1;
+
+        int anchor = start, op = 0;
+        int i = start;
+        int searchEnd = end - MIN_MATCH;
+        while (i <= searchEnd) {
+            int sequence = getInt(src, i);
+            int hash = hash(sequence);
+            int candidate = table[hash] - base;
+            table[hash] = i + base;
+            if (candidate < start && dictionaryTable != null) candidate = dictionaryTable[hash] - 1;
+
+            if (candidate < 0 || i - candidate > MAX_OFFSET || getInt(src, candidate) != sequence) {
+                i += 1 + ((i - anchor) >>> 6); // skip ahead faster through bytes which do not compress
+                continue;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (i + matchLength < end && src[candidate + matchLength] == src[i + matchLength]) matchLength++;
+
+            op = writeSequence(src, anchor, i - anchor, i - candidate, matchLength, dst, op, maxLength);
+            if (op < 0) return -1;
+            i += matchLength;
+            anchor = i;
+        }
+
+        if (anchor < end) op = writeSequence(src, anchor, end - anchor, 0, 0, dst, op, maxLength);
+        return op;
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literals, int offset, int matchLength, byte[] dst, int op, int maxLength) {
+        // the most bytes the sequence can take up
+        if (op + 1 + literals / 255 + 1 + literals + 2 + matchLength / 255 + 1 > maxLength) return -1;
+
+        int matchCode = matchLength == 0 ? 0 : matchLength - MIN_MATCH;
+        int tokenIndex = op++;
+        dst[tokenIndex] = (byte) ((Math.min(literals, 15) << 4) | Math.min(matchCode, 15));
+        if (literals >= 15) op = writeLength(literals - 15, dst, op);
+        System.arraycopy(src, literalStart, dst, op, literals);
+        op += literals;
+
+        if (matchLength == 0) return op;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        if (matchCode >= 15) op = writeLength(matchCode - 15, dst, op);
+        return op;
+    }
+
+    private static int writeLength(int length, byte[] dst, int op) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    @Override
+    public void decompress(byte[] src, int length, byte[] dst, int dstLength) {
+        checkLength(length, dstLength);
+        decompress(src, length, dst, 0, dstLength);
+    }
+
+    @Override
+    public void decompress(byte[] src, int length, byte[] dst, int dstLength, @Nullable CompressionDictionary dictionary) {
+        if (dictionary == null) {
+            decompress(src, length, dst, dstLength);
+            return;
+        }
+        checkLength(length, dstLength); // before the window grows to hold the decompressed bytes
+        Window window = window(dictionary);
+        byte[] bytes = window.bytes(dstLength);
+        decompress(src, length, bytes, window.start, window.start + dstLength);
+        System.arraycopy(bytes, window.start, dst, 0, dstLength);
+    }
+
+    /**
+     * Decompresses bytes into dst from start to end. Matches may copy from the bytes before start.
+     */
+    private static void decompress(byte[] src, int length, byte[] dst, int start, int end) {
+        int ip = 0, op = start;
+        try {
+            while (op < end) {
+                int token = src[ip++] & 0xFF;
+
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+                if (literals > end - op || literals > length - ip)
+                    throw new IllegalArgumentException("Literals run past the end of the block");
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+                if (op == end) break; // the last sequence
+
+                int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+                ip += 2;
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                if (offset == 0 || offset > op || matchLength > end - op)
+                    throw new IllegalArgumentException("Invalid match at " + (op - start));
+
+                int from = op - offset;
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, from, dst, op, matchLength);
+                } else {
+                    for (int j = 0; j < matchLength; j++) dst[op + j] = dst[from + j]; // the match overlaps itself
+                }
+                op += matchLength;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("The compressed bytes end early", e);
+        }
+        if (ip != length) throw new IllegalArgumentException("Decompressed " + ip + " of " + length + " compressed bytes");
+    }
+
+    /**
+     * Checks that the number of decompressed bytes could come from the compressed bytes, since it is sent separately
+     * and can not be trusted.
+     */
+    private static void checkLength(int length, int dstLength) {
+        if (dstLength < 0 || dstLength > (long) length * MAX_RATIO)
+            throw new IllegalArgumentException(length + " compressed bytes can not decompress to " + dstLength + " bytes");
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int getInt(byte[] src, int i) {
+        return (src[i] & 0xFF) | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF) << 16 | src[i + 3] << 24;
+    }
+
+}
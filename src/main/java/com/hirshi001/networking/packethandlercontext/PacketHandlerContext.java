@@ -16,10 +16,14 @@
 
 package com.hirshi001.networking.packethandlercontext;
 
+import com.hirshi001.buffer.buffers.ByteBuffer;
 import com.hirshi001.networking.network.channel.Channel;
 import com.hirshi001.networking.network.networkside.NetworkSide;
+import com.hirshi001.networking.packet.DataPacket;
+import com.hirshi001.networking.packet.FlyweightPacket;
 import com.hirshi001.networking.packet.Packet;
 import com.hirshi001.networking.packet.PacketHandler;
+import com.hirshi001.networking.packet.PacketHolder;
 import com.hirshi001.networking.packetregistry.PacketRegistry;
 
 /**
@@ -35,9 +39,20 @@ public class PacketHandlerContext<T extends Packet> {
     public PacketType packetType;
     public PacketRegistry packetRegistry;
     public PacketHandler<T> packetHandler;
+    /**
+     * The packet. For a packet received with {@link com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder#lazy}
+     * set, this is null until the body is read, use {@link #getPacket()} instead.
+     */
     public T packet;
+    public PacketHolder<T> packetHolder; // the holder the packet was created by, null if the packet was not received
+    public int packetId; // the id the packet was received with, only set for received packets
+
+    private ByteBuffer body; // the body of a lazily received packet which has not been read yet
+    private int unreadSendingId, unreadReceivingId;
+    private T unreadPacket; // only created when the unread body is sent on, see getUnreadDataPacket
 
     private boolean shouldHandle = true;
+    private boolean retained = false;
 
     /**
      * Creates a new PacketHandlerContext with all the fields set to null.
@@ -66,10 +81,97 @@ public class PacketHandlerContext<T extends Packet> {
 
     /**
      * Handles the packet if the packet handler is not null. This method will behave the same regardless of whether
-     * {@link #shouldHandle} was called or not.
+     * {@link #shouldHandle} was called or not. The body of a lazily read packet is read first.
      */
     public final void handle() {
-        if (packetHandler != null) packetHandler.handle(this);
+        if (packetHandler != null) {
+            getPacket();
+            packetHandler.handle(this);
+        }
+    }
+
+    /**
+     * Sets the packet to be created by the {@link #packetHolder} and read from the body the first time
+     * {@link #getPacket()} is called, instead of right away. Used by the decoder for packets received with
+     * {@link com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder#lazy} set, so packets which are
+     * dropped are never created.
+     *
+     * @param body        a buffer holding only the body of the packet, which the context releases once it is read
+     * @param sendingId   the sending id of the packet
+     * @param receivingId the receiving id of the packet
+     */
+    public void setUnreadPacket(ByteBuffer body, int sendingId, int receivingId) {
+        this.packet = null;
+        this.unreadPacket = null;
+        this.body = body;
+        this.unreadSendingId = sendingId;
+        this.unreadReceivingId = receivingId;
+    }
+
+    private T createUnreadPacket() {
+        if (unreadPacket == null) {
+            unreadPacket = packetHolder.getPacket();
+            unreadPacket.sendingId = unreadSendingId;
+            unreadPacket.receivingId = unreadReceivingId;
+        }
+        return unreadPacket;
+    }
+
+    /**
+     * Gets the packet, reading its body first if it was received lazily and has not been read yet. Listeners which only
+     * need the {@link #packetId}, {@link #packetRegistry} or {@link #packetHolder} to decide what to do with a packet
+     * should not call this method, so packets which are forwarded or dropped are never read.
+     *
+     * @return the packet
+     */
+    public T getPacket() {
+        if (body != null) {
+            T packet = createUnreadPacket();
+            ByteBuffer body = this.body;
+            unreadPacket = null;
+            this.body = null;
+            try {
+                packet.readBytes(body);
+            } finally {
+                body.release();
+            }
+            this.packet = packet;
+        }
+        return packet;
+    }
+
+    /**
+     * Gets the still encoded body of a lazily received packet, so it can be sent on without being read, see
+     * {@link Channel#relay}. The buffer belongs to this context and is only valid until the packet has been handled.
+     * The packet is created, with only its sending and receiving ids set, since it is needed to send the body.
+     *
+     * @return the unread packet together with its body, or null if the body was already read
+     */
+    public DataPacket<T> getUnreadDataPacket() {
+        return body == null ? null : new DataPacket<>(body, createUnreadPacket());
+    }
+
+    /**
+     * @return whether the body of the packet has been read, which is always true unless the packet was received lazily
+     */
+    public boolean isPacketRead() {
+        return body == null;
+    }
+
+    /**
+     * @return the receiving id of the packet, without reading the body of a lazily received packet
+     */
+    public int getReceivingId() {
+        if (body != null) return unreadReceivingId;
+        return packet == null ? -1 : packet.receivingId;
+    }
+
+    /**
+     * @return the class of the packet, without reading the body of a lazily received packet
+     */
+    public Class<? extends Packet> getPacketClass() {
+        if (body != null) return packetHolder.packetClass;
+        return packet == null ? null : packet.getClass();
     }
 
     /**
@@ -89,13 +191,60 @@ public class PacketHandlerContext<T extends Packet> {
         return shouldHandle;
     }
 
+    /**
+     * Keeps the packet from being put back in its pool after it is handled. Handlers and listeners which keep a
+     * reference to a pooled packet after they return must call this method, see
+     * {@link com.hirshi001.networking.packetregistry.PacketRegistry#registerPooled}.
+     * <br>
+     * A {@link FlyweightPacket} points into the buffer it was received in, which is reused for the next frame, so the
+     * bytes it points at are copied into a buffer of its own. Packets given to response futures are retained the same
+     * way. Any other packet which is not pooled is not changed.
+     *
+     * @throws IllegalStateException if the packet is a flyweight and there is no NetworkSide to copy it with
+     */
+    public void retainPacket() {
+        if (retained) return;
+        retained = true;
+        if (packet instanceof FlyweightPacket && ((FlyweightPacket) packet).isWrapped()) {
+            NetworkSide side = networkSide != null ? networkSide : channel != null ? channel.getSide() : null;
+            if (side == null) throw new IllegalStateException("A flyweight can only be retained by a context with a NetworkSide");
+            ((FlyweightPacket) packet).detach(side.getBufferFactory());
+        }
+    }
+
+    /**
+     * @return whether {@link #retainPacket()} was called
+     */
+    public boolean isPacketRetained() {
+        return retained;
+    }
+
+    /**
+     * Puts the packet back in the pool of its {@link PacketHolder} unless it was retained. Called by the channel once
+     * the packet has been handled, the packet must not be used after this method is called.
+     */
+    public void releasePacket() {
+        if (retained || packetHolder == null) return;
+        if (body != null) {
+            body.release();
+            body = null;
+            if (unreadPacket != null) packetHolder.release(unreadPacket);
+            unreadPacket = null;
+        }
+        if (packet == null) return;
+        packetHolder.release(packet);
+        packet = null;
+    }
+
     public void set(PacketHandlerContext<T> other) {
         this.networkSide = other.networkSide;
         this.channel = other.channel;
         this.packetType = other.packetType;
         this.packetRegistry = other.packetRegistry;
         this.packetHandler = other.packetHandler;
-        this.packet = other.packet;
+        this.packet = other.getPacket(); // read a lazily received packet so the two contexts do not share its body
+        this.packetHolder = other.packetHolder;
+        this.packetId = other.packetId;
     }
 
 
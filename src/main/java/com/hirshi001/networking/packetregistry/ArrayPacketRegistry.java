@@ -0,0 +1,191 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.packetregistry;
+
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packet.PacketHolder;
+import com.hirshi001.networking.packetdecoderencoder.PacketIDNotFound;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A PacketRegistry which can be frozen once all packets are registered. After {@link #freeze()} is called, packet
+ * holders are looked up by id in flat arrays and packet ids are looked up by class with a {@link ClassValue}, so
+ * neither lookup boxes an Integer or takes a lock. A frozen registry can not be changed anymore.
+ * <br>
+ * Non negative ids are stored at their own index, and negative ids (such as the default packet ids between -101 and
+ * -507) are stored at index {@code -id - 1} of a second array. Ids with an absolute value of
+ * {@link #MAX_ARRAY_ID} or more are stored in a map instead.
+ * <br>
+ * Before it is frozen, this registry behaves like a {@link DefaultPacketRegistry} and is not thread safe.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class ArrayPacketRegistry implements PacketRegistry {
+
+    /**
+     * Ids with an absolute value smaller than this are stored in arrays once the registry is frozen.
+     */
+    public static final int MAX_ARRAY_ID = 1 << 16;
+
+    private final Map<Class<? extends Packet>, Integer> classIdMap;
+    private final Map<Integer, PacketHolder<?>> intToPacketHolderMap;
+    private final Map<PacketHolder<?>, Integer> packetHolderIntMap;
+    public final String registryName;
+    private int id;
+
+    private volatile Tables tables; // null until the registry is frozen
+
+    /**
+     * Creates a new ArrayPacketRegistry with the given name.
+     * @param registryName the name of the registry
+     */
+    public ArrayPacketRegistry(String registryName) {
+        this.classIdMap = new HashMap<>();
+        this.intToPacketHolderMap = new HashMap<>();
+        this.packetHolderIntMap = new IdentityHashMap<>();
+        this.registryName = registryName;
+    }
+
+    @Override
+    public PacketRegistry register(PacketHolder<?> packetHolder, int id) {
+        if (isFrozen()) throw new IllegalStateException("The registry " + registryName + " is frozen");
+        PacketHolder<?> old = intToPacketHolderMap.remove(id);
+        if (old != null) {
+            packetHolderIntMap.remove(old);
+            classIdMap.values().remove(id);
+        }
+        classIdMap.put(packetHolder.packetClass, id);
+        intToPacketHolderMap.put(id, packetHolder);
+        packetHolderIntMap.put(packetHolder, id);
+        return this;
+    }
+
+    /**
+     * Builds the lookup tables and makes this registry immutable. Calling this method more than once has no effect.
+     * @return this for chaining
+     */
+    @Override
+    public ArrayPacketRegistry freeze() {
+        if (!isFrozen()) tables = new Tables(classIdMap, intToPacketHolderMap, packetHolderIntMap);
+        return this;
+    }
+
+    /**
+     * @return whether {@link #freeze()} was called
+     */
+    public boolean isFrozen() {
+        return tables != null;
+    }
+
+    @Override
+    public PacketHolder<?> getPacketHolder(int id) {
+        Tables tables = this.tables;
+        if (tables == null) return intToPacketHolderMap.get(id);
+        return tables.getPacketHolder(id);
+    }
+
+    @Override
+    public Map<Integer, PacketHolder<?>> getPacketHolders() {
+        return Collections.unmodifiableMap(intToPacketHolderMap);
+    }
+
+    @Override
+    public int getId(PacketHolder<?> holder) {
+        Tables tables = this.tables;
+        Integer id = tables == null ? packetHolderIntMap.get(holder) : tables.packetHolderIntMap.get(holder);
+        if (id == null) throw new PacketIDNotFound("The packet holder " + holder + " does not exist in the registry " + registryName);
+        return id;
+    }
+
+    @Override
+    public int getId(Class<? extends Packet> clazz) {
+        Tables tables = this.tables;
+        Integer id = tables == null ? classIdMap.get(clazz) : tables.classIds.get(clazz);
+        if (id == null) throw new PacketIDNotFound("The packet " + clazz + " does not exist in the registry " + registryName);
+        return id;
+    }
+
+    @Override
+    public String getRegistryName() {
+        return registryName;
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public PacketRegistry setId(int id) {
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * The immutable lookup tables of a frozen registry.
+     */
+    private static final class Tables {
+
+        private final PacketHolder<?>[] positiveHolders; // index id
+        private final PacketHolder<?>[] negativeHolders; // index -id - 1
+        private final Map<Integer, PacketHolder<?>> sparseHolders; // ids which do not fit in the arrays
+        private final Map<PacketHolder<?>, Integer> packetHolderIntMap;
+        private final ClassValue<Integer> classIds;
+
+        private Tables(Map<Class<? extends Packet>, Integer> classIdMap, Map<Integer, PacketHolder<?>> intToPacketHolderMap,
+                       Map<PacketHolder<?>, Integer> packetHolderIntMap) {
+            int maxId = -1, minId = 0;
+            for (int id : intToPacketHolderMap.keySet()) {
+                if (id >= 0 && id < MAX_ARRAY_ID) maxId = Math.max(maxId, id);
+                else if (id < 0 && id > -MAX_ARRAY_ID) minId = Math.min(minId, id);
+            }
+            positiveHolders = new PacketHolder[maxId + 1];
+            negativeHolders = new PacketHolder[-minId];
+            Map<Integer, PacketHolder<?>> sparse = new HashMap<>();
+            for (Map.Entry<Integer, PacketHolder<?>> entry : intToPacketHolderMap.entrySet()) {
+                int id = entry.getKey();
+                if (id >= 0 && id < MAX_ARRAY_ID) positiveHolders[id] = entry.getValue();
+                else if (id < 0 && id > -MAX_ARRAY_ID) negativeHolders[-id - 1] = entry.getValue();
+                else sparse.put(id, entry.getValue());
+            }
+            sparseHolders = sparse;
+            this.packetHolderIntMap = new IdentityHashMap<>(packetHolderIntMap);
+
+            final Map<Class<?>, Integer> classIdCopy = new HashMap<>(classIdMap);
+            classIds = new ClassValue<Integer>() {
+                @Override
+                protected Integer computeValue(Class<?> type) {
+                    return classIdCopy.get(type);
+                }
+            };
+        }
+
+        private PacketHolder<?> getPacketHolder(int id) {
+            if (id >= 0) {
+                if (id < positiveHolders.length) return positiveHolders[id];
+            } else {
+                int index = -id - 1;
+                if (index < negativeHolders.length) return negativeHolders[index];
+            }
+            return sparseHolders.isEmpty() ? null : sparseHolders.get(id);
+        }
+    }
+}
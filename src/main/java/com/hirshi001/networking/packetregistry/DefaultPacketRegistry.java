@@ -19,6 +19,7 @@ package com.hirshi001.networking.packetregistry;
 import com.hirshi001.networking.packet.Packet;
 import com.hirshi001.networking.packet.PacketHolder;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -64,6 +65,11 @@ public class DefaultPacketRegistry implements PacketRegistry{
         return intToPacketHolderMap.get(id);
     }
 
+    @Override
+    public final Map<Integer, PacketHolder<?>> getPacketHolders(){
+        return Collections.unmodifiableMap(intToPacketHolderMap);
+    }
+
     @Override
     public final int getId(PacketHolder<?> holder){
         return packetHolderIntMap.get(holder);
@@ -16,15 +16,26 @@
 
 package com.hirshi001.networking.packetregistry;
 
+import com.hirshi001.networking.packet.FlyweightPacket;
+import com.hirshi001.networking.packet.FlyweightPacketHolder;
 import com.hirshi001.networking.packet.Packet;
 import com.hirshi001.networking.packet.PacketHandler;
 import com.hirshi001.networking.packet.PacketHolder;
+import com.hirshi001.networking.packet.PacketPool;
 import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
 import com.hirshi001.networking.util.defaultpackets.arraypackets.*;
 import com.hirshi001.networking.util.defaultpackets.primitivepackets.*;
+import com.hirshi001.networking.util.defaultpackets.systempackets.DeltaAckPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.DictionaryVersionsPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.FragmentPacket;
 import com.hirshi001.networking.util.defaultpackets.systempackets.NetworkConditionPackets;
+import com.hirshi001.networking.util.defaultpackets.systempackets.ShortPacketIdsPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.SnapshotAckPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.SnapshotPacket;
 import com.hirshi001.networking.util.defaultpackets.udppackets.UDPInitialConnectionPacket;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.function.Supplier;
 
 /**
@@ -51,6 +62,36 @@ public interface PacketRegistry {
         return register(new PacketHolder<>(supplier, handler, packetClass), id);
     }
 
+    /**
+     * Registers a packet with the given id. Received packets of this type are taken from a pool and put back in the pool
+     * once they are handled, see {@link PacketHandlerContext#retainPacket()}.
+     * @param supplier the supplier to create the packet
+     * @param handler the handler to handle the packet
+     * @param packetClass the class of the packet
+     * @param id the id to register the packet with
+     * @param poolSize the maximum number of free packets to keep in the pool
+     * @return this for chaining
+     * @param <T> the type of the packet
+     */
+    @SuppressWarnings("UnusedReturnValue")
+    default <T extends Packet> PacketRegistry registerPooled(Supplier<T> supplier, PacketHandler<T> handler, Class<T> packetClass, int id, int poolSize) {
+        return register(new PacketHolder<>(supplier, handler, packetClass, new PacketPool<>(supplier, poolSize)), id);
+    }
+
+    /**
+     * Registers a {@link FlyweightPacket}. Received packets of this type are not read into a new packet, instead a
+     * reused flyweight is pointed at the received bytes, see {@link FlyweightPacketHolder}.
+     * @param supplier the supplier of the flyweight
+     * @param handler the handler of the packet
+     * @param packetClass the class of the flyweight
+     * @param id the id to register the packet with
+     * @return this for chaining
+     * @param <T> the type of the flyweight
+     */
+    default <T extends FlyweightPacket> PacketRegistry registerFlyweight(Supplier<T> supplier, PacketHandler<T> handler, Class<T> packetClass, int id) {
+        return register(new FlyweightPacketHolder<>(supplier, handler, packetClass), id);
+    }
+
     /**
      * Registers a packet with the given id.
      *
@@ -68,6 +109,17 @@ public interface PacketRegistry {
      */
     PacketHolder<?> getPacketHolder(int id);
 
+    /**
+     * Gets the packet holders registered in this registry, for lookup tables built from it such as a
+     * {@link com.hirshi001.networking.packetregistrycontainer.RegistryTable}. The default implementation returns an
+     * empty map, in which case the tables look up every packet in this registry instead.
+     *
+     * @return an unmodifiable view of the packet holders by id
+     */
+    default Map<Integer, PacketHolder<?>> getPacketHolders() {
+        return Collections.emptyMap();
+    }
+
     /**
      * Gets the id for the given packet holder.
      *
@@ -84,18 +136,33 @@ public interface PacketRegistry {
      */
     int getId(Class<? extends Packet> clazz);
 
+    /**
+     * Makes this registry immutable, if the implementation supports it, so that lookups do not need to be
+     * synchronized with registrations. The default implementation does nothing.
+     *
+     * @return this
+     */
+    default PacketRegistry freeze() {
+        return this;
+    }
+
     /**
      * @return the name of the registry
      */
     String getRegistryName();
 
     /**
-     * Helper method to register SystemPackets.
+     * Helper method to register SystemPackets to ids between -1 and -100 inclusive.
      *
      * @return this
      */
     default PacketRegistry registerSystemPackets() {
-        // there are no system packets yet
+        register(new PacketHolder<>(ShortPacketIdsPacket::new, null, ShortPacketIdsPacket.class), -1);
+        register(new PacketHolder<>(DictionaryVersionsPacket::new, null, DictionaryVersionsPacket.class), -2);
+        register(new PacketHolder<>(DeltaAckPacket::new, null, DeltaAckPacket.class), -3);
+        register(new PacketHolder<>(SnapshotPacket::new, null, SnapshotPacket.class), -4);
+        register(new PacketHolder<>(SnapshotAckPacket::new, null, SnapshotAckPacket.class), -5);
+        register(new PacketHolder<>(FragmentPacket::new, null, FragmentPacket.class), -6);
         return this;
     }
 
@@ -115,6 +182,7 @@ public interface PacketRegistry {
         register(new PacketHolder<>(ShortPacket::new, null, ShortPacket.class), -108);
         register(new PacketHolder<>(StringPacket::new, null, StringPacket.class), -109);
         register(new PacketHolder<>(MultiBooleanPacket::new, null, MultiBooleanPacket.class), -110);
+        register(new PacketHolder<>(InternedStringPacket::new, null, InternedStringPacket.class), -111);
         return this;
     }
 
@@ -132,6 +200,11 @@ public interface PacketRegistry {
         register(new PacketHolder<>(IntegerArrayPacket::new, null, IntegerArrayPacket.class), -206);
         register(new PacketHolder<>(LongArrayPacket::new, null, LongArrayPacket.class), -207);
         register(new PacketHolder<>(ShortArrayPacket::new, null, ShortArrayPacket.class), -208);
+        register(new PacketHolder<>(PackedIntegerArrayPacket::new, null, PackedIntegerArrayPacket.class), -209);
+        register(new PacketHolder<>(PackedLongArrayPacket::new, null, PackedLongArrayPacket.class), -210);
+        register(new PacketHolder<>(CompressedDoubleArrayPacket::new, null, CompressedDoubleArrayPacket.class), -211);
+        register(new PacketHolder<>(CompressedFloatArrayPacket::new, null, CompressedFloatArrayPacket.class), -212);
+        register(new PacketHolder<>(BitSetPacket::new, null, BitSetPacket.class), -213);
         return this;
     }
 
@@ -27,6 +27,13 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A PacketRegistryContainer that contains multiple registries.
+ * <br>
+ * Once all registries are added, {@link #freeze()} can be called to publish an immutable snapshot of the container.
+ * Lookups by id and name then read the snapshot without locking or boxing the id, and the snapshot keeps a
+ * {@link RegistryTable} for each registry, so a received packet is found from its registry id and packet id in a single
+ * lookup. Registries can still be added or have their id changed after the container is frozen (for example by a
+ * {@link com.hirshi001.networking.util.defaultpackets.systempackets.SetPacketRegistryIDPacket}), in which case a new
+ * snapshot is built and swapped in.
  *
  * @author Hrishikesh Ingle
  */
@@ -41,6 +48,8 @@ public class MultiPacketRegistryContainer implements PacketRegistryContainer{
 
     private final Object lock = new Object();
 
+    private volatile Snapshot snapshot; // null until the container is frozen
+
     public MultiPacketRegistryContainer(){
         defaultRegistry = new DefaultPacketRegistry(DEFAULT_REGISTRY_NAME);
         addRegistry(defaultRegistry);
@@ -69,8 +78,31 @@ public class MultiPacketRegistryContainer implements PacketRegistryContainer{
         }
     }
 
+    /**
+     * Publishes an immutable snapshot of the registries in this container and the packets registered in them, so that
+     * lookups no longer read the underlying maps. Later changes to this container replace the snapshot. The registries
+     * themselves are not frozen, but a packet registered again with an id which was already in use is only seen by
+     * {@link #getRegistryTable(int)} once this method is called again, see {@link RegistryTable}.
+     * @return this for chaining
+     */
+    public MultiPacketRegistryContainer freeze(){
+        synchronized (lock) {
+            snapshot = new Snapshot(packetRegistryMap);
+            return this;
+        }
+    }
+
+    /**
+     * @return whether {@link #freeze()} was called
+     */
+    public boolean isFrozen(){
+        return snapshot != null;
+    }
+
     @Override
     public PacketRegistry get(String name){
+        Snapshot snapshot = this.snapshot;
+        if (snapshot != null) return snapshot.packetRegistryMap.get(name);
         return packetRegistryMap.get(name);
     }
 
@@ -93,17 +125,71 @@ public class MultiPacketRegistryContainer implements PacketRegistryContainer{
 
     @Override
     public void setPacketRegistryID(PacketRegistry registry, int id){
-        registry.setId(id);
-        integerToPacketRegistryMap.put(id, registry);
+        synchronized (lock) {
+            registry.setId(id);
+            integerToPacketRegistryMap.put(id, registry);
+            if (snapshot != null) snapshot = new Snapshot(packetRegistryMap);
+        }
     }
 
     @Override
     public PacketRegistry get(int id) {
+        Snapshot snapshot = this.snapshot;
+        if (snapshot != null) return snapshot.get(id);
         return integerToPacketRegistryMap.get(id);
     }
 
+    @Override
+    public RegistryTable getRegistryTable(int id) {
+        Snapshot snapshot = this.snapshot;
+        return snapshot == null ? null : snapshot.getTable(id);
+    }
+
     @Override
     public Collection<PacketRegistry> registries() {
+        Snapshot snapshot = this.snapshot;
+        if (snapshot != null) return snapshot.registries;
         return Collections.unmodifiableCollection(packetRegistryMap.values());
     }
+
+    /**
+     * An immutable copy of the registries in the container and the packets registered in them, indexed by their id.
+     */
+    private static final class Snapshot {
+
+        private static final int MAX_ARRAY_ID = 1024;
+
+        private final RegistryTable[] tablesById; // index id, for ids between 0 and MAX_ARRAY_ID
+        private final Map<Integer, RegistryTable> sparseTables; // ids which do not fit in the array
+        private final Map<String, PacketRegistry> packetRegistryMap;
+        private final Collection<PacketRegistry> registries;
+
+        private Snapshot(Map<String, PacketRegistry> packetRegistryMap) {
+            int maxId = -1;
+            for (PacketRegistry registry : packetRegistryMap.values()) {
+                int id = registry.getId();
+                if (id >= 0 && id < MAX_ARRAY_ID) maxId = Math.max(maxId, id);
+            }
+            tablesById = new RegistryTable[maxId + 1];
+            Map<Integer, RegistryTable> sparse = new HashMap<>();
+            for (PacketRegistry registry : packetRegistryMap.values()) {
+                int id = registry.getId();
+                if (id >= 0 && id < MAX_ARRAY_ID) tablesById[id] = new RegistryTable(registry);
+                else sparse.put(id, new RegistryTable(registry));
+            }
+            sparseTables = sparse;
+            this.packetRegistryMap = new HashMap<>(packetRegistryMap);
+            registries = Collections.unmodifiableCollection(this.packetRegistryMap.values());
+        }
+
+        private RegistryTable getTable(int id) {
+            if (id >= 0 && id < tablesById.length) return tablesById[id];
+            return sparseTables.isEmpty() ? null : sparseTables.get(id);
+        }
+
+        private PacketRegistry get(int id) {
+            RegistryTable table = getTable(id);
+            return table == null ? null : table.registry;
+        }
+    }
 }
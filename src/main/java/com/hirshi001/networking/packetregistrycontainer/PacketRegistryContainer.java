@@ -76,5 +76,17 @@ public interface PacketRegistryContainer {
 
     PacketRegistry get(int id);
 
+    /**
+     * Gets the registry with an id together with its packet holders, so a received packet can be looked up with a
+     * single lookup. The default implementation returns null, in which case the registry is looked up with
+     * {@link #get(int)} and the packet in the registry.
+     *
+     * @param id the id of the registry
+     * @return the table, or null if this container does not keep one for the id
+     */
+    default RegistryTable getRegistryTable(int id) {
+        return null;
+    }
+
     Collection<PacketRegistry> registries();
 }
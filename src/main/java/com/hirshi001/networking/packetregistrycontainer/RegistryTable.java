@@ -0,0 +1,83 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.packetregistrycontainer;
+
+import com.hirshi001.networking.packet.PacketHolder;
+import com.hirshi001.networking.packetregistry.PacketRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A registry together with the packet holders registered in it, flattened into arrays, so a received packet is found
+ * from its registry id and packet id with a single lookup in a frozen {@link MultiPacketRegistryContainer}. The holders
+ * are copied when the table is built. Packets registered later with a new id are still found through the registry,
+ * but a packet registered again with an id which was already in use is only seen once the table is rebuilt.
+ *
+ * @author Hrishikesh Ingle
+ */
+public final class RegistryTable {
+
+    /**
+     * Ids with an absolute value smaller than this are stored in arrays.
+     */
+    public static final int MAX_ARRAY_ID = 1 << 16;
+
+    public final PacketRegistry registry;
+
+    private final PacketHolder<?>[] positiveHolders; // index id
+    private final PacketHolder<?>[] negativeHolders; // index -id - 1
+    private final Map<Integer, PacketHolder<?>> sparseHolders; // ids which do not fit in the arrays
+
+    /**
+     * Creates a new RegistryTable with the packet holders currently registered in a registry.
+     * @param registry the registry
+     */
+    public RegistryTable(PacketRegistry registry) {
+        this.registry = registry;
+        Map<Integer, PacketHolder<?>> holders = registry.getPacketHolders();
+        int maxId = -1, minId = 0;
+        for (int id : holders.keySet()) {
+            if (id >= 0 && id < MAX_ARRAY_ID) maxId = Math.max(maxId, id);
+            else if (id < 0 && id > -MAX_ARRAY_ID) minId = Math.min(minId, id);
+        }
+        positiveHolders = new PacketHolder[maxId + 1];
+        negativeHolders = new PacketHolder[-minId];
+        Map<Integer, PacketHolder<?>> sparse = new HashMap<>();
+        for (Map.Entry<Integer, PacketHolder<?>> entry : holders.entrySet()) {
+            int id = entry.getKey();
+            if (id >= 0 && id < MAX_ARRAY_ID) positiveHolders[id] = entry.getValue();
+            else if (id < 0 && id > -MAX_ARRAY_ID) negativeHolders[-id - 1] = entry.getValue();
+            else sparse.put(id, entry.getValue());
+        }
+        sparseHolders = sparse;
+    }
+
+    /**
+     * @param id the id of the packet
+     * @return the packet holder registered with the id, or null if there is none
+     */
+    public PacketHolder<?> getPacketHolder(int id) {
+        PacketHolder<?> holder;
+        if (id >= 0) holder = id < positiveHolders.length ? positiveHolders[id] : null;
+        else holder = -id - 1 < negativeHolders.length ? negativeHolders[-id - 1] : null;
+        if (holder == null && !sparseHolders.isEmpty()) holder = sparseHolders.get(id);
+        return holder != null ? holder : registry.getPacketHolder(id); // registered after the table was built
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.replication;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Writes and reads one field of a replicated object, see {@link ReplicatedType}. Reading a field must read exactly the
+ * bytes written for it, and must not depend on the other fields of the object, since the client also reads fields
+ * into a scratch object to find where they end.
+ *
+ * @param <T> the type of the replicated object
+ * @author Hrishikesh Ingle
+ */
+public interface FieldSerializer<T> {
+
+    /**
+     * Writes the field of the object.
+     * @param object the object
+     * @param out the buffer to write to
+     */
+    void write(T object, ByteBuffer out);
+
+    /**
+     * Reads the field into the object.
+     * @param object the object
+     * @param in the buffer to read from
+     */
+    void read(T object, ByteBuffer in);
+
+    /**
+     * Creates a FieldSerializer for an int field.
+     * @param getter gets the field
+     * @param setter sets the field
+     * @param <T> the type of the replicated object
+     * @return the FieldSerializer
+     */
+    static <T> FieldSerializer<T> ofInt(ToIntFunction<T> getter, ObjIntConsumer<T> setter) {
+        return new FieldSerializer<T>() {
+            @Override
+            public void write(T object, ByteBuffer out) {
+                out.writeInt(getter.applyAsInt(object));
+            }
+
+            @Override
+            public void read(T object, ByteBuffer in) {
+                setter.accept(object, in.readInt());
+            }
+        };
+    }
+
+    /**
+     * Creates a FieldSerializer for a float field.
+     * @param getter gets the field
+     * @param setter sets the field
+     * @param <T> the type of the replicated object
+     * @return the FieldSerializer
+     */
+    static <T> FieldSerializer<T> ofFloat(ToFloatFunction<T> getter, ObjFloatConsumer<T> setter) {
+        return new FieldSerializer<T>() {
+            @Override
+            public void write(T object, ByteBuffer out) {
+                out.writeFloat(getter.applyAsFloat(object));
+            }
+
+            @Override
+            public void read(T object, ByteBuffer in) {
+                setter.accept(object, in.readFloat());
+            }
+        };
+    }
+
+    /**
+     * Gets a float field of an object.
+     * @param <T> the type of the object
+     */
+    interface ToFloatFunction<T> {
+        float applyAsFloat(T object);
+    }
+
+    /**
+     * Sets a float field of an object.
+     * @param <T> the type of the object
+     */
+    interface ObjFloatConsumer<T> {
+        void accept(T object, float value);
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.replication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A type of object which can be replicated with a {@link ReplicationServer} and {@link ReplicationClient}. A type is
+ * a list of fields, each with its own {@link FieldSerializer}, and the snapshots sent only carry the fields which
+ * changed since the client's last acknowledged snapshot. Both sides must register the same types, with the same ids
+ * and fields in the same order.
+ *
+ * @param <T> the type of the replicated objects
+ * @author Hrishikesh Ingle
+ */
+public class ReplicatedType<T> {
+
+    /**
+     * The maximum number of fields a type can have, one for each bit of the mask of changed fields.
+     */
+    public static final int MAX_FIELDS = 32;
+
+    private final int id;
+    private final Supplier<T> factory;
+    private final List<FieldSerializer<T>> fields = new ArrayList<>();
+    private T scratch;
+
+    /**
+     * Creates a new ReplicatedType without any fields.
+     * @param id the id of the type, must not be negative
+     * @param factory creates the objects of this type on the client
+     */
+    public ReplicatedType(int id, Supplier<T> factory) {
+        if (id < 0) throw new IllegalArgumentException("Replicated type ids must not be negative: " + id);
+        this.id = id;
+        this.factory = factory;
+    }
+
+    /**
+     * Adds a field to this type.
+     * @param field the serializer of the field
+     * @return this
+     * @throws IllegalStateException if the type already has {@link #MAX_FIELDS} fields
+     */
+    public ReplicatedType<T> addField(FieldSerializer<T> field) {
+        if (fields.size() == MAX_FIELDS)
+            throw new IllegalStateException("Replicated types can not have more than " + MAX_FIELDS + " fields");
+        fields.add(field);
+        return this;
+    }
+
+    /**
+     * @return the id of this type
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the number of fields of this type
+     */
+    public int getFieldCount() {
+        return fields.size();
+    }
+
+    /**
+     * @param index the index of the field
+     * @return the serializer of the field
+     */
+    public FieldSerializer<T> getField(int index) {
+        return fields.get(index);
+    }
+
+    /**
+     * @return a new object of this type
+     */
+    public T create() {
+        return factory.get();
+    }
+
+    /**
+     * @return an object the client reads fields into to find where they end
+     */
+    T getScratch() {
+        if (scratch == null) scratch = create();
+        return scratch;
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.replication;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.network.channel.AbstractChannelListener;
+import com.hirshi001.networking.network.channel.Channel;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
+import com.hirshi001.networking.util.defaultpackets.systempackets.SnapshotAckPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.SnapshotPacket;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The client side of state replication, see {@link ReplicationServer}. Each {@link SnapshotPacket} received is
+ * rebuilt from the baseline it was written against and acknowledged, and applied to the replicated objects if it is
+ * newer than the last snapshot applied. Snapshots whose baseline is no longer kept are dropped without being
+ * acknowledged. Applying a snapshot only reads the fields whose bytes changed into the objects, and creates and
+ * removes objects as needed. Everything is forgotten whenever the TCP connection of the channel is established or
+ * closed.
+ * <p>
+ * This listener must be added to the channel connected to the server, and both sides must call
+ * {@code registerSystemPackets()} on their default registry. Objects are updated on the thread the snapshots are
+ * received on, so access to them has to be synchronized on this client.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class ReplicationClient extends AbstractChannelListener {
+
+    private final Map<Integer, ReplicatedType<?>> types = new HashMap<>();
+    private final Map<Integer, Object> objects = new HashMap<>();
+    private final Snapshot[] history = new Snapshot[ReplicationServer.WINDOW];
+    private Snapshot applied = Snapshot.empty();
+    private ReplicationListener listener = new ReplicationListener() {
+    };
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new ReplicationClient.
+     * @param bufferFactory the factory of the buffers snapshots are read from
+     */
+    public ReplicationClient(BufferFactory bufferFactory) {
+        this.buffer = bufferFactory.buffer(256);
+    }
+
+    /**
+     * Registers a type, which must also be registered with the same id and fields on the server.
+     * @param type the type
+     * @return this
+     */
+    public synchronized ReplicationClient register(ReplicatedType<?> type) {
+        types.put(type.getId(), type);
+        return this;
+    }
+
+    /**
+     * Sets the listener told about the objects created, updated and removed.
+     * @param listener the listener
+     */
+    public synchronized void setListener(ReplicationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param id the id of an object
+     * @return the object, or null if there is no object with the id
+     */
+    public synchronized @Nullable Object get(int id) {
+        return objects.get(id);
+    }
+
+    /**
+     * @return an unmodifiable view of the replicated objects by id
+     */
+    public synchronized Map<Integer, Object> getObjects() {
+        return Collections.unmodifiableMap(objects);
+    }
+
+    /**
+     * @return the number of the last snapshot applied, or 0 if none has been
+     */
+    public synchronized int getSnapshotNumber() {
+        return applied.number;
+    }
+
+    /**
+     * Rebuilds a received snapshot and applies it if it is newer than the last snapshot applied.
+     * @param packet the packet holding the snapshot
+     * @return whether the snapshot could be rebuilt and should be acknowledged
+     * @throws IllegalArgumentException if the snapshot is invalid
+     */
+    public synchronized boolean receive(SnapshotPacket packet) {
+        Snapshot baseline = null;
+        if (packet.baseline != 0) {
+            baseline = history[packet.baseline % history.length];
+            if (baseline == null || baseline.number != packet.baseline) return false;
+        }
+        Snapshot snapshot = history[packet.number % history.length];
+        if (snapshot == null || snapshot.number != packet.number) {
+            buffer.clear();
+            buffer.writeBytes(packet.delta);
+            snapshot = Snapshot.readDelta(packet.number, baseline, buffer, types);
+            history[packet.number % history.length] = snapshot;
+        }
+        if (snapshot.number > applied.number) apply(snapshot);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(Snapshot snapshot) {
+        Snapshot old = applied;
+        applied = snapshot;
+        int i = 0;
+        for (int j = 0; j < snapshot.ids.length; j++) {
+            int id = snapshot.ids[j];
+            Snapshot.ObjectState state = snapshot.states[j];
+            for (; i < old.ids.length && old.ids[i] < id; i++) removeObject(old.ids[i]);
+            Snapshot.ObjectState oldState = i < old.ids.length && old.ids[i] == id ? old.states[i++] : null;
+            if (oldState == state) continue;
+            ReplicatedType<Object> type = (ReplicatedType<Object>) state.type;
+
+            if (oldState == null || oldState.type != state.type) {
+                if (oldState != null) removeObject(id);
+                Object object = type.create();
+                for (int field = 0; field < state.fields.length; field++) readField(type, field, state, object);
+                objects.put(id, object);
+                listener.onCreated(id, object);
+                continue;
+            }
+            Object object = objects.get(id);
+            boolean updated = false;
+            for (int field = 0; field < state.fields.length; field++) {
+                if (state.fieldEquals(oldState, field)) continue;
+                readField(type, field, state, object);
+                updated = true;
+            }
+            if (updated) listener.onUpdated(id, object);
+        }
+        for (; i < old.ids.length; i++) removeObject(old.ids[i]);
+    }
+
+    private void readField(ReplicatedType<Object> type, int field, Snapshot.ObjectState state, Object object) {
+        buffer.clear();
+        buffer.writeBytes(state.fields[field]);
+        type.getField(field).read(object, buffer);
+    }
+
+    private void removeObject(int id) {
+        Object object = objects.remove(id);
+        if (object != null) listener.onRemoved(id, object);
+    }
+
+    /**
+     * Forgets all snapshots and removes all objects, for example when reconnecting to a server.
+     */
+    public synchronized void clear() {
+        for (Integer id : objects.keySet().toArray(new Integer[0])) removeObject(id);
+        Arrays.fill(history, null);
+        applied = Snapshot.empty();
+    }
+
+    @Override
+    public void onTCPConnect(Channel channel) {
+        clear(); // the server starts over with every object for a new connection
+    }
+
+    @Override
+    public void onTCPDisconnect(Channel channel) {
+        clear();
+    }
+
+    @Override
+    public void onReceived(PacketHandlerContext<?> context) {
+        if (context.getPacketClass() != SnapshotPacket.class) return;
+        SnapshotPacket packet = (SnapshotPacket) context.getPacket();
+        if (receive(packet)) context.channel.sendNow(new SnapshotAckPacket(packet.number), null, context.packetType);
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.replication;
+
+/**
+ * Listens to the objects a {@link ReplicationClient} creates, updates and removes while applying snapshots.
+ *
+ * @author Hrishikesh Ingle
+ */
+public interface ReplicationListener {
+
+    /**
+     * Called when an object is created, after all its fields are read.
+     * @param id the id of the object
+     * @param object the object
+     */
+    default void onCreated(int id, Object object) {
+    }
+
+    /**
+     * Called when fields of an object changed, after they are read.
+     * @param id the id of the object
+     * @param object the object
+     */
+    default void onUpdated(int id, Object object) {
+    }
+
+    /**
+     * Called when an object is removed.
+     * @param id the id of the object
+     * @param object the object
+     */
+    default void onRemoved(int id, Object object) {
+    }
+
+}
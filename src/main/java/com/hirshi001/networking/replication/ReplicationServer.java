@@ -0,0 +1,259 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.replication;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.network.channel.Channel;
+import com.hirshi001.networking.network.channel.ChannelOption;
+import com.hirshi001.networking.network.server.AbstractServerListener;
+import com.hirshi001.networking.network.server.Server;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.util.defaultpackets.systempackets.FragmentPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.SnapshotAckPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.SnapshotPacket;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The server side of state replication. Objects are added with the {@link ReplicatedType} describing their fields,
+ * and every tick {@link #tick(Iterable)} takes a snapshot of all of them and sends each channel the changes since
+ * the last snapshot it acknowledged, in a {@link SnapshotPacket} over UDP, or over TCP if it does not fit in a
+ * datagram. A {@link ReplicationClient} on the other side applies the snapshot and acknowledges it with a
+ * {@link SnapshotAckPacket}, which moves that channel's baseline forward. Lost snapshots do not have to be resent, since the next one is a delta against an older baseline and
+ * carries the same changes. The last {@link #WINDOW} snapshots are kept, and a channel whose baseline is older than
+ * that is sent every object again.
+ * <p>
+ * Each snapshot is only written once for each baseline used, so channels which are up to date share the same packet.
+ * This listener must be added to the server with {@link Server#addServerListener}, and both sides must call
+ * {@code registerSystemPackets()} on their default registry.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class ReplicationServer extends AbstractServerListener {
+
+    /**
+     * The number of snapshots kept as baselines.
+     */
+    public static final int WINDOW = 32;
+
+    private static final class Entry {
+        final ReplicatedType<Object> type;
+        final Object object;
+
+        Entry(ReplicatedType<Object> type, Object object) {
+            this.type = type;
+            this.object = object;
+        }
+    }
+
+    private final Map<Integer, Entry> objects = new LinkedHashMap<>(); // ids are handed out in order, so this is sorted
+    private int nextId;
+
+    private final Snapshot[] history = new Snapshot[WINDOW];
+    private Snapshot last = Snapshot.empty();
+    private final Map<Integer, SnapshotPacket> packets = new HashMap<>(); // packets of the last snapshot by baseline
+    private final Map<Channel, Integer> acknowledged = new HashMap<>();
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new ReplicationServer.
+     * @param bufferFactory the factory of the buffer snapshots are written to
+     */
+    public ReplicationServer(BufferFactory bufferFactory) {
+        this.buffer = bufferFactory.buffer(256);
+    }
+
+    /**
+     * Adds an object to be replicated.
+     * @param type the type of the object
+     * @param object the object
+     * @param <T> the type of the object
+     * @return the id of the object, which is the same on the clients
+     * @throws IllegalStateException if all ids have been used
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> int add(ReplicatedType<T> type, T object) {
+        if (nextId > Snapshot.MAX_ID) throw new IllegalStateException("All replicated object ids have been used");
+        int id = nextId++;
+        objects.put(id, new Entry((ReplicatedType<Object>) type, object));
+        return id;
+    }
+
+    /**
+     * Stops replicating an object. Clients remove it with the next snapshot they apply.
+     * @param id the id of the object
+     * @return whether the object was replicated
+     */
+    public synchronized boolean remove(int id) {
+        return objects.remove(id) != null;
+    }
+
+    /**
+     * @param id the id of an object
+     * @return the object, or null if no object with the id is replicated
+     */
+    public synchronized @Nullable Object get(int id) {
+        Entry entry = objects.get(id);
+        return entry == null ? null : entry.object;
+    }
+
+    /**
+     * Takes a snapshot and sends it to the channels.
+     * @param channels the channels to send the snapshot to, for example {@link Server#getClients()}
+     */
+    public void tick(Iterable<? extends Channel> channels) {
+        snapshot();
+        for (Channel channel : channels) send(channel);
+    }
+
+    /**
+     * Takes a snapshot of all replicated objects. Fields are written with their {@link FieldSerializer}s, and fields
+     * whose bytes did not change since the last snapshot share its arrays.
+     * @return the number of the snapshot
+     */
+    public synchronized int snapshot() {
+        int[] ids = new int[objects.size()];
+        Snapshot.ObjectState[] states = new Snapshot.ObjectState[ids.length];
+        int count = 0, previous = 0;
+        for (Map.Entry<Integer, Entry> mapEntry : objects.entrySet()) {
+            int id = mapEntry.getKey();
+            Entry entry = mapEntry.getValue();
+            while (previous < last.ids.length && last.ids[previous] < id) previous++;
+            Snapshot.ObjectState old = previous < last.ids.length && last.ids[previous] == id && last.states[previous].type == entry.type ? last.states[previous] : null;
+
+            byte[][] fields = new byte[entry.type.getFieldCount()][];
+            for (int field = 0; field < fields.length; field++) {
+                buffer.clear();
+                entry.type.getField(field).write(entry.object, buffer);
+                fields[field] = old != null && bufferEquals(old.fields[field]) ? old.fields[field] : readBuffer();
+            }
+            ids[count] = id;
+            states[count++] = new Snapshot.ObjectState(entry.type, fields);
+        }
+        last = new Snapshot(last.number + 1, ids, states);
+        history[last.number % WINDOW] = last;
+        packets.clear();
+        return last.number;
+    }
+
+    private boolean bufferEquals(byte[] bytes) {
+        if (buffer.readableBytes() != bytes.length) return false;
+        int start = buffer.readerIndex();
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.getByte(start + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+    private byte[] readBuffer() {
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.readBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Sends the last snapshot taken to a channel, as a delta against the last snapshot the channel acknowledged.
+     * Nothing is sent if no snapshot has been taken. A snapshot which does not fit in a datagram of the channel is sent
+     * over TCP instead, and since TCP delivers it, it becomes the baseline of the channel right away.
+     * @param channel the channel
+     * @throws IllegalStateException if the snapshot does not fit in a datagram and the channel has no TCP connection
+     */
+    public void send(Channel channel) {
+        SnapshotPacket packet;
+        synchronized (this) {
+            if (last.number == 0) return;
+            Integer baselineNumber = acknowledged.get(channel);
+            Snapshot baseline = baselineNumber == null ? null : getSnapshot(baselineNumber);
+            int key = baseline == null ? 0 : baseline.number;
+            packet = packets.get(key);
+            if (packet == null) {
+                buffer.clear();
+                Snapshot.writeDelta(baseline, last, buffer);
+                packets.put(key, packet = new SnapshotPacket(last.number, key, readBuffer()));
+            }
+        }
+        if (fitsInDatagram(channel, packet)) {
+            channel.sendNow(packet, null, PacketType.UDP);
+            return;
+        }
+        if (!channel.supportsTCP() || !channel.isTCPOpen())
+            throw new IllegalStateException("Snapshot " + packet.number + " of " + packet.estimateSize() + " bytes does not fit in a datagram of " +
+                    channel.getChannelOption(ChannelOption.MAX_UDP_PACKET_SIZE) + " bytes, and the channel has no TCP connection");
+        channel.sendNow(packet, null, PacketType.TCP);
+        acknowledge(channel, packet.number);
+    }
+
+    private static boolean fitsInDatagram(Channel channel, SnapshotPacket packet) {
+        Integer maxSize = channel.getChannelOption(ChannelOption.MAX_UDP_PACKET_SIZE);
+        if (maxSize == null || maxSize < 0 || Boolean.TRUE.equals(channel.getChannelOption(ChannelOption.FRAGMENT_UDP_PACKETS)))
+            return true;
+        return packet.estimateSize() + FragmentPacket.MAX_FRAME_OVERHEAD <= maxSize; // the frame header is never larger
+    }
+
+    private @Nullable Snapshot getSnapshot(int number) {
+        Snapshot snapshot = history[number % WINDOW];
+        return snapshot != null && snapshot.number == number ? snapshot : null;
+    }
+
+    /**
+     * Moves the baseline of a channel forward. Acknowledgements of snapshots older than the channel's baseline are
+     * ignored.
+     * @param channel the channel
+     * @param number the number of the snapshot the channel acknowledged
+     */
+    public synchronized void acknowledge(Channel channel, int number) {
+        if (number <= 0 || number > last.number) return;
+        Integer old = acknowledged.get(channel);
+        if (old == null || old < number) acknowledged.put(channel, number);
+    }
+
+    /**
+     * @param channel the channel
+     * @return the number of the last snapshot the channel acknowledged, or 0 if it has not acknowledged any
+     */
+    public synchronized int getAcknowledged(Channel channel) {
+        Integer number = acknowledged.get(channel);
+        return number == null ? 0 : number;
+    }
+
+    /**
+     * Forgets the baseline of a channel, so it is sent every object with the next snapshot.
+     * @param channel the channel
+     */
+    public synchronized void removeChannel(Channel channel) {
+        acknowledged.remove(channel);
+    }
+
+    @Override
+    public void onReceived(PacketHandlerContext<?> context) {
+        if (context.getPacketClass() == SnapshotAckPacket.class)
+            acknowledge(context.channel, ((SnapshotAckPacket) context.getPacket()).number);
+    }
+
+    @Override
+    public void onClientDisconnect(Server server, Channel clientChannel) {
+        removeChannel(clientChannel);
+    }
+
+}
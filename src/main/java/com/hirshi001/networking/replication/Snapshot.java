@@ -0,0 +1,223 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.replication;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.util.VarIntUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The state of all replicated objects at one tick, and the delta format snapshots are sent in. The state of an object
+ * is kept as the bytes of each of its fields, so comparing two snapshots only compares bytes. Field arrays which did
+ * not change are shared with the previous snapshot, so most fields compare by reference.
+ * <p>
+ * A delta is a list of entries ordered by object id, each starting with a varint holding the distance to the id of
+ * the previous entry shifted left by two, and the kind of the entry in the low bits:
+ * <ul>
+ *     <li>{@link #UPDATE}, followed by a varint mask of the fields which changed and those fields.</li>
+ *     <li>{@link #CREATE}, followed by the type id and all the fields. Also replaces an object whose type changed.</li>
+ *     <li>{@link #REMOVE}, with nothing after it.</li>
+ *     <li>{@link #END}, which ends the list.</li>
+ * </ul>
+ * Objects which did not change have no entry.
+ *
+ * @author Hrishikesh Ingle
+ */
+final class Snapshot {
+
+    static final int UPDATE = 0, CREATE = 1, REMOVE = 2, END = 3;
+
+    /**
+     * The largest object id, so the distance between ids fits in a varint with the kind.
+     */
+    static final int MAX_ID = (1 << 29) - 1;
+
+    private static final int[] NO_IDS = new int[0];
+    private static final ObjectState[] NO_STATES = new ObjectState[0];
+
+    /**
+     * The state of one object.
+     */
+    static final class ObjectState {
+        final ReplicatedType<?> type;
+        final byte[][] fields;
+
+        ObjectState(ReplicatedType<?> type, byte[][] fields) {
+            this.type = type;
+            this.fields = fields;
+        }
+
+        boolean fieldEquals(ObjectState other, int field) {
+            return fields[field] == other.fields[field] || Arrays.equals(fields[field], other.fields[field]);
+        }
+    }
+
+    final int number;
+    final int[] ids; // sorted
+    final ObjectState[] states;
+
+    Snapshot(int number, int[] ids, ObjectState[] states) {
+        this.number = number;
+        this.ids = ids;
+        this.states = states;
+    }
+
+    /**
+     * @return an empty snapshot with the number 0, which stands for no snapshot
+     */
+    static Snapshot empty() {
+        return new Snapshot(0, NO_IDS, NO_STATES);
+    }
+
+    /**
+     * @param id the id of an object
+     * @return the index of the object, or a negative number if this snapshot does not have it
+     */
+    int indexOf(int id) {
+        return Arrays.binarySearch(ids, id);
+    }
+
+    /**
+     * Writes the changes from a baseline to a snapshot.
+     * @param baseline the snapshot the other side has, or null to write every object
+     * @param snapshot the snapshot to write
+     * @param out the buffer to write to
+     */
+    static void writeDelta(@Nullable Snapshot baseline, Snapshot snapshot, ByteBuffer out) {
+        if (baseline == null) baseline = empty();
+        int i = 0, j = 0, last = 0;
+        while (i < baseline.ids.length || j < snapshot.ids.length) {
+            int oldId = i < baseline.ids.length ? baseline.ids[i] : Integer.MAX_VALUE;
+            int id = j < snapshot.ids.length ? snapshot.ids[j] : Integer.MAX_VALUE;
+            if (oldId < id) {
+                VarIntUtil.writeVarInt(out, (oldId - last) << 2 | REMOVE);
+                last = oldId;
+                i++;
+                continue;
+            }
+            ObjectState state = snapshot.states[j++];
+            if (oldId == id && baseline.states[i++].type == state.type) {
+                ObjectState old = baseline.states[i - 1];
+                int mask = 0;
+                for (int field = 0; field < state.fields.length; field++) {
+                    if (!state.fieldEquals(old, field)) mask |= 1 << field;
+                }
+                if (mask == 0) continue;
+                VarIntUtil.writeVarInt(out, (id - last) << 2 | UPDATE);
+                VarIntUtil.writeVarInt(out, mask);
+                for (int field = 0; field < state.fields.length; field++) {
+                    if ((mask & 1 << field) != 0) out.writeBytes(state.fields[field]);
+                }
+            } else {
+                VarIntUtil.writeVarInt(out, (id - last) << 2 | CREATE);
+                VarIntUtil.writeVarInt(out, state.type.getId());
+                for (byte[] field : state.fields) out.writeBytes(field);
+            }
+            last = id;
+        }
+        VarIntUtil.writeVarInt(out, END);
+    }
+
+    /**
+     * Reads the changes from a baseline to a snapshot written by {@link #writeDelta(Snapshot, Snapshot, ByteBuffer)}.
+     * @param number the number of the snapshot
+     * @param baseline the snapshot the delta was written against, or null if it was written against no snapshot
+     * @param in the buffer to read from
+     * @param types the registered types by id
+     * @return the snapshot
+     * @throws IllegalArgumentException if the delta is invalid
+     */
+    static Snapshot readDelta(int number, @Nullable Snapshot baseline, ByteBuffer in, Map<Integer, ReplicatedType<?>> types) {
+        if (baseline == null) baseline = empty();
+        int[] ids = new int[baseline.ids.length + 8];
+        ObjectState[] states = new ObjectState[ids.length];
+        int count = 0, i = 0, id = 0;
+        while (true) {
+            int entry = VarIntUtil.readVarInt(in);
+            int kind = entry & 3;
+            if (kind == END) break;
+            id += entry >>> 2;
+            if (id < 0 || id > MAX_ID) throw new IllegalArgumentException("Invalid replicated object id: " + id);
+            while (i < baseline.ids.length && baseline.ids[i] < id) { // unchanged objects
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                    states = Arrays.copyOf(states, count * 2);
+                }
+                ids[count] = baseline.ids[i];
+                states[count++] = baseline.states[i++];
+            }
+            ObjectState old = i < baseline.ids.length && baseline.ids[i] == id ? baseline.states[i++] : null;
+            ObjectState state;
+            if (kind == CREATE) {
+                int typeId = VarIntUtil.readVarInt(in);
+                ReplicatedType<?> type = types.get(typeId);
+                if (type == null) throw new IllegalArgumentException("No replicated type registered with the id " + typeId);
+                byte[][] fields = new byte[type.getFieldCount()][];
+                for (int field = 0; field < fields.length; field++) fields[field] = readField(type, field, in);
+                state = new ObjectState(type, fields);
+            } else if (old == null) {
+                throw new IllegalArgumentException("Replicated object " + id + " is not in the baseline");
+            } else if (kind == UPDATE) {
+                int mask = VarIntUtil.readVarInt(in);
+                int fieldCount = old.fields.length;
+                if (fieldCount < ReplicatedType.MAX_FIELDS && mask >>> fieldCount != 0)
+                    throw new IllegalArgumentException("Invalid field mask for replicated object " + id + ": " + Integer.toBinaryString(mask));
+                byte[][] fields = old.fields.clone();
+                for (int field = 0; field < fieldCount; field++) {
+                    if ((mask & 1 << field) != 0) fields[field] = readField(old.type, field, in);
+                }
+                state = new ObjectState(old.type, fields);
+            } else { // REMOVE
+                continue;
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                states = Arrays.copyOf(states, count * 2);
+            }
+            ids[count] = id;
+            states[count++] = state;
+        }
+        int remaining = baseline.ids.length - i;
+        if (count + remaining > ids.length) {
+            ids = Arrays.copyOf(ids, count + remaining);
+            states = Arrays.copyOf(states, count + remaining);
+        }
+        System.arraycopy(baseline.ids, i, ids, count, remaining);
+        System.arraycopy(baseline.states, i, states, count, remaining);
+        count += remaining;
+        return new Snapshot(number, Arrays.copyOf(ids, count), Arrays.copyOf(states, count));
+    }
+
+    /**
+     * Reads one field into the scratch object of its type to find where it ends, and returns its bytes.
+     */
+    @SuppressWarnings("unchecked")
+    private static byte[] readField(ReplicatedType<?> type, int field, ByteBuffer in) {
+        ReplicatedType<Object> objectType = (ReplicatedType<Object>) type;
+        int start = in.readerIndex();
+        objectType.getField(field).read(objectType.getScratch(), in);
+        byte[] bytes = new byte[in.readerIndex() - start];
+        in.readerIndex(start);
+        in.readBytes(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+
+/**
+ * Reads fields written by {@link BitWriter}. Whole 64 bit words are read from the buffer when at least 8 bytes are
+ * readable, so the reader may read past the last byte the BitWriter wrote. {@link #finish()} must be called after the
+ * last field to give those bytes back, leaving the reader index right after the last byte the BitWriter wrote.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class BitReader {
+
+    private final ByteBuffer in;
+    private long bits;
+    private int count;
+
+    public BitReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads a field.
+     * @param width the number of bits to read, between 0 and 64
+     * @return the field, with the bits above width set to 0
+     */
+    public long read(int width) {
+        if (width == 0) return 0;
+        long value = bits;
+        int have = count;
+        if (have >= width) {
+            bits = width == 64 ? 0 : bits >>> width;
+            count -= width;
+        } else {
+            int need = width - have;
+            fill(need);
+            // have is less than 64 here, so the shift is safe
+            value |= bits << have;
+            bits = need == 64 ? 0 : bits >>> need;
+            count -= need;
+        }
+        return value & (-1L >>> (64 - width));
+    }
+
+    /**
+     * Reads a single bit.
+     * @return the bit
+     */
+    public boolean readBoolean() {
+        return read(1) != 0;
+    }
+
+    /**
+     * Reads booleans written by {@link BitWriter#writeBooleans(boolean[], int, int)}, 64 at a time.
+     * @param array the array to read into
+     * @param offset the index of the first boolean to read
+     * @param length the number of booleans to read
+     */
+    public void readBooleans(boolean[] array, int offset, int length) {
+        int end = offset + length;
+        while (offset < end) {
+            int width = Math.min(64, end - offset);
+            BooleanCompression.unpackBooleans(read(width), array, offset, width);
+            offset += width;
+        }
+    }
+
+    /**
+     * Gives back the whole bytes that were read from the buffer but not used, and discards the padding bits of the
+     * last byte used. The reader can be used again afterwards for fields that start at the next byte.
+     */
+    public void finish() {
+        in.readerIndex(in.readerIndex() - count / 8);
+        bits = 0;
+        count = 0;
+    }
+
+    private void fill(int need) {
+        if (in.readableBytes() >= 8) {
+            bits = Long.reverseBytes(in.readLong());
+            count = 64;
+        } else {
+            bits = 0;
+            count = 0;
+            while (count < need) {
+                bits |= (in.readByte() & 0xFFL) << count;
+                count += 8;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+
+/**
+ * Writes fields of any width between 0 and 64 bits to a {@link ByteBuffer}, with no padding between them. Bits are
+ * collected in a long, least significant bits first, and written to the buffer a whole 64 bit word at a time, so the
+ * bytes come out in the same order as if they were written one at a time. {@link #flush()} must be called after the
+ * last field to write the remaining bits. Read with {@link BitReader}.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class BitWriter {
+
+    private final ByteBuffer out;
+    private long bits;
+    private int count;
+
+    public BitWriter(ByteBuffer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the lowest width bits of the value.
+     * @param value the value
+     * @param width the number of bits to write, between 0 and 64
+     */
+    public void write(long value, int width) {
+        if (width == 0) return;
+        value &= -1L >>> (64 - width);
+        bits |= value << count;
+        count += width;
+        if (count >= 64) {
+            out.writeLong(Long.reverseBytes(bits));
+            count -= 64;
+            // the bits of value that did not fit in the word, shifting by 64 would leave value unchanged
+            bits = count == 0 ? 0 : value >>> (width - count);
+        }
+    }
+
+    /**
+     * Writes a single bit.
+     * @param value the bit
+     */
+    public void writeBoolean(boolean value) {
+        write(value ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes a bit for each of the booleans, 64 at a time.
+     * @param array the booleans
+     * @param offset the index of the first boolean to write
+     * @param length the number of booleans to write
+     */
+    public void writeBooleans(boolean[] array, int offset, int length) {
+        int end = offset + length;
+        while (offset < end) {
+            int width = Math.min(64, end - offset);
+            write(BooleanCompression.packBooleans(array, offset, width), width);
+            offset += width;
+        }
+    }
+
+    /**
+     * Writes the remaining bits, padded with zeros to a whole byte.
+     */
+    public void flush() {
+        for (; count > 0; count -= 8) {
+            out.writeByte((int) bits);
+            bits >>>= 8;
+        }
+        bits = 0;
+        count = 0;
+    }
+
+}
@@ -16,9 +16,12 @@
 
 package com.hirshi001.networking.util;
 
+import java.util.Arrays;
+
 /**
  * A utility class that can be used to compress booleans into bytes and decompress the bytes
- * back into booleans.
+ * back into booleans. To write more than 8 booleans, or booleans mixed with fields of other widths, straight to a
+ * buffer, use {@link BitWriter} and {@link BitReader}.
  *
  * @author Hrishikesh Ingle
  */
@@ -37,23 +40,89 @@ public class BooleanCompression {
 
     public static byte[] compressBooleanArray(boolean[] booleans) {
         byte[] compressed = new byte[(booleans.length + 7) / 8];
-        for (int i = 0; i < booleans.length; i++) {
-            if (booleans[i]) {
-                compressed[i / 8] |= 1 << (i % 8);
-            }
+        for (int i = 0; i < booleans.length; i += 8) {
+            compressed[i >>> 3] = (byte) packBooleans(booleans, i, Math.min(8, booleans.length - i));
         }
         return compressed;
     }
 
     //a method which takes in a byte[] and the number of booleans. Returns an array of booleans
     public static boolean[] decompressBooleans(byte[] compressed, int numBooleans) {
-        boolean[] booleans = new boolean[numBooleans];
-        for (int i = 0; i < numBooleans; i++) {
-            booleans[i] = (compressed[i / 8] & (1 << (i % 8))) != 0;
+        return decompressBooleans(compressed, numBooleans, new boolean[numBooleans]);
+    }
+
+    /**
+     * Decompresses booleans into an array the caller supplies instead of a new one.
+     * @param compressed the bytes from {@link #compressBooleanArray(boolean[])}
+     * @param numBooleans the number of booleans to decompress
+     * @param booleans the array to decompress into, at least numBooleans long
+     * @return the booleans argument
+     */
+    public static boolean[] decompressBooleans(byte[] compressed, int numBooleans, boolean[] booleans) {
+        for (int i = 0; i < numBooleans; i += 8) {
+            unpackBooleans(compressed[i >>> 3], booleans, i, Math.min(8, numBooleans - i));
         }
         return booleans;
     }
 
+    /**
+     * Packs up to 64 booleans into a long, the first boolean in the lowest bit. Each group of eight booleans is packed
+     * into a byte by a single expression, without a loop or a branch per boolean, and only the last partial byte is
+     * packed one boolean at a time.
+     * @param booleans the array to pack from
+     * @param offset the index of the first boolean
+     * @param length the number of booleans to pack, between 0 and 64
+     * @return the packed booleans
+     */
+    public static long packBooleans(boolean[] booleans, int offset, int length) {
+        long word = 0;
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            word |= (long) packByte(booleans, offset + i) << i;
+        }
+        for (; i < length; i++) {
+            word |= (booleans[offset + i] ? 1L : 0L) << i;
+        }
+        return word;
+    }
+
+    /**
+     * Unpacks booleans packed by {@link #packBooleans(boolean[], int, int)} into an array, a byte at a time.
+     * @param word the packed booleans
+     * @param booleans the array to unpack into
+     * @param offset the index to unpack the first boolean to
+     * @param length the number of booleans to unpack, between 0 and 64
+     */
+    public static void unpackBooleans(long word, boolean[] booleans, int offset, int length) {
+        if (length == 64 && (word == 0 || word == -1)) {
+            Arrays.fill(booleans, offset, offset + 64, word != 0);
+            return;
+        }
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            unpackByte((int) (word >>> i), booleans, offset + i);
+        }
+        for (; i < length; i++) {
+            booleans[offset + i] = (word >>> i & 1) != 0;
+        }
+    }
+
+    private static int packByte(boolean[] b, int i) {
+        return (b[i] ? 1 : 0) | (b[i + 1] ? 2 : 0) | (b[i + 2] ? 4 : 0) | (b[i + 3] ? 8 : 0)
+                | (b[i + 4] ? 16 : 0) | (b[i + 5] ? 32 : 0) | (b[i + 6] ? 64 : 0) | (b[i + 7] ? 128 : 0);
+    }
+
+    private static void unpackByte(int bits, boolean[] b, int i) {
+        b[i] = (bits & 1) != 0;
+        b[i + 1] = (bits & 2) != 0;
+        b[i + 2] = (bits & 4) != 0;
+        b[i + 3] = (bits & 8) != 0;
+        b[i + 4] = (bits & 16) != 0;
+        b[i + 5] = (bits & 32) != 0;
+        b[i + 6] = (bits & 64) != 0;
+        b[i + 7] = (bits & 128) != 0;
+    }
+
 
 
     /*
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.util;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+
+/**
+ * Helper methods for working on bytes which are already in a {@link ByteBuffer}.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class BufferUtil {
+
+    private BufferUtil() {
+    }
+
+    /**
+     * Moves bytes to another place in the same buffer without allocating, like {@link System#arraycopy} does for
+     * overlapping ranges. Both ranges must be below the writer index of the buffer.
+     *
+     * @param buffer the buffer
+     * @param from   the index of the first byte to move
+     * @param to     the index the first byte is moved to
+     * @param length the number of bytes to move
+     */
+    public static void moveBytes(ByteBuffer buffer, int from, int to, int length) {
+        if (from == to || length == 0) return;
+        if (to < from) {
+            for (int i = 0; i < length; i++) buffer.putByte(buffer.getByte(from + i), to + i);
+        } else {
+            for (int i = length - 1; i >= 0; i--) buffer.putByte(buffer.getByte(from + i), to + i);
+        }
+    }
+
+    /**
+     * Writes a varint which takes up exactly the given number of bytes, padding it with continuation bytes if it is
+     * shorter, so a length can be written into space reserved before the length was known.
+     *
+     * @param buffer the buffer
+     * @param value  the value, which must fit in the given number of bytes
+     * @param index  the index of the first byte
+     * @param length the number of bytes to write, between 1 and {@link VarIntUtil#MAX_VAR_INT_SIZE}
+     */
+    public static void putPaddedVarInt(ByteBuffer buffer, int value, int index, int length) {
+        for (int i = 0; i < length - 1; i++) {
+            buffer.putByte((value & 0x7F) | 0x80, index + i);
+            value >>>= 7;
+        }
+        buffer.putByte(value, index + length - 1);
+    }
+
+}
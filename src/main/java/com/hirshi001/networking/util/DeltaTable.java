@@ -0,0 +1,183 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.util;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The bodies of the {@link com.hirshi001.networking.packet.DeltaPacket}s a channel sent and received recently, which
+ * later packets of the same type are sent as a delta against. Each packet sent or received with a baseline is given
+ * the next number for its type and protocol.
+ * <p>
+ * Over TCP, packets arrive in order, so each packet is sent against the one before it and the numbers are never sent.
+ * Over UDP, packets may be lost or arrive out of order, so each packet carries its number and is sent against the
+ * latest packet the other side has acknowledged, as long as that packet is one of the last {@link #WINDOW} sent. The
+ * receiving side keeps the last {@link #WINDOW} packets it received, so it still has the baseline when the delta
+ * arrives. Each channel has its own table, which is cleared whenever its TCP connection is established.
+ * <p>
+ * The methods are synchronized since the table is used while encoding and decoding both TCP and UDP packets, and
+ * while handling acknowledgements.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class DeltaTable {
+
+    /**
+     * The number of bodies of each type kept for UDP, which is how far behind the last acknowledged packet may be.
+     */
+    public static final int WINDOW = 16;
+
+    private static class Baselines {
+        final int[] numbers = new int[WINDOW];
+        final byte[][] bodies = new byte[WINDOW][];
+        int next; // the number of the next packet
+        int acknowledged = -1;
+
+        Baselines() {
+            Arrays.fill(numbers, -1);
+        }
+
+        byte[] get(int number) {
+            int slot = number & (WINDOW - 1);
+            return number >= 0 && numbers[slot] == number ? bodies[slot] : null;
+        }
+
+        void put(int number, byte[] body) {
+            int slot = number & (WINDOW - 1);
+            if (numbers[slot] >= number) return; // a newer packet arrived first
+            numbers[slot] = number;
+            bodies[slot] = body;
+        }
+    }
+
+    private final Map<Class<?>, Baselines> tcpSent = new IdentityHashMap<>(), udpSent = new IdentityHashMap<>();
+    private final Map<Class<?>, Baselines> tcpReceived = new IdentityHashMap<>(), udpReceived = new IdentityHashMap<>();
+
+    private static Baselines get(Map<Class<?>, Baselines> map, Class<?> type) {
+        Baselines baselines = map.get(type);
+        if (baselines == null) map.put(type, baselines = new Baselines());
+        return baselines;
+    }
+
+    /**
+     * Gets the number of the packet a packet about to be sent can be sent as a delta against.
+     * @param type the type of the packet
+     * @param reliable whether the packet is sent over TCP
+     * @return the number of the last packet sent over TCP, or of the last packet acknowledged over UDP, or -1 if there
+     * is none
+     */
+    public synchronized int getSentBaseline(Class<?> type, boolean reliable) {
+        Baselines baselines = get(reliable ? tcpSent : udpSent, type);
+        int baseline = reliable ? baselines.next - 1 : baselines.acknowledged;
+        return baselines.get(baseline) != null ? baseline : -1;
+    }
+
+    /**
+     * @param type the type of the packet
+     * @param reliable whether the packet was sent over TCP
+     * @param number the number of the packet
+     * @return the body of a packet sent earlier, or null if it is no longer kept
+     */
+    public synchronized byte[] getSent(Class<?> type, boolean reliable, int number) {
+        return get(reliable ? tcpSent : udpSent, type).get(number);
+    }
+
+    /**
+     * Gets the number {@link #addSent} gives the next packet of a type, so a packet can be written with it before the
+     * frame it is written in is committed.
+     * @param type the type of the packet
+     * @param reliable whether the packet is sent over TCP
+     * @return the number of the next packet sent
+     */
+    public synchronized int getNextSent(Class<?> type, boolean reliable) {
+        return get(reliable ? tcpSent : udpSent, type).next;
+    }
+
+    /**
+     * Keeps the body of a packet which has been sent, so later packets can be sent against it. Must only be called
+     * once the frame the packet was written in is committed, so a frame which is rolled back does not become the
+     * baseline of later packets.
+     * @param type the type of the packet
+     * @param reliable whether the packet is sent over TCP
+     * @param body the body of the packet, which must not be changed afterwards
+     * @return the number of the packet
+     */
+    public synchronized int addSent(Class<?> type, boolean reliable, byte[] body) {
+        Baselines baselines = get(reliable ? tcpSent : udpSent, type);
+        int number = baselines.next++;
+        baselines.put(number, body);
+        return number;
+    }
+
+    /**
+     * Lets later UDP packets be sent against a packet the other side has received.
+     * @param type the type of the packet
+     * @param number the number of the packet
+     */
+    public synchronized void acknowledge(Class<?> type, int number) {
+        Baselines baselines = get(udpSent, type);
+        if (number < baselines.next) baselines.acknowledged = Math.max(baselines.acknowledged, number);
+    }
+
+    /**
+     * Gets the number the next packet received over TCP will be given, so a delta received over TCP is applied to the
+     * body with the number before it.
+     * @param type the type of the packet
+     * @return the number of the next packet received over TCP
+     */
+    public synchronized int getNextReceived(Class<?> type) {
+        return get(tcpReceived, type).next;
+    }
+
+    /**
+     * @param type the type of the packet
+     * @param reliable whether the packet was received over TCP
+     * @param number the number of the packet
+     * @return the body of a packet received earlier, or null if it is no longer kept
+     */
+    public synchronized byte[] getReceived(Class<?> type, boolean reliable, int number) {
+        return get(reliable ? tcpReceived : udpReceived, type).get(number);
+    }
+
+    /**
+     * Keeps the body of a packet received, so later packets can be received against it.
+     * @param type the type of the packet
+     * @param reliable whether the packet was received over TCP
+     * @param number the number the packet was sent with, ignored for TCP where the next number is used
+     * @param body the body of the packet, which must not be changed afterwards
+     */
+    public synchronized void addReceived(Class<?> type, boolean reliable, int number, byte[] body) {
+        Baselines baselines = get(reliable ? tcpReceived : udpReceived, type);
+        if (reliable) number = baselines.next;
+        baselines.next = Math.max(baselines.next, number + 1);
+        baselines.put(number, body);
+    }
+
+    /**
+     * Forgets all the packets sent and received.
+     */
+    public synchronized void clear() {
+        tcpSent.clear();
+        udpSent.clear();
+        tcpReceived.clear();
+        udpReceived.clear();
+    }
+
+}
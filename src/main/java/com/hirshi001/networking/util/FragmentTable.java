@@ -0,0 +1,184 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.util;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.util.defaultpackets.systempackets.FragmentPacket;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * The fragments of UDP datagrams which were too large to send in one piece. When
+ * {@link com.hirshi001.networking.network.channel.ChannelOption#FRAGMENT_UDP_PACKETS} is set, a UDP send buffer larger
+ * than the {@link com.hirshi001.networking.network.channel.ChannelOption#MAX_UDP_PACKET_SIZE} is split into
+ * {@link FragmentPacket}s which each fit in one datagram, instead of being dropped. The receiving side collects the
+ * fragments of each message here and decodes the message once all of them arrived. The fragments are only put back
+ * together when the message is taken, straight into the buffer it is decoded from.
+ * <p>
+ * Lost fragments are not resent, so a message missing a fragment is dropped after the timeout. At most
+ * {@code maxMessages} messages are collected at once, dropping the oldest one when another starts, and a message larger
+ * than {@code maxMessageSize} is dropped as soon as it grows past it, so a peer can not make this table hold more than
+ * about {@code maxMessages * maxMessageSize} bytes. Each channel has its own table, which is cleared whenever its TCP
+ * connection is established.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class FragmentTable {
+
+    /**
+     * The most fragments a message can be split into.
+     */
+    public static final int MAX_FRAGMENTS = 4096;
+
+    /**
+     * The default number of messages collected at once.
+     */
+    public static final int DEFAULT_MAX_MESSAGES = 16;
+
+    /**
+     * The default size of the largest message collected.
+     */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 1 << 20;
+
+    /**
+     * The default time in milliseconds after which a message which is missing fragments is dropped.
+     */
+    public static final long DEFAULT_TIMEOUT = 2000;
+
+    private static class Message {
+        final int id;
+        final byte[][] fragments;
+        final long start;
+        int received, size;
+
+        Message(int id, int count, long start) {
+            this.id = id;
+            this.fragments = new byte[count][];
+            this.start = start;
+        }
+    }
+
+    private final int maxMessages, maxMessageSize;
+    private final long timeout;
+
+    private int nextMessageId;
+    private final List<Message> messages = new ArrayList<>(); // oldest first
+    private final Queue<Message> completed = new ArrayDeque<>();
+
+    /**
+     * Creates a new FragmentTable with the default limits.
+     */
+    public FragmentTable() {
+        this(DEFAULT_MAX_MESSAGES, DEFAULT_MAX_MESSAGE_SIZE, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Creates a new FragmentTable.
+     * @param maxMessages the number of messages collected at once
+     * @param maxMessageSize the size of the largest message collected
+     * @param timeout the time in milliseconds after which a message which is missing fragments is dropped
+     */
+    public FragmentTable(int maxMessages, int maxMessageSize, long timeout) {
+        this.maxMessages = Math.max(1, maxMessages);
+        this.maxMessageSize = maxMessageSize;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return the id of the next message sent in fragments
+     */
+    public synchronized int nextMessageId() {
+        return nextMessageId++ & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Adds a received fragment. Invalid and duplicate fragments are ignored. Once all fragments of a message are
+     * added, the message can be taken with {@link #pollMessage(BufferFactory)}.
+     * @param packet the fragment
+     * @param now the current time in nanoseconds, see {@link System#nanoTime()}
+     * @return whether the fragment completed its message
+     */
+    public synchronized boolean add(FragmentPacket packet, long now) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (now - messages.get(i).start > timeout * 1_000_000L) messages.remove(i);
+        }
+        if (packet.count < 1 || packet.count > MAX_FRAGMENTS || packet.index < 0 || packet.index >= packet.count)
+            return false;
+
+        Message message = null;
+        for (Message m : messages) {
+            if (m.id == packet.messageId) {
+                message = m;
+                break;
+            }
+        }
+        if (message == null) {
+            if (messages.size() == maxMessages) messages.remove(0);
+            messages.add(message = new Message(packet.messageId, packet.count, now));
+        } else if (message.fragments.length != packet.count) {
+            return false;
+        }
+        if (message.fragments[packet.index] != null) return false;
+
+        message.size += packet.data.length;
+        if (message.size > maxMessageSize) {
+            messages.remove(message);
+            return false;
+        }
+        message.fragments[packet.index] = packet.data;
+        if (++message.received < packet.count) return false;
+
+        messages.remove(message);
+        completed.add(message);
+        return true;
+    }
+
+    /**
+     * Takes the next message whose fragments were all added.
+     * @param bufferFactory the factory of the buffer the fragments are put together in
+     * @return the message, which the caller should release once it is decoded, or null if there is none
+     */
+    public synchronized @Nullable ByteBuffer pollMessage(BufferFactory bufferFactory) {
+        Message message = completed.poll();
+        if (message == null) return null;
+        ByteBuffer buffer = bufferFactory.buffer(message.size);
+        for (byte[] fragment : message.fragments) buffer.writeBytes(fragment);
+        return buffer;
+    }
+
+    /**
+     * @return the number of messages which are missing fragments
+     */
+    public synchronized int getPendingCount() {
+        return messages.size();
+    }
+
+    /**
+     * Drops all messages which are missing fragments or have not been taken yet.
+     */
+    public synchronized void clear() {
+        messages.clear();
+        completed.clear();
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util;
+
+/**
+ * Maps floats in a range to integers of a fixed number of bits, so they can be sent in fewer bits than a float
+ * takes up. Values outside the range are clamped to it, and NaN is mapped to the minimum.
+ *
+ * @author Hrishikesh Ingle
+ */
+public final class Quantizer {
+
+    public final float min, max;
+    public final int bits;
+
+    private final long steps;
+    private final double scale, inverse;
+
+    /**
+     * Creates a Quantizer.
+     * @param min the smallest value
+     * @param max the largest value
+     * @param bits the number of bits each value is stored in, between 1 and 32
+     */
+    public Quantizer(float min, float max, int bits) {
+        if (!(max > min)) throw new IllegalArgumentException("max must be greater than min");
+        if (bits < 1 || bits > 32) throw new IllegalArgumentException("bits must be between 1 and 32");
+        this.min = min;
+        this.max = max;
+        this.bits = bits;
+        this.steps = (1L << bits) - 1;
+        this.scale = steps / ((double) max - min);
+        this.inverse = ((double) max - min) / steps;
+    }
+
+    /**
+     * Creates a Quantizer with the fewest bits that still keep values within precision of their original value.
+     * @param min the smallest value
+     * @param max the largest value
+     * @param precision the largest allowed error
+     * @return the Quantizer
+     */
+    public static Quantizer ofPrecision(float min, float max, float precision) {
+        double steps = Math.ceil(((double) max - min) / (2.0 * precision));
+        int bits = Math.max(1, 64 - Long.numberOfLeadingZeros((long) steps));
+        return new Quantizer(min, max, bits);
+    }
+
+    /**
+     * @param value the value
+     * @return the quantized value, between 0 and 2^bits - 1
+     */
+    public long quantize(float value) {
+        if (!(value > min)) return 0; // also catches NaN
+        if (value >= max) return steps;
+        return Math.round((value - (double) min) * scale);
+    }
+
+    /**
+     * @param quantized a value returned by {@link #quantize(float)}
+     * @return the value it stands for
+     */
+    public float dequantize(long quantized) {
+        return (float) (min + quantized * inverse);
+    }
+
+    /**
+     * @return the largest difference between a value in the range and its dequantized value, not counting the
+     * rounding to float
+     */
+    public double maxError() {
+        return inverse / 2;
+    }
+
+    @Override
+    public String toString() {
+        return "Quantizer[" + min + ", " + max + ", " + bits + " bits]";
+    }
+}
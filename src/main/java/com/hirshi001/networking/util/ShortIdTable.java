@@ -0,0 +1,274 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util;
+
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packetregistry.PacketRegistry;
+import com.hirshi001.networking.util.defaultpackets.systempackets.ShortPacketIdsPacket;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The one byte codes a channel uses in place of the packet id and registry id of the packets it sends most often.
+ * The sending side counts how often each packet type is sent, and once a type has been sent {@link #DEFAULT_THRESHOLD}
+ * times it is given a free code. The codes are sent to the other side in a {@link ShortPacketIdsPacket} over TCP, and
+ * are only used over TCP after that packet was written, and over UDP after the other side acknowledged them. Each
+ * channel has its own table, which is cleared whenever its TCP connection is established.
+ * <p>
+ * Once all codes are used, the types without one are ranked against the types holding a code: every threshold sends, a
+ * type without a code takes the code of the least sent type whose code the other side has not acknowledged yet, if it
+ * has been sent more often. The new id is sent over TCP again, so TCP packets written before it still use the old one.
+ * Acknowledged codes are never reassigned, since a UDP packet sent with one could still arrive after the code was given
+ * to another type.
+ * <p>
+ * The sending half is synchronized since it is used while encoding both TCP and UDP packets. The receiving half is
+ * written while decoding TCP packets and may be read while decoding UDP packets at the same time.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class ShortIdTable {
+
+    /**
+     * The number of codes, one for each value of a byte.
+     */
+    public static final int MAX_CODES = 256;
+
+    /**
+     * The default number of times a packet type has to be sent before it is given a code, if one is still free.
+     */
+    public static final int DEFAULT_THRESHOLD = 16;
+
+    private static class Entry {
+        final PacketRegistry registry;
+        final int packetId;
+        int count; // the number of times the type was sent
+        int code = -1;
+
+        Entry(PacketRegistry registry, int packetId) {
+            this.registry = registry;
+            this.packetId = packetId;
+        }
+    }
+
+    private final int threshold, maxCodes;
+    private boolean enabled;
+
+    private final Map<PacketRegistry, Map<Class<?>, Entry>> sent = new IdentityHashMap<>();
+    private final List<Entry> assigned = new ArrayList<>(); // by code
+    private int written; // the codes below this have been written to the TCP stream
+    private int acknowledged; // the codes below this have been acknowledged by the other side
+    private final List<Integer> unacknowledged = new ArrayList<>(); // the codes each unacknowledged packet makes usable over UDP
+
+    private final int[] receivedRegistryIds = new int[MAX_CODES], receivedPacketIds = new int[MAX_CODES];
+    private volatile int received;
+
+    /**
+     * Creates a new ShortIdTable with the {@link #DEFAULT_THRESHOLD}.
+     */
+    public ShortIdTable() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Creates a new ShortIdTable.
+     * @param threshold the number of times a packet type has to be sent before it is given a code
+     */
+    public ShortIdTable(int threshold) {
+        this(threshold, MAX_CODES);
+    }
+
+    /**
+     * Creates a new ShortIdTable which uses at most maxCodes codes.
+     * @param threshold the number of times a packet type has to be sent before it is given a code
+     * @param maxCodes the number of codes to use, at most {@link #MAX_CODES}
+     */
+    public ShortIdTable(int threshold, int maxCodes) {
+        this.threshold = Math.max(1, threshold);
+        this.maxCodes = Math.max(0, Math.min(MAX_CODES, maxCodes));
+    }
+
+    /**
+     * Sets whether packets sent with this table are given codes. Codes received from the other side are used
+     * regardless.
+     * @param enabled whether to give packets codes
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return whether packets sent with this table are given codes
+     */
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Counts a packet which is about to be sent and returns its code, if it has one the other side knows.
+     * @param registry the registry the packet is sent with
+     * @param packet the packet
+     * @param packetId the id of the packet in the registry
+     * @param reliable whether the packet is sent over TCP, in which case codes which were written but not acknowledged yet
+     *                 may be used
+     * @return the code, or -1 if the full ids have to be sent
+     */
+    public synchronized int getCode(PacketRegistry registry, Packet packet, int packetId, boolean reliable) {
+        if (!enabled) return -1;
+        Map<Class<?>, Entry> types = sent.get(registry);
+        if (types == null) sent.put(registry, types = new IdentityHashMap<>());
+        Entry entry = types.get(packet.getClass());
+        if (entry == null) types.put(packet.getClass(), entry = new Entry(registry, packetId));
+
+        entry.count++;
+        if (entry.code == -1) {
+            if (entry.count >= threshold) {
+                if (assigned.size() < maxCodes) {
+                    entry.code = assigned.size();
+                    assigned.add(entry);
+                } else if (entry.count % threshold == 0) {
+                    rerank(entry);
+                }
+            }
+            return -1;
+        }
+        return entry.code < (reliable ? written : acknowledged) ? entry.code : -1;
+    }
+
+    /**
+     * Gives an entry without a code the code of the least sent entry whose code has not been acknowledged, if the entry
+     * was sent more often.
+     */
+    private void rerank(Entry entry) {
+        Entry least = null;
+        for (int i = acknowledged; i < assigned.size(); i++) {
+            Entry other = assigned.get(i);
+            if (least == null || other.count < least.count) least = other;
+        }
+        if (least == null || least.count >= entry.count) return;
+
+        int code = least.code;
+        least.code = -1;
+        entry.code = code;
+        assigned.set(code, entry);
+        // the code is sent again, and acknowledgements of the packets which held the old id must not cover it
+        written = Math.min(written, code);
+        for (int i = 0; i < unacknowledged.size(); i++) {
+            unacknowledged.set(i, Math.min(unacknowledged.get(i), code));
+        }
+    }
+
+    /**
+     * @return whether codes were assigned which have not been sent to the other side yet
+     */
+    public synchronized boolean hasUnsentCodes() {
+        return written < assigned.size();
+    }
+
+    /**
+     * Takes the codes which have not been sent to the other side yet. The returned packet must be written to the TCP
+     * stream before any other packet, since packets written after it may use the codes.
+     * @param multipleRegistries whether the registry ids should be sent, see
+     *                           {@link com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer#supportsMultipleRegistries()}
+     * @return the packet holding the codes, or null if there are none
+     */
+    public synchronized ShortPacketIdsPacket pollUnsentCodes(boolean multipleRegistries) {
+        int count = assigned.size() - written;
+        if (count == 0) return null;
+        int[] registryIds = new int[count], packetIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            Entry entry = assigned.get(written + i);
+            registryIds[i] = multipleRegistries ? entry.registry.getId() : -1;
+            packetIds[i] = entry.packetId;
+        }
+        ShortPacketIdsPacket packet = new ShortPacketIdsPacket(written, registryIds, packetIds);
+        written += count;
+        unacknowledged.add(written);
+        return packet;
+    }
+
+    /**
+     * Lets codes be used over UDP once the other side has received them. The other side acknowledges each
+     * {@link ShortPacketIdsPacket} it receives in order, so each call acknowledges the oldest packet taken with
+     * {@link #pollUnsentCodes(boolean)} which has not been acknowledged yet.
+     * @param count the number of codes the other side has received
+     */
+    public synchronized void acknowledge(int count) {
+        if (unacknowledged.isEmpty()) return;
+        acknowledged = Math.max(acknowledged, Math.min(count, unacknowledged.remove(0)));
+    }
+
+    /**
+     * Stores codes received from the other side.
+     * @param packet the packet holding the codes
+     * @throws IllegalStateException if the codes do not follow the codes received before
+     */
+    public void put(ShortPacketIdsPacket packet) {
+        int first = packet.firstCode, count = packet.packetIds.length;
+        if (first > received || first + count > MAX_CODES)
+            throw new IllegalStateException("Short packet ids " + first + " to " + (first + count - 1) + " do not follow the " + received + " received before");
+        System.arraycopy(packet.registryIds, 0, receivedRegistryIds, first, count);
+        System.arraycopy(packet.packetIds, 0, receivedPacketIds, first, count);
+        received = Math.max(received, first + count); // publish the ids after they are written
+    }
+
+    /**
+     * @return the number of codes received from the other side
+     */
+    public int getReceivedCount() {
+        return received;
+    }
+
+    /**
+     * @param code a code received from the other side
+     * @return the packet id the code stands for
+     * @throws IllegalStateException if the code has not been received
+     */
+    public int getPacketId(int code) {
+        checkReceived(code);
+        return receivedPacketIds[code];
+    }
+
+    /**
+     * @param code a code received from the other side
+     * @return the registry id the code stands for, or -1 if it was sent without one
+     * @throws IllegalStateException if the code has not been received
+     */
+    public int getRegistryId(int code) {
+        checkReceived(code);
+        return receivedRegistryIds[code];
+    }
+
+    private void checkReceived(int code) {
+        if (code < 0 || code >= received) throw new IllegalStateException("No packet id has been received for short id " + code);
+    }
+
+    /**
+     * Forgets all codes sent and received, and the counts of the packets sent.
+     */
+    public synchronized void clear() {
+        sent.clear();
+        assigned.clear();
+        written = 0;
+        acknowledged = 0;
+        unacknowledged.clear();
+        received = 0;
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The strings sent and received over the TCP connection of a channel, so a string only has to be sent in full the
+ * first time. The sending side assigns each new string the next index and sends the index along with the string; after
+ * that it only sends the index, which the receiving side looks up in the strings it has received. Each channel has its
+ * own table, which is cleared whenever its TCP connection is established.
+ * <p>
+ * The sending half is used while encoding and the receiving half while decoding, so the two halves may be used from
+ * different threads, but each half only from one thread at a time.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class StringTable {
+
+    /**
+     * The default number of strings each side of a table holds. Strings sent after the table is full are sent in full
+     * each time.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final Map<String, Integer> sent = new HashMap<>();
+    private final List<String> received = new ArrayList<>();
+
+    /**
+     * Creates a new StringTable with the {@link #DEFAULT_CAPACITY}.
+     */
+    public StringTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new StringTable.
+     * @param capacity the number of strings each side of the table holds
+     */
+    public StringTable(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the number of strings each side of the table holds
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the index of a string which has already been sent.
+     * @param s the string
+     * @return the index, or -1 if the string has not been sent
+     */
+    public int indexOf(String s) {
+        Integer index = sent.get(s);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the index {@link #add(String)} assigns next, so a string can be written with it before the frame it is
+     * written in is committed.
+     * @return the index, or -1 if the table is full
+     */
+    public int nextIndex() {
+        return sent.size() >= capacity ? -1 : sent.size();
+    }
+
+    /**
+     * Assigns the next index to a string which has been sent for the first time. Must only be called once the frame
+     * the string was written in is committed, so a frame which is rolled back does not leave the two sides of the
+     * table out of step.
+     * @param s the string
+     * @return the index, or -1 if the table is full
+     */
+    public int add(String s) {
+        if (sent.size() >= capacity) return -1;
+        int index = sent.size();
+        sent.put(s, index);
+        return index;
+    }
+
+    /**
+     * Stores a string received along with its index.
+     * @param index the index the sending side assigned
+     * @param s the string
+     */
+    public void put(int index, String s) {
+        if (index < 0 || index >= capacity) throw new IndexOutOfBoundsException("String table index " + index + " is out of bounds");
+        while (received.size() <= index) received.add(null);
+        received.set(index, s);
+    }
+
+    /**
+     * Returns a string which was received earlier.
+     * @param index the index the sending side assigned
+     * @return the string, or null if no string has been received for the index
+     */
+    public String get(int index) {
+        return index >= 0 && index < received.size() ? received.get(index) : null;
+    }
+
+    /**
+     * Forgets all strings sent and received.
+     */
+    public void clear() {
+        sent.clear();
+        received.clear();
+    }
+
+}
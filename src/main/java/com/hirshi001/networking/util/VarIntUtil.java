@@ -0,0 +1,194 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+
+/**
+ * A utility class for writing and reading variable length integers (LEB128 style varints) and for zigzag encoding
+ * signed values so that small negative numbers also take up few bytes.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class VarIntUtil {
+
+    /**
+     * The maximum number of bytes an int can take up when written as a varint.
+     */
+    public static final int MAX_VAR_INT_SIZE = 5;
+
+    /**
+     * The maximum number of bytes a long can take up when written as a varint.
+     */
+    public static final int MAX_VAR_LONG_SIZE = 10;
+
+    /**
+     * Writes the value as an unsigned varint.
+     * @param out the buffer to write to
+     * @param value the value to write
+     */
+    public static void writeVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     * @param in the buffer to read from
+     * @return the value read
+     * @throws IllegalArgumentException if the varint is longer than {@link #MAX_VAR_INT_SIZE} bytes
+     */
+    public static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("VarInt is too long");
+    }
+
+    /**
+     * Gets an unsigned varint at the given index without changing the reader index. The varint should be known to
+     * be complete, see {@link #varIntLength(ByteBuffer, int, int)}.
+     * @param in the buffer to read from
+     * @param index the index of the first byte of the varint
+     * @return the value read
+     */
+    public static int getVarInt(ByteBuffer in, int index) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.getByte(index++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("VarInt is too long");
+    }
+
+    /**
+     * Finds the number of bytes the varint starting at index takes up, without changing the reader index.
+     * @param in the buffer to look in
+     * @param index the index of the first byte of the varint
+     * @param limit the index after the last byte which may be looked at
+     * @return the number of bytes the varint takes up, or -1 if the varint is not complete before limit
+     * @throws IllegalArgumentException if the varint is longer than {@link #MAX_VAR_INT_SIZE} bytes
+     */
+    public static int varIntLength(ByteBuffer in, int index, int limit) {
+        for (int i = 0; i < MAX_VAR_INT_SIZE; i++) {
+            if (index + i >= limit) return -1;
+            if (in.getByte(index + i) >= 0) return i + 1;
+        }
+        throw new IllegalArgumentException("VarInt is too long");
+    }
+
+    /**
+     * Returns the number of bytes the value takes up when written as an unsigned varint.
+     * @param value the value
+     * @return the number of bytes, between 1 and {@link #MAX_VAR_INT_SIZE}
+     */
+    public static int varIntSize(int value) {
+        if ((value & (~0 << 7)) == 0) return 1;
+        if ((value & (~0 << 14)) == 0) return 2;
+        if ((value & (~0 << 21)) == 0) return 3;
+        if ((value & (~0 << 28)) == 0) return 4;
+        return 5;
+    }
+
+    /**
+     * Writes the value as an unsigned varint.
+     * @param out the buffer to write to
+     * @param value the value to write
+     */
+    public static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     * @param in the buffer to read from
+     * @return the value read
+     * @throws IllegalArgumentException if the varint is longer than {@link #MAX_VAR_LONG_SIZE} bytes
+     */
+    public static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("VarLong is too long");
+    }
+
+    /**
+     * Returns the number of bytes the value takes up when written as an unsigned varint.
+     * @param value the value
+     * @return the number of bytes, between 1 and {@link #MAX_VAR_LONG_SIZE}
+     */
+    public static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Maps signed ints to unsigned ints so that numbers with a small absolute value have a small encoded value
+     * (0 -> 0, -1 -> 1, 1 -> 2, -2 -> 3, ...).
+     * @param value the signed value
+     * @return the zigzag encoded value
+     */
+    public static int encodeZigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Reverses {@link #encodeZigZag(int)}.
+     * @param value the zigzag encoded value
+     * @return the signed value
+     */
+    public static int decodeZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Maps signed longs to unsigned longs, see {@link #encodeZigZag(int)}.
+     * @param value the signed value
+     * @return the zigzag encoded value
+     */
+    public static long encodeZigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Reverses {@link #encodeZigZag(long)}.
+     * @param value the zigzag encoded value
+     * @return the signed value
+     */
+    public static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
@@ -16,7 +16,11 @@
 
 package com.hirshi001.networking.util.defaultpackets.arraypackets;
 
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.util.BooleanCompression;
+
 import java.lang.reflect.Array;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A utility class that contains methods for working with arrays, mainly used for array packets but
@@ -48,6 +52,323 @@ public class ArrayUtil {
         return builder.toString();
     }
 
+    // Bulk copies, used by the array packets. The values are converted to bytes in a plain loop over a byte[] chunk
+    // which is then written with a single call, instead of making one call on the buffer per value.
+
+    /**
+     * The largest number of bytes converted at once.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final int SHORT = 0, CHAR = 1, INT = 2, FLOAT = 3, LONG = 4, DOUBLE = 5;
+    private static final int[] ELEMENT_SIZES = {2, 2, 4, 4, 8, 8};
+
+    // one spare chunk, a new one is only created when arrays are copied on several threads at once
+    private static final AtomicReference<byte[]> spareChunk = new AtomicReference<>();
+
+    /**
+     * Writes the shorts in bulk, in big endian order.
+     * @param out the buffer to write to
+     * @param values the values to write
+     */
+    public static void writeShorts(ByteBuffer out, short[] values) {
+        write(out, SHORT, values, values.length);
+    }
+
+    /**
+     * Reads shorts written by {@link #writeShorts(ByteBuffer, short[])} into the array.
+     * @param in the buffer to read from
+     * @param values the array to fill
+     */
+    public static void readShorts(ByteBuffer in, short[] values) {
+        read(in, SHORT, values, values.length);
+    }
+
+    /**
+     * Writes the chars in bulk, in big endian order.
+     * @param out the buffer to write to
+     * @param values the values to write
+     */
+    public static void writeChars(ByteBuffer out, char[] values) {
+        write(out, CHAR, values, values.length);
+    }
+
+    /**
+     * Reads chars written by {@link #writeChars(ByteBuffer, char[])} into the array.
+     * @param in the buffer to read from
+     * @param values the array to fill
+     */
+    public static void readChars(ByteBuffer in, char[] values) {
+        read(in, CHAR, values, values.length);
+    }
+
+    /**
+     * Writes the chars (stored in ints, like in CharArrayPacket) in bulk, in big endian order.
+     * @param out the buffer to write to
+     * @param values the values to write
+     */
+    public static void writeChars(ByteBuffer out, int[] values) {
+        write(out, CHAR, values, values.length);
+    }
+
+    /**
+     * Reads chars (stored in ints, like in CharArrayPacket) written by {@link #writeChars(ByteBuffer, int[])} into the array.
+     * @param in the buffer to read from
+     * @param values the array to fill
+     */
+    public static void readChars(ByteBuffer in, int[] values) {
+        read(in, CHAR, values, values.length);
+    }
 
+    /**
+     * Writes the ints in bulk, in big endian order.
+     * @param out the buffer to write to
+     * @param values the values to write
+     */
+    public static void writeInts(ByteBuffer out, int[] values) {
+        write(out, INT, values, values.length);
+    }
+
+    /**
+     * Reads ints written by {@link #writeInts(ByteBuffer, int[])} into the array.
+     * @param in the buffer to read from
+     * @param values the array to fill
+     */
+    public static void readInts(ByteBuffer in, int[] values) {
+        read(in, INT, values, values.length);
+    }
+
+    /**
+     * Writes the floats in bulk, in big endian order.
+     * @param out the buffer to write to
+     * @param values the values to write
+     */
+    public static void writeFloats(ByteBuffer out, float[] values) {
+        write(out, FLOAT, values, values.length);
+    }
+
+    /**
+     * Reads floats written by {@link #writeFloats(ByteBuffer, float[])} into the array.
+     * @param in the buffer to read from
+     * @param values the array to fill
+     */
+    public static void readFloats(ByteBuffer in, float[] values) {
+        read(in, FLOAT, values, values.length);
+    }
+
+    /**
+     * Writes the longs in bulk, in big endian order.
+     * @param out the buffer to write to
+     * @param values the values to write
+     */
+    public static void writeLongs(ByteBuffer out, long[] values) {
+        write(out, LONG, values, values.length);
+    }
+
+    /**
+     * Reads longs written by {@link #writeLongs(ByteBuffer, long[])} into the array.
+     * @param in the buffer to read from
+     * @param values the array to fill
+     */
+    public static void readLongs(ByteBuffer in, long[] values) {
+        read(in, LONG, values, values.length);
+    }
+
+    /**
+     * Writes the doubles in bulk, in big endian order.
+     * @param out the buffer to write to
+     * @param values the values to write
+     */
+    public static void writeDoubles(ByteBuffer out, double[] values) {
+        write(out, DOUBLE, values, values.length);
+    }
+
+    /**
+     * Reads doubles written by {@link #writeDoubles(ByteBuffer, double[])} into the array.
+     * @param in the buffer to read from
+     * @param values the array to fill
+     */
+    public static void readDoubles(ByteBuffer in, double[] values) {
+        read(in, DOUBLE, values, values.length);
+    }
+
+    /**
+     * Writes the booleans as bits, the first boolean in the lowest bit of the first byte, in the same format as
+     * {@link BooleanCompression#compressBooleanArray(boolean[])} but without creating a byte array. Every 64 booleans
+     * are written with a single writeLong.
+     * @param out the buffer to write to
+     * @param values the values to write
+     */
+    public static void writeBooleans(ByteBuffer out, boolean[] values) {
+        int length = values.length;
+        out.ensureWritable((length + 7) / 8);
+        int i = 0;
+        for (; i + 64 <= length; i += 64) out.writeLong(Long.reverseBytes(BooleanCompression.packBooleans(values, i, 64)));
+        for (; i < length; i += 8) out.writeByte((int) BooleanCompression.packBooleans(values, i, Math.min(8, length - i)));
+    }
+
+    /**
+     * Reads booleans written by {@link #writeBooleans(ByteBuffer, boolean[])} into the array.
+     * @param in the buffer to read from
+     * @param values the array to fill
+     */
+    public static void readBooleans(ByteBuffer in, boolean[] values) {
+        int length = values.length;
+        int i = 0;
+        for (; i + 64 <= length; i += 64) BooleanCompression.unpackBooleans(Long.reverseBytes(in.readLong()), values, i, 64);
+        for (; i < length; i += 8) BooleanCompression.unpackBooleans(in.readByte(), values, i, Math.min(8, length - i));
+    }
+
+    private static void write(ByteBuffer out, int type, Object values, int length) {
+        int size = ELEMENT_SIZES[type];
+        out.ensureWritable(size * length);
+        byte[] chunk = obtainChunk();
+        try {
+            int perChunk = CHUNK_SIZE / size;
+            for (int start = 0; start < length; start += perChunk) {
+                int count = Math.min(length - start, perChunk);
+                toBytes(type, values, start, count, chunk);
+                out.writeBytes(chunk, 0, count * size);
+            }
+        } finally {
+            spareChunk.set(chunk);
+        }
+    }
+
+    private static void read(ByteBuffer in, int type, Object values, int length) {
+        int size = ELEMENT_SIZES[type];
+        byte[] chunk = obtainChunk();
+        try {
+            int perChunk = CHUNK_SIZE / size;
+            for (int start = 0; start < length; start += perChunk) {
+                int count = Math.min(length - start, perChunk);
+                in.readBytes(chunk, 0, count * size);
+                fromBytes(type, values, start, count, chunk);
+            }
+        } finally {
+            spareChunk.set(chunk);
+        }
+    }
+
+    private static byte[] obtainChunk() {
+        byte[] chunk = spareChunk.getAndSet(null);
+        return chunk == null ? new byte[CHUNK_SIZE] : chunk;
+    }
+
+    /**
+     * Converts count values starting at start into the chunk. The type is switched on once per chunk, so each loop
+     * only converts one kind of value.
+     */
+    private static void toBytes(int type, Object values, int start, int count, byte[] chunk) {
+        switch (type) {
+            case SHORT: {
+                short[] array = (short[]) values;
+                for (int i = 0; i < count; i++) putShort(chunk, i * 2, array[start + i]);
+                break;
+            }
+            case CHAR: {
+                if (values instanceof char[]) {
+                    char[] array = (char[]) values;
+                    for (int i = 0; i < count; i++) putShort(chunk, i * 2, array[start + i]);
+                } else {
+                    int[] array = (int[]) values;
+                    for (int i = 0; i < count; i++) putShort(chunk, i * 2, array[start + i]);
+                }
+                break;
+            }
+            case INT: {
+                int[] array = (int[]) values;
+                for (int i = 0; i < count; i++) putInt(chunk, i * 4, array[start + i]);
+                break;
+            }
+            case FLOAT: {
+                float[] array = (float[]) values;
+                for (int i = 0; i < count; i++) putInt(chunk, i * 4, Float.floatToRawIntBits(array[start + i]));
+                break;
+            }
+            case LONG: {
+                long[] array = (long[]) values;
+                for (int i = 0; i < count; i++) putLong(chunk, i * 8, array[start + i]);
+                break;
+            }
+            default: {
+                double[] array = (double[]) values;
+                for (int i = 0; i < count; i++) putLong(chunk, i * 8, Double.doubleToRawLongBits(array[start + i]));
+                break;
+            }
+        }
+    }
+
+    /**
+     * Converts count values from the chunk into the array starting at start, see {@link #toBytes}.
+     */
+    private static void fromBytes(int type, Object values, int start, int count, byte[] chunk) {
+        switch (type) {
+            case SHORT: {
+                short[] array = (short[]) values;
+                for (int i = 0; i < count; i++) array[start + i] = (short) getShort(chunk, i * 2);
+                break;
+            }
+            case CHAR: {
+                if (values instanceof char[]) {
+                    char[] array = (char[]) values;
+                    for (int i = 0; i < count; i++) array[start + i] = (char) getShort(chunk, i * 2);
+                } else {
+                    int[] array = (int[]) values;
+                    for (int i = 0; i < count; i++) array[start + i] = getShort(chunk, i * 2);
+                }
+                break;
+            }
+            case INT: {
+                int[] array = (int[]) values;
+                for (int i = 0; i < count; i++) array[start + i] = getInt(chunk, i * 4);
+                break;
+            }
+            case FLOAT: {
+                float[] array = (float[]) values;
+                for (int i = 0; i < count; i++) array[start + i] = Float.intBitsToFloat(getInt(chunk, i * 4));
+                break;
+            }
+            case LONG: {
+                long[] array = (long[]) values;
+                for (int i = 0; i < count; i++) array[start + i] = getLong(chunk, i * 8);
+                break;
+            }
+            default: {
+                double[] array = (double[]) values;
+                for (int i = 0; i < count; i++) array[start + i] = Double.longBitsToDouble(getLong(chunk, i * 8));
+                break;
+            }
+        }
+    }
+
+    private static void putShort(byte[] bytes, int index, int value) {
+        bytes[index] = (byte) (value >>> 8);
+        bytes[index + 1] = (byte) value;
+    }
+
+    private static int getShort(byte[] bytes, int index) {
+        return (bytes[index] & 0xFF) << 8 | (bytes[index + 1] & 0xFF);
+    }
+
+    private static void putInt(byte[] bytes, int index, int value) {
+        bytes[index] = (byte) (value >>> 24);
+        bytes[index + 1] = (byte) (value >>> 16);
+        bytes[index + 2] = (byte) (value >>> 8);
+        bytes[index + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] bytes, int index) {
+        return bytes[index] << 24 | (bytes[index + 1] & 0xFF) << 16 | (bytes[index + 2] & 0xFF) << 8 | (bytes[index + 3] & 0xFF);
+    }
+
+    private static void putLong(byte[] bytes, int index, long value) {
+        putInt(bytes, index, (int) (value >>> 32));
+        putInt(bytes, index + 4, (int) value);
+    }
+
+    private static long getLong(byte[] bytes, int index) {
+        return (long) getInt(bytes, index) << 32 | getInt(bytes, index + 4) & 0xFFFFFFFFL;
+    }
 
 }
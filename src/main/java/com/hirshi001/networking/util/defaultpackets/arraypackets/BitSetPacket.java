@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util.defaultpackets.arraypackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+
+import java.util.BitSet;
+
+/**
+ * A packet that contains a {@link BitSet} and the number of booleans in it, written in the same format as
+ * {@link BooleanArrayPacket}. When the packet is read, the booleans are read into the BitSet it already has, so a
+ * reused packet does not allocate.
+ *
+ * @author Hrishikesh Ingle
+ */
+@SuppressWarnings("unused")
+public class BitSetPacket extends Packet {
+
+    public BitSet bits;
+
+    /**
+     * The number of booleans, bits at or after it are not written.
+     */
+    public int length;
+
+    /**
+     * The encoding to write the BitSet with, {@link BooleanArrayUtil#AUTO} to pick the smallest one. Set to the
+     * encoding the BitSet was written with when the packet is read.
+     */
+    public int encoding = BooleanArrayUtil.AUTO;
+
+    /**
+     * Creates a new BitSetPacket with an empty BitSet.
+     */
+    public BitSetPacket() {
+        this(new BitSet(), 0);
+    }
+
+    /**
+     * Creates a new BitSetPacket with a reference to the BitSet argument.
+     * @param bits the BitSet to reference
+     * @param length the number of booleans
+     */
+    public BitSetPacket(BitSet bits, int length) {
+        super();
+        this.bits = bits;
+        this.length = length;
+    }
+
+    @Override
+    public int estimateSize() {
+        return BooleanArrayUtil.maxSize(length); // an upper bound unless a larger encoding is forced
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        BooleanArrayUtil.write(out, bits, length, encoding);
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        encoding = BooleanArrayUtil.getEncoding(in);
+        length = BooleanArrayUtil.read(in, bits);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) return false;
+        if (obj == this) return true;
+        if (!(obj instanceof BitSetPacket)) return false;
+        BitSetPacket packet = (BitSetPacket) obj;
+        return length == packet.length && bits.equals(packet.bits);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " : " + length + " " + bits;
+    }
+}
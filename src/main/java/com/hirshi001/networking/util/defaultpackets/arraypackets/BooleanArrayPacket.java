@@ -18,12 +18,13 @@ package com.hirshi001.networking.util.defaultpackets.arraypackets;
 
 import com.hirshi001.buffer.buffers.ByteBuffer;
 import com.hirshi001.networking.packet.Packet;
-import com.hirshi001.networking.util.BooleanCompression;
 
 import java.util.Arrays;
 
 /**
- * A packet that contains an array of booleans.
+ * A packet that contains an array of booleans, written with the encoding from {@link BooleanArrayUtil} which takes up
+ * the fewest bytes. When the packet is read, the booleans are read into the array it already has if the length
+ * matches, so a reused packet does not allocate.
  *
  * @author Hrishikesh Ingle
  */
@@ -32,6 +33,12 @@ public class BooleanArrayPacket extends Packet {
 
     public boolean[] array;
 
+    /**
+     * The encoding to write the array with, {@link BooleanArrayUtil#AUTO} to pick the smallest one. Set to the
+     * encoding the array was written with when the packet is read.
+     */
+    public int encoding = BooleanArrayUtil.AUTO;
+
     /**
      * Creates a new BooleanArrayPacket without instantiating the array.
      */
@@ -48,27 +55,22 @@ public class BooleanArrayPacket extends Packet {
         this.array = array;
     }
 
-
+    @Override
+    public int estimateSize() {
+        return array == null ? -1 : BooleanArrayUtil.maxSize(array.length); // an upper bound unless a larger encoding is forced
+    }
 
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
-        byte[] compression = BooleanCompression.compressBooleanArray(array);
-        out.writeInt(array.length);
-        out.writeBytes(compression);
+        BooleanArrayUtil.write(out, array, encoding);
     }
 
     @Override
     public void readBytes(ByteBuffer in) {
         super.readBytes(in);
-        int length = in.readInt();
-        if(length==0){
-            array = new boolean[0];
-            return;
-        }
-        byte[] compression = new byte[(length-1)/8+1];
-        in.readBytes(compression);
-        array = BooleanCompression.decompressBooleans(compression, length);
+        encoding = BooleanArrayUtil.getEncoding(in);
+        array = BooleanArrayUtil.read(in, array);
     }
 
     @Override
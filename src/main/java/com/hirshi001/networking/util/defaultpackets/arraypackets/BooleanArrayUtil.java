@@ -0,0 +1,336 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util.defaultpackets.arraypackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.util.BitReader;
+import com.hirshi001.networking.util.BitWriter;
+import com.hirshi001.networking.util.VarIntUtil;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Writes boolean arrays and {@link BitSet}s with the smallest of three encodings, picked per array:
+ * <ul>
+ *     <li>{@link #BITS}: the length as an int, then one bit per boolean, 64 at a time. This is the format
+ *     {@link BooleanArrayPacket} has always used.</li>
+ *     <li>{@link #RUNS}: the lengths of the runs of equal booleans as varints, for arrays that are mostly true or
+ *     mostly false in long stretches</li>
+ *     <li>{@link #SPARSE}: the gaps between the booleans that have the less common value as varints, for arrays with
+ *     a few scattered booleans that differ from the rest</li>
+ * </ul>
+ * The other encodings write the complement of the length, which is negative, so they can be told apart from
+ * {@link #BITS}, followed by the encoding and the value of the first run or of the scattered booleans.
+ * <p>
+ * Arrays and BitSets are read into one the caller supplies, so reading does not have to allocate.
+ *
+ * @author Hrishikesh Ingle
+ */
+public final class BooleanArrayUtil {
+
+    /**
+     * Lets {@link #write(ByteBuffer, boolean[], int)} pick the encoding which takes up the fewest bytes.
+     */
+    public static final int AUTO = -1;
+
+    public static final int BITS = 0;
+    public static final int RUNS = 1;
+    public static final int SPARSE = 2;
+
+    private BooleanArrayUtil() {
+    }
+
+    /**
+     * Returns the number of bytes {@link #BITS} writes, which is the most {@link #AUTO} writes.
+     * @param length the number of booleans
+     * @return the number of bytes
+     */
+    public static int maxSize(int length) {
+        return 4 + (length + 7) / 8;
+    }
+
+    /**
+     * Finds the encoding which writes the array in the fewest bytes.
+     * @param array the array
+     * @return the encoding
+     */
+    public static int chooseEncoding(boolean[] array) {
+        Sizes sizes = new Sizes();
+        int start = 0;
+        for (int i = 1; i <= array.length; i++) {
+            if (i == array.length || array[i] != array[start]) {
+                sizes.run(array[start], i - start);
+                start = i;
+            }
+        }
+        return sizes.choose(array.length);
+    }
+
+    /**
+     * Finds the encoding which writes the BitSet in the fewest bytes.
+     * @param bits the BitSet
+     * @param length the number of booleans to write, bits at or after it are ignored
+     * @return the encoding
+     */
+    public static int chooseEncoding(BitSet bits, int length) {
+        Sizes sizes = new Sizes();
+        for (int start = 0; start < length; ) {
+            boolean value = bits.get(start);
+            int end = Math.min(length, value ? bits.nextClearBit(start) : nextSetBit(bits, start, length));
+            sizes.run(value, end - start);
+            start = end;
+        }
+        return sizes.choose(length);
+    }
+
+    /**
+     * Writes an array.
+     * @param out the buffer to write to
+     * @param array the array
+     * @param encoding the encoding, or {@link #AUTO} to pick the smallest one
+     */
+    public static void write(ByteBuffer out, boolean[] array, int encoding) {
+        if (encoding == AUTO) encoding = chooseEncoding(array);
+        int length = array.length;
+        if (encoding == BITS) {
+            out.writeInt(length);
+            BitWriter writer = new BitWriter(out);
+            writer.writeBooleans(array, 0, length);
+            writer.flush();
+            return;
+        }
+        out.writeInt(~length);
+        out.writeByte(encoding);
+        if (encoding == RUNS) {
+            out.writeBoolean(length > 0 && array[0]);
+            int start = 0;
+            for (int i = 1; i <= length; i++) {
+                if (i == length || array[i] != array[start]) {
+                    VarIntUtil.writeVarInt(out, i - start);
+                    start = i;
+                }
+            }
+        } else if (encoding == SPARSE) {
+            int trues = 0;
+            for (boolean b : array) trues += b ? 1 : 0;
+            boolean value = trues <= length - trues;
+            out.writeBoolean(value);
+            VarIntUtil.writeVarInt(out, value ? trues : length - trues);
+            int previous = -1;
+            for (int i = 0; i < length; i++) {
+                if (array[i] == value) {
+                    VarIntUtil.writeVarInt(out, i - previous - 1);
+                    previous = i;
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+    }
+
+    /**
+     * Writes the first length bits of a BitSet, in the same format as an array.
+     * @param out the buffer to write to
+     * @param bits the BitSet
+     * @param length the number of booleans to write
+     * @param encoding the encoding, or {@link #AUTO} to pick the smallest one
+     */
+    public static void write(ByteBuffer out, BitSet bits, int length, int encoding) {
+        if (encoding == AUTO) encoding = chooseEncoding(bits, length);
+        if (encoding == BITS) {
+            out.writeInt(length);
+            BitWriter writer = new BitWriter(out);
+            long word = 0;
+            int wordStart = 0;
+            for (int i = nextSetBit(bits, 0, length); i < length; i = nextSetBit(bits, i + 1, length)) {
+                while (i - wordStart >= 64) {
+                    writer.write(word, 64);
+                    word = 0;
+                    wordStart += 64;
+                }
+                word |= 1L << (i - wordStart);
+            }
+            for (; wordStart < length; wordStart += 64) {
+                writer.write(word, Math.min(64, length - wordStart));
+                word = 0;
+            }
+            writer.flush();
+            return;
+        }
+        out.writeInt(~length);
+        out.writeByte(encoding);
+        if (encoding == RUNS) {
+            out.writeBoolean(length > 0 && bits.get(0));
+            for (int start = 0; start < length; ) {
+                int end = Math.min(length, bits.get(start) ? bits.nextClearBit(start) : nextSetBit(bits, start, length));
+                VarIntUtil.writeVarInt(out, end - start);
+                start = end;
+            }
+        } else if (encoding == SPARSE) {
+            int trues = bits.length() <= length ? bits.cardinality() : bits.get(0, length).cardinality();
+            boolean value = trues <= length - trues;
+            out.writeBoolean(value);
+            VarIntUtil.writeVarInt(out, value ? trues : length - trues);
+            int previous = -1;
+            for (int i = next(bits, 0, length, value); i < length; i = next(bits, i + 1, length, value)) {
+                VarIntUtil.writeVarInt(out, i - previous - 1);
+                previous = i;
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+    }
+
+    /**
+     * Returns the encoding of the array or BitSet at the reader index, without reading it.
+     * @param in the buffer to read from
+     * @return the encoding
+     */
+    public static int getEncoding(ByteBuffer in) {
+        return in.getInt(in.readerIndex()) >= 0 ? BITS : in.getByte(in.readerIndex() + 4);
+    }
+
+    /**
+     * Reads an array written by {@link #write(ByteBuffer, boolean[], int)}.
+     * @param in the buffer to read from
+     * @param array the array to read into, used if its length matches, may be null
+     * @return the array argument, or a new array if it was null or the length did not match
+     */
+    public static boolean[] read(ByteBuffer in, boolean[] array) {
+        int length = in.readInt();
+        int encoding = BITS;
+        if (length < 0) {
+            length = ~length;
+            encoding = in.readByte();
+        }
+        if (array == null || array.length != length) array = new boolean[length];
+
+        if (encoding == BITS) {
+            BitReader reader = new BitReader(in);
+            reader.readBooleans(array, 0, length);
+            reader.finish();
+        } else if (encoding == RUNS) {
+            boolean value = in.readBoolean();
+            for (int start = 0; start < length; value = !value) {
+                int end = start + checkRun(VarIntUtil.readVarInt(in), length - start);
+                Arrays.fill(array, start, end, value);
+                start = end;
+            }
+        } else if (encoding == SPARSE) {
+            boolean value = in.readBoolean();
+            Arrays.fill(array, !value);
+            int count = checkRun(VarIntUtil.readVarInt(in), length);
+            for (int i = 0, index = -1; i < count; i++) {
+                index += checkRun(VarIntUtil.readVarInt(in), length - index - 2) + 1;
+                array[index] = value;
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+        return array;
+    }
+
+    /**
+     * Reads an array or BitSet written by this class into a BitSet, which is cleared first.
+     * @param in the buffer to read from
+     * @param bits the BitSet to read into
+     * @return the number of booleans read
+     */
+    public static int read(ByteBuffer in, BitSet bits) {
+        int length = in.readInt();
+        int encoding = BITS;
+        if (length < 0) {
+            length = ~length;
+            encoding = in.readByte();
+        }
+        bits.clear();
+
+        if (encoding == BITS) {
+            BitReader reader = new BitReader(in);
+            for (int wordStart = 0; wordStart < length; wordStart += 64) {
+                for (long word = reader.read(Math.min(64, length - wordStart)); word != 0; word &= word - 1) {
+                    bits.set(wordStart + Long.numberOfTrailingZeros(word));
+                }
+            }
+            reader.finish();
+        } else if (encoding == RUNS) {
+            boolean value = in.readBoolean();
+            for (int start = 0; start < length; value = !value) {
+                int end = start + checkRun(VarIntUtil.readVarInt(in), length - start);
+                if (value) bits.set(start, end);
+                start = end;
+            }
+        } else if (encoding == SPARSE) {
+            boolean value = in.readBoolean();
+            if (!value) bits.set(0, length);
+            int count = checkRun(VarIntUtil.readVarInt(in), length);
+            for (int i = 0, index = -1; i < count; i++) {
+                index += checkRun(VarIntUtil.readVarInt(in), length - index - 2) + 1;
+                bits.set(index, value);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+        return length;
+    }
+
+    /**
+     * Checks a run length or gap read from the buffer, so a corrupt or malicious array cannot index past its length.
+     */
+    private static int checkRun(int run, int remaining) {
+        if (run < 0 || run > remaining) throw new IllegalArgumentException("Invalid boolean run of " + run + " with " + remaining + " booleans left");
+        return run;
+    }
+
+        private static int nextSetBit(BitSet bits, int from, int length) {
+        int next = bits.nextSetBit(from);
+        return next < 0 ? length : next;
+    }
+
+    private static int next(BitSet bits, int from, int length, boolean value) {
+        return value ? nextSetBit(bits, from, length) : Math.min(length, bits.nextClearBit(from));
+    }
+
+    /**
+     * Adds up the size of each encoding from the runs of equal booleans.
+     */
+    private static final class Sizes {
+        private long runs = 2, trues, falses;
+        private final long[] sparse = {2, 2}; // indexed by the value of the scattered booleans
+        private int previousRun;
+
+        void run(boolean value, int length) {
+            runs += VarIntUtil.varIntSize(length);
+            // the first boolean of the run is previousRun after the last one of the same value, the rest directly after
+            sparse[value ? 1 : 0] += VarIntUtil.varIntSize(previousRun) + length - 1;
+            if (value) trues += length;
+            else falses += length;
+            previousRun = length;
+        }
+
+        int choose(int length) {
+            long bits = (length + 7) / 8;
+            long sparseSize = trues <= falses
+                    ? sparse[1] + VarIntUtil.varIntSize((int) trues)
+                    : sparse[0] + VarIntUtil.varIntSize((int) falses);
+            if (bits <= runs && bits <= sparseSize) return BITS;
+            return runs <= sparseSize ? RUNS : SPARSE;
+        }
+    }
+
+}
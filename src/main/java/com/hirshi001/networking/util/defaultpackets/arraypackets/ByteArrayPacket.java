@@ -51,18 +51,19 @@ public class ByteArrayPacket extends Packet {
     public void readBytes(ByteBuffer buf) {
         super.readBytes(buf);
         array = new byte[buf.readInt()];
-        for (int i = 0; i < array.length; i++) {
-            array[i] = buf.readByte();
-        }
+        buf.readBytes(array);
+    }
+
+    @Override
+    public int estimateSize() {
+        return array == null ? -1 : 4 + array.length;
     }
 
     @Override
     public void writeBytes(ByteBuffer buf) {
         super.writeBytes(buf);
         buf.writeInt(array.length);
-        for (byte b : array) {
-            buf.writeByte(b);
-        }
+        buf.writeBytes(array);
     }
 
     @Override
@@ -51,18 +51,19 @@ public class CharArrayPacket extends Packet {
     public void readBytes(ByteBuffer in) {
         super.readBytes(in);
         array = new int[in.readInt()];
-        for (int i = 0; i < array.length; i++) {
-            array[i] = in.readChar();
-        }
+        ArrayUtil.readChars(in, array);
+    }
+
+    @Override
+    public int estimateSize() {
+        return array == null ? -1 : 4 + 2 * array.length;
     }
 
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
         out.writeInt(array.length);
-        for (int j : array) {
-            out.writeChar(j);
-        }
+        ArrayUtil.writeChars(out, array);
     }
 
 
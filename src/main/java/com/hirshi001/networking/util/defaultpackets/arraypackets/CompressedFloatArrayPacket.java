@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util.defaultpackets.arraypackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+
+import java.util.Arrays;
+
+/**
+ * A packet that contains an array of floats, compressed with {@link XorArrayUtil}. It is lossless, and much smaller than
+ * {@link FloatArrayPacket} when consecutive values are equal or close, such as sensor readings over time.
+ *
+ * @author Hrishikesh Ingle
+ */
+@SuppressWarnings("unused")
+public class CompressedFloatArrayPacket extends Packet {
+
+    public float[] array;
+
+    /**
+     * Creates a new CompressedFloatArrayPacket without instantiating the array.
+     */
+    public CompressedFloatArrayPacket() {
+        super();
+    }
+
+    /**
+     * Creates a new CompressedFloatArrayPacket with a reference to the array argument.
+     * @param array the array to reference
+     */
+    public CompressedFloatArrayPacket(float[] array) {
+        super();
+        this.array = array;
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        array = XorArrayUtil.readFloats(in);
+    }
+
+    @Override
+    public int estimateSize() {
+        return array == null ? -1 : XorArrayUtil.maxFloatSize(array.length); // an upper bound
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        XorArrayUtil.writeFloats(out, array);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) return false;
+        if (obj == this) return true;
+        if (!(obj instanceof CompressedFloatArrayPacket)) return false;
+        CompressedFloatArrayPacket packet = (CompressedFloatArrayPacket) obj;
+        return Arrays.equals(array, packet.array);
+    }
+
+    @Override
+    public String toString() {
+        return ArrayUtil.toString(this, array);
+    }
+}
@@ -51,18 +51,19 @@ public class DoubleArrayPacket extends Packet {
     public void readBytes(ByteBuffer buf) {
         super.readBytes(buf);
         array = new double[buf.readInt()];
-        for (int i = 0; i < array.length; i++) {
-            array[i] = buf.readDouble();
-        }
+        ArrayUtil.readDoubles(buf, array);
+    }
+
+    @Override
+    public int estimateSize() {
+        return array == null ? -1 : 4 + 8 * array.length;
     }
 
     @Override
     public void writeBytes(ByteBuffer buf) {
         super.writeBytes(buf);
         buf.writeInt(array.length);
-        for (double d : array) {
-            buf.writeDouble(d);
-        }
+        ArrayUtil.writeDoubles(buf, array);
     }
 
 
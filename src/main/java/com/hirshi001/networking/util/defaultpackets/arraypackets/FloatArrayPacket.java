@@ -51,18 +51,19 @@ public class FloatArrayPacket extends Packet {
     public void readBytes(ByteBuffer buf) {
         super.readBytes(buf);
         array = new float[buf.readInt()];
-        for (int i = 0; i < array.length; i++) {
-            array[i] = buf.readFloat();
-        }
+        ArrayUtil.readFloats(buf, array);
+    }
+
+    @Override
+    public int estimateSize() {
+        return array == null ? -1 : 4 + 4 * array.length;
     }
 
     @Override
     public void writeBytes(ByteBuffer buf) {
         super.writeBytes(buf);
         buf.writeInt(array.length);
-        for (float f : array) {
-            buf.writeFloat(f);
-        }
+        ArrayUtil.writeFloats(buf, array);
     }
 
 
@@ -51,18 +51,19 @@ public class IntegerArrayPacket extends Packet {
     public void readBytes(ByteBuffer in) {
         super.readBytes(in);
         array = new int[in.readInt()];
-        for (int i = 0; i < array.length; i++) {
-            array[i] = in.readInt();
-        }
+        ArrayUtil.readInts(in, array);
+    }
+
+    @Override
+    public int estimateSize() {
+        return array == null ? -1 : 4 + 4 * array.length;
     }
 
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
         out.writeInt(array.length);
-        for (int j : array) {
-            out.writeInt(j);
-        }
+        ArrayUtil.writeInts(out, array);
     }
 
     @Override
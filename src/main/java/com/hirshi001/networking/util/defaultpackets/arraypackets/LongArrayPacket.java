@@ -51,18 +51,19 @@ public class LongArrayPacket extends Packet {
     public void readBytes(ByteBuffer buf) {
         super.readBytes(buf);
         array = new long[buf.readInt()];
-        for (int i = 0; i < array.length; i++) {
-            array[i] = buf.readLong();
-        }
+        ArrayUtil.readLongs(buf, array);
+    }
+
+    @Override
+    public int estimateSize() {
+        return array == null ? -1 : 4 + 8 * array.length;
     }
 
     @Override
     public void writeBytes(ByteBuffer buf) {
         super.writeBytes(buf);
         buf.writeInt(array.length);
-        for (long i : array) {
-            buf.writeLong(i);
-        }
+        ArrayUtil.writeLongs(buf, array);
     }
 
 
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util.defaultpackets.arraypackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.util.BitReader;
+import com.hirshi001.networking.util.BitWriter;
+import com.hirshi001.networking.util.VarIntUtil;
+
+/**
+ * Writes int and long arrays with the smallest of several encodings, picked per array. The array is written as a one
+ * byte encoding tag, the length as a varint, and then the values:
+ * <ul>
+ *     <li>{@link #RAW}: 4 or 8 bytes per value, big endian</li>
+ *     <li>{@link #VARINT}: a varint per value, for small non negative values</li>
+ *     <li>{@link #ZIGZAG}: a zigzag varint per value, for values close to 0</li>
+ *     <li>{@link #DELTA}: a zigzag varint of the difference to the previous value, for slowly changing values</li>
+ *     <li>{@link #FRAME_OF_REFERENCE}: the smallest value, then each value minus the smallest packed in as few bits
+ *     as the largest one needs, for values in a small range</li>
+ *     <li>{@link #DELTA_FRAME_OF_REFERENCE}: the first value, then the differences packed like
+ *     {@link #FRAME_OF_REFERENCE}, for sorted values with regular gaps</li>
+ * </ul>
+ *
+ * @author Hrishikesh Ingle
+ */
+public final class PackedArrayUtil {
+
+    /**
+     * Lets {@link #write(ByteBuffer, int[], int)} pick the encoding which takes up the fewest bytes.
+     */
+    public static final int AUTO = -1;
+
+    public static final int RAW = 0;
+    public static final int VARINT = 1;
+    public static final int ZIGZAG = 2;
+    public static final int DELTA = 3;
+    public static final int FRAME_OF_REFERENCE = 4;
+    public static final int DELTA_FRAME_OF_REFERENCE = 5;
+
+    private static final int ENCODINGS = 6;
+
+    private PackedArrayUtil() {
+    }
+
+    /**
+     * Returns the most bytes {@link #write(ByteBuffer, int[], int)} can write for an array.
+     * @param length the length of the array
+     * @return the number of bytes
+     */
+    public static int maxIntSize(int length) {
+        return 1 + VarIntUtil.MAX_VAR_INT_SIZE + 4 * length;
+    }
+
+    /**
+     * Returns the most bytes {@link #write(ByteBuffer, long[], int)} can write for an array.
+     * @param length the length of the array
+     * @return the number of bytes
+     */
+    public static int maxLongSize(int length) {
+        return 1 + VarIntUtil.MAX_VAR_INT_SIZE + 8 * length;
+    }
+
+    // ints
+
+    /**
+     * Finds the encoding which writes the array in the fewest bytes.
+     * @param values the array
+     * @return the encoding
+     */
+    public static int chooseEncoding(int[] values) {
+        if (values.length == 0) return RAW;
+        long[] sizes = new long[ENCODINGS];
+        sizes[RAW] = 4L * values.length;
+
+        int min = values[0], max = values[0];
+        int minDelta = 0, maxDelta = 0;
+        boolean negative = false;
+        int previous = 0;
+        for (int i = 0; i < values.length; i++) {
+            int value = values[i], delta = value - previous;
+            if (value < 0) negative = true;
+            else sizes[VARINT] += VarIntUtil.varIntSize(value);
+            sizes[ZIGZAG] += VarIntUtil.varIntSize(VarIntUtil.encodeZigZag(value));
+            sizes[DELTA] += VarIntUtil.varIntSize(VarIntUtil.encodeZigZag(delta));
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (i == 1) minDelta = maxDelta = delta;
+            else if (i > 1) {
+                minDelta = Math.min(minDelta, delta);
+                maxDelta = Math.max(maxDelta, delta);
+            }
+            previous = value;
+        }
+        if (negative) sizes[VARINT] = Long.MAX_VALUE;
+        sizes[FRAME_OF_REFERENCE] = VarIntUtil.varIntSize(VarIntUtil.encodeZigZag(min)) + 1
+                + packedSize(values.length, width((long) max - min));
+        sizes[DELTA_FRAME_OF_REFERENCE] = VarIntUtil.varIntSize(VarIntUtil.encodeZigZag(values[0]))
+                + VarIntUtil.varIntSize(VarIntUtil.encodeZigZag(minDelta)) + 1
+                + packedSize(values.length - 1, width((long) maxDelta - minDelta));
+        return smallest(sizes);
+    }
+
+    /**
+     * Writes the array.
+     * @param out the buffer to write to
+     * @param values the array
+     * @param encoding the encoding to use, or {@link #AUTO}
+     * @return the encoding used
+     */
+    public static int write(ByteBuffer out, int[] values, int encoding) {
+        if (encoding == AUTO) encoding = chooseEncoding(values);
+        out.writeByte(encoding);
+        VarIntUtil.writeVarInt(out, values.length);
+        switch (encoding) {
+            case RAW:
+                ArrayUtil.writeInts(out, values);
+                break;
+            case VARINT:
+                for (int value : values) VarIntUtil.writeVarInt(out, value);
+                break;
+            case ZIGZAG:
+                for (int value : values) VarIntUtil.writeVarInt(out, VarIntUtil.encodeZigZag(value));
+                break;
+            case DELTA: {
+                int previous = 0;
+                for (int value : values) {
+                    VarIntUtil.writeVarInt(out, VarIntUtil.encodeZigZag(value - previous));
+                    previous = value;
+                }
+                break;
+            }
+            case FRAME_OF_REFERENCE: {
+                if (values.length == 0) break;
+                int min = values[0], max = values[0];
+                for (int value : values) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                int width = width((long) max - min);
+                VarIntUtil.writeVarInt(out, VarIntUtil.encodeZigZag(min));
+                out.writeByte(width);
+                BitWriter writer = new BitWriter(out);
+                for (int value : values) writer.write(value - min, width);
+                writer.flush();
+                break;
+            }
+            case DELTA_FRAME_OF_REFERENCE: {
+                if (values.length == 0) break;
+                int minDelta = 0, maxDelta = 0;
+                for (int i = 1; i < values.length; i++) {
+                    int delta = values[i] - values[i - 1];
+                    if (i == 1) minDelta = maxDelta = delta;
+                    minDelta = Math.min(minDelta, delta);
+                    maxDelta = Math.max(maxDelta, delta);
+                }
+                int width = width((long) maxDelta - minDelta);
+                VarIntUtil.writeVarInt(out, VarIntUtil.encodeZigZag(values[0]));
+                VarIntUtil.writeVarInt(out, VarIntUtil.encodeZigZag(minDelta));
+                out.writeByte(width);
+                BitWriter writer = new BitWriter(out);
+                for (int i = 1; i < values.length; i++) writer.write(values[i] - values[i - 1] - minDelta, width);
+                writer.flush();
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+        return encoding;
+    }
+
+    /**
+     * Reads an array written by {@link #write(ByteBuffer, int[], int)}.
+     * @param in the buffer to read from
+     * @return the array
+     */
+    public static int[] readInts(ByteBuffer in) {
+        int encoding = in.readByte();
+        int[] values = new int[VarIntUtil.readVarInt(in)];
+        switch (encoding) {
+            case RAW:
+                ArrayUtil.readInts(in, values);
+                break;
+            case VARINT:
+                for (int i = 0; i < values.length; i++) values[i] = VarIntUtil.readVarInt(in);
+                break;
+            case ZIGZAG:
+                for (int i = 0; i < values.length; i++) values[i] = VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(in));
+                break;
+            case DELTA: {
+                int previous = 0;
+                for (int i = 0; i < values.length; i++) {
+                    previous += VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(in));
+                    values[i] = previous;
+                }
+                break;
+            }
+            case FRAME_OF_REFERENCE: {
+                if (values.length == 0) break;
+                int min = VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(in));
+                int width = in.readByte();
+                BitReader reader = new BitReader(in);
+                for (int i = 0; i < values.length; i++) values[i] = (int) (min + reader.read(width));
+                reader.finish();
+                break;
+            }
+            case DELTA_FRAME_OF_REFERENCE: {
+                if (values.length == 0) break;
+                values[0] = VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(in));
+                int minDelta = VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(in));
+                int width = in.readByte();
+                BitReader reader = new BitReader(in);
+                for (int i = 1; i < values.length; i++) values[i] = (int) (values[i - 1] + minDelta + reader.read(width));
+                reader.finish();
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+        return values;
+    }
+
+    // longs
+
+    /**
+     * Finds the encoding which writes the array in the fewest bytes.
+     * @param values the array
+     * @return the encoding
+     */
+    public static int chooseEncoding(long[] values) {
+        if (values.length == 0) return RAW;
+        long[] sizes = new long[ENCODINGS];
+        sizes[RAW] = 8L * values.length;
+
+        long min = values[0], max = values[0];
+        long minDelta = 0, maxDelta = 0;
+        boolean negative = false;
+        long previous = 0;
+        for (int i = 0; i < values.length; i++) {
+            long value = values[i], delta = value - previous;
+            if (value < 0) negative = true;
+            else sizes[VARINT] += VarIntUtil.varLongSize(value);
+            sizes[ZIGZAG] += VarIntUtil.varLongSize(VarIntUtil.encodeZigZag(value));
+            sizes[DELTA] += VarIntUtil.varLongSize(VarIntUtil.encodeZigZag(delta));
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (i == 1) minDelta = maxDelta = delta;
+            else if (i > 1) {
+                minDelta = Math.min(minDelta, delta);
+                maxDelta = Math.max(maxDelta, delta);
+            }
+            previous = value;
+        }
+        if (negative) sizes[VARINT] = Long.MAX_VALUE;
+        sizes[FRAME_OF_REFERENCE] = VarIntUtil.varLongSize(VarIntUtil.encodeZigZag(min)) + 1
+                + packedSize(values.length, width(max - min));
+        sizes[DELTA_FRAME_OF_REFERENCE] = VarIntUtil.varLongSize(VarIntUtil.encodeZigZag(values[0]))
+                + VarIntUtil.varLongSize(VarIntUtil.encodeZigZag(minDelta)) + 1
+                + packedSize(values.length - 1, width(maxDelta - minDelta));
+        return smallest(sizes);
+    }
+
+    /**
+     * Writes the array.
+     * @param out the buffer to write to
+     * @param values the array
+     * @param encoding the encoding to use, or {@link #AUTO}
+     * @return the encoding used
+     */
+    public static int write(ByteBuffer out, long[] values, int encoding) {
+        if (encoding == AUTO) encoding = chooseEncoding(values);
+        out.writeByte(encoding);
+        VarIntUtil.writeVarInt(out, values.length);
+        switch (encoding) {
+            case RAW:
+                ArrayUtil.writeLongs(out, values);
+                break;
+            case VARINT:
+                for (long value : values) VarIntUtil.writeVarLong(out, value);
+                break;
+            case ZIGZAG:
+                for (long value : values) VarIntUtil.writeVarLong(out, VarIntUtil.encodeZigZag(value));
+                break;
+            case DELTA: {
+                long previous = 0;
+                for (long value : values) {
+                    VarIntUtil.writeVarLong(out, VarIntUtil.encodeZigZag(value - previous));
+                    previous = value;
+                }
+                break;
+            }
+            case FRAME_OF_REFERENCE: {
+                if (values.length == 0) break;
+                long min = values[0], max = values[0];
+                for (long value : values) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                int width = width(max - min);
+                VarIntUtil.writeVarLong(out, VarIntUtil.encodeZigZag(min));
+                out.writeByte(width);
+                BitWriter writer = new BitWriter(out);
+                for (long value : values) writer.write(value - min, width);
+                writer.flush();
+                break;
+            }
+            case DELTA_FRAME_OF_REFERENCE: {
+                if (values.length == 0) break;
+                long minDelta = 0, maxDelta = 0;
+                for (int i = 1; i < values.length; i++) {
+                    long delta = values[i] - values[i - 1];
+                    if (i == 1) minDelta = maxDelta = delta;
+                    minDelta = Math.min(minDelta, delta);
+                    maxDelta = Math.max(maxDelta, delta);
+                }
+                int width = width(maxDelta - minDelta);
+                VarIntUtil.writeVarLong(out, VarIntUtil.encodeZigZag(values[0]));
+                VarIntUtil.writeVarLong(out, VarIntUtil.encodeZigZag(minDelta));
+                out.writeByte(width);
+                BitWriter writer = new BitWriter(out);
+                for (int i = 1; i < values.length; i++) writer.write(values[i] - values[i - 1] - minDelta, width);
+                writer.flush();
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+        return encoding;
+    }
+
+    /**
+     * Reads an array written by {@link #write(ByteBuffer, long[], int)}.
+     * @param in the buffer to read from
+     * @return the array
+     */
+    public static long[] readLongs(ByteBuffer in) {
+        int encoding = in.readByte();
+        long[] values = new long[VarIntUtil.readVarInt(in)];
+        switch (encoding) {
+            case RAW:
+                ArrayUtil.readLongs(in, values);
+                break;
+            case VARINT:
+                for (int i = 0; i < values.length; i++) values[i] = VarIntUtil.readVarLong(in);
+                break;
+            case ZIGZAG:
+                for (int i = 0; i < values.length; i++) values[i] = VarIntUtil.decodeZigZag(VarIntUtil.readVarLong(in));
+                break;
+            case DELTA: {
+                long previous = 0;
+                for (int i = 0; i < values.length; i++) {
+                    previous += VarIntUtil.decodeZigZag(VarIntUtil.readVarLong(in));
+                    values[i] = previous;
+                }
+                break;
+            }
+            case FRAME_OF_REFERENCE: {
+                if (values.length == 0) break;
+                long min = VarIntUtil.decodeZigZag(VarIntUtil.readVarLong(in));
+                int width = in.readByte();
+                BitReader reader = new BitReader(in);
+                for (int i = 0; i < values.length; i++) values[i] = min + reader.read(width);
+                reader.finish();
+                break;
+            }
+            case DELTA_FRAME_OF_REFERENCE: {
+                if (values.length == 0) break;
+                values[0] = VarIntUtil.decodeZigZag(VarIntUtil.readVarLong(in));
+                long minDelta = VarIntUtil.decodeZigZag(VarIntUtil.readVarLong(in));
+                int width = in.readByte();
+                BitReader reader = new BitReader(in);
+                for (int i = 1; i < values.length; i++) values[i] = values[i - 1] + minDelta + reader.read(width);
+                reader.finish();
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+        return values;
+    }
+
+    /**
+     * @param range the difference between the largest and smallest value, as an unsigned long
+     * @return the number of bits needed to store any value between 0 and range
+     */
+    private static int width(long range) {
+        return 64 - Long.numberOfLeadingZeros(range);
+    }
+
+    private static long packedSize(int count, int width) {
+        return ((long) count * width + 7) / 8;
+    }
+
+    private static int smallest(long[] sizes) {
+        int encoding = RAW;
+        for (int i = 1; i < sizes.length; i++) if (sizes[i] < sizes[encoding]) encoding = i;
+        return encoding;
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util.defaultpackets.arraypackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+
+import java.util.Arrays;
+
+/**
+ * A packet that contains an array of ints, written with the encoding from {@link PackedArrayUtil} which takes up the
+ * fewest bytes. Use it instead of {@link IntegerArrayPacket} for small, slowly changing or sorted values.
+ *
+ * @author Hrishikesh Ingle
+ */
+@SuppressWarnings("unused")
+public class PackedIntegerArrayPacket extends Packet {
+
+    public int[] array;
+
+    /**
+     * The encoding to write the array with, {@link PackedArrayUtil#AUTO} to pick the smallest one. Set to the encoding
+     * the array was written with when the packet is read.
+     */
+    public int encoding = PackedArrayUtil.AUTO;
+
+    /**
+     * Creates a new PackedIntegerArrayPacket without instantiating the array.
+     */
+    public PackedIntegerArrayPacket() {
+        super();
+    }
+
+    /**
+     * Creates a new PackedIntegerArrayPacket with a reference to the array argument.
+     * @param array the array to reference
+     */
+    public PackedIntegerArrayPacket(int[] array) {
+        super();
+        this.array = array;
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        encoding = in.getByte(in.readerIndex());
+        array = PackedArrayUtil.readInts(in);
+    }
+
+    @Override
+    public int estimateSize() {
+        return array == null ? -1 : PackedArrayUtil.maxIntSize(array.length); // an upper bound unless a larger encoding is forced
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        PackedArrayUtil.write(out, array, encoding);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) return false;
+        if (obj == this) return true;
+        if (!(obj instanceof PackedIntegerArrayPacket)) return false;
+        PackedIntegerArrayPacket packet = (PackedIntegerArrayPacket) obj;
+        return Arrays.equals(array, packet.array);
+    }
+
+    @Override
+    public String toString() {
+        return ArrayUtil.toString(this, array);
+    }
+}
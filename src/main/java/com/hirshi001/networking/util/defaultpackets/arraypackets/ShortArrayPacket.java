@@ -51,18 +51,19 @@ public class ShortArrayPacket extends Packet {
     public void readBytes(ByteBuffer buf) {
         super.readBytes(buf);
         array = new short[buf.readInt()];
-        for (int i = 0; i < array.length; i++) {
-            array[i] = buf.readShort();
-        }
+        ArrayUtil.readShorts(buf, array);
+    }
+
+    @Override
+    public int estimateSize() {
+        return array == null ? -1 : 4 + 2 * array.length;
     }
 
     @Override
     public void writeBytes(ByteBuffer buf) {
         super.writeBytes(buf);
         buf.writeInt(array.length);
-        for (short s : array) {
-            buf.writeShort(s);
-        }
+        ArrayUtil.writeShorts(buf, array);
     }
 
 
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util.defaultpackets.arraypackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.util.BitReader;
+import com.hirshi001.networking.util.BitWriter;
+import com.hirshi001.networking.util.VarIntUtil;
+
+/**
+ * Writes double and float arrays with XOR compression, as described in the Gorilla paper. It is lossless and works
+ * well on time series where consecutive values are equal or close to each other.
+ * <p>
+ * The length is written as a varint, then the first value as is. Every following value is XORed with the previous one
+ * and written as:
+ * <ul>
+ *     <li>a 0 bit if the XOR is 0 (the values are equal)</li>
+ *     <li>the bits 1, 0 and the meaningful bits of the XOR, if they fit in the window of the last XOR written in full</li>
+ *     <li>the bits 1, 1, the number of leading zeros (5 bits), the number of meaningful bits minus one (6 bits for
+ *     doubles, 5 for floats) and the meaningful bits, otherwise</li>
+ * </ul>
+ *
+ * @author Hrishikesh Ingle
+ */
+public final class XorArrayUtil {
+
+    private XorArrayUtil() {
+    }
+
+    /**
+     * Returns the most bytes {@link #writeDoubles(ByteBuffer, double[])} can write for an array.
+     * @param length the length of the array
+     * @return the number of bytes
+     */
+    public static int maxDoubleSize(int length) {
+        return VarIntUtil.MAX_VAR_INT_SIZE + (int) ((64 + Math.max(length - 1, 0) * 77L + 7) / 8);
+    }
+
+    /**
+     * Returns the most bytes {@link #writeFloats(ByteBuffer, float[])} can write for an array.
+     * @param length the length of the array
+     * @return the number of bytes
+     */
+    public static int maxFloatSize(int length) {
+        return VarIntUtil.MAX_VAR_INT_SIZE + (int) ((32 + Math.max(length - 1, 0) * 44L + 7) / 8);
+    }
+
+    /**
+     * Writes the array.
+     * @param out the buffer to write to
+     * @param values the array
+     */
+    public static void writeDoubles(ByteBuffer out, double[] values) {
+        VarIntUtil.writeVarInt(out, values.length);
+        if (values.length == 0) return;
+
+        BitWriter writer = new BitWriter(out);
+        long previous = Double.doubleToRawLongBits(values[0]);
+        writer.write(previous, 64);
+        int leading = -1, trailing = 0; // the window of the last XOR written in full, -1 if there is none yet
+        for (int i = 1; i < values.length; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                writer.write(0, 1);
+                continue;
+            }
+            int xorLeading = Math.min(Long.numberOfLeadingZeros(xor), 31), xorTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading != -1 && xorLeading >= leading && xorTrailing >= trailing) {
+                writer.write(0b01, 2);
+                writer.write(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                leading = xorLeading;
+                trailing = xorTrailing;
+                int meaningful = 64 - leading - trailing;
+                writer.write(0b11, 2);
+                writer.write(leading, 5);
+                writer.write(meaningful - 1, 6);
+                writer.write(xor >>> trailing, meaningful);
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads an array written by {@link #writeDoubles(ByteBuffer, double[])}.
+     * @param in the buffer to read from
+     * @return the array
+     */
+    public static double[] readDoubles(ByteBuffer in) {
+        double[] values = new double[VarIntUtil.readVarInt(in)];
+        if (values.length == 0) return values;
+
+        BitReader reader = new BitReader(in);
+        long previous = reader.read(64);
+        values[0] = Double.longBitsToDouble(previous);
+        int leading = 0, trailing = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (reader.read(1) != 0) {
+                if (reader.read(1) != 0) {
+                    leading = (int) reader.read(5);
+                    trailing = 64 - leading - ((int) reader.read(6) + 1);
+                }
+                previous ^= reader.read(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+        reader.finish();
+        return values;
+    }
+
+    /**
+     * Writes the array.
+     * @param out the buffer to write to
+     * @param values the array
+     */
+    public static void writeFloats(ByteBuffer out, float[] values) {
+        VarIntUtil.writeVarInt(out, values.length);
+        if (values.length == 0) return;
+
+        BitWriter writer = new BitWriter(out);
+        int previous = Float.floatToRawIntBits(values[0]);
+        writer.write(previous, 32);
+        int leading = -1, trailing = 0; // the window of the last XOR written in full, -1 if there is none yet
+        for (int i = 1; i < values.length; i++) {
+            int bits = Float.floatToRawIntBits(values[i]);
+            int xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                writer.write(0, 1);
+                continue;
+            }
+            int xorLeading = Math.min(Integer.numberOfLeadingZeros(xor), 31), xorTrailing = Integer.numberOfTrailingZeros(xor);
+            if (leading != -1 && xorLeading >= leading && xorTrailing >= trailing) {
+                writer.write(0b01, 2);
+                writer.write(xor >>> trailing, 32 - leading - trailing);
+            } else {
+                leading = xorLeading;
+                trailing = xorTrailing;
+                int meaningful = 32 - leading - trailing;
+                writer.write(0b11, 2);
+                writer.write(leading, 5);
+                writer.write(meaningful - 1, 5);
+                writer.write(xor >>> trailing, meaningful);
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads an array written by {@link #writeFloats(ByteBuffer, float[])}.
+     * @param in the buffer to read from
+     * @return the array
+     */
+    public static float[] readFloats(ByteBuffer in) {
+        float[] values = new float[VarIntUtil.readVarInt(in)];
+        if (values.length == 0) return values;
+
+        BitReader reader = new BitReader(in);
+        int previous = (int) reader.read(32);
+        values[0] = Float.intBitsToFloat(previous);
+        int leading = 0, trailing = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (reader.read(1) != 0) {
+                if (reader.read(1) != 0) {
+                    leading = (int) reader.read(5);
+                    trailing = 32 - leading - ((int) reader.read(5) + 1);
+                }
+                previous ^= (int) reader.read(32 - leading - trailing) << trailing;
+            }
+            values[i] = Float.intBitsToFloat(previous);
+        }
+        reader.finish();
+        return values;
+    }
+
+}
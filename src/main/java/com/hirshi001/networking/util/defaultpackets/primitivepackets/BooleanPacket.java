@@ -45,6 +45,11 @@ public class BooleanPacket extends Packet {
         this.value = value;
     }
 
+    @Override
+    public int estimateSize() {
+        return 1;
+    }
+
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
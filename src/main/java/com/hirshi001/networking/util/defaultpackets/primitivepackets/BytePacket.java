@@ -44,6 +44,11 @@ public class BytePacket extends Packet {
         this.value = value;
     }
 
+    @Override
+    public int estimateSize() {
+        return 1;
+    }
+
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
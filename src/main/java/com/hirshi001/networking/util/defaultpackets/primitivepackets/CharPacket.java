@@ -45,6 +45,11 @@ public class CharPacket extends Packet {
         this.value = value;
     }
 
+    @Override
+    public int estimateSize() {
+        return 2;
+    }
+
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
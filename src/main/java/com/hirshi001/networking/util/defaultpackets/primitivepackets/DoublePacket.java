@@ -41,6 +41,11 @@ public class DoublePacket extends Packet {
         this.value = value;
     }
 
+    @Override
+    public int estimateSize() {
+        return 8;
+    }
+
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
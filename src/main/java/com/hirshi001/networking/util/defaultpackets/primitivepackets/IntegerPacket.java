@@ -40,6 +40,11 @@ public class IntegerPacket extends Packet {
         this.value = value;
     }
 
+    @Override
+    public int estimateSize() {
+        return 4;
+    }
+
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
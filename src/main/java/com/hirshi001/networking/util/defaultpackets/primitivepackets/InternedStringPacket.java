@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util.defaultpackets.primitivepackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.buffer.util.ByteBufUtil;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packet.StringTablePacket;
+import com.hirshi001.networking.util.StringTable;
+import com.hirshi001.networking.util.VarIntUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * A packet that contains a string which is sent through the {@link StringTable} of the channel when sent over TCP. The
+ * first time a string is sent it is written along with the index it is assigned, after that only the index is written,
+ * and the receiving side looks up the string it already has instead of decoding a new one. Use it instead of
+ * {@link StringPacket} for strings which are sent over and over, like names.
+ * <p>
+ * The string is written as a varint tag followed by the string if needed: 0 for a string which is not in the table,
+ * index * 2 + 1 for a string sent for the first time, and index * 2 + 2 for a string sent before.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class InternedStringPacket extends Packet implements StringTablePacket {
+
+    public String value;
+
+    private StringTable table; // only used for the next write, until it is committed
+    private int index = -1; // the index read, until it is looked up
+
+    /**
+     * Creates a new InternedStringPacket with the value set to null.
+     */
+    public InternedStringPacket() {
+        super();
+    }
+
+    /**
+     * Creates a new InternedStringPacket with the value set to the given value.
+     * @param value the value to set
+     */
+    public InternedStringPacket(String value) {
+        super();
+        this.value = value;
+    }
+
+    @Override
+    public void beforeWrite(@Nullable StringTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public void afterWrite(boolean written) {
+        StringTable table = this.table;
+        this.table = null;
+        if (written && table != null && table.indexOf(value) < 0) table.add(value);
+    }
+
+    @Override
+    public boolean afterRead(StringTable table) {
+        int index = this.index;
+        this.index = -1;
+        if (index < 0) return true;
+        if (value != null) {
+            if (index >= table.getCapacity()) return false;
+            table.put(index, value);
+        } else {
+            value = table.get(index);
+        }
+        return value != null;
+    }
+
+    @Override
+    public int estimateSize() {
+        return value == null ? -1 : VarIntUtil.MAX_VAR_INT_SIZE + 4 + value.length(); // an upper bound for ascii strings
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        StringTable table = this.table;
+        if (table != null) {
+            int index = table.indexOf(value);
+            if (index >= 0) {
+                VarIntUtil.writeVarInt(out, index * 2 + 2);
+                return;
+            }
+            index = table.nextIndex();
+            if (index >= 0) {
+                VarIntUtil.writeVarInt(out, index * 2 + 1);
+                ByteBufUtil.writeStringToBuf(value, out);
+                return;
+            }
+        }
+        VarIntUtil.writeVarInt(out, 0);
+        ByteBufUtil.writeStringToBuf(value, out);
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        int tag = VarIntUtil.readVarInt(in);
+        if (tag == 0) {
+            index = -1;
+            value = ByteBufUtil.readStringFromBuf(in);
+        } else if ((tag & 1) != 0) {
+            index = tag >>> 1;
+            value = ByteBufUtil.readStringFromBuf(in);
+        } else {
+            index = (tag >>> 1) - 1;
+            value = null;
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        value = null;
+        table = null;
+        index = -1;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (!(obj instanceof InternedStringPacket)) return false;
+        InternedStringPacket packet = (InternedStringPacket) obj;
+        return Objects.equals(packet.value, value);
+    }
+
+    @Override
+    public String toString() {
+        return PrimitiveUtil.toString(this, value);
+    }
+}
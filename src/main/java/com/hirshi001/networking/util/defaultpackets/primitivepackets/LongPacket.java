@@ -44,6 +44,11 @@ public class LongPacket extends Packet {
         this.value = value;
     }
 
+    @Override
+    public int estimateSize() {
+        return 8;
+    }
+
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
@@ -16,21 +16,44 @@
 
 package com.hirshi001.networking.util.defaultpackets.primitivepackets;
 
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.util.BitReader;
+import com.hirshi001.networking.util.BitWriter;
 import com.hirshi001.networking.util.BooleanCompression;
 
+import java.util.Arrays;
+
 /**
  * A class that represents a packet that contains multiple booleans.
- * The booleans are stored in a byte.
+ * The first 8 booleans are stored in a byte. A packet can be created with room for more booleans with
+ * {@link #MultiBooleanPacket(int)}, in which case the rest are stored in longs and written after the byte with a
+ * {@link BitWriter}. The number of booleans is not sent, so the packet on the receiving side must be created with the
+ * same size.
  *
  * @author Hrishikesh Ingle
  */
 public class MultiBooleanPacket extends BytePacket {
 
+    private final int size;
+    private final long[] extra; // the booleans after the first 8, or null if there are only 8
+
     /**
      * Creates a new MultiBooleanPacket with the value set to 0.
      */
     public MultiBooleanPacket() {
         super();
+        this.size = 8;
+        this.extra = null;
+    }
+
+    /**
+     * Creates a new MultiBooleanPacket with room for the given number of booleans, all set to false.
+     * @param size the number of booleans, sizes less than 8 still hold 8 booleans
+     */
+    public MultiBooleanPacket(int size) {
+        super();
+        this.size = Math.max(8, size);
+        this.extra = this.size > 8 ? new long[(this.size - 8 + 63) / 64] : null;
     }
 
     /**
@@ -39,35 +62,50 @@ public class MultiBooleanPacket extends BytePacket {
      */
     public MultiBooleanPacket(byte value) {
         super(value);
+        this.size = 8;
+        this.extra = null;
     }
 
+    /**
+     * Creates a new MultiBooleanPacket with room for all the booleans and the values set to the arguments.
+     * @param value the booleans to set
+     */
     public MultiBooleanPacket(boolean... value) {
-        this.value = BooleanCompression.compressBooleans(value);
+        this(value.length);
+        for (int i = 0; i < value.length; i++) setNthBit(i, value[i]);
     }
 
     //Create 8 constructors, one for each bit in the byte.
     public MultiBooleanPacket(boolean bit0) {
+        this();
         this.value = BooleanCompression.compressBooleans(bit0);
     }
     public MultiBooleanPacket(boolean bit0, boolean bit1) {
+        this();
         this.value = BooleanCompression.compressBooleans(bit0, bit1);
     }
     public MultiBooleanPacket(boolean bit0, boolean bit1, boolean bit2) {
+        this();
         this.value = BooleanCompression.compressBooleans(bit0, bit1, bit2);
     }
     public MultiBooleanPacket(boolean bit0, boolean bit1, boolean bit2, boolean bit3) {
+        this();
         this.value = BooleanCompression.compressBooleans(bit0, bit1, bit2, bit3);
     }
     public MultiBooleanPacket(boolean bit0, boolean bit1, boolean bit2, boolean bit3, boolean bit4) {
+        this();
         this.value = BooleanCompression.compressBooleans(bit0, bit1, bit2, bit3, bit4);
     }
     public MultiBooleanPacket(boolean bit0, boolean bit1, boolean bit2, boolean bit3, boolean bit4, boolean bit5) {
+        this();
         this.value = BooleanCompression.compressBooleans(bit0, bit1, bit2, bit3, bit4, bit5);
     }
     public MultiBooleanPacket(boolean bit0, boolean bit1, boolean bit2, boolean bit3, boolean bit4, boolean bit5, boolean bit6) {
+        this();
         this.value = BooleanCompression.compressBooleans(bit0, bit1, bit2, bit3, bit4, bit5, bit6);
     }
     public MultiBooleanPacket(boolean bit0, boolean bit1, boolean bit2, boolean bit3, boolean bit4, boolean bit5, boolean bit6, boolean bit7) {
+        this();
         this.value = BooleanCompression.compressBooleans(bit0, bit1, bit2, bit3, bit4, bit5, bit6, bit7);
     }
 
@@ -97,7 +135,10 @@ public class MultiBooleanPacket extends BytePacket {
         return BooleanCompression.getBoolean(value, 7);
     }
     public boolean getNthBit(int n) {
-        return BooleanCompression.getBoolean(value, n);
+        if (n < 8) return BooleanCompression.getBoolean(value, n);
+        checkIndex(n);
+        n -= 8;
+        return (extra[n >>> 6] & 1L << n) != 0;
     }
 
     //setters
@@ -126,7 +167,56 @@ public class MultiBooleanPacket extends BytePacket {
         value = BooleanCompression.setBoolean(value, 7, bit7);
     }
     public void setNthBit(int n, boolean bit) {
-        value = BooleanCompression.setBoolean(value, n, bit);
+        if (n < 8) {
+            value = BooleanCompression.setBoolean(value, n, bit);
+            return;
+        }
+        checkIndex(n);
+        n -= 8;
+        if (bit) extra[n >>> 6] |= 1L << n;
+        else extra[n >>> 6] &= ~(1L << n);
+    }
+
+    /**
+     * @return the number of booleans this packet holds
+     */
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(int n) {
+        if (n >= size) throw new IndexOutOfBoundsException("Index " + n + " is out of bounds for size " + size);
+    }
+
+    @Override
+    public int estimateSize() {
+        return (size + 7) / 8;
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        if (extra == null) return;
+        BitWriter writer = new BitWriter(out);
+        int remaining = size - 8;
+        for (long word : extra) {
+            writer.write(word, Math.min(64, remaining));
+            remaining -= 64;
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        if (extra == null) return;
+        BitReader reader = new BitReader(in);
+        int remaining = size - 8;
+        for (int i = 0; i < extra.length; i++) {
+            extra[i] = reader.read(Math.min(64, remaining));
+            remaining -= 64;
+        }
+        reader.finish();
     }
 
     @Override
@@ -134,11 +224,14 @@ public class MultiBooleanPacket extends BytePacket {
         if (obj == this) return true;
         if (!(obj instanceof MultiBooleanPacket)) return false;
         MultiBooleanPacket packet = (MultiBooleanPacket) obj;
-        return packet.value == value;
+        return packet.value == value && packet.size == size && Arrays.equals(packet.extra, extra);
     }
 
     @Override
     public String toString() {
-        return PrimitiveUtil.toString(this, Integer.toBinaryString(value));
+        if (extra == null) return PrimitiveUtil.toString(this, Integer.toBinaryString(value));
+        StringBuilder bits = new StringBuilder(size);
+        for (int i = size - 1; i >= 0; i--) bits.append(getNthBit(i) ? '1' : '0');
+        return PrimitiveUtil.toString(this, bits.toString());
     }
 }
@@ -44,6 +44,11 @@ public class ShortPacket extends Packet {
         this.value = value;
     }
 
+    @Override
+    public int estimateSize() {
+        return 2;
+    }
+
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
@@ -46,6 +46,11 @@ public class StringPacket extends Packet {
         this.value = value;
     }
 
+    @Override
+    public int estimateSize() {
+        return value == null ? -1 : 4 + value.length(); // exact for ascii strings
+    }
+
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util.defaultpackets.quantizedpackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.util.BitReader;
+import com.hirshi001.networking.util.BitWriter;
+import com.hirshi001.networking.util.Quantizer;
+
+/**
+ * A packet that contains a float, sent in the number of bits of its {@link Quantizer}. The Quantizer is not sent, so
+ * both sides must register the packet with the same one:
+ * <pre>{@code
+ * Quantizer angle = new Quantizer(0, 360, 10);
+ * registry.register(() -> new QuantizedFloatPacket(angle), handler, QuantizedFloatPacket.class, 5);
+ * }</pre>
+ *
+ * @author Hrishikesh Ingle
+ */
+public class QuantizedFloatPacket extends Packet {
+
+    public final Quantizer quantizer;
+    public float value;
+
+    public QuantizedFloatPacket(Quantizer quantizer) {
+        super();
+        this.quantizer = quantizer;
+    }
+
+    public QuantizedFloatPacket(Quantizer quantizer, float value) {
+        this(quantizer);
+        this.value = value;
+    }
+
+    @Override
+    public int estimateSize() {
+        return (quantizer.bits + 7) / 8;
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        BitWriter writer = new BitWriter(out);
+        writer.write(quantizer.quantize(value), quantizer.bits);
+        writer.flush();
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        BitReader reader = new BitReader(in);
+        value = quantizer.dequantize(reader.read(quantizer.bits));
+        reader.finish();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " : " + value;
+    }
+}
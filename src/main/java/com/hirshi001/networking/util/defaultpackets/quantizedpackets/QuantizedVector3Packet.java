@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util.defaultpackets.quantizedpackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.util.BitReader;
+import com.hirshi001.networking.util.BitWriter;
+import com.hirshi001.networking.util.Quantizer;
+
+/**
+ * A packet that contains a 3D vector, with each component sent in the number of bits of its {@link Quantizer}. The
+ * components are packed together, so for example a position with 16 bits per component takes up 3 * 16 = 48 bits
+ * instead of 96. The Quantizers are not sent, so both sides must register the packet with the same ones, see
+ * {@link QuantizedFloatPacket}.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class QuantizedVector3Packet extends Packet {
+
+    public final Quantizer qx, qy, qz;
+    public float x, y, z;
+
+    /**
+     * Creates a new QuantizedVector3Packet which uses the same Quantizer for every component.
+     * @param quantizer the Quantizer
+     */
+    public QuantizedVector3Packet(Quantizer quantizer) {
+        this(quantizer, quantizer, quantizer);
+    }
+
+    public QuantizedVector3Packet(Quantizer qx, Quantizer qy, Quantizer qz) {
+        super();
+        this.qx = qx;
+        this.qy = qy;
+        this.qz = qz;
+    }
+
+    /**
+     * Sets the components of the vector.
+     * @param x the x component
+     * @param y the y component
+     * @param z the z component
+     * @return this for chaining
+     */
+    public QuantizedVector3Packet set(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    @Override
+    public int estimateSize() {
+        return (qx.bits + qy.bits + qz.bits + 7) / 8;
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        BitWriter writer = new BitWriter(out);
+        writer.write(qx.quantize(x), qx.bits);
+        writer.write(qy.quantize(y), qy.bits);
+        writer.write(qz.quantize(z), qz.bits);
+        writer.flush();
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        BitReader reader = new BitReader(in);
+        x = qx.dequantize(reader.read(qx.bits));
+        y = qy.dequantize(reader.read(qy.bits));
+        z = qz.dequantize(reader.read(qz.bits));
+        reader.finish();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " : (" + x + ", " + y + ", " + z + ")";
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.util.defaultpackets.systempackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.util.VarIntUtil;
+
+/**
+ * A system packet which acknowledges a {@link com.hirshi001.networking.packet.DeltaPacket} received over UDP, so the
+ * other side can send later packets of the same type as a delta against it, see
+ * {@link com.hirshi001.networking.util.DeltaTable}. Channels send and handle this packet themselves, so it does not
+ * need a handler.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class DeltaAckPacket extends Packet {
+
+    public int registryId, packetId, number;
+
+    /**
+     * Creates a new DeltaAckPacket.
+     */
+    public DeltaAckPacket() {
+        super();
+    }
+
+    /**
+     * Creates a new DeltaAckPacket.
+     * @param registryId the id of the registry the acknowledged packet was received with
+     * @param packetId the id the acknowledged packet was received with
+     * @param number the number of the acknowledged packet
+     */
+    public DeltaAckPacket(int registryId, int packetId, int number) {
+        super();
+        this.registryId = registryId;
+        this.packetId = packetId;
+        this.number = number;
+    }
+
+    @Override
+    public int estimateSize() {
+        return VarIntUtil.varIntSize(VarIntUtil.encodeZigZag(registryId)) + VarIntUtil.varIntSize(VarIntUtil.encodeZigZag(packetId)) + VarIntUtil.varIntSize(number);
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        VarIntUtil.writeVarInt(out, VarIntUtil.encodeZigZag(registryId));
+        VarIntUtil.writeVarInt(out, VarIntUtil.encodeZigZag(packetId));
+        VarIntUtil.writeVarInt(out, number);
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        registryId = VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(in));
+        packetId = VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(in));
+        number = VarIntUtil.readVarInt(in);
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.util.defaultpackets.systempackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.util.VarIntUtil;
+
+/**
+ * A system packet which each side of a channel sends when its TCP connection is established, holding the version of
+ * the compression dictionary it has for each registry id, see
+ * {@link com.hirshi001.networking.packetdecoderencoder.compression.CompressionDictionary}. A side only compresses
+ * packets with a dictionary once the other side has said it has the same version. Channels handle this packet
+ * themselves, so it does not need a handler.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class DictionaryVersionsPacket extends Packet {
+
+    private static final int MAX_DICTIONARIES = 1024;
+
+    public int[] registryIds, versions;
+
+    /**
+     * Creates a new DictionaryVersionsPacket without any dictionaries.
+     */
+    public DictionaryVersionsPacket() {
+        super();
+        registryIds = versions = new int[0];
+    }
+
+    /**
+     * Creates a new DictionaryVersionsPacket.
+     * @param registryIds the registry ids which have a dictionary
+     * @param versions the version of the dictionary of each registry id
+     */
+    public DictionaryVersionsPacket(int[] registryIds, int[] versions) {
+        super();
+        this.registryIds = registryIds;
+        this.versions = versions;
+    }
+
+    @Override
+    public int estimateSize() {
+        int size = VarIntUtil.varIntSize(registryIds.length);
+        for (int i = 0; i < registryIds.length; i++) {
+            size += VarIntUtil.varIntSize(VarIntUtil.encodeZigZag(registryIds[i])) + VarIntUtil.varIntSize(versions[i]);
+        }
+        return size;
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        VarIntUtil.writeVarInt(out, registryIds.length);
+        for (int i = 0; i < registryIds.length; i++) {
+            VarIntUtil.writeVarInt(out, VarIntUtil.encodeZigZag(registryIds[i]));
+            VarIntUtil.writeVarInt(out, versions[i]);
+        }
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        int count = VarIntUtil.readVarInt(in);
+        if (count < 0 || count > MAX_DICTIONARIES)
+            throw new IllegalArgumentException("Invalid number of dictionary versions: " + count);
+        registryIds = new int[count];
+        versions = new int[count];
+        for (int i = 0; i < count; i++) {
+            registryIds[i] = VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(in));
+            versions[i] = VarIntUtil.readVarInt(in);
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.util.defaultpackets.systempackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder;
+import com.hirshi001.networking.util.FragmentTable;
+import com.hirshi001.networking.util.VarIntUtil;
+
+/**
+ * A system packet which carries one piece of a UDP datagram which was larger than the
+ * {@link com.hirshi001.networking.network.channel.ChannelOption#MAX_UDP_PACKET_SIZE}, see {@link FragmentTable}.
+ * Channels send and handle this packet themselves, so it does not need a handler.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class FragmentPacket extends Packet {
+
+    /**
+     * The most bytes the frame of a fragment takes besides its data, with any of the default encoders: the largest
+     * frame header and the four varints before the data.
+     */
+    public static final int MAX_FRAME_OVERHEAD = Math.max(SimplePacketEncoderDecoder.MAX_HEADER_SIZE, CompactPacketEncoderDecoder.MAX_HEADER_SIZE)
+            + 4 * VarIntUtil.MAX_VAR_INT_SIZE;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    public int messageId, index, count;
+    public byte[] data;
+
+    private ByteBuffer source; // the buffer the data is written from instead, when it is set
+    private int sourceIndex, sourceLength;
+
+    /**
+     * Creates a new FragmentPacket without any data.
+     */
+    public FragmentPacket() {
+        super();
+        data = EMPTY;
+    }
+
+    /**
+     * Creates a new FragmentPacket.
+     * @param messageId the id of the datagram the fragment is a piece of
+     * @param index the index of the fragment in the datagram
+     * @param count the number of fragments of the datagram
+     * @param data the bytes of the fragment
+     */
+    public FragmentPacket(int messageId, int index, int count, byte[] data) {
+        super();
+        this.messageId = messageId;
+        this.index = index;
+        this.count = count;
+        this.data = data;
+    }
+
+    /**
+     * Creates a new FragmentPacket which writes its data straight from a buffer instead of copying it into an array
+     * first. Only valid until the buffer changes, so it must be written right away.
+     * @param messageId the id of the datagram the fragment is a piece of
+     * @param index the index of the fragment in the datagram
+     * @param count the number of fragments of the datagram
+     * @param source the buffer holding the bytes of the fragment
+     * @param sourceIndex the index of the first byte of the fragment in the buffer
+     * @param length the number of bytes in the fragment
+     */
+    public FragmentPacket(int messageId, int index, int count, ByteBuffer source, int sourceIndex, int length) {
+        this(messageId, index, count, EMPTY);
+        this.source = source;
+        this.sourceIndex = sourceIndex;
+        this.sourceLength = length;
+    }
+
+    private int length() {
+        return source == null ? data.length : sourceLength;
+    }
+
+    @Override
+    public int estimateSize() {
+        return VarIntUtil.varIntSize(messageId) + VarIntUtil.varIntSize(index) + VarIntUtil.varIntSize(count)
+                + VarIntUtil.varIntSize(length()) + length();
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        VarIntUtil.writeVarInt(out, messageId);
+        VarIntUtil.writeVarInt(out, index);
+        VarIntUtil.writeVarInt(out, count);
+        VarIntUtil.writeVarInt(out, length());
+        if (source == null) {
+            out.writeBytes(data);
+            return;
+        }
+        int readerIndex = source.readerIndex();
+        source.readerIndex(sourceIndex);
+        out.writeBytes(source, sourceLength);
+        source.readerIndex(readerIndex);
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        messageId = VarIntUtil.readVarInt(in);
+        index = VarIntUtil.readVarInt(in);
+        count = VarIntUtil.readVarInt(in);
+        int length = VarIntUtil.readVarInt(in);
+        if (length < 0 || length > in.readableBytes())
+            throw new IllegalArgumentException("Invalid fragment length: " + length);
+        data = new byte[length];
+        in.readBytes(data);
+        source = null;
+    }
+
+}
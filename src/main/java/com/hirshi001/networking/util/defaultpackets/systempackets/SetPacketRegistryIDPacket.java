@@ -54,6 +54,11 @@ public class SetPacketRegistryIDPacket extends Packet {
         this.registryId = registryId;
     }
 
+    @Override
+    public int estimateSize() {
+        return registryName == null ? -1 : 4 + registryName.length() + 4;
+    }
+
     @Override
     public void writeBytes(ByteBuffer out) {
         super.writeBytes(out);
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hirshi001.networking.util.defaultpackets.systempackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.util.ShortIdTable;
+import com.hirshi001.networking.util.VarIntUtil;
+
+/**
+ * A system packet which tells the other side of a channel which packet and registry ids the short ids starting at
+ * {@link #firstCode} stand for, see {@link ShortIdTable}. A packet without any ids is sent back to acknowledge them,
+ * with firstCode set to the number of short ids received. Channels handle this packet themselves, so it does not need
+ * a handler.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class ShortPacketIdsPacket extends Packet {
+
+    private static final int[] EMPTY = new int[0];
+
+    public int firstCode;
+    public int[] registryIds, packetIds;
+
+    /**
+     * Creates a new ShortPacketIdsPacket without any ids.
+     */
+    public ShortPacketIdsPacket() {
+        super();
+        registryIds = packetIds = EMPTY;
+    }
+
+    /**
+     * Creates a new ShortPacketIdsPacket which acknowledges the short ids received.
+     * @param received the number of short ids received
+     */
+    public ShortPacketIdsPacket(int received) {
+        this();
+        this.firstCode = received;
+    }
+
+    /**
+     * Creates a new ShortPacketIdsPacket with the ids the short ids starting at firstCode stand for.
+     * @param firstCode the first short id
+     * @param registryIds the registry id of each short id, or -1 if it has none
+     * @param packetIds the packet id of each short id
+     */
+    public ShortPacketIdsPacket(int firstCode, int[] registryIds, int[] packetIds) {
+        super();
+        this.firstCode = firstCode;
+        this.registryIds = registryIds;
+        this.packetIds = packetIds;
+    }
+
+    /**
+     * @return whether this packet only acknowledges short ids received
+     */
+    public boolean isAcknowledgement() {
+        return packetIds.length == 0;
+    }
+
+    @Override
+    public int estimateSize() {
+        int size = VarIntUtil.varIntSize(firstCode) + VarIntUtil.varIntSize(packetIds.length);
+        for (int i = 0; i < packetIds.length; i++) {
+            size += VarIntUtil.varIntSize(VarIntUtil.encodeZigZag(registryIds[i])) + VarIntUtil.varIntSize(VarIntUtil.encodeZigZag(packetIds[i]));
+        }
+        return size;
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        VarIntUtil.writeVarInt(out, firstCode);
+        VarIntUtil.writeVarInt(out, packetIds.length);
+        for (int i = 0; i < packetIds.length; i++) {
+            VarIntUtil.writeVarInt(out, VarIntUtil.encodeZigZag(registryIds[i]));
+            VarIntUtil.writeVarInt(out, VarIntUtil.encodeZigZag(packetIds[i]));
+        }
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        firstCode = VarIntUtil.readVarInt(in);
+        int count = VarIntUtil.readVarInt(in);
+        if (count < 0 || count > ShortIdTable.MAX_CODES)
+            throw new IllegalArgumentException("Invalid number of short packet ids: " + count);
+        registryIds = new int[count];
+        packetIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            registryIds[i] = VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(in));
+            packetIds[i] = VarIntUtil.decodeZigZag(VarIntUtil.readVarInt(in));
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.util.defaultpackets.systempackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.util.VarIntUtil;
+
+/**
+ * A system packet which acknowledges a {@link SnapshotPacket}, so the server can send later snapshots as a delta
+ * against it. The replication classes send and handle this packet themselves, so it does not need a handler.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class SnapshotAckPacket extends Packet {
+
+    public int number;
+
+    /**
+     * Creates a new SnapshotAckPacket.
+     */
+    public SnapshotAckPacket() {
+        super();
+    }
+
+    /**
+     * Creates a new SnapshotAckPacket.
+     * @param number the number of the acknowledged snapshot
+     */
+    public SnapshotAckPacket(int number) {
+        super();
+        this.number = number;
+    }
+
+    @Override
+    public int estimateSize() {
+        return VarIntUtil.varIntSize(number);
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        VarIntUtil.writeVarInt(out, number);
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        number = VarIntUtil.readVarInt(in);
+    }
+
+}
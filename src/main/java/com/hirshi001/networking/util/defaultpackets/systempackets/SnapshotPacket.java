@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 Hrishikesh Ingle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hirshi001.networking.util.defaultpackets.systempackets;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.util.VarIntUtil;
+
+/**
+ * A system packet which carries a snapshot of replicated objects as a delta against a snapshot the client
+ * acknowledged, see {@link com.hirshi001.networking.replication.ReplicationServer}. The delta itself is only parsed
+ * by the {@link com.hirshi001.networking.replication.ReplicationClient}, which needs the registered types to do so.
+ * The replication classes send and handle this packet themselves, so it does not need a handler.
+ *
+ * @author Hrishikesh Ingle
+ */
+public class SnapshotPacket extends Packet {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    public int number, baseline;
+    public byte[] delta;
+
+    /**
+     * Creates a new SnapshotPacket without a delta.
+     */
+    public SnapshotPacket() {
+        super();
+        delta = EMPTY;
+    }
+
+    /**
+     * Creates a new SnapshotPacket.
+     * @param number the number of the snapshot
+     * @param baseline the number of the snapshot the delta was written against, or 0 if it holds every object
+     * @param delta the delta
+     */
+    public SnapshotPacket(int number, int baseline, byte[] delta) {
+        super();
+        this.number = number;
+        this.baseline = baseline;
+        this.delta = delta;
+    }
+
+    @Override
+    public int estimateSize() {
+        return VarIntUtil.varIntSize(number) + VarIntUtil.varIntSize(baseline == 0 ? 0 : number - baseline)
+                + VarIntUtil.varIntSize(delta.length) + delta.length;
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer out) {
+        super.writeBytes(out);
+        VarIntUtil.writeVarInt(out, number);
+        VarIntUtil.writeVarInt(out, baseline == 0 ? 0 : number - baseline); // the distance is usually one byte
+        VarIntUtil.writeVarInt(out, delta.length);
+        out.writeBytes(delta);
+    }
+
+    @Override
+    public void readBytes(ByteBuffer in) {
+        super.readBytes(in);
+        number = VarIntUtil.readVarInt(in);
+        int distance = VarIntUtil.readVarInt(in);
+        baseline = distance == 0 ? 0 : number - distance;
+        int length = VarIntUtil.readVarInt(in);
+        if (length < 0 || length > in.readableBytes())
+            throw new IllegalArgumentException("Invalid snapshot delta length: " + length);
+        delta = new byte[length];
+        in.readBytes(delta);
+    }
+
+}
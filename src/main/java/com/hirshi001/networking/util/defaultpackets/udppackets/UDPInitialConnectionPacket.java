@@ -24,4 +24,9 @@ import com.hirshi001.networking.packet.Packet;
  * @author Hrishikesh Ingle
  */
 public class UDPInitialConnectionPacket extends Packet {
+
+    @Override
+    public int estimateSize() {
+        return 0;
+    }
 }
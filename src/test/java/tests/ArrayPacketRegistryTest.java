@@ -0,0 +1,56 @@
+package tests;
+
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packet.PacketHolder;
+import com.hirshi001.networking.packetdecoderencoder.PacketIDNotFound;
+import com.hirshi001.networking.packetregistry.ArrayPacketRegistry;
+import com.hirshi001.networking.packetregistry.DefaultPacketRegistry;
+import com.hirshi001.networking.packetregistry.PacketRegistry;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.IntegerPacket;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.StringPacket;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link ArrayPacketRegistry} finds the same packets as {@link DefaultPacketRegistry}.
+ */
+public class ArrayPacketRegistryTest {
+
+    public static class FarAwayPacket extends Packet {
+    }
+
+    private static <T extends PacketRegistry> T registerAll(T registry) {
+        registry.registerDefaultPrimitivePackets()
+                .registerDefaultArrayPrimitivePackets()
+                .registerUDPHelperPackets()
+                .registerNetworkConditionPackets()
+                .register(IntegerPacket::new, null, IntegerPacket.class, 3)
+                .register(FarAwayPacket::new, null, FarAwayPacket.class, 1_000_000);
+        return registry;
+    }
+
+    @Test
+    public void sameLookupsAsDefault() {
+        PacketRegistry defaultRegistry = registerAll(new DefaultPacketRegistry("default"));
+        ArrayPacketRegistry arrayRegistry = registerAll(new ArrayPacketRegistry("array")).freeze();
+
+        for (int id = -600; id < 600; id++) {
+            PacketHolder<?> expected = defaultRegistry.getPacketHolder(id);
+            PacketHolder<?> actual = arrayRegistry.getPacketHolder(id);
+            assertEquals(expected == null, actual == null, "id " + id);
+            if (expected != null) {
+                assertEquals(expected.packetClass, actual.packetClass);
+                assertEquals(defaultRegistry.getId(expected.packetClass), arrayRegistry.getId(actual.packetClass));
+                assertEquals(id, arrayRegistry.getId(actual));
+            }
+        }
+        assertEquals(FarAwayPacket.class, arrayRegistry.getPacketHolder(1_000_000).packetClass);
+        assertEquals(1_000_000, arrayRegistry.getId(FarAwayPacket.class));
+        assertEquals(3, arrayRegistry.getId(IntegerPacket.class)); // registered twice, the later id is used
+        assertNull(arrayRegistry.getPacketHolder(Integer.MIN_VALUE));
+        assertThrows(PacketIDNotFound.class, () -> arrayRegistry.getId(Packet.class));
+        assertThrows(IllegalStateException.class, () -> arrayRegistry.register(StringPacket::new, null, StringPacket.class, 7));
+    }
+
+}
@@ -0,0 +1,323 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.util.BitReader;
+import com.hirshi001.networking.util.BitWriter;
+import com.hirshi001.networking.util.VarIntUtil;
+import com.hirshi001.networking.util.defaultpackets.arraypackets.*;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.MultiBooleanPacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the array packets keep their wire format when copying in bulk, and checks the encodings of the packed
+ * and compressed array packets.
+ */
+public class ArrayPacketTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    private <T extends Packet> T roundTrip(T packet, Supplier<T> supplier) {
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        packet.writeBytes(buffer);
+        assertEquals(packet.estimateSize(), buffer.readableBytes());
+        T read = supplier.get();
+        read.readBytes(buffer);
+        assertEquals(0, buffer.readableBytes());
+        return read;
+    }
+
+    @Test
+    public void roundTrip() {
+        Random random = new Random(5);
+        int[] ints = random.ints(10_000).toArray();
+        long[] longs = random.longs(10_000).toArray();
+        double[] doubles = random.doubles(10_000).toArray();
+        float[] floats = new float[10_001];
+        short[] shorts = new short[10_001];
+        int[] chars = new int[10_001];
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = random.nextFloat() - 0.5f;
+            shorts[i] = (short) random.nextInt();
+            chars[i] = random.nextInt(Character.MAX_VALUE + 1);
+        }
+
+        assertArrayEquals(ints, roundTrip(new IntegerArrayPacket(ints), IntegerArrayPacket::new).array);
+        assertArrayEquals(longs, roundTrip(new LongArrayPacket(longs), LongArrayPacket::new).array);
+        assertArrayEquals(doubles, roundTrip(new DoubleArrayPacket(doubles), DoubleArrayPacket::new).array);
+        assertArrayEquals(floats, roundTrip(new FloatArrayPacket(floats), FloatArrayPacket::new).array);
+        assertArrayEquals(shorts, roundTrip(new ShortArrayPacket(shorts), ShortArrayPacket::new).array);
+        assertArrayEquals(chars, roundTrip(new CharArrayPacket(chars), CharArrayPacket::new).array);
+        assertArrayEquals(new int[0], roundTrip(new IntegerArrayPacket(new int[0]), IntegerArrayPacket::new).array);
+        byte[] bytes = {1, -2, 3};
+        assertArrayEquals(bytes, roundTrip(new ByteArrayPacket(bytes), ByteArrayPacket::new).array);
+    }
+
+    @Test
+    public void bigEndianFormatIsUnchanged() {
+        int[] ints = {1, -2, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        long[] longs = {1L, -2L, Long.MAX_VALUE};
+
+        ByteBuffer expected = bufferFactory.buffer(64);
+        expected.writeInt(ints.length);
+        for (int i : ints) expected.writeInt(i);
+        expected.writeInt(longs.length);
+        for (long l : longs) expected.writeLong(l);
+
+        ByteBuffer actual = bufferFactory.buffer(64);
+        new IntegerArrayPacket(ints).writeBytes(actual);
+        new LongArrayPacket(longs).writeBytes(actual);
+
+        assertEquals(expected.readableBytes(), actual.readableBytes());
+        while (expected.readableBytes() > 0) assertEquals(expected.readByte(), actual.readByte());
+    }
+
+    @Test
+    public void packedEncodings() {
+        Random random = new Random(9);
+        int[][] intArrays = {
+                {},
+                {5},
+                {Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1},
+                random.ints(1000, 0, 100).toArray(),
+                random.ints(1000, -50, 50).toArray(),
+                random.ints(1000).toArray(),
+        };
+        for (int[] array : intArrays) {
+            for (int encoding = PackedArrayUtil.AUTO; encoding <= PackedArrayUtil.DELTA_FRAME_OF_REFERENCE; encoding++) {
+                if (encoding == PackedArrayUtil.VARINT && Arrays.stream(array).anyMatch(v -> v < 0)) continue;
+                PackedIntegerArrayPacket packet = new PackedIntegerArrayPacket(array);
+                packet.encoding = encoding;
+                PackedIntegerArrayPacket read = roundTripVariable(packet, PackedIntegerArrayPacket::new);
+                assertArrayEquals(array, read.array, "encoding " + encoding);
+                if (encoding != PackedArrayUtil.AUTO) assertEquals(encoding, read.encoding);
+            }
+        }
+
+        long[][] longArrays = {
+                {},
+                {Long.MIN_VALUE, Long.MAX_VALUE, 0, -1},
+                random.longs(1000, 1_600_000_000_000L, 1_600_000_100_000L).sorted().toArray(),
+                random.longs(1000).toArray(),
+        };
+        for (long[] array : longArrays) {
+            for (int encoding = PackedArrayUtil.AUTO; encoding <= PackedArrayUtil.DELTA_FRAME_OF_REFERENCE; encoding++) {
+                if (encoding == PackedArrayUtil.VARINT && Arrays.stream(array).anyMatch(v -> v < 0)) continue;
+                PackedLongArrayPacket packet = new PackedLongArrayPacket(array);
+                packet.encoding = encoding;
+                assertArrayEquals(array, roundTripVariable(packet, PackedLongArrayPacket::new).array, "encoding " + encoding);
+            }
+        }
+    }
+
+    @Test
+    public void packedSize() {
+        int[] ids = new Random(3).ints(1000, 0, 120).toArray();
+        int[] sorted = new int[1000];
+        for (int i = 0; i < sorted.length; i++) sorted[i] = 100_000 + i * 3;
+        long[] timestamps = new long[1000];
+        for (int i = 0; i < timestamps.length; i++) timestamps[i] = 1_600_000_000_000L + i * 16L + (i % 3);
+
+        assertEquals(PackedArrayUtil.FRAME_OF_REFERENCE, PackedArrayUtil.chooseEncoding(ids)); // 7 bits instead of 8
+        assertEquals(PackedArrayUtil.DELTA_FRAME_OF_REFERENCE, PackedArrayUtil.chooseEncoding(sorted));
+        assertEquals(PackedArrayUtil.DELTA_FRAME_OF_REFERENCE, PackedArrayUtil.chooseEncoding(timestamps));
+
+        Packet[][] pairs = {
+                {new IntegerArrayPacket(ids), new PackedIntegerArrayPacket(ids)},
+                {new IntegerArrayPacket(sorted), new PackedIntegerArrayPacket(sorted)},
+                {new LongArrayPacket(timestamps), new PackedLongArrayPacket(timestamps)},
+        };
+        String[] names = {"ids", "sorted indices", "timestamps"};
+        for (int i = 0; i < pairs.length; i++) {
+            int plain = size(pairs[i][0]), packed = size(pairs[i][1]);
+            assertTrue(packed * 3 < plain, names[i]);
+        }
+    }
+
+    @Test
+    public void compressedArrays() {
+        Random random = new Random(4);
+        double[] special = {0, -0.0, 1, Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, 1, 1};
+        double[] noise = random.doubles(1000).toArray();
+        double[] temperature = new double[1000]; // a sensor with 0.5 degree resolution, sampled faster than it changes
+        double[] position = new double[1000]; // integer steps, like positions on a grid
+        for (int i = 0; i < temperature.length; i++) {
+            temperature[i] = 20 + Math.round(Math.sin(i / 200.0) * 8) * 0.5;
+            position[i] = 100 + i / 10;
+        }
+        for (double[] array : new double[][]{{}, special, noise, temperature, position}) {
+            CompressedDoubleArrayPacket packet = new CompressedDoubleArrayPacket(array);
+            assertTrue(size(packet) <= packet.estimateSize());
+            double[] read = roundTripVariable(packet, CompressedDoubleArrayPacket::new).array;
+            assertEquals(array.length, read.length);
+            for (int i = 0; i < array.length; i++) {
+                assertEquals(Double.doubleToRawLongBits(array[i]), Double.doubleToRawLongBits(read[i]));
+            }
+
+            float[] floats = new float[array.length];
+            for (int i = 0; i < floats.length; i++) floats[i] = (float) array[i];
+            CompressedFloatArrayPacket floatPacket = new CompressedFloatArrayPacket(floats);
+            assertTrue(size(floatPacket) <= floatPacket.estimateSize());
+            float[] readFloats = roundTripVariable(floatPacket, CompressedFloatArrayPacket::new).array;
+            for (int i = 0; i < floats.length; i++) {
+                assertEquals(Float.floatToRawIntBits(floats[i]), Float.floatToRawIntBits(readFloats[i]));
+            }
+        }
+
+        String[] names = {"noise", "temperature", "position"};
+        double[][] series = {noise, temperature, position};
+        for (int i = 0; i < series.length; i++) {
+            int plain = size(new DoubleArrayPacket(series[i])), compressed = size(new CompressedDoubleArrayPacket(series[i]));
+            if (i > 0) assertTrue(compressed * 5 < plain, names[i]);
+        }
+    }
+
+    @Test
+    public void bitFields() {
+        Random random = new Random(1);
+        long[] values = new long[1000];
+        int[] widths = new int[values.length];
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        BitWriter writer = new BitWriter(buffer);
+        int bits = 0;
+        for (int i = 0; i < values.length; i++) {
+            widths[i] = random.nextInt(65);
+            values[i] = widths[i] == 0 ? 0 : random.nextLong() >>> (64 - widths[i]);
+            writer.write(values[i], widths[i]);
+            bits += widths[i];
+        }
+        writer.flush();
+        assertEquals((bits + 7) / 8, buffer.readableBytes());
+
+        BitReader reader = new BitReader(buffer);
+        for (int i = 0; i < values.length; i++) assertEquals(values[i], reader.read(widths[i]));
+        reader.finish();
+        assertEquals(0, buffer.readableBytes());
+    }
+
+    @Test
+    public void bitStreamFollowedByFields() {
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        BitWriter writer = new BitWriter(buffer);
+        writer.write(5, 3);
+        writer.writeBoolean(true);
+        writer.flush();
+        buffer.writeLong(123456789L);
+        buffer.writeInt(42);
+
+        BitReader reader = new BitReader(buffer);
+        assertEquals(5, reader.read(3));
+        assertTrue(reader.readBoolean());
+        reader.finish();
+        assertEquals(123456789L, buffer.readLong());
+        assertEquals(42, buffer.readInt());
+    }
+
+    @Test
+    public void booleans() {
+        Random random = new Random(2);
+        boolean[] array = new boolean[1000];
+        for (int i = 0; i < array.length; i++) array[i] = random.nextBoolean();
+        assertArrayEquals(array, roundTripVariable(new BooleanArrayPacket(array), BooleanArrayPacket::new).array);
+
+        boolean[] flags = Arrays.copyOf(array, 75);
+        MultiBooleanPacket packet = new MultiBooleanPacket(flags);
+        assertEquals(10, size(packet));
+        MultiBooleanPacket read = roundTripVariable(packet, () -> new MultiBooleanPacket(flags.length));
+        assertEquals(packet, read);
+        for (int i = 0; i < flags.length; i++) assertEquals(flags[i], read.getNthBit(i));
+        assertEquals(1, size(new MultiBooleanPacket(true, false, true)));
+    }
+
+    @Test
+    public void booleanEncodings() {
+        Random random = new Random(3);
+        boolean[] mask = new boolean[65536];
+        Arrays.fill(mask, 10000, 50000, true);
+        boolean[] scattered = new boolean[65536];
+        for (int i = 0; i < 100; i++) scattered[random.nextInt(scattered.length)] = true;
+        boolean[] noise = new boolean[65536];
+        for (int i = 0; i < noise.length; i++) noise[i] = random.nextBoolean();
+        boolean[][] arrays = {mask, scattered, noise, new boolean[0], {true}, {false, true}};
+        int[] expected = {BooleanArrayUtil.RUNS, BooleanArrayUtil.SPARSE, BooleanArrayUtil.BITS};
+
+        for (int a = 0; a < arrays.length; a++) {
+            boolean[] array = arrays[a];
+            BitSet bitSet = new BitSet();
+            for (int i = 0; i < array.length; i++) bitSet.set(i, array[i]);
+            int chosen = BooleanArrayUtil.chooseEncoding(array);
+            assertEquals(chosen, BooleanArrayUtil.chooseEncoding(bitSet, array.length));
+            if (a < expected.length) assertEquals(expected[a], chosen);
+
+            for (int encoding = BooleanArrayUtil.AUTO; encoding <= BooleanArrayUtil.SPARSE; encoding++) {
+                BooleanArrayPacket packet = new BooleanArrayPacket(array);
+                packet.encoding = encoding;
+                int size = size(packet);
+                if (encoding == BooleanArrayUtil.AUTO) assertTrue(size <= packet.estimateSize());
+
+                // the array the packet already has is reused
+                BooleanArrayPacket read = new BooleanArrayPacket(new boolean[array.length]);
+                boolean[] target = read.array;
+                ByteBuffer buffer = bufferFactory.buffer(16);
+                packet.writeBytes(buffer);
+                read.readBytes(buffer);
+                assertEquals(0, buffer.readableBytes());
+                assertSame(target, read.array);
+                assertArrayEquals(array, read.array);
+                assertEquals(encoding == BooleanArrayUtil.AUTO ? chosen : encoding, read.encoding);
+
+                BitSetPacket bitSetPacket = new BitSetPacket(bitSet, array.length);
+                bitSetPacket.encoding = encoding;
+                assertEquals(size, size(bitSetPacket), "encoding " + encoding);
+                BitSetPacket readBitSet = roundTripVariable(bitSetPacket, BitSetPacket::new);
+                assertEquals(bitSetPacket, readBitSet);
+            }
+        }
+    }
+
+    @Test
+    public void invalidBooleanRuns() {
+        // a run past the length, a negative run, a sparse index past the length and too many sparse indices
+        int[][] bodies = {
+                {BooleanArrayUtil.RUNS, 1, 0x7FFFFFFF},
+                {BooleanArrayUtil.RUNS, 1, -1},
+                {BooleanArrayUtil.SPARSE, 1, 1, 10},
+                {BooleanArrayUtil.SPARSE, 1, 11},
+        };
+        for (int[] body : bodies) {
+            ByteBuffer buffer = bufferFactory.buffer(16);
+            buffer.writeInt(~10);
+            buffer.writeByte(body[0]);
+            buffer.writeBoolean(body[1] != 0);
+            for (int i = 2; i < body.length; i++) VarIntUtil.writeVarInt(buffer, body[i]);
+            assertThrows(IllegalArgumentException.class, () -> BooleanArrayUtil.read(buffer, new BitSet()));
+            buffer.readerIndex(0);
+            assertThrows(IllegalArgumentException.class, () -> BooleanArrayUtil.read(buffer, (boolean[]) null));
+        }
+    }
+
+    private <T extends Packet> T roundTripVariable(T packet, Supplier<T> supplier) {
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        packet.writeBytes(buffer);
+        T read = supplier.get();
+        read.readBytes(buffer);
+        assertEquals(0, buffer.readableBytes());
+        return read;
+    }
+
+    private int size(Packet packet) {
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        packet.writeBytes(buffer);
+        return buffer.readableBytes();
+    }
+
+}
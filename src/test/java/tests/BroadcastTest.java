@@ -0,0 +1,87 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.networking.network.channel.AbstractChannelListener;
+import com.hirshi001.networking.network.channel.ChannelSet;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.defaultpackets.arraypackets.IntegerArrayPacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that broadcasting from a {@link ChannelSet} encodes the packet once and still notifies the sent listeners.
+ */
+public class BroadcastTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    private LocalServer newServer() {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().registerDefaultArrayPrimitivePackets();
+        return new LocalServer(new DefaultNetworkData(new CompactPacketEncoderDecoder(), container), bufferFactory);
+    }
+
+    /**
+     * Counts how many times it was written.
+     */
+    public static class CountingPacket extends IntegerArrayPacket {
+        public int writes;
+
+        public CountingPacket(int[] array) {
+            super(array);
+        }
+
+        @Override
+        public void writeBytes(com.hirshi001.buffer.buffers.ByteBuffer out) {
+            writes++;
+            super.writeBytes(out);
+        }
+    }
+
+    @Test
+    public void sendToAllEncodesOnce() {
+        LocalServer server = newServer();
+        server.getNetworkData().getPacketRegistryContainer().getDefaultRegistry().register(() -> new CountingPacket(null), null, CountingPacket.class, 0);
+        List<LocalChannel> channels = new ArrayList<>();
+        AtomicInteger sent = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            LocalChannel channel = server.newChannel();
+            channel.addChannelListener(new AbstractChannelListener() {
+                @Override
+                public void onTCPSent(PacketHandlerContext<?> context) {
+                    assertSame(channel, context.channel);
+                    sent.incrementAndGet();
+                }
+            });
+            channels.add(channel);
+        }
+
+        CountingPacket packet = new CountingPacket(new int[]{1, 2, 3});
+        server.getClients().sendTCPToAll(packet, null).perform();
+        server.getClients().sendIf(packet, PacketType.TCP, null, channel -> channel == channels.get(0)).perform();
+        server.getClients().flush(PacketType.TCP);
+
+        assertEquals(2, packet.writes);
+        assertEquals(11, sent.get());
+        for (LocalChannel channel : channels) {
+            List<Packet> received = new ArrayList<>();
+            PacketRegistryContainer container = server.getNetworkData().getPacketRegistryContainer();
+            while (server.getNetworkData().getPacketEncoderDecoder().decodeFrame(container, channel.tcpSent, context -> received.add(context.packet))) ;
+            assertEquals(channel == channels.get(0) ? 2 : 1, received.size());
+            for (Packet p : received) assertArrayEquals(packet.array, ((IntegerArrayPacket) p).array);
+        }
+    }
+
+}
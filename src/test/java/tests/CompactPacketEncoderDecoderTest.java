@@ -0,0 +1,334 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.PacketBatch;
+import com.hirshi001.networking.packetdecoderencoder.PacketDecodeException;
+import com.hirshi001.networking.packetdecoderencoder.PacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
+import com.hirshi001.networking.packetregistry.PacketRegistry;
+import com.hirshi001.networking.packetregistrycontainer.MultiPacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.defaultpackets.arraypackets.IntegerArrayPacket;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.BooleanPacket;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.IntegerPacket;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.MultiBooleanPacket;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.StringPacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link CompactPacketEncoderDecoder} round trips packets and compares its wire size with
+ * {@link SimplePacketEncoderDecoder}.
+ */
+public class CompactPacketEncoderDecoderTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    private static PacketRegistryContainer singleContainer() {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry()
+                .registerDefaultPrimitivePackets()
+                .registerDefaultArrayPrimitivePackets()
+                .register(IntegerPacket::new, null, IntegerPacket.class, 5);
+        return container;
+    }
+
+    private static int encode(PacketEncoderDecoder encoderDecoder, PacketRegistryContainer container, PacketRegistry registry, Packet packet, ByteBuffer out) {
+        int start = out.writerIndex();
+        PacketHandlerContext<Packet> context = new PacketHandlerContext<>();
+        context.packet = packet;
+        context.packetRegistry = registry;
+        encoderDecoder.encode(context, null, container, out);
+        return out.writerIndex() - start;
+    }
+
+    @Test
+    public void roundTrip() {
+        PacketEncoderDecoder encoderDecoder = new CompactPacketEncoderDecoder();
+        PacketRegistryContainer container = singleContainer();
+        PacketRegistry registry = container.getDefaultRegistry();
+
+        int[] large = new int[1000];
+        for (int i = 0; i < large.length; i++) large[i] = i * 31;
+
+        Packet[] packets = {
+                new IntegerPacket(42),
+                new BooleanPacket(true),
+                new MultiBooleanPacket(true, false, true),
+                new StringPacket("hello world"),
+                new IntegerArrayPacket(large),
+        };
+        packets[0].sendingId = 7;
+        packets[3].receivingId = 1 << 20;
+
+        ByteBuffer buffer = bufferFactory.buffer(64);
+        for (Packet packet : packets) encode(encoderDecoder, container, registry, packet, buffer);
+
+        for (Packet packet : packets) {
+            PacketHandlerContext<?> context = encoderDecoder.decode(container, buffer, null);
+            assertNotNull(context);
+            assertEquals(packet, context.packet);
+            assertEquals(packet.sendingId, context.packet.sendingId);
+            assertEquals(packet.receivingId, context.packet.receivingId);
+        }
+        assertEquals(0, buffer.readableBytes());
+        assertNull(encoderDecoder.decode(container, buffer, null));
+    }
+
+    @Test
+    public void roundTripMultipleRegistries() {
+        PacketEncoderDecoder encoderDecoder = new CompactPacketEncoderDecoder();
+        PacketRegistryContainer container = new MultiPacketRegistryContainer();
+        PacketRegistry registry = container.newRegistry("other");
+        registry.register(IntegerPacket::new, null, IntegerPacket.class, 300);
+
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        encode(encoderDecoder, container, registry, new IntegerPacket(-1), buffer);
+
+        PacketHandlerContext<?> context = encoderDecoder.decode(container, buffer, null);
+        assertNotNull(context);
+        assertSame(registry, context.packetRegistry);
+        assertEquals(new IntegerPacket(-1), context.packet);
+    }
+
+    /**
+     * A packet which reads more bytes than it wrote, used to check that a zero copy decode can not read past the
+     * end of its frame.
+     */
+    public static class OverreadPacket extends Packet {
+        @Override
+        public void writeBytes(ByteBuffer out) {
+            out.writeInt(1);
+        }
+
+        @Override
+        public void readBytes(ByteBuffer in) {
+            in.readLong();
+        }
+    }
+
+    public static class RewindPacket extends Packet {
+        @Override
+        public void writeBytes(ByteBuffer out) {
+            out.writeInt(1);
+        }
+
+        @Override
+        public void readBytes(ByteBuffer in) {
+            in.readInt();
+            in.readerIndex(in.readerIndex() - 8); // back into the frame header
+        }
+    }
+
+    @Test
+    public void zeroCopy() {
+        PacketRegistryContainer container = singleContainer();
+        PacketRegistry registry = container.getDefaultRegistry();
+        registry.register(OverreadPacket::new, null, OverreadPacket.class, 6);
+        registry.register(RewindPacket::new, null, RewindPacket.class, 7);
+
+        PacketEncoderDecoder[] encoderDecoders = {new SimplePacketEncoderDecoder(Integer.MAX_VALUE, true), new CompactPacketEncoderDecoder(Integer.MAX_VALUE, true)};
+        for (PacketEncoderDecoder encoderDecoder : encoderDecoders) {
+            ByteBuffer buffer = bufferFactory.buffer(64);
+            encode(encoderDecoder, container, registry, new StringPacket("zero copy"), buffer);
+            encode(encoderDecoder, container, registry, new OverreadPacket(), buffer);
+            encode(encoderDecoder, container, registry, new RewindPacket(), buffer);
+            encode(encoderDecoder, container, registry, new IntegerArrayPacket(new int[]{1, 2, 3}), buffer);
+            int writerIndex = buffer.writerIndex();
+
+            assertEquals(new StringPacket("zero copy"), encoderDecoder.decode(container, buffer, null).packet);
+            assertThrows(RuntimeException.class, () -> encoderDecoder.decode(container, buffer, null));
+            // the frame boundary is restored after the failed read, so the next packet still decodes
+            assertEquals(writerIndex, buffer.writerIndex());
+            // a packet which moves the reader index out of its body fails to decode
+            assertThrows(PacketDecodeException.class, () -> encoderDecoder.decode(container, buffer, null));
+            assertEquals(new IntegerArrayPacket(new int[]{1, 2, 3}), encoderDecoder.decode(container, buffer, null).packet);
+            assertEquals(0, buffer.readableBytes());
+        }
+    }
+
+    @Test
+    public void partialFrames() {
+        PacketEncoderDecoder encoderDecoder = new CompactPacketEncoderDecoder();
+        PacketRegistryContainer container = singleContainer();
+
+        ByteBuffer frame = bufferFactory.buffer(512);
+        encode(encoderDecoder, container, container.getDefaultRegistry(), new IntegerArrayPacket(new int[100]), frame);
+        int size = frame.readableBytes();
+
+        // feed the frame one byte at a time, it should only decode once the whole frame arrived
+        ByteBuffer in = bufferFactory.buffer(512);
+        for (int i = 0; i < size; i++) {
+            assertNull(encoderDecoder.decode(container, in, null));
+            in.writeByte(frame.readByte());
+        }
+        assertNotNull(encoderDecoder.decode(container, in, null));
+    }
+
+    private static boolean encodeBatched(PacketEncoderDecoder encoderDecoder, PacketRegistryContainer container, PacketRegistry registry, Packet packet, PacketBatch batch, ByteBuffer out) {
+        PacketHandlerContext<Packet> context = new PacketHandlerContext<>();
+        context.packet = packet;
+        context.packetRegistry = registry;
+        return encoderDecoder.encodeBatched(context, null, container, batch, out);
+    }
+
+    @Test
+    public void batching() {
+        PacketEncoderDecoder encoderDecoder = new CompactPacketEncoderDecoder();
+        PacketRegistryContainer container = new MultiPacketRegistryContainer();
+        PacketRegistry registry = container.getDefaultRegistry().registerDefaultPrimitivePackets();
+        PacketRegistry other = container.newRegistry("other").register(IntegerPacket::new, null, IntegerPacket.class, 3);
+
+        List<Packet> packets = new ArrayList<>();
+        for (int i = 0; i < 50; i++) packets.add(new IntegerPacket(i));
+        packets.add(new StringPacket(new String(new char[300]).replace('\0', 'a'))); // body length takes 2 bytes
+
+        ByteBuffer buffer = bufferFactory.buffer(64);
+        PacketBatch batch = new PacketBatch();
+        for (Packet packet : packets) assertTrue(encodeBatched(encoderDecoder, container, registry, packet, batch, buffer));
+        // a different registry starts a new batch, which only holds one packet and is written as a normal frame
+        assertTrue(encodeBatched(encoderDecoder, container, other, new IntegerPacket(-5), batch, buffer));
+        packets.add(new IntegerPacket(-5));
+        // packets waiting for a response can not be batched
+        IntegerPacket request = new IntegerPacket(7);
+        request.sendingId = 3;
+        assertFalse(encodeBatched(encoderDecoder, container, registry, request, batch, buffer));
+        assertFalse(batch.isOpen());
+        encode(encoderDecoder, container, registry, request, buffer);
+        packets.add(request);
+
+        List<PacketHandlerContext<?>> received = new ArrayList<>();
+        while (encoderDecoder.decodeFrame(container, buffer, received::add)) ;
+        assertEquals(0, buffer.readableBytes());
+        assertEquals(packets.size(), received.size());
+        for (int i = 0; i < packets.size(); i++) assertEquals(packets.get(i), received.get(i).packet);
+        assertSame(other, received.get(packets.size() - 2).packetRegistry);
+        assertEquals(3, received.get(packets.size() - 1).packet.sendingId);
+    }
+
+    public static class HintedPacket extends Packet {
+        public byte[] data = new byte[0];
+        public int hint = -1;
+        public int writes;
+
+        @Override
+        public void writeBytes(ByteBuffer out) {
+            writes++;
+            out.writeBytes(data);
+        }
+
+        @Override
+        public void readBytes(ByteBuffer in) {
+            data = new byte[in.readableBytes()];
+            in.readBytes(data);
+        }
+
+        @Override
+        public int estimateSize() {
+            return hint;
+        }
+    }
+
+    @Test
+    public void sizeHints() {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().register(HintedPacket::new, null, HintedPacket.class, 0);
+        PacketEncoderDecoder encoderDecoder = new CompactPacketEncoderDecoder();
+
+        // the size takes as many bytes as the hint asks for, and the frame is moved over when the hint is too small
+        int[][] cases = {{300, 300, 4 + 300}, {300, -1, 4 + 300}, {300, 10, 4 + 300}, {5, 5, 3 + 5}, {5, 400, 4 + 5}, {20000, 20000, 5 + 20000}};
+        for (int[] c : cases) {
+            HintedPacket packet = new HintedPacket();
+            packet.data = new byte[c[0]];
+            for (int i = 0; i < packet.data.length; i++) packet.data[i] = (byte) i;
+            packet.hint = c[1];
+            ByteBuffer buffer = bufferFactory.buffer(16);
+            assertEquals(c[2], encode(encoderDecoder, container, container.getDefaultRegistry(), packet, buffer));
+            PacketHandlerContext<?> context = encoderDecoder.decode(container, buffer, null);
+            assertArrayEquals(packet.data, ((HintedPacket) context.packet).data);
+            assertEquals(0, buffer.readableBytes());
+        }
+    }
+
+    @Test
+    public void batchOverflow() {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().register(HintedPacket::new, null, HintedPacket.class, 0);
+        PacketEncoderDecoder encoderDecoder = new CompactPacketEncoderDecoder(100);
+
+        // the third packet does not fit in the first batch and the last does not fit in a batch by itself
+        int[] sizes = {40, 40, 40, 10, 150};
+        List<HintedPacket> packets = new ArrayList<>();
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        PacketBatch batch = new PacketBatch();
+        for (int size : sizes) {
+            HintedPacket packet = new HintedPacket();
+            packet.data = new byte[size];
+            for (int i = 0; i < size; i++) packet.data[i] = (byte) (size + i);
+            packets.add(packet);
+            assertTrue(encodeBatched(encoderDecoder, container, container.getDefaultRegistry(), packet, batch, buffer));
+        }
+        encoderDecoder.closeBatch(batch, buffer);
+
+        List<PacketHandlerContext<?>> received = new ArrayList<>();
+        int frames = 0;
+        PacketEncoderDecoder decoder = new CompactPacketEncoderDecoder(); // the last frame is bigger than the batch limit
+        while (decoder.decodeFrame(container, buffer, received::add)) frames++;
+        assertEquals(3, frames);
+        assertEquals(0, buffer.readableBytes());
+        assertEquals(packets.size(), received.size());
+        for (int i = 0; i < packets.size(); i++) {
+            assertEquals(1, packets.get(i).writes); // moved over, never written again
+            assertArrayEquals(packets.get(i).data, ((HintedPacket) received.get(i).packet).data);
+        }
+    }
+
+    @Test
+    public void batchSize() {
+        PacketRegistryContainer container = singleContainer();
+        PacketRegistry registry = container.getDefaultRegistry();
+        PacketEncoderDecoder encoderDecoder = new CompactPacketEncoderDecoder();
+
+        ByteBuffer separate = bufferFactory.buffer(1024);
+        ByteBuffer batched = bufferFactory.buffer(1024);
+        PacketBatch batch = new PacketBatch();
+        for (int i = 0; i < 30; i++) {
+            encode(encoderDecoder, container, registry, new IntegerPacket(i), separate);
+            encodeBatched(encoderDecoder, container, registry, new IntegerPacket(i), batch, batched);
+        }
+        encoderDecoder.closeBatch(batch, batched);
+        assertEquals(30 * 7, separate.readableBytes());
+        assertEquals(4 + 30 * 6, batched.readableBytes());
+
+        // a frame holding a batch can not be returned by decode
+        assertThrows(PacketDecodeException.class, () -> encoderDecoder.decode(container, batched, null));
+    }
+
+    @Test
+    public void wireSize() {
+        PacketRegistryContainer container = singleContainer();
+        PacketRegistry registry = container.getDefaultRegistry();
+        PacketEncoderDecoder simple = new SimplePacketEncoderDecoder();
+        PacketEncoderDecoder compact = new CompactPacketEncoderDecoder();
+
+        Packet[] packets = {new IntegerPacket(1), new BooleanPacket(true), new MultiBooleanPacket(true, false)};
+        int[] bodySizes = {4, 1, 1};
+        for (int i = 0; i < packets.length; i++) {
+            int simpleSize = encode(simple, container, registry, packets[i], bufferFactory.buffer(32));
+            int compactSize = encode(compact, container, registry, packets[i], bufferFactory.buffer(32));
+            assertEquals(9, simpleSize - bodySizes[i]);
+            assertEquals(3, compactSize - bodySizes[i]);
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.network.channel.ChannelOption;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packetdecoderencoder.CompressingPacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.PacketDecodeException;
+import com.hirshi001.networking.packetdecoderencoder.compression.CompressionDictionary;
+import com.hirshi001.networking.packetdecoderencoder.compression.Compressor;
+import com.hirshi001.networking.packetdecoderencoder.compression.DeflateCompressor;
+import com.hirshi001.networking.packetdecoderencoder.compression.LZCompressor;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.VarIntUtil;
+import com.hirshi001.networking.util.defaultpackets.arraypackets.ByteArrayPacket;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.StringPacket;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the compressors round trip and that compressed frames decode to the packets sent.
+ */
+public class CompressionTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    /**
+     * Generates JSON like text, which compresses about as well as the text games usually send.
+     */
+    public static byte[] json(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder("[");
+        while (sb.length() < length) {
+            sb.append("{\"id\":").append(random.nextInt(10000))
+                    .append(",\"name\":\"player_").append(random.nextInt(100))
+                    .append("\",\"x\":").append(random.nextInt(2000) / 10.0)
+                    .append(",\"y\":").append(random.nextInt(2000) / 10.0)
+                    .append(",\"alive\":").append(random.nextBoolean()).append("},");
+        }
+        return Arrays.copyOf(sb.toString().getBytes(StandardCharsets.UTF_8), length);
+    }
+
+    private static void assertRoundTrip(Compressor compressor, byte[] data) {
+        byte[] compressed = new byte[data.length + data.length / 255 + 16]; // room for incompressible data
+        int length = compressor.compress(data, data.length, compressed, compressed.length);
+        assertTrue(length >= 0);
+        byte[] decompressed = new byte[data.length];
+        compressor.decompress(compressed, length, decompressed, data.length);
+        assertArrayEquals(data, decompressed);
+    }
+
+    @Test
+    public void compressors() {
+        List<Supplier<Compressor>> compressors = Arrays.asList(LZCompressor::new, DeflateCompressor::new);
+        Random random = new Random(1);
+        for (Supplier<Compressor> supplier : compressors) {
+            Compressor compressor = supplier.get();
+            for (int length : new int[]{0, 1, 4, 5, 15, 16, 19, 300, 5000, 70000}) {
+                assertRoundTrip(compressor, json(length, length));
+                byte[] noise = new byte[length];
+                random.nextBytes(noise);
+                assertRoundTrip(compressor, noise);
+                assertRoundTrip(compressor, new byte[length]); // long overlapping matches
+            }
+
+            byte[] noise = new byte[1000];
+            random.nextBytes(noise);
+            assertEquals(-1, compressor.compress(noise, noise.length, new byte[1000], 900));
+        }
+
+        LZCompressor lz = new LZCompressor();
+        assertThrows(IllegalArgumentException.class, () -> lz.decompress(new byte[]{(byte) 0xF0}, 1, new byte[100], 100));
+        assertThrows(IllegalArgumentException.class, () -> lz.decompress(new byte[]{0x00, 0x05, 0x00}, 3, new byte[100], 100));
+        // more bytes than the compressed bytes could decompress to, which must fail before the window grows to hold them
+        CompressionDictionary dictionary = new CompressionDictionary(1, json(1000, 1));
+        assertThrows(IllegalArgumentException.class, () -> lz.decompress(new byte[]{(byte) 0xF0}, 1, new byte[0], Integer.MAX_VALUE, dictionary));
+        assertThrows(IllegalArgumentException.class, () -> lz.decompress(new byte[]{(byte) 0xF0}, 1, new byte[0], 1 << 20));
+    }
+
+    private void sendAndReceive(CompressingPacketEncoderDecoder encoderDecoder, boolean batch) {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        List<Packet> received = new ArrayList<>();
+        container.getDefaultRegistry()
+                .register(StringPacket::new, context -> received.add(context.packet), StringPacket.class, 0)
+                .register(ByteArrayPacket::new, context -> received.add(context.packet), ByteArrayPacket.class, 1);
+        LocalServer server = new LocalServer(new DefaultNetworkData(encoderDecoder, container), bufferFactory);
+        LocalChannel sending = server.newChannel(), receiving = server.newChannel();
+        sending.setChannelOption(ChannelOption.BATCH_PACKETS, batch);
+
+        String chunk = new String(json(4000, 7), StandardCharsets.UTF_8);
+        List<Packet> sent = new ArrayList<>();
+        sent.add(new StringPacket(chunk));
+        sent.add(new ByteArrayPacket(new byte[]{1, 2, 3}));
+        for (int i = 0; i < 50; i++) sent.add(new ByteArrayPacket(json(40, i)));
+        sent.add(new ByteArrayPacket(json(100000, 3)));
+        for (Packet packet : sent) sending.sendNow(packet, null, PacketType.TCP);
+        sending.flush();
+
+        assertTrue(sending.tcpSent.readableBytes() < 4000 + 50 * 40 + 100000);
+        receiving.receiveTCP(sending.tcpSent);
+        assertEquals(sent.size(), received.size());
+        assertEquals(chunk, ((StringPacket) received.get(0)).value);
+        for (int i = 1; i < sent.size(); i++)
+            assertArrayEquals(((ByteArrayPacket) sent.get(i)).array, ((ByteArrayPacket) received.get(i)).array);
+    }
+
+    @Test
+    public void compressedFrames() {
+        sendAndReceive(new CompressingPacketEncoderDecoder(bufferFactory), false);
+        sendAndReceive(new CompressingPacketEncoderDecoder(bufferFactory), true);
+        sendAndReceive(new CompressingPacketEncoderDecoder(bufferFactory, DeflateCompressor::new, 64, Integer.MAX_VALUE), true);
+    }
+
+    @Test
+    public void decompressedSizeIsLimited() {
+        CompressingPacketEncoderDecoder encoderDecoder = new CompressingPacketEncoderDecoder(bufferFactory);
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().register(ByteArrayPacket::new, null, ByteArrayPacket.class, 0);
+
+        // a compressed frame which claims to decompress to a gigabyte
+        ByteBuffer frame = bufferFactory.buffer(16);
+        frame.writeByte(1 << 6);
+        frame.writeByte(1 + VarIntUtil.varIntSize(1 << 30) + 2);
+        frame.writeByte(0);
+        VarIntUtil.writeVarInt(frame, 1 << 30);
+        frame.writeByte(0xF0);
+        frame.writeByte(0xFF);
+        List<Object> decoded = new ArrayList<>();
+        assertThrows(PacketDecodeException.class, () -> encoderDecoder.decodeFrame(container, frame, decoded::add));
+        assertTrue(decoded.isEmpty());
+    }
+
+}
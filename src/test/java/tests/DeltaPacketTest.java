@@ -0,0 +1,198 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packet.DeltaPacket;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.DeltaTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that delta packets are sent as a delta against the last packet of their type over TCP, and against the last
+ * acknowledged one over UDP.
+ */
+public class DeltaPacketTest {
+
+    public static class StatePacket extends DeltaPacket {
+        public int tick;
+        public float x, y;
+        public int[] slots = new int[16];
+
+        public StatePacket() {
+            super();
+        }
+
+        public StatePacket(int tick, float x, float y, int[] slots) {
+            super();
+            this.tick = tick;
+            this.x = x;
+            this.y = y;
+            this.slots = slots;
+        }
+
+        @Override
+        protected int estimateStateSize() {
+            return 12 + 4 * slots.length + 1;
+        }
+
+        @Override
+        protected void writeState(ByteBuffer out) {
+            out.writeInt(tick);
+            out.writeFloat(x);
+            out.writeFloat(y);
+            out.writeByte(slots.length);
+            for (int slot : slots) out.writeInt(slot);
+        }
+
+        @Override
+        protected void readState(ByteBuffer in) {
+            tick = in.readInt();
+            x = in.readFloat();
+            y = in.readFloat();
+            slots = new int[in.readByte()];
+            for (int i = 0; i < slots.length; i++) slots[i] = in.readInt();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof StatePacket)) return false;
+            StatePacket packet = (StatePacket) obj;
+            return packet.tick == tick && packet.x == x && packet.y == y && Arrays.equals(packet.slots, slots);
+        }
+    }
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+    private final List<StatePacket> received = new ArrayList<>();
+    private LocalChannel sending, receiving;
+
+    private void connect() {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry()
+                .registerSystemPackets()
+                .register(StatePacket::new, context -> received.add(context.packet), StatePacket.class, 0);
+        LocalServer server = new LocalServer(new DefaultNetworkData(new CompactPacketEncoderDecoder(), container), bufferFactory);
+        sending = server.newChannel();
+        receiving = server.newChannel();
+    }
+
+    private static StatePacket state(int tick) {
+        int[] slots = new int[16];
+        for (int i = 0; i < slots.length; i++) slots[i] = i * 1000 + (i == tick % 16 ? tick : 0);
+        return new StatePacket(tick, tick * 0.5F, 100, slots);
+    }
+
+    private int send(StatePacket packet, PacketType type) {
+        ByteBuffer sent = type == PacketType.TCP ? sending.tcpSent : sending.udpSent;
+        int before = sent.readableBytes();
+        sending.sendNow(packet, null, type);
+        sending.flush();
+        return sent.readableBytes() - before;
+    }
+
+    @Test
+    public void tcpDeltas() {
+        connect();
+        List<StatePacket> sent = new ArrayList<>();
+        int first = 0, rest = 0;
+        for (int tick = 0; tick < 50; tick++) {
+            sent.add(state(tick));
+            int size = send(state(tick), PacketType.TCP);
+            if (tick == 0) first = size;
+            else rest = Math.max(rest, size);
+        }
+        assertTrue(rest < first / 3, "deltas of " + rest + " bytes, full state of " + first);
+
+        receiving.receiveTCP(sending.tcpSent);
+        assertEquals(sent, received);
+    }
+
+    @Test
+    public void udpDeltas() {
+        connect();
+        List<StatePacket> sent = new ArrayList<>();
+        int first = send(state(0), PacketType.UDP);
+        assertEquals(first, send(state(1), PacketType.UDP)); // nothing acknowledged yet
+
+        ByteBuffer lost = sending.udpSent.readBytes(first); // the first packet is lost
+        lost.release();
+        sent.add(state(1));
+        receiving.receiveUDP(sending.udpSent);
+        receiving.flush();
+        sending.receiveUDP(receiving.udpSent);
+
+        for (int tick = 2; tick < 40; tick++) {
+            sent.add(state(tick));
+            assertTrue(send(state(tick), PacketType.UDP) < first / 3);
+            if (tick % 5 == 0) { // acknowledgements are only delivered now and then
+                receiving.receiveUDP(sending.udpSent);
+                receiving.flush();
+                sending.receiveUDP(receiving.udpSent);
+            }
+        }
+        receiving.receiveUDP(sending.udpSent);
+        assertEquals(sent, received);
+    }
+
+    @Test
+    public void missingBaseline() {
+        connect();
+        send(state(0), PacketType.UDP);
+        receiving.receiveUDP(sending.udpSent);
+        receiving.flush();
+        sending.receiveUDP(receiving.udpSent);
+        send(state(1), PacketType.UDP);
+
+        receiving.connectTCP(); // forgets the baseline the delta was sent against
+        receiving.receiveUDP(sending.udpSent);
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void baselinesAreOnlyKeptOnceWritten() {
+        DeltaTable sender = new DeltaTable(), receiver = new DeltaTable();
+        ByteBuffer buffer = bufferFactory.buffer(128);
+
+        // the frame is rolled back, so the state is not a baseline
+        StatePacket packet = state(0);
+        packet.beforeWrite(sender, true);
+        packet.writeBytes(buffer);
+        packet.afterWrite(false);
+        assertEquals(-1, sender.getSentBaseline(StatePacket.class, true));
+
+        // writing the packet again writes the same bytes, which become the baseline once written
+        buffer.clear();
+        packet.beforeWrite(sender, true);
+        packet.writeBytes(buffer);
+        int size = buffer.readableBytes();
+        buffer.clear();
+        packet.writeBytes(buffer);
+        assertEquals(size, buffer.readableBytes());
+        packet.afterWrite(true);
+        assertEquals(0, sender.getSentBaseline(StatePacket.class, true));
+
+        StatePacket next = state(1);
+        next.beforeWrite(sender, true);
+        next.writeBytes(buffer);
+        next.afterWrite(true);
+        assertTrue(buffer.readableBytes() - size < size / 3);
+
+        for (StatePacket expected : Arrays.asList(packet, next)) {
+            StatePacket read = new StatePacket();
+            read.readBytes(buffer);
+            assertTrue(read.afterRead(receiver, bufferFactory));
+            assertEquals(expected, read);
+        }
+    }
+
+}
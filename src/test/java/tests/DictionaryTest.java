@@ -0,0 +1,133 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packetdecoderencoder.CompressingPacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.compression.CompressionDictionary;
+import com.hirshi001.networking.packetdecoderencoder.compression.Compressor;
+import com.hirshi001.networking.packetdecoderencoder.compression.DeflateCompressor;
+import com.hirshi001.networking.packetdecoderencoder.compression.DictionaryTrainer;
+import com.hirshi001.networking.packetdecoderencoder.compression.LZCompressor;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.StringPacket;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that dictionaries trained on recorded packets compress small packets, and that channels only use them once
+ * both sides have the same version.
+ */
+public class DictionaryTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    /**
+     * Generates a small JSON message like the ones a game sends many of.
+     */
+    public static String message(Random random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return "{\"type\":\"move\",\"player\":\"player_" + random.nextInt(100) + "\",\"x\":" + random.nextInt(2000) / 10.0
+                        + ",\"y\":" + random.nextInt(2000) / 10.0 + ",\"facing\":\"" + (random.nextBoolean() ? "left" : "right") + "\"}";
+            case 1:
+                return "{\"type\":\"chat\",\"player\":\"player_" + random.nextInt(100) + "\",\"channel\":\"global\",\"text\":\"gg " + random.nextInt(1000) + "\"}";
+            default:
+                return "{\"type\":\"inventory\",\"player\":\"player_" + random.nextInt(100) + "\",\"slot\":" + random.nextInt(36)
+                        + ",\"item\":\"minecraft:iron_sword\",\"count\":" + random.nextInt(64) + ",\"damage\":" + random.nextInt(250) + "}";
+        }
+    }
+
+    private CompressionDictionary train(int size, int version) {
+        DictionaryTrainer trainer = new DictionaryTrainer(bufferFactory);
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) trainer.addSample(new StringPacket(message(random)));
+        return trainer.train(size, version);
+    }
+
+    @Test
+    public void compressors() {
+        CompressionDictionary dictionary = train(4096, 1);
+        assertTrue(dictionary.size() > 0 && dictionary.size() <= 4096);
+
+        List<Supplier<Compressor>> compressors = Arrays.asList(LZCompressor::new, DeflateCompressor::new);
+        for (Supplier<Compressor> supplier : compressors) {
+            Compressor compressor = supplier.get();
+            Random random = new Random(2); // not the samples the dictionary was trained on
+            int plain = 0, compressed = 0, withDictionary = 0;
+            for (int i = 0; i < 200; i++) {
+                byte[] data = message(random).getBytes(StandardCharsets.UTF_8);
+                byte[] dst = new byte[data.length + 16], decompressed = new byte[data.length];
+
+                int length = compressor.compress(data, data.length, dst, dst.length, dictionary);
+                assertTrue(length >= 0);
+                compressor.decompress(dst, length, decompressed, data.length, dictionary);
+                assertArrayEquals(data, decompressed);
+
+                plain += data.length;
+                compressed += compressor.compress(data, data.length, dst, dst.length);
+                withDictionary += length;
+            }
+            assertTrue(withDictionary < plain / 2);
+            assertTrue(withDictionary < compressed / 2);
+        }
+    }
+
+    private List<String> sendAndReceive(CompressionDictionary sendingDictionary, CompressionDictionary receivingDictionary, int[] sentBytes) {
+        List<String> received = new ArrayList<>();
+        LocalChannel[] channels = new LocalChannel[2];
+        CompressionDictionary[] dictionaries = {sendingDictionary, receivingDictionary};
+        for (int i = 0; i < 2; i++) {
+            PacketRegistryContainer container = new SinglePacketRegistryContainer();
+            container.getDefaultRegistry()
+                    .registerSystemPackets()
+                    .register(StringPacket::new, context -> received.add(context.packet.value), StringPacket.class, 0);
+            CompressingPacketEncoderDecoder encoderDecoder = new CompressingPacketEncoderDecoder(bufferFactory);
+            encoderDecoder.setDictionary(container.getDefaultRegistry().getId(), dictionaries[i]);
+            channels[i] = new LocalServer(new DefaultNetworkData(encoderDecoder, container), bufferFactory).newChannel();
+        }
+        LocalChannel sending = channels[0], receiving = channels[1];
+        sending.connectTCP();
+        receiving.connectTCP();
+        sending.flush();
+        receiving.flush();
+        receiving.receiveTCP(sending.tcpSent);
+        sending.receiveTCP(receiving.tcpSent);
+
+        Random random = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            int before = sending.tcpSent.readableBytes();
+            sending.sendNow(new StringPacket(message(random)), null, PacketType.TCP);
+            sending.flush();
+            sentBytes[0] += sending.tcpSent.readableBytes() - before;
+        }
+        receiving.receiveTCP(sending.tcpSent);
+        return received;
+    }
+
+    @Test
+    public void agreedVersions() {
+        CompressionDictionary dictionary = train(4096, 1);
+        List<String> expected = new ArrayList<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 100; i++) expected.add(message(random));
+
+        int[] agreed = {0}, mismatched = {0}, missing = {0};
+        assertEquals(expected, sendAndReceive(dictionary, dictionary, agreed));
+        assertEquals(expected, sendAndReceive(dictionary, new CompressionDictionary(2, dictionary.getBytes()), mismatched));
+        assertEquals(expected, sendAndReceive(dictionary, null, missing));
+        assertTrue(agreed[0] < mismatched[0] / 2);
+        assertEquals(mismatched[0], missing[0]);
+    }
+
+}
@@ -0,0 +1,204 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packet.FlyweightPacket;
+import com.hirshi001.networking.packet.FlyweightPacketHolder;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.PacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that flyweight packets read their fields from the received bytes and are reused between packets.
+ */
+public class FlyweightPacketTest {
+
+    public static class PositionPacket extends Packet {
+        public int entity;
+        public long time;
+        public float x, y;
+
+        public PositionPacket() {
+        }
+
+        public PositionPacket(int entity, long time, float x, float y) {
+            this.entity = entity;
+            this.time = time;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public void writeBytes(ByteBuffer out) {
+            out.writeInt(entity);
+            out.writeLong(time);
+            out.writeFloat(x);
+            out.writeFloat(y);
+        }
+
+        @Override
+        public void readBytes(ByteBuffer in) {
+            entity = in.readInt();
+            time = in.readLong();
+            x = in.readFloat();
+            y = in.readFloat();
+        }
+    }
+
+    public static class PositionView extends FlyweightPacket {
+        public int entity() {
+            return getInt(0);
+        }
+
+        public long time() {
+            return getLong(4);
+        }
+
+        public float x() {
+            return getFloat(12);
+        }
+
+        public float y() {
+            return getFloat(16);
+        }
+
+        @Override
+        public int fixedLength() {
+            return 20;
+        }
+    }
+
+    public static class EntityView extends FlyweightPacket {
+        public int entity() {
+            return getInt(0);
+        }
+
+        public long time() {
+            return getLong(4);
+        }
+    }
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    @Test
+    public void flyweightsAreReused() {
+        PacketEncoderDecoder[] encoderDecoders = {new SimplePacketEncoderDecoder(), new CompactPacketEncoderDecoder()};
+        for (PacketEncoderDecoder encoderDecoder : encoderDecoders) {
+            PacketRegistryContainer sender = new SinglePacketRegistryContainer();
+            sender.getDefaultRegistry().register(PositionPacket::new, null, PositionPacket.class, 5);
+
+            List<String> handled = new ArrayList<>();
+            IdentityHashMap<PositionView, Boolean> instances = new IdentityHashMap<>();
+            PacketRegistryContainer receiver = new SinglePacketRegistryContainer();
+            receiver.getDefaultRegistry().registerFlyweight(PositionView::new, context -> {
+                PositionView view = context.packet;
+                instances.put(view, true);
+                handled.add(view.entity() + " " + view.time() + " " + view.x() + " " + view.y());
+            }, PositionView.class, 5);
+
+            ByteBuffer buffer = bufferFactory.buffer(64);
+            for (int i = 0; i < 10; i++) {
+                PacketHandlerContext<PositionPacket> context = new PacketHandlerContext<>();
+                context.packet = new PositionPacket(i, 1000L * i, i + 0.5f, -i);
+                context.packetRegistry = sender.getDefaultRegistry();
+                encoderDecoder.encode(context, null, sender, buffer);
+            }
+            while (encoderDecoder.decodeFrame(receiver, buffer, context -> {
+                context.handle();
+                context.releasePacket();
+            })) ;
+
+            assertEquals(10, handled.size());
+            for (int i = 0; i < 10; i++) assertEquals(i + " " + 1000L * i + " " + (i + 0.5f) + " " + (float) -i, handled.get(i));
+            assertEquals(1, instances.size());
+        }
+    }
+
+    @Test
+    public void shortBodies() {
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        buffer.writeInt(7);
+
+        FlyweightPacketHolder<PositionView> holder = new FlyweightPacketHolder<>(PositionView::new, null, PositionView.class);
+        assertThrows(IllegalArgumentException.class, () -> holder.wrap(buffer, 0, 4));
+        PositionView view = holder.wrap(buffer, 0, 20);
+        holder.release(view);
+        assertSame(view, holder.wrap(buffer, 0, 20));
+
+        // without a fixed length, the accessors check the body instead
+        EntityView entity = new EntityView();
+        entity.wrap(buffer, 0, 4);
+        assertEquals(7, entity.entity());
+        assertThrows(IndexOutOfBoundsException.class, entity::time);
+    }
+
+    @Test
+    public void forwardFlyweight() {
+        PacketEncoderDecoder encoderDecoder = new CompactPacketEncoderDecoder();
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().registerFlyweight(PositionView::new, null, PositionView.class, 5);
+
+        PacketRegistryContainer sender = new SinglePacketRegistryContainer();
+        sender.getDefaultRegistry().register(PositionPacket::new, null, PositionPacket.class, 5);
+
+        ByteBuffer frame = bufferFactory.buffer(64);
+        PacketHandlerContext<PositionPacket> context = new PacketHandlerContext<>();
+        context.packet = new PositionPacket(3, 42L, 1f, 2f);
+        context.packetRegistry = sender.getDefaultRegistry();
+        encoderDecoder.encode(context, null, sender, frame);
+        byte[] original = new byte[frame.readableBytes()];
+        for (int i = 0; i < original.length; i++) original[i] = frame.getByte(frame.readerIndex() + i);
+
+        ByteBuffer forwarded = bufferFactory.buffer(64);
+        assertTrue(encoderDecoder.decodeFrame(container, frame, received -> encoderDecoder.encode(received, null, container, forwarded)));
+        byte[] copy = new byte[forwarded.readableBytes()];
+        forwarded.readBytes(copy);
+        assertArrayEquals(original, copy);
+    }
+
+    @Test
+    public void retainedFlyweightsAreCopied() {
+        PacketEncoderDecoder encoderDecoder = new CompactPacketEncoderDecoder();
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().registerFlyweight(PositionView::new, null, PositionView.class, 5);
+        LocalServer server = new LocalServer(new DefaultNetworkData(encoderDecoder, container), bufferFactory);
+
+        PacketRegistryContainer sender = new SinglePacketRegistryContainer();
+        sender.getDefaultRegistry().register(PositionPacket::new, null, PositionPacket.class, 5);
+        ByteBuffer buffer = bufferFactory.buffer(64);
+        PacketHandlerContext<PositionPacket> context = new PacketHandlerContext<>();
+        context.packet = new PositionPacket(3, 42L, 1f, 2f);
+        context.packetRegistry = sender.getDefaultRegistry();
+        encoderDecoder.encode(context, null, sender, buffer);
+
+        List<PositionView> retained = new ArrayList<>();
+        assertTrue(encoderDecoder.decodeFrame(container, buffer, received -> {
+            received.networkSide = server;
+            received.retainPacket();
+            retained.add((PositionView) received.packet);
+        }));
+        // the receive buffer is reused for the next frame
+        buffer.clear();
+        for (int i = 0; i < 8; i++) buffer.writeLong(-1);
+
+        PositionView view = retained.get(0);
+        assertEquals(3, view.entity());
+        assertEquals(42L, view.time());
+        assertEquals(1f, view.x());
+        assertEquals(2f, view.y());
+    }
+
+}
@@ -0,0 +1,160 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.network.channel.AbstractChannelListener;
+import com.hirshi001.networking.network.channel.Channel;
+import com.hirshi001.networking.network.channel.ChannelOption;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packetdecoderencoder.CompressingPacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.PacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.FragmentTable;
+import com.hirshi001.networking.util.defaultpackets.arraypackets.ByteArrayPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.FragmentPacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that UDP datagrams over the size limit are split into fragments which the other side puts back together.
+ */
+public class FragmentationTest {
+
+    private static final int MAX_SIZE = 500;
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+    private final List<byte[]> received = new ArrayList<>();
+
+    private LocalServer server(PacketEncoderDecoder encoderDecoder) {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry()
+                .registerSystemPackets()
+                .register(ByteArrayPacket::new, context -> received.add(context.packet.array), ByteArrayPacket.class, 0);
+        return new LocalServer(new DefaultNetworkData(encoderDecoder, container), bufferFactory);
+    }
+
+    private static void deliver(LocalChannel receiving, byte[] datagram) {
+        ByteBuffer buffer = new DefaultBufferFactory().buffer(datagram.length);
+        buffer.writeBytes(datagram);
+        receiving.receiveUDP(buffer);
+    }
+
+    private void sendFragmented(PacketEncoderDecoder encoderDecoder) {
+        received.clear();
+        LocalServer server = server(encoderDecoder);
+        LocalChannel sending = server.newChannel(), receiving = server.newChannel();
+        for (LocalChannel channel : new LocalChannel[]{sending, receiving}) {
+            channel.setChannelOption(ChannelOption.MAX_UDP_PACKET_SIZE, MAX_SIZE);
+            channel.setChannelOption(ChannelOption.FRAGMENT_UDP_PACKETS, true);
+        }
+
+        Random random = new Random(1);
+        List<byte[]> sent = new ArrayList<>();
+        for (int length : new int[]{3000, 10, 452, 20000}) {
+            byte[] array = new byte[length];
+            random.nextBytes(array);
+            sent.add(array);
+            sending.sendNow(new ByteArrayPacket(array), null, PacketType.UDP);
+        }
+        sending.flush();
+        byte[] small = {1, 2, 3};
+        sending.sendNow(new ByteArrayPacket(small), null, PacketType.UDP);
+        sending.flush();
+        sent.add(small);
+
+        assertTrue(sending.udpDatagrams.size() > 40);
+        for (byte[] datagram : sending.udpDatagrams) assertTrue(datagram.length <= MAX_SIZE, datagram.length + " bytes");
+
+        List<byte[]> datagrams = new ArrayList<>(sending.udpDatagrams);
+        byte[] last = datagrams.remove(datagrams.size() - 1); // the small packet was not fragmented
+        Collections.reverse(datagrams);
+        deliver(receiving, datagrams.get(0)); // duplicates are ignored
+        for (byte[] datagram : datagrams) deliver(receiving, datagram);
+        deliver(receiving, last);
+
+        assertEquals(sent.size(), received.size());
+        for (int i = 0; i < sent.size(); i++) assertArrayEquals(sent.get(i), received.get(i));
+        assertEquals(0, receiving.getFragmentTable().getPendingCount());
+    }
+
+    @Test
+    public void fragments() {
+        sendFragmented(new SimplePacketEncoderDecoder());
+        sendFragmented(new CompressingPacketEncoderDecoder(bufferFactory));
+
+        // without the option, datagrams over the limit are dropped and reported
+        LocalServer server = server(new SimplePacketEncoderDecoder());
+        LocalChannel sending = server.newChannel();
+        List<Integer> dropped = new ArrayList<>();
+        sending.addChannelListener(new AbstractChannelListener() {
+            @Override
+            public void onUDPDropped(Channel channel, int size) {
+                dropped.add(size);
+            }
+        });
+        sending.setChannelOption(ChannelOption.MAX_UDP_PACKET_SIZE, MAX_SIZE);
+        sending.sendNow(new ByteArrayPacket(new byte[1000]), null, PacketType.UDP);
+        sending.flush();
+        assertTrue(sending.udpDatagrams.isEmpty());
+        assertEquals(1, dropped.size());
+
+        // with the option, datagrams which can not be fragmented are still dropped
+        sending.setChannelOption(ChannelOption.FRAGMENT_UDP_PACKETS, true);
+        sending.setChannelOption(ChannelOption.MAX_UDP_PACKET_SIZE, FragmentPacket.MAX_FRAME_OVERHEAD);
+        sending.sendNow(new ByteArrayPacket(new byte[1000]), null, PacketType.UDP);
+        sending.flushUDP();
+        assertEquals(2, dropped.size());
+        assertTrue(dropped.get(1) > 1000);
+        sending.setChannelOption(ChannelOption.MAX_UDP_PACKET_SIZE, MAX_SIZE);
+        sending.sendNow(new ByteArrayPacket(new byte[10]), null, PacketType.UDP);
+        sending.flush(); // the dropped datagram was cleared from the buffer
+        assertEquals(1, sending.udpDatagrams.size());
+    }
+
+    @Test
+    public void limits() {
+        FragmentTable table = new FragmentTable(2, 100, 1000);
+        long second = 1_000_000_000L;
+
+        assertFalse(table.add(new FragmentPacket(1, 0, 2, new byte[]{1}), 0));
+        assertFalse(table.add(new FragmentPacket(1, 0, 2, new byte[]{1}), 0)); // duplicate
+        assertFalse(table.add(new FragmentPacket(1, 1, 3, new byte[]{2}), 0)); // different count
+        assertFalse(table.add(new FragmentPacket(9, 2, 2, new byte[]{2}), 0)); // index out of range
+        assertTrue(table.add(new FragmentPacket(1, 1, 2, new byte[]{2, 3}), 0));
+        ByteBuffer message = table.pollMessage(bufferFactory);
+        byte[] bytes = new byte[message.readableBytes()];
+        message.readBytes(bytes);
+        assertArrayEquals(new byte[]{1, 2, 3}, bytes);
+        assertNull(table.pollMessage(bufferFactory));
+
+        // lost fragments time out
+        table.add(new FragmentPacket(2, 0, 2, new byte[]{1}), 0);
+        assertEquals(1, table.getPendingCount());
+        assertFalse(table.add(new FragmentPacket(2, 1, 2, new byte[]{2}), 2 * second));
+        assertEquals(1, table.getPendingCount()); // the late fragment started a new message
+
+        // only a bounded number of messages are collected, dropping the oldest
+        table.add(new FragmentPacket(3, 0, 2, new byte[]{1}), 2 * second);
+        table.add(new FragmentPacket(4, 0, 2, new byte[]{1}), 2 * second);
+        assertEquals(2, table.getPendingCount());
+        assertFalse(table.add(new FragmentPacket(2, 0, 2, new byte[]{1}), 2 * second));
+        assertEquals(2, table.getPendingCount());
+
+        // messages over the size limit are dropped
+        assertFalse(table.add(new FragmentPacket(5, 0, 2, new byte[60]), 2 * second));
+        assertFalse(table.add(new FragmentPacket(5, 1, 2, new byte[60]), 2 * second));
+        assertNull(table.pollMessage(bufferFactory));
+        assertEquals(1, table.getPendingCount());
+    }
+
+}
@@ -0,0 +1,128 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.packet.serialization.Serialize;
+import com.hirshi001.networking.packet.serialization.SerializablePacket;
+import com.hirshi001.networking.packetregistry.DefaultPacketRegistry;
+import com.hirshi001.networking.packetregistry.PacketRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the code generated by the annotation processor for {@link SerializablePacket} classes.
+ */
+public class GeneratedSerializationTest {
+
+    @SerializablePacket(id = 7, poolSize = 4)
+    public static class StatePacket extends Packet {
+        @Serialize boolean alive;
+        @Serialize byte team;
+        @Serialize char grade;
+        @Serialize short level;
+        @Serialize int x, y;
+        @Serialize long time;
+        @Serialize float speed;
+        @Serialize double health;
+        @Serialize String name;
+        @Serialize int[] inventory;
+        @Serialize boolean[] flags;
+        @Serialize byte[] data;
+        @Serialize double[] history;
+        @Serialize short[] levels;
+        @Serialize char[] letters;
+        int notSerialized;
+
+        @Override
+        public void writeBytes(ByteBuffer out) {
+            super.writeBytes(out);
+            GeneratedSerializationTest_StatePacketSerializer.write(this, out);
+        }
+
+        @Override
+        public void readBytes(ByteBuffer in) {
+            super.readBytes(in);
+            GeneratedSerializationTest_StatePacketSerializer.read(this, in);
+        }
+
+        @Override
+        public int estimateSize() {
+            return GeneratedSerializationTest_StatePacketSerializer.estimateSize(this);
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            GeneratedSerializationTest_StatePacketSerializer.reset(this);
+        }
+    }
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    @Test
+    public void roundTrip() {
+        StatePacket packet = new StatePacket();
+        packet.alive = true;
+        packet.team = -3;
+        packet.grade = 'A';
+        packet.level = 300;
+        packet.x = 12;
+        packet.y = -40000;
+        packet.time = Long.MAX_VALUE;
+        packet.speed = 2.5f;
+        packet.health = 0.75;
+        packet.name = "player";
+        packet.inventory = new int[]{1, 2, 3};
+        packet.flags = new boolean[73]; // a whole word and a partial byte
+        for (int i = 0; i < packet.flags.length; i++) packet.flags[i] = i % 3 == 0 || i == 72;
+        packet.data = null;
+        packet.history = new double[0];
+        packet.levels = new short[]{-1, 300, Short.MAX_VALUE};
+        packet.letters = "hello".toCharArray();
+        packet.notSerialized = 5;
+
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        packet.writeBytes(buffer);
+        assertEquals(buffer.readableBytes(), packet.estimateSize());
+
+        StatePacket read = new StatePacket();
+        boolean[] flags = read.flags = new boolean[73];
+        read.readBytes(buffer);
+        assertEquals(0, buffer.readableBytes());
+        assertTrue(read.alive);
+        assertEquals(-3, read.team);
+        assertEquals('A', read.grade);
+        assertEquals(300, read.level);
+        assertEquals(12, read.x);
+        assertEquals(-40000, read.y);
+        assertEquals(Long.MAX_VALUE, read.time);
+        assertEquals(2.5f, read.speed);
+        assertEquals(0.75, read.health);
+        assertEquals("player", read.name);
+        assertArrayEquals(packet.inventory, read.inventory);
+        assertArrayEquals(packet.flags, read.flags);
+        assertSame(flags, read.flags); // an array of the right length is read into
+        assertNull(read.data);
+        assertArrayEquals(packet.history, read.history);
+        assertArrayEquals(packet.levels, read.levels);
+        assertArrayEquals(packet.letters, read.letters);
+        assertEquals(0, read.notSerialized);
+
+        read.reset();
+        assertFalse(read.alive);
+        assertEquals(0, read.x);
+        assertNull(read.name);
+        assertArrayEquals(packet.inventory, read.inventory); // arrays are kept for reuse
+    }
+
+    @Test
+    public void generatedRegistration() {
+        PacketRegistry registry = GeneratedPackets.register(new DefaultPacketRegistry("test"));
+        assertEquals(7, registry.getId(StatePacket.class));
+        assertNotNull(registry.getPacketHolder(7).pool);
+    }
+
+}
@@ -0,0 +1,138 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.network.channel.AbstractChannelListener;
+import com.hirshi001.networking.network.channel.ChannelOption;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.InternedStringPacket;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.IntegerPacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that lazily received packets are only read when they are handled or asked for.
+ */
+public class LazyDecodeTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    /**
+     * Counts how many times it was created to be read into and how many times it was read.
+     */
+    public static class CountingPacket extends IntegerPacket {
+        public static int created, reads;
+
+        public CountingPacket() {
+            created++;
+        }
+
+        public CountingPacket(int value) {
+            super(value);
+        }
+
+        @Override
+        public void readBytes(ByteBuffer in) {
+            reads++;
+            super.readBytes(in);
+        }
+    }
+
+    @Test
+    public void simple() {
+        SimplePacketEncoderDecoder encoderDecoder = new SimplePacketEncoderDecoder();
+        encoderDecoder.lazy = true;
+        onlyHandledPacketsAreRead(encoderDecoder);
+    }
+
+    @Test
+    public void compactBatched() {
+        CompactPacketEncoderDecoder encoderDecoder = new CompactPacketEncoderDecoder();
+        encoderDecoder.lazy = true;
+        onlyHandledPacketsAreRead(encoderDecoder);
+    }
+
+    private void onlyHandledPacketsAreRead(SimplePacketEncoderDecoder encoderDecoder) {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        List<Integer> handled = new ArrayList<>();
+        container.getDefaultRegistry()
+                .registerDefaultPrimitivePackets()
+                .register(CountingPacket::new, context -> handled.add(context.packet.value), CountingPacket.class, 0);
+        LocalServer server = new LocalServer(new DefaultNetworkData(encoderDecoder, container), bufferFactory);
+        LocalChannel sending = server.newChannel(), receiving = server.newChannel();
+        sending.setChannelOption(ChannelOption.BATCH_PACKETS, true);
+
+        List<String> strings = new ArrayList<>();
+        receiving.addChannelListener(new AbstractChannelListener() {
+            @Override
+            public void onReceived(PacketHandlerContext<?> context) {
+                if (context.packetId != 0) {
+                    // packets using the string table are always read right away
+                    assertTrue(context.isPacketRead());
+                    strings.add(((InternedStringPacket) context.packet).value);
+                    return;
+                }
+                assertFalse(context.isPacketRead());
+                assertNull(context.packet);
+                int value = ((CountingPacket) context.getPacket()).value;
+                if (value < 0) context.shouldHandle(false); // dropped after being read
+            }
+        });
+
+        CountingPacket.reads = 0;
+        for (int i = 0; i < 4; i++) sending.sendNow(new CountingPacket(i), null, PacketType.TCP);
+        sending.sendNow(new CountingPacket(-1), null, PacketType.TCP);
+        sending.sendNow(new InternedStringPacket("name"), null, PacketType.TCP);
+        sending.sendNow(new InternedStringPacket("name"), null, PacketType.TCP);
+        sending.flush();
+        receiving.receiveTCP(sending.tcpSent);
+
+        assertEquals(5, CountingPacket.reads);
+        assertEquals(4, handled.size());
+        for (int i = 0; i < 4; i++) assertEquals(i, (int) handled.get(i));
+        assertEquals(2, strings.size());
+        assertEquals("name", strings.get(1));
+    }
+
+    @Test
+    public void droppedPacketsAreNeverRead() {
+        SimplePacketEncoderDecoder encoderDecoder = new SimplePacketEncoderDecoder();
+        encoderDecoder.lazy = true;
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        List<Integer> handled = new ArrayList<>();
+        container.getDefaultRegistry().register(CountingPacket::new, context -> handled.add(context.packet.value), CountingPacket.class, 0);
+        LocalServer server = new LocalServer(new DefaultNetworkData(encoderDecoder, container), bufferFactory);
+        LocalChannel sending = server.newChannel(), receiving = server.newChannel();
+        receiving.addChannelListener(new AbstractChannelListener() {
+            @Override
+            public void onReceived(PacketHandlerContext<?> context) {
+                context.shouldHandle(false); // drop everything by id, without looking at the body
+                assertEquals(0, context.packetId);
+                assertSame(container.getDefaultRegistry(), context.packetRegistry);
+                assertSame(CountingPacket.class, context.getPacketClass());
+            }
+        });
+
+        CountingPacket.created = 0;
+        CountingPacket.reads = 0;
+        for (int i = 0; i < 100; i++) sending.sendNow(new CountingPacket(i), null, PacketType.TCP);
+        sending.flush();
+        receiving.receiveTCP(sending.tcpSent);
+
+        assertEquals(1, CountingPacket.created); // once, to find out whether it uses the tables of the channel
+        assertEquals(0, CountingPacket.reads);
+        assertTrue(handled.isEmpty());
+    }
+
+}
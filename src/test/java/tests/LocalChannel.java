@@ -0,0 +1,109 @@
+package tests;
+
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.network.channel.BaseChannel;
+import com.hirshi001.networking.network.channel.Channel;
+import com.hirshi001.networking.network.networkside.NetworkSide;
+import com.hirshi001.restapi.RestFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A channel without a socket. Flushed bytes are kept in {@link #tcpSent} and {@link #udpSent}, and received bytes can
+ * be passed in with {@link #receiveTCP(ByteBuffer)} and {@link #receiveUDP(ByteBuffer)}. Each UDP datagram flushed is
+ * also kept on its own in {@link #udpDatagrams}.
+ */
+public class LocalChannel extends BaseChannel {
+
+    public final ByteBuffer tcpSent, udpSent;
+    public final List<byte[]> udpDatagrams = new ArrayList<>();
+
+    public LocalChannel(NetworkSide networkSide) {
+        super(networkSide, networkSide.getExecutor());
+        tcpSent = networkSide.getBufferFactory().buffer(64);
+        udpSent = networkSide.getBufferFactory().buffer(64);
+    }
+
+    public void receiveTCP(ByteBuffer bytes) {
+        onTCPBytesReceived(bytes);
+    }
+
+    public void receiveUDP(ByteBuffer datagram) {
+        onUDPPacketsReceived(datagram);
+    }
+
+    public void connectTCP() {
+        onTCPConnected();
+    }
+
+    @Override
+    protected void writeAndFlushTCP(ByteBuffer buffer) {
+        tcpSent.writeBytes(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    protected void writeAndFlushUDP(ByteBuffer buffer) {
+        byte[] datagram = new byte[buffer.readableBytes()];
+        for (int i = 0; i < datagram.length; i++) datagram[i] = buffer.getByte(buffer.readerIndex() + i);
+        udpDatagrams.add(datagram);
+        udpSent.writeBytes(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public String getIp() {
+        return "127.0.0.1";
+    }
+
+    @Override
+    public int getPort() {
+        return 0;
+    }
+
+    @Override
+    public byte[] getAddress() {
+        return new byte[]{127, 0, 0, 1};
+    }
+
+    @Override
+    public RestFuture<?, ? extends Channel> startTCP() {
+        return null;
+    }
+
+    @Override
+    public RestFuture<?, ? extends Channel> stopTCP() {
+        return null;
+    }
+
+    @Override
+    public RestFuture<?, ? extends Channel> startUDP() {
+        return null;
+    }
+
+    @Override
+    public RestFuture<?, ? extends Channel> stopUDP() {
+        return null;
+    }
+
+    @Override
+    public boolean isTCPOpen() {
+        return true;
+    }
+
+    @Override
+    public boolean isUDPOpen() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsTCP() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsUDP() {
+        return true;
+    }
+}
@@ -0,0 +1,85 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.networking.network.channel.Channel;
+import com.hirshi001.networking.network.channel.ChannelSet;
+import com.hirshi001.networking.network.channel.DefaultChannelSet;
+import com.hirshi001.networking.network.server.BaseServer;
+import com.hirshi001.networking.network.server.Server;
+import com.hirshi001.networking.networkdata.NetworkData;
+import com.hirshi001.restapi.RestFuture;
+
+import java.util.LinkedHashSet;
+
+/**
+ * A server without any sockets, used to test channels and channel sets. Its channels are {@link LocalChannel}s.
+ */
+public class LocalServer extends BaseServer<LocalChannel> {
+
+    private final ChannelSet<Channel> clients = new DefaultChannelSet<>(this, new LinkedHashSet<>());
+
+    public LocalServer(NetworkData networkData, BufferFactory bufferFactory) {
+        super(null, networkData, bufferFactory, 0);
+    }
+
+    /**
+     * Creates a new channel and adds it to the clients of this server.
+     *
+     * @return the channel
+     */
+    public LocalChannel newChannel() {
+        LocalChannel channel = new LocalChannel(this);
+        addChannel(channel);
+        return channel;
+    }
+
+    @Override
+    public ChannelSet<Channel> getClients() {
+        return clients;
+    }
+
+    @Override
+    public RestFuture<?, Server> startTCP() {
+        return null;
+    }
+
+    @Override
+    public RestFuture<?, Server> startUDP() {
+        return null;
+    }
+
+    @Override
+    public RestFuture<?, Server> stopTCP() {
+        return null;
+    }
+
+    @Override
+    public RestFuture<?, Server> stopUDP() {
+        return null;
+    }
+
+    @Override
+    public RestFuture<?, Server> close() {
+        return null;
+    }
+
+    @Override
+    public boolean supportsTCP() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsUDP() {
+        return true;
+    }
+
+    @Override
+    public boolean tcpOpen() {
+        return true;
+    }
+
+    @Override
+    public boolean udpOpen() {
+        return true;
+    }
+}
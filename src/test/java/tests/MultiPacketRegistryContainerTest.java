@@ -0,0 +1,80 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistry.ArrayPacketRegistry;
+import com.hirshi001.networking.packetregistry.PacketRegistry;
+import com.hirshi001.networking.packetregistrycontainer.MultiPacketRegistryContainer;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.IntegerPacket;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.StringPacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a frozen {@link MultiPacketRegistryContainer} finds the same registries and packets, and that later
+ * changes replace its snapshot.
+ */
+public class MultiPacketRegistryContainerTest {
+
+    @Test
+    public void frozenLookups() {
+        MultiPacketRegistryContainer container = new MultiPacketRegistryContainer();
+        PacketRegistry game = container.addRegistry(new ArrayPacketRegistry("game"));
+        game.register(IntegerPacket::new, null, IntegerPacket.class, 0);
+        PacketRegistry chat = container.newRegistry("chat");
+        chat.register(StringPacket::new, null, StringPacket.class, 0);
+
+        container.freeze();
+        assertTrue(container.isFrozen());
+        assertFalse(((ArrayPacketRegistry) game).isFrozen()); // the registries are not frozen along with it
+
+        assertSame(game, container.get(game.getId()));
+        assertSame(chat, container.get("chat"));
+        assertEquals(IntegerPacket.class, container.get(game.getId()).getPacketHolder(0).packetClass);
+        assertEquals(StringPacket.class, container.get(chat.getId()).getPacketHolder(0).packetClass);
+        assertSame(game, container.getRegistryTable(game.getId()).registry);
+        assertEquals(IntegerPacket.class, container.getRegistryTable(game.getId()).getPacketHolder(0).packetClass);
+        assertNull(container.getRegistryTable(game.getId()).getPacketHolder(1));
+        assertNull(container.get(1000));
+        assertNull(container.getRegistryTable(1000));
+
+        // packets registered after the container was frozen are still found
+        game.register(StringPacket::new, null, StringPacket.class, 1);
+        assertEquals(StringPacket.class, container.getRegistryTable(game.getId()).getPacketHolder(1).packetClass);
+        assertEquals(3, container.registries().size());
+
+        // what a SetPacketRegistryIDPacket from the server does
+        container.setPacketRegistryID(chat, 5000);
+        assertSame(chat, container.get(5000));
+        assertEquals(StringPacket.class, container.get(5000).getPacketHolder(0).packetClass);
+        assertEquals(StringPacket.class, container.getRegistryTable(5000).getPacketHolder(0).packetClass);
+
+        PacketRegistry late = container.newRegistry("late");
+        assertSame(late, container.get(late.getId()));
+        assertSame(late, container.get("late"));
+    }
+
+    @Test
+    public void frozenDecoding() {
+        MultiPacketRegistryContainer container = new MultiPacketRegistryContainer();
+        List<Object> received = new ArrayList<>();
+        PacketRegistry game = container.newRegistry("game");
+        game.register(IntegerPacket::new, context -> received.add(context.packet.value), IntegerPacket.class, 0);
+        container.freeze();
+
+        LocalServer server = new LocalServer(new DefaultNetworkData(new CompactPacketEncoderDecoder(), container), new DefaultBufferFactory());
+        LocalChannel sending = server.newChannel(), receiving = server.newChannel();
+        sending.sendNow(new IntegerPacket(7), game, PacketType.TCP);
+        sending.flush();
+        receiving.receiveTCP(sending.tcpSent);
+        assertEquals(Collections.singletonList(7), received);
+    }
+
+}
@@ -0,0 +1,69 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.PacketPool;
+import com.hirshi001.networking.packetdecoderencoder.PacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
+import com.hirshi001.networking.packetregistry.PacketRegistry;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.IntegerPacket;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that pooled packets are reused once released and kept when retained.
+ */
+public class PacketPoolTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    @SuppressWarnings("unchecked")
+    private static PacketHandlerContext<IntegerPacket> decode(PacketEncoderDecoder encoderDecoder, PacketRegistryContainer container, ByteBuffer buffer, int value) {
+        PacketHandlerContext<IntegerPacket> context = new PacketHandlerContext<>();
+        context.packet = new IntegerPacket(value);
+        context.packetRegistry = container.getDefaultRegistry();
+        encoderDecoder.encode(context, null, container, buffer);
+        return (PacketHandlerContext<IntegerPacket>) encoderDecoder.decode(container, buffer, null);
+    }
+
+    @Test
+    public void pooledPacketsAreReused() {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        PacketRegistry registry = container.getDefaultRegistry();
+        registry.registerPooled(IntegerPacket::new, null, IntegerPacket.class, 0, 4);
+        PacketEncoderDecoder encoderDecoder = new SimplePacketEncoderDecoder();
+        ByteBuffer buffer = bufferFactory.buffer(64);
+
+        PacketHandlerContext<IntegerPacket> first = decode(encoderDecoder, container, buffer, 1);
+        IntegerPacket packet = first.packet;
+        assertEquals(1, packet.value);
+        first.releasePacket();
+        assertNull(first.packet);
+
+        PacketHandlerContext<IntegerPacket> second = decode(encoderDecoder, container, buffer, 2);
+        assertSame(packet, second.packet);
+        assertEquals(2, second.packet.value);
+
+        second.retainPacket();
+        second.releasePacket();
+        assertSame(packet, second.packet);
+        assertNotSame(packet, decode(encoderDecoder, container, buffer, 3).packet);
+    }
+
+    @Test
+    public void poolIsBounded() {
+        PacketPool<IntegerPacket> pool = new PacketPool<>(IntegerPacket::new, 2);
+        IntegerPacket packet = pool.obtain();
+        packet.sendingId = 5;
+        pool.free(packet);
+        assertEquals(-1, packet.sendingId);
+        for (int i = 0; i < 5; i++) pool.free(new IntegerPacket());
+        assertEquals(2, pool.getFree());
+    }
+
+}
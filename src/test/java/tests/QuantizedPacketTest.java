@@ -0,0 +1,77 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.util.Quantizer;
+import com.hirshi001.networking.util.defaultpackets.quantizedpackets.QuantizedFloatPacket;
+import com.hirshi001.networking.util.defaultpackets.quantizedpackets.QuantizedVector2Packet;
+import com.hirshi001.networking.util.defaultpackets.quantizedpackets.QuantizedVector3Packet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the error bounds and sizes of the quantized packets.
+ */
+public class QuantizedPacketTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    @Test
+    public void errorBounds() {
+        Random random = new Random(2);
+        int[] bits = {1, 8, 12, 16, 24};
+        for (int b : bits) {
+            Quantizer quantizer = new Quantizer(-100, 100, b);
+            QuantizedFloatPacket packet = new QuantizedFloatPacket(quantizer), read = new QuantizedFloatPacket(quantizer);
+            ByteBuffer buffer = bufferFactory.buffer(8);
+            double worst = 0;
+            for (int i = 0; i < 10_000; i++) {
+                packet.value = random.nextFloat() * 200 - 100;
+                buffer.clear();
+                packet.writeBytes(buffer);
+                assertEquals(packet.estimateSize(), buffer.readableBytes());
+                read.readBytes(buffer);
+                worst = Math.max(worst, Math.abs(read.value - packet.value));
+            }
+            assertTrue(worst <= quantizer.maxError() + Math.ulp(100f), b + " bits: " + worst);
+        }
+
+        Quantizer quantizer = Quantizer.ofPrecision(0, 1000, 0.001f);
+        assertEquals(19, quantizer.bits);
+        assertTrue(quantizer.maxError() <= 0.001);
+        assertEquals(0, quantizer.quantize(-5));
+        assertEquals(0, quantizer.quantize(Float.NaN));
+        assertEquals((1 << 19) - 1, quantizer.quantize(2000));
+        assertEquals(1000f, quantizer.dequantize(quantizer.quantize(1000)));
+    }
+
+    @Test
+    public void vectors() {
+        Quantizer position = new Quantizer(-512, 512, 16);
+        QuantizedVector3Packet packet = new QuantizedVector3Packet(position).set(1.5f, -300.25f, 511f);
+        ByteBuffer buffer = bufferFactory.buffer(8);
+        packet.writeBytes(buffer);
+        assertEquals(6, buffer.readableBytes()); // 48 bits instead of 96
+
+        QuantizedVector3Packet read = new QuantizedVector3Packet(position);
+        read.readBytes(buffer);
+        assertEquals(1.5f, read.x, position.maxError());
+        assertEquals(-300.25f, read.y, position.maxError());
+        assertEquals(511f, read.z, position.maxError());
+
+        Quantizer angle = new Quantizer(0, 360, 9);
+        QuantizedVector2Packet mixed = new QuantizedVector2Packet(position, angle).set(-20f, 90f);
+        buffer.clear();
+        mixed.writeBytes(buffer);
+        assertEquals(4, buffer.readableBytes()); // 25 bits
+        QuantizedVector2Packet readMixed = new QuantizedVector2Packet(position, angle);
+        readMixed.readBytes(buffer);
+        assertEquals(-20f, readMixed.x, position.maxError());
+        assertEquals(90f, readMixed.y, angle.maxError());
+    }
+
+}
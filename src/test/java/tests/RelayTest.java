@@ -0,0 +1,117 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.networking.network.channel.AbstractChannelListener;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import org.junit.jupiter.api.Test;
+import tests.LazyDecodeTest.CountingPacket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a gateway can relay lazily received packets to other channels without reading them.
+ */
+public class RelayTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    private LocalServer newServer(SimplePacketEncoderDecoder encoderDecoder, List<PacketHandlerContext<CountingPacket>> handled) {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().register(CountingPacket::new, handled == null ? null : context -> {
+            context.retainPacket();
+            handled.add(context);
+        }, CountingPacket.class, 0);
+        return new LocalServer(new DefaultNetworkData(encoderDecoder, container), bufferFactory);
+    }
+
+    @Test
+    public void relayToChannel() {
+        SimplePacketEncoderDecoder lazy = new SimplePacketEncoderDecoder();
+        lazy.lazy = true;
+        LocalServer gateway = newServer(lazy, null);
+        LocalChannel client = gateway.newChannel(), fromClient = gateway.newChannel(), toBackend = gateway.newChannel();
+
+        List<PacketHandlerContext<CountingPacket>> handled = new ArrayList<>();
+        LocalServer backend = newServer(new SimplePacketEncoderDecoder(), handled);
+        LocalChannel fromGateway = backend.newChannel();
+
+        fromClient.addChannelListener(new AbstractChannelListener() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void onReceived(PacketHandlerContext<?> context) {
+                context.shouldHandle(false);
+                PacketHandlerContext<CountingPacket> received = (PacketHandlerContext<CountingPacket>) context;
+                if (received.getReceivingId() == -1) toBackend.relay(received, null, PacketType.TCP);
+                else toBackend.relay(received, null, received.getReceivingId() + 100, PacketType.TCP);
+                assertFalse(context.isPacketRead());
+            }
+        });
+
+        CountingPacket.reads = 0;
+        for (int i = 0; i < 10; i++) {
+            CountingPacket packet = new CountingPacket(i * 1000);
+            packet.sendingId = i;
+            if (i % 2 == 0) packet.receivingId = i;
+            client.sendNow(packet, null, PacketType.TCP);
+        }
+        client.flush();
+        fromClient.receiveTCP(client.tcpSent);
+        assertEquals(0, CountingPacket.reads);
+
+        toBackend.flush();
+        fromGateway.receiveTCP(toBackend.tcpSent);
+        assertEquals(10, CountingPacket.reads);
+        assertEquals(10, handled.size());
+        for (int i = 0; i < 10; i++) {
+            CountingPacket packet = handled.get(i).packet;
+            assertEquals(i * 1000, packet.value);
+            assertEquals(i, packet.sendingId);
+            assertEquals(i % 2 == 0 ? i + 100 : -1, packet.receivingId);
+        }
+    }
+
+    @Test
+    public void relayToAll() {
+        CompactPacketEncoderDecoder lazy = new CompactPacketEncoderDecoder();
+        lazy.lazy = true;
+        LocalServer gateway = newServer(lazy, null);
+        LocalChannel client = gateway.newChannel(), fromClient = gateway.newChannel();
+        List<LocalChannel> targets = new ArrayList<>();
+        for (int i = 0; i < 3; i++) targets.add(gateway.newChannel());
+
+        fromClient.addChannelListener(new AbstractChannelListener() {
+            @Override
+            public void onReceived(PacketHandlerContext<?> context) {
+                context.shouldHandle(false);
+                gateway.getClients().relayIf(context, PacketType.TCP, null, targets::contains);
+            }
+        });
+
+        CountingPacket.reads = 0;
+        client.sendNow(new CountingPacket(42), null, PacketType.TCP);
+        client.flush();
+        fromClient.receiveTCP(client.tcpSent);
+        assertEquals(0, CountingPacket.reads);
+
+        for (LocalChannel target : targets) {
+            List<PacketHandlerContext<CountingPacket>> handled = new ArrayList<>();
+            LocalChannel receiving = newServer(new CompactPacketEncoderDecoder(), handled).newChannel();
+            target.flush();
+            receiving.receiveTCP(target.tcpSent);
+            assertEquals(1, handled.size());
+            assertEquals(42, handled.get(0).packet.value);
+        }
+        assertEquals(3, CountingPacket.reads);
+    }
+
+}
@@ -0,0 +1,215 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.network.channel.ChannelOption;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.replication.FieldSerializer;
+import com.hirshi001.networking.replication.ReplicatedType;
+import com.hirshi001.networking.replication.ReplicationClient;
+import com.hirshi001.networking.replication.ReplicationListener;
+import com.hirshi001.networking.replication.ReplicationServer;
+import com.hirshi001.networking.util.defaultpackets.systempackets.SnapshotPacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that snapshots replicate objects as deltas against the last snapshot acknowledged, and survive lost and
+ * reordered packets.
+ */
+public class ReplicationTest {
+
+    public static class Entity {
+        public int health;
+        public float x, y;
+    }
+
+    private static final ReplicatedType<Entity> ENTITY = new ReplicatedType<>(0, Entity::new)
+            .addField(FieldSerializer.ofInt(entity -> entity.health, (entity, value) -> entity.health = value))
+            .addField(FieldSerializer.ofFloat(entity -> entity.x, (entity, value) -> entity.x = value))
+            .addField(FieldSerializer.ofFloat(entity -> entity.y, (entity, value) -> entity.y = value));
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+    private final List<String> events = new ArrayList<>();
+    private final ReplicationServer replicationServer;
+    private final ReplicationClient replicationClient;
+    private final LocalChannel serverSide, clientSide;
+
+    public ReplicationTest() {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().registerSystemPackets();
+        LocalServer server = new LocalServer(new DefaultNetworkData(new CompactPacketEncoderDecoder(), container), bufferFactory);
+        serverSide = server.newChannel();
+        clientSide = server.newChannel();
+        replicationServer = new ReplicationServer(bufferFactory);
+        server.addServerListener(replicationServer);
+        replicationClient = new ReplicationClient(bufferFactory).register(ENTITY);
+        replicationClient.setListener(new ReplicationListener() {
+            @Override
+            public void onCreated(int id, Object object) {
+                events.add("created " + id);
+            }
+
+            @Override
+            public void onUpdated(int id, Object object) {
+                events.add("updated " + id);
+            }
+
+            @Override
+            public void onRemoved(int id, Object object) {
+                events.add("removed " + id);
+            }
+        });
+        clientSide.addChannelListener(replicationClient);
+    }
+
+    private static Entity entity(int health, float x, float y) {
+        Entity entity = new Entity();
+        entity.health = health;
+        entity.x = x;
+        entity.y = y;
+        return entity;
+    }
+
+    /**
+     * Takes a snapshot and sends it to the client, returning the bytes sent.
+     */
+    private ByteBuffer tick() {
+        replicationServer.tick(Collections.singleton(serverSide));
+        serverSide.flush();
+        ByteBuffer sent = bufferFactory.buffer(serverSide.udpSent.readableBytes());
+        sent.writeBytes(serverSide.udpSent);
+        serverSide.udpSent.clear();
+        return sent;
+    }
+
+    private void deliver(ByteBuffer datagram, boolean acknowledge) {
+        clientSide.receiveUDP(datagram);
+        clientSide.flush();
+        if (acknowledge) serverSide.receiveUDP(clientSide.udpSent);
+        clientSide.udpSent.clear();
+    }
+
+    private void assertReplicated(Entity expected, int id) {
+        Entity entity = (Entity) replicationClient.get(id);
+        assertNotNull(entity);
+        assertEquals(expected.health, entity.health);
+        assertEquals(expected.x, entity.x);
+        assertEquals(expected.y, entity.y);
+    }
+
+    @Test
+    public void deltas() {
+        List<Entity> entities = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            entities.add(entity(100, i, -i));
+            assertEquals(i, replicationServer.add(ENTITY, entities.get(i)));
+        }
+        ByteBuffer full = tick();
+        int fullSize = full.readableBytes();
+        deliver(full, true);
+        assertEquals(1, replicationServer.getAcknowledged(serverSide));
+        assertEquals(10, replicationClient.getObjects().size());
+        for (int i = 0; i < 10; i++) assertReplicated(entities.get(i), i);
+
+        entities.get(3).x = 42;
+        ByteBuffer delta = tick();
+        assertTrue(delta.readableBytes() < fullSize / 5, delta.readableBytes() + " bytes");
+        deliver(delta, true);
+        assertReplicated(entities.get(3), 3);
+        assertEquals(2, replicationClient.getSnapshotNumber());
+
+        ByteBuffer empty = tick(); // no changes, so only the end of the delta
+        deliver(empty, true);
+        assertEquals(3, replicationClient.getSnapshotNumber());
+
+        events.clear();
+        entities.get(5).health = 7;
+        replicationServer.remove(8);
+        Entity added = entity(1, 2, 3);
+        assertEquals(10, replicationServer.add(ENTITY, added));
+        deliver(tick(), true);
+        assertEquals(10, replicationClient.getObjects().size());
+        assertNull(replicationClient.get(8));
+        assertReplicated(entities.get(5), 5);
+        assertReplicated(added, 10);
+        assertEquals(Arrays.asList("updated 5", "removed 8", "created 10"), events);
+    }
+
+    @Test
+    public void lostAndReorderedSnapshots() {
+        Entity entity = entity(100, 0, 0);
+        replicationServer.add(ENTITY, entity);
+        deliver(tick(), true);
+
+        entity.x = 1;
+        tick(); // lost
+        entity.y = 2;
+        ByteBuffer third = tick(); // still a delta against the first snapshot, so it carries both changes
+        entity.health = 50;
+        ByteBuffer fourth = tick();
+        deliver(fourth, true);
+        assertReplicated(entity, 0);
+        assertEquals(4, replicationClient.getSnapshotNumber());
+
+        events.clear();
+        deliver(third, true); // older than the snapshot applied, so it is only kept as a baseline
+        assertReplicated(entity, 0);
+        assertEquals(4, replicationClient.getSnapshotNumber());
+        assertTrue(events.isEmpty());
+        assertEquals(4, replicationServer.getAcknowledged(serverSide));
+
+        // without acknowledgements the baseline falls out of the window, and every object is sent again
+        for (int i = 0; i < ReplicationServer.WINDOW; i++) {
+            entity.x = i;
+            tick();
+        }
+        ByteBuffer full = tick();
+        deliver(full, true);
+        assertReplicated(entity, 0);
+        assertEquals(5 + ReplicationServer.WINDOW, replicationServer.getAcknowledged(serverSide));
+    }
+
+    @Test
+    public void largeSnapshotsAreSentOverTCP() {
+        serverSide.setChannelOption(ChannelOption.MAX_UDP_PACKET_SIZE, 100);
+        for (int i = 0; i < 20; i++) replicationServer.add(ENTITY, entity(100, i, i));
+
+        replicationServer.tick(Collections.singleton(serverSide));
+        serverSide.flush();
+        assertEquals(0, serverSide.udpSent.readableBytes());
+        assertEquals(1, replicationServer.getAcknowledged(serverSide)); // TCP delivers it, so it is the baseline
+        clientSide.receiveTCP(serverSide.tcpSent);
+        serverSide.tcpSent.clear();
+        assertEquals(20, replicationClient.getObjects().size());
+
+        ((Entity) replicationServer.get(3)).x = 42;
+        deliver(tick(), true);
+        assertEquals(2, replicationClient.getSnapshotNumber());
+        assertEquals(42F, ((Entity) replicationClient.get(3)).x);
+
+        clientSide.connectTCP(); // a new connection starts over
+        assertEquals(0, replicationClient.getSnapshotNumber());
+        assertTrue(replicationClient.getObjects().isEmpty());
+    }
+
+    @Test
+    public void missingBaseline() {
+        ReplicationClient client = new ReplicationClient(bufferFactory).register(ENTITY);
+        assertFalse(client.receive(new SnapshotPacket(5, 4, new byte[]{3})));
+        assertTrue(client.receive(new SnapshotPacket(5, 0, new byte[]{3})));
+        assertEquals(5, client.getSnapshotNumber());
+        assertThrows(IllegalArgumentException.class, () -> client.receive(new SnapshotPacket(6, 5, new byte[]{0 << 2 | 0, 1})));
+    }
+
+}
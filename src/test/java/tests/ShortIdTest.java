@@ -0,0 +1,110 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.networking.network.channel.ChannelOption;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packetdecoderencoder.CompactPacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistry.PacketRegistry;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.ShortIdTable;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.IntegerPacket;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.LongPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.ShortPacketIdsPacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that channels give the packets they send most often a short id, and that the other side decodes them.
+ */
+public class ShortIdTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    private int sendAndMeasure(LocalChannel channel, int value, PacketType type) {
+        int before = type == PacketType.TCP ? channel.tcpSent.readableBytes() : channel.udpSent.readableBytes();
+        channel.sendNow(new IntegerPacket(value), null, type);
+        channel.flush();
+        return (type == PacketType.TCP ? channel.tcpSent.readableBytes() : channel.udpSent.readableBytes()) - before;
+    }
+
+    @Test
+    public void shortIds() {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        List<Integer> received = new ArrayList<>();
+        container.getDefaultRegistry()
+                .registerSystemPackets()
+                .register(IntegerPacket::new, context -> received.add(context.packet.value), IntegerPacket.class, 1000);
+        LocalServer server = new LocalServer(new DefaultNetworkData(new CompactPacketEncoderDecoder(), container), bufferFactory);
+        LocalChannel sending = server.newChannel(), receiving = server.newChannel();
+        sending.setChannelOption(ChannelOption.SHORT_PACKET_IDS, true);
+
+        int sent = 0;
+        for (; sent < ShortIdTable.DEFAULT_THRESHOLD - 1; sent++) assertEquals(8, sendAndMeasure(sending, sent, PacketType.TCP));
+        assertEquals(16, sendAndMeasure(sending, sent++, PacketType.TCP)); // followed by the short id
+        for (; sent < 40; sent++) assertEquals(7, sendAndMeasure(sending, sent, PacketType.TCP));
+
+        // short ids are only used over UDP once the other side acknowledged them
+        assertEquals(8, sendAndMeasure(sending, sent++, PacketType.UDP));
+        receiving.receiveTCP(sending.tcpSent);
+        receiving.flush();
+        sending.receiveTCP(receiving.tcpSent);
+        assertEquals(7, sendAndMeasure(sending, sent++, PacketType.UDP));
+        receiving.receiveUDP(sending.udpSent);
+
+        assertEquals(sent, received.size());
+        for (int i = 0; i < sent; i++) assertEquals(i, (int) received.get(i));
+        assertEquals(1, receiving.getShortIdTable().getReceivedCount());
+        assertEquals(1000, receiving.getShortIdTable().getPacketId(0));
+    }
+
+    @Test
+    public void ranking() {
+        PacketRegistry registry = new SinglePacketRegistryContainer().getDefaultRegistry();
+        ShortIdTable table = new ShortIdTable(2, 1);
+        table.setEnabled(true);
+        IntegerPacket integerPacket = new IntegerPacket();
+        LongPacket longPacket = new LongPacket();
+
+        for (int i = 0; i < 2; i++) assertEquals(-1, table.getCode(registry, integerPacket, 1, true));
+        ShortPacketIdsPacket first = table.pollUnsentCodes(false);
+        assertEquals(0, first.firstCode);
+        assertArrayEquals(new int[]{1}, first.packetIds);
+        assertEquals(0, table.getCode(registry, integerPacket, 1, true));
+
+        // the more often sent type takes the code, since the other side has not acknowledged it yet
+        for (int i = 0; i < 4; i++) assertEquals(-1, table.getCode(registry, longPacket, 2, true));
+        assertEquals(-1, table.getCode(registry, integerPacket, 1, true));
+        ShortPacketIdsPacket second = table.pollUnsentCodes(false);
+        assertEquals(0, second.firstCode);
+        assertArrayEquals(new int[]{2}, second.packetIds);
+        assertEquals(0, table.getCode(registry, longPacket, 2, true));
+
+        // the acknowledgement of the first packet does not cover the reassigned code
+        table.acknowledge(1);
+        assertEquals(-1, table.getCode(registry, longPacket, 2, false));
+        table.acknowledge(1);
+        assertEquals(0, table.getCode(registry, longPacket, 2, false));
+
+        // acknowledged codes are kept
+        for (int i = 0; i < 20; i++) assertEquals(-1, table.getCode(registry, integerPacket, 1, true));
+        assertFalse(table.hasUnsentCodes());
+    }
+
+    @Test
+    public void disabledByDefault() {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().registerSystemPackets().register(IntegerPacket::new, null, IntegerPacket.class, 1000);
+        LocalServer server = new LocalServer(new DefaultNetworkData(new CompactPacketEncoderDecoder(), container), bufferFactory);
+        LocalChannel sending = server.newChannel();
+        for (int i = 0; i < 40; i++) assertEquals(8, sendAndMeasure(sending, i, PacketType.TCP));
+        assertFalse(sending.getShortIdTable().hasUnsentCodes());
+    }
+
+}
@@ -0,0 +1,70 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.networking.packet.Packet;
+import com.hirshi001.networking.util.defaultpackets.arraypackets.*;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.*;
+import com.hirshi001.networking.util.defaultpackets.systempackets.DictionaryVersionsPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.FragmentPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.SetPacketRegistryIDPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.ShortPacketIdsPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.SnapshotAckPacket;
+import com.hirshi001.networking.util.defaultpackets.systempackets.SnapshotPacket;
+import com.hirshi001.networking.util.defaultpackets.udppackets.UDPInitialConnectionPacket;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the default packets estimate exactly the number of bytes they write.
+ */
+public class SizeHintTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    private void assertExact(Packet packet) {
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        packet.writeBytes(buffer);
+        assertEquals(buffer.readableBytes(), packet.estimateSize(), packet.getClass().getSimpleName());
+    }
+
+    @Test
+    public void defaultPacketsAreExact() {
+        assertExact(new BooleanPacket(true));
+        assertExact(new BytePacket((byte) 3));
+        assertExact(new CharPacket('c'));
+        assertExact(new DoublePacket(1.5));
+        assertExact(new FloatPacket(1.5f));
+        assertExact(new IntegerPacket(7));
+        assertExact(new LongPacket(7L));
+        assertExact(new ShortPacket((short) 7));
+        assertExact(new StringPacket("hello world"));
+
+        assertExact(new BooleanArrayPacket(new boolean[]{true, false, true, true, false, false, true, false, true}));
+        assertExact(new MultiBooleanPacket(new boolean[20]));
+        assertExact(new ByteArrayPacket(new byte[]{1, 2, 3}));
+        assertExact(new CharArrayPacket(new int[]{'a', 'b'}));
+        assertExact(new DoubleArrayPacket(new double[]{1, 2, 3}));
+        assertExact(new FloatArrayPacket(new float[]{1, 2, 3}));
+        assertExact(new IntegerArrayPacket(new int[]{1, 2, 3}));
+        assertExact(new LongArrayPacket(new long[]{1, 2, 3}));
+        assertExact(new ShortArrayPacket(new short[]{1, 2, 3}));
+
+        assertExact(new SetPacketRegistryIDPacket("registry", 2));
+        assertExact(new DictionaryVersionsPacket(new int[]{0, -3}, new int[]{1, 300}));
+        assertExact(new SnapshotPacket(300, 299, new byte[]{1, 2, 3}));
+        assertExact(new SnapshotAckPacket(300));
+        assertExact(new FragmentPacket(70000, 3, 200, new byte[300]));
+        assertExact(new ShortPacketIdsPacket(3, new int[]{-1, 2}, new int[]{1000, -5}));
+        assertExact(new UDPInitialConnectionPacket());
+    }
+
+    @Test
+    public void unknownSize() {
+        assertEquals(-1, new Packet() {}.estimateSize());
+        assertEquals(-1, new IntegerArrayPacket().estimateSize());
+    }
+
+}
@@ -0,0 +1,165 @@
+package tests;
+
+import com.hirshi001.buffer.bufferfactory.BufferFactory;
+import com.hirshi001.buffer.bufferfactory.DefaultBufferFactory;
+import com.hirshi001.buffer.buffers.ByteBuffer;
+import com.hirshi001.buffer.util.ByteBufUtil;
+import com.hirshi001.networking.network.channel.AbstractChannelListener;
+import com.hirshi001.networking.networkdata.DefaultNetworkData;
+import com.hirshi001.networking.packetdecoderencoder.SimplePacketEncoderDecoder;
+import com.hirshi001.networking.packethandlercontext.PacketHandlerContext;
+import com.hirshi001.networking.packethandlercontext.PacketType;
+import com.hirshi001.networking.packetregistrycontainer.PacketRegistryContainer;
+import com.hirshi001.networking.packetregistrycontainer.SinglePacketRegistryContainer;
+import com.hirshi001.networking.util.StringTable;
+import com.hirshi001.networking.util.VarIntUtil;
+import com.hirshi001.networking.util.defaultpackets.primitivepackets.InternedStringPacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that strings sent through a {@link StringTable} are only sent in full once per channel.
+ */
+public class StringTableTest {
+
+    private final BufferFactory bufferFactory = new DefaultBufferFactory();
+
+    @Test
+    public void internedStrings() {
+        StringTable sender = new StringTable(2), receiver = new StringTable(2);
+        String[] names = {"player one", "player two", "player one", "player three", "player two", "player three"};
+        int[] sizes = new int[names.length];
+        String[] values = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            ByteBuffer buffer = bufferFactory.buffer(16);
+            InternedStringPacket packet = new InternedStringPacket(names[i]);
+            packet.beforeWrite(sender);
+            packet.writeBytes(buffer);
+            packet.afterWrite(true);
+            sizes[i] = buffer.readableBytes();
+
+            InternedStringPacket read = new InternedStringPacket();
+            read.readBytes(buffer);
+            assertTrue(read.afterRead(receiver));
+            assertEquals(names[i], read.value);
+            assertEquals(0, buffer.readableBytes());
+            values[i] = read.value;
+        }
+        assertEquals(1, sizes[2]); // sent before, so the string received the first time is reused
+        assertSame(values[0], values[2]);
+        assertEquals(1, sizes[4]);
+        assertSame(values[1], values[4]);
+        assertTrue(sizes[5] > 1); // the table is full, so it is sent in full every time
+
+        // the table is only used for the next write
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        new InternedStringPacket("player one").writeBytes(buffer);
+        assertEquals(1 + 4 + 10, buffer.readableBytes());
+    }
+
+    @Test
+    public void stringsAreOnlyAddedOnceWritten() {
+        StringTable sender = new StringTable(), receiver = new StringTable();
+        InternedStringPacket packet = new InternedStringPacket("a name");
+
+        // the frame is rolled back, so the string has to be sent in full again
+        packet.beforeWrite(sender);
+        packet.writeBytes(bufferFactory.buffer(16));
+        packet.afterWrite(false);
+        assertEquals(-1, sender.indexOf(packet.value));
+
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        packet.beforeWrite(sender);
+        packet.writeBytes(buffer);
+        buffer.clear();
+        packet.writeBytes(buffer); // writing it again writes the same index
+        packet.afterWrite(true);
+        assertEquals(0, sender.indexOf(packet.value));
+
+        InternedStringPacket read = new InternedStringPacket();
+        read.readBytes(buffer);
+        assertTrue(read.afterRead(receiver));
+        assertEquals(packet.value, receiver.get(0));
+    }
+
+    @Test
+    public void unknownIndicesAreDropped() {
+        ByteBuffer buffer = bufferFactory.buffer(16);
+        VarIntUtil.writeVarInt(buffer, 3 * 2 + 2); // a string which was never received
+        InternedStringPacket read = new InternedStringPacket();
+        read.readBytes(buffer);
+        assertFalse(read.afterRead(new StringTable()));
+
+        buffer.clear();
+        VarIntUtil.writeVarInt(buffer, 8 * 2 + 1); // out of the bounds of the table
+        ByteBufUtil.writeStringToBuf("a name", buffer);
+        read.readBytes(buffer);
+        assertFalse(read.afterRead(new StringTable(8)));
+
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().registerDefaultPrimitivePackets();
+        LocalServer server = new LocalServer(new DefaultNetworkData(new SimplePacketEncoderDecoder(), container), bufferFactory);
+        LocalChannel sending = server.newChannel(), receiving = server.newChannel();
+        List<String> received = new ArrayList<>();
+        receiving.addChannelListener(new AbstractChannelListener() {
+            @Override
+            public void onReceived(PacketHandlerContext<?> context) {
+                received.add(((InternedStringPacket) context.packet).value);
+            }
+        });
+        InternedStringPacket packet = new InternedStringPacket("a name");
+        for (int i = 0; i < 2; i++) {
+            sending.sendNow(packet, null, PacketType.TCP);
+            sending.flush();
+            if (i > 0) receiving.receiveTCP(sending.tcpSent); // the first frame is lost
+            sending.tcpSent.clear();
+        }
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void channelsUseTheirOwnTable() {
+        PacketRegistryContainer container = new SinglePacketRegistryContainer();
+        container.getDefaultRegistry().registerDefaultPrimitivePackets();
+        LocalServer server = new LocalServer(new DefaultNetworkData(new SimplePacketEncoderDecoder(), container), bufferFactory);
+        LocalChannel sending = server.newChannel(), other = server.newChannel(), receiving = server.newChannel();
+        List<String> received = new ArrayList<>();
+        receiving.addChannelListener(new AbstractChannelListener() {
+            @Override
+            public void onReceived(PacketHandlerContext<?> context) {
+                received.add(((InternedStringPacket) context.packet).value);
+            }
+        });
+
+        InternedStringPacket packet = new InternedStringPacket("a name sent over and over");
+        int[] sizes = new int[3];
+        for (int i = 0; i < sizes.length; i++) {
+            sending.sendNow(packet, null, PacketType.TCP);
+            sending.flush();
+            sizes[i] = sending.tcpSent.readableBytes();
+            receiving.receiveTCP(sending.tcpSent);
+            sending.tcpSent.clear();
+        }
+        assertTrue(sizes[1] < sizes[0]);
+        assertEquals(sizes[1], sizes[2]);
+
+        // another channel has not sent the string yet
+        other.sendNow(packet, null, PacketType.TCP);
+        other.flush();
+        assertEquals(sizes[0], other.tcpSent.readableBytes());
+
+        // UDP can lose or reorder packets, so strings are always sent in full
+        sending.sendNow(packet, null, PacketType.UDP);
+        sending.flush();
+        assertEquals(sizes[0], sending.udpSent.readableBytes());
+        receiving.receiveUDP(sending.udpSent);
+
+        assertEquals(4, received.size());
+        for (String s : received) assertEquals(packet.value, s);
+    }
+
+}